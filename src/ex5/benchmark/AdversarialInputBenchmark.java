@@ -0,0 +1,207 @@
+package ex5.benchmark;
+
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the time to verify crafted lines of growing length, to show that it grows linearly with the
+ * length of the line.
+ * <p>
+ *     Usage: {@code java ex5.benchmark.AdversarialInputBenchmark [rounds] [--reference]}.
+ *     Every line family is verified inside a method, at lengths that double from one row to the next up to
+ *     half a million characters, and the fastest of the rounds is reported. Every family is warmed up at
+ *     all of its lengths before it is measured, and the time per character is that of the characters
+ *     added to the shortest line of the family, so the fixed time of verifying the method is not counted.
+ *     The growth is the ratio of the time per line to that of the previous row: with a linear-time
+ *     verifier it approaches 2 once the line dominates the fixed time, and the time per character levels.
+ *     The longest rows of {@code long_call} also measure the garbage collector, which its long lists of
+ *     arguments keep busy, so their growth may be higher.
+ * </p>
+ * <p>
+ *     With {@code --reference}, the regular expression that used to be matched against each family is also
+ *     timed with {@link java.util.regex.Pattern}, up to 16,000 characters. For the first three families,
+ *     its backtracking makes the growth about 4 instead, so the time per character doubles with every row.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class AdversarialInputBenchmark {
+
+    // Constants
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int[] LENGTHS = {
+            1_000, 2_000, 4_000, 8_000, 16_000, 32_000, 64_000, 128_000, 256_000, 512_000
+    };
+    private static final int MAX_REFERENCE_LENGTH = 16_000;
+    private static final int BASE_LENGTH = 0;
+    private static final String REFERENCE_OPTION = "--reference";
+    private static final String HEADER = "%-24s %8s %14s %12s %8s%n";
+    private static final String ROW = "%-24s %8d %14.0f %12.2f %8s%n";
+    private static final String GROWTH = "%.2fx";
+    private static final String NO_GROWTH = "-";
+
+    // The regular expressions that were previously matched against the families
+    private static final String NAME_REGEX = "(?!\\b(?:int|double|String|boolean|char|void|if|return|final|" +
+                                             "while|true|false)\\b)(?!^_$)(?!__)[a-zA-Z_][a-zA-Z_\\d]*";
+    private static final Pattern CONDITION_PATTERN = Pattern.compile("^(while|if)\\s*\\(\\s*(.*)\\)\\s*\\{");
+    private static final Pattern DECLARATION_PATTERN = Pattern.compile(
+            "^(final\\s+)?(int|double|String|boolean|char)\\s+(.*);$"
+    );
+    private static final Pattern SPLIT_TO_GET_VAR_NAME_PATTERN = Pattern.compile("\\s*=\\s*");
+    private static final Pattern CALL_PATTERN = Pattern.compile("^(" + NAME_REGEX + ")\\s*\\((.*)\\)\\s*");
+
+    /**
+     * A family of crafted lines.
+     */
+    private enum Family {
+        /** A condition with a long run of whitespaces and no closing parenthesis. */
+        CONDITION_WHITESPACES("if (", " ", "x {"),
+        /** A declaration with a long run of whitespaces and no semicolon. */
+        DECLARATION_WHITESPACES("int", " ", "x"),
+        /** A declarator with a long run of whitespaces inside it. */
+        DECLARATOR_WHITESPACES("int a", " ", "b;"),
+        /** A method call with a long list of arguments. */
+        LONG_CALL("foo(1", ", 1", ");"),
+        /** A valid declaration of a long String constant. */
+        LONG_STRING("String s = \"", "a", "\";");
+
+        private final String prefix;
+        private final String unit;
+        private final String suffix;
+
+        Family(String prefix, String unit, String suffix) {
+            this.prefix = prefix;
+            this.unit = unit;
+            this.suffix = suffix;
+        }
+
+        /**
+         * @param length The approximate length of the line.
+         * @return A line of this family.
+         */
+        String line(int length) {
+            return prefix + unit.repeat(Math.max(1, length / unit.length())) + suffix;
+        }
+
+        /**
+         * Matches the line against the regular expression that was previously matched against this family.
+         * @param line A line of this family.
+         */
+        void matchReference(String line) {
+            switch (this) {
+                case CONDITION_WHITESPACES -> CONDITION_PATTERN.matcher(line).matches();
+                case DECLARATION_WHITESPACES, LONG_STRING -> DECLARATION_PATTERN.matcher(line).lookingAt();
+                case DECLARATOR_WHITESPACES -> SPLIT_TO_GET_VAR_NAME_PATTERN.split(line.substring(4));
+                case LONG_CALL -> CALL_PATTERN.matcher(line).lookingAt();
+            }
+        }
+    }
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private AdversarialInputBenchmark() {}
+
+    /**
+     * Runs the benchmark.
+     * @param args The number of measured rounds, optionally followed by {@code --reference}.
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        boolean withReference = args.length > 1 && args[1].equals(REFERENCE_OPTION);
+        System.out.printf(HEADER, "family", "length", "ns/line", "ns/char", "growth");
+        for (Family family : Family.values()) {
+            String name = family.name().toLowerCase(Locale.ROOT);
+            String base = family.line(BASE_LENGTH);
+            for (int length : LENGTHS) {
+                String line = family.line(length);
+                warmUp(() -> verify(line));
+            }
+            long baseNanos = measure(rounds, () -> verify(base));
+            long referenceBaseNanos = measure(rounds, () -> family.matchReference(base));
+            long previousNanos = 0, previousReferenceNanos = 0;
+            for (int length : LENGTHS) {
+                String line = family.line(length);
+                long nanos = measure(rounds, () -> verify(line));
+                printRow(name, line.length(), base.length(), nanos, baseNanos, previousNanos);
+                previousNanos = nanos;
+                if (withReference && length <= MAX_REFERENCE_LENGTH) {
+                    long referenceNanos = measure(rounds, () -> family.matchReference(line));
+                    printRow("  reference regex", line.length(), base.length(), referenceNanos,
+                             referenceBaseNanos, previousReferenceNanos);
+                    previousReferenceNanos = referenceNanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints a row of the table.
+     * @param name The name of the row.
+     * @param length The length of the line.
+     * @param baseLength The length of the shortest line of the family.
+     * @param nanos The time per line.
+     * @param baseNanos The time of the shortest line of the family.
+     * @param previousNanos The time per line of the previous row, or 0 if there is none.
+     */
+    private static void printRow(String name, int length, int baseLength, long nanos, long baseNanos,
+                                 long previousNanos) {
+        String growth = NO_GROWTH;
+        if (previousNanos != 0) {
+            growth = String.format(Locale.ROOT, GROWTH, (double) nanos / previousNanos);
+        }
+        System.out.printf(Locale.ROOT, ROW, name, length, (double) nanos,
+                          (double) (nanos - baseNanos) / (length - baseLength), growth);
+    }
+
+    /**
+     * Runs the given task enough times for the JIT to compile it.
+     * @param task The task to warm up.
+     */
+    private static void warmUp(Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+    }
+
+    /**
+     * Runs the given task after warming it up, and returns its fastest time.
+     * @param rounds The number of measured rounds.
+     * @param task The task to measure.
+     * @return The fastest time of the task, in nanoseconds.
+     */
+    private static long measure(int rounds, Runnable task) {
+        warmUp(task);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Verifies a method whose body is the given line, ignoring the result.
+     * @param line The line to verify.
+     */
+    private static void verify(String line) {
+        Map<Long, String> lines = new LinkedHashMap<>();
+        lines.put(1L, "void foo(int a) {");
+        lines.put(2L, line);
+        lines.put(3L, "return;");
+        lines.put(4L, "}");
+        try {
+            new CodeVerifier(lines).verifyCode();
+        } catch (RuntimeException e) {
+            // Most of the lines are illegal, only the time matters
+        }
+    }
+
+}
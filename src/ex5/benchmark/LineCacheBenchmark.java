@@ -0,0 +1,122 @@
+package ex5.benchmark;
+
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.verifier.VerifierSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Measures the time to verify files with and without the line cache of {@link CodeVerifier}.
+ * <p>
+ *     Usage: {@code java ex5.benchmark.LineCacheBenchmark [rounds] [path...]}, where every path is a
+ *     .sjava file or a directory of .sjava files. The default paths are the directories of the test corpus.
+ *     Before measuring, the benchmark makes sure both ways give identical results for every file, and it
+ *     reports the hit rate of the cache together with the fastest round of each way.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class LineCacheBenchmark {
+
+    // Constants
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final String VALID = "valid";
+    private static final List<String> DEFAULT_PATHS = List.of("tests/SchoolTests/input", "tests/OurTests");
+    private static final String MISMATCH = "Results differ for %s:%n  uncached: %s%n  cached:   %s%n";
+    private static final String REPORT = "%-9s %10.3f ms/round%n";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private LineCacheBenchmark() {}
+
+    /**
+     * Runs the benchmark.
+     * @param args The number of measured rounds, followed by the paths to verify.
+     * @throws IOException If the paths cannot be listed.
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        List<String> files = collectFiles(args.length > 1 ? List.of(args).subList(1, args.length) :
+                                          DEFAULT_PATHS);
+        VerifierSession uncached = new VerifierSession(0), cached = new VerifierSession();
+        VerifierStats stats = new VerifierStats();
+        stats.attach();
+        for (String file : files) { // The cache must not change any result
+            String withoutCache = verify(uncached, file), withCache = verify(cached, file);
+            if (!Objects.equals(withoutCache, withCache)) {
+                System.err.printf(MISMATCH, file, withoutCache, withCache);
+                System.exit(1);
+            }
+        }
+        VerifierStats.detach();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(uncached, files);
+            run(cached, files);
+        }
+        long uncachedBest = Long.MAX_VALUE, cachedBest = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            run(uncached, files);
+            long middle = System.nanoTime();
+            run(cached, files);
+            cachedBest = Math.min(cachedBest, System.nanoTime() - middle);
+            uncachedBest = Math.min(uncachedBest, middle - start);
+        }
+        System.out.printf(Locale.ROOT, "%d files, %d rounds, hit rate %.1f%%%n", files.size(), rounds,
+                          100 * stats.getLineCacheHitRate());
+        System.out.printf(Locale.ROOT, REPORT, "uncached", uncachedBest / 1e6);
+        System.out.printf(Locale.ROOT, REPORT, "cached", cachedBest / 1e6);
+    }
+
+    private static void run(VerifierSession session, List<String> files) {
+        for (String file : files) {
+            verify(session, file);
+        }
+    }
+
+    /**
+     * Verifies a file with the given session.
+     * @param session The session to verify with.
+     * @param file The file to verify.
+     * @return {@code "valid"} if the file is valid, or the error message otherwise.
+     */
+    private static String verify(VerifierSession session, String file) {
+        try {
+            session.verifyFile(file, VerificationMode.TWO_PASS);
+            return VALID;
+        } catch (IOException | RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Collects the .sjava files in the given paths, in a stable order.
+     * @param paths Paths of .sjava files or of directories containing them.
+     * @return The paths of the .sjava files.
+     * @throws IOException If a directory cannot be listed.
+     */
+    private static List<String> collectFiles(List<String> paths) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String path : paths) {
+            try (Stream<Path> walk = Files.walk(Path.of(path))) {
+                walk.map(Path::toString).filter(p -> p.endsWith(SJAVA_FILE_ENDING)).sorted()
+                    .forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,485 @@
+package ex5.benchmark;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.statistics.Phase;
+import ex5.sjava_verifier.statistics.VerifierStats;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Runs a fixed workload several times and compares its performance with a baseline that is committed to the
+ * repository, failing when it regressed.
+ * <p>
+ *     Usage: {@code java ex5.benchmark.RegressionGate [--rounds=N] [--threshold=PERCENT] [--baseline=PATH]
+ *     [--record]}. The workload is the test corpus together with two large generated files, one with many
+ *     small methods and one with deeply nested blocks. Every round verifies the whole workload on a single
+ *     thread, and yields a sample of every {@link Metric}: the throughput, the median and the 99th percentile
+ *     of the time per file, the bytes allocated per line and the time spent in every phase of the
+ *     verification.
+ * </p>
+ * <p>
+ *     With {@code --record}, the mean and the standard deviation of every metric are written to the baseline.
+ *     Otherwise they are compared with the baseline, and the gate fails when a metric got worse by more than
+ *     the threshold (10% by default) and Welch's t-test finds the difference significant at the 95% level.
+ *     Timings depend on the machine, so the baseline should be recorded on the machine that runs the gate.
+ *     Everything runs offline, from the files of the repository.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class RegressionGate {
+
+    // Constants
+    private static final int DEFAULT_ROUNDS = 15;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    private static final String DEFAULT_BASELINE = "tests/Performance/baseline.properties";
+    private static final List<String> CORPUS_PATHS = List.of("tests/SchoolTests/input", "tests/OurTests");
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final int GENERATED_METHODS = 2_000;
+    private static final int GENERATED_NESTING_DEPTH = 100;
+    private static final int GENERATED_NESTED_BLOCKS = 200;
+    private static final double NANOS_IN_MICRO = 1_000.0;
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+    private static final double PERCENT = 100.0;
+    private static final double P50 = 0.50;
+    private static final double P99 = 0.99;
+    private static final String MEAN_SUFFIX = ".mean";
+    private static final String STDDEV_SUFFIX = ".stddev";
+    private static final String SAMPLES_KEY = "samples";
+
+    // Two-sided 95% critical values of Student's t distribution, by degrees of freedom from 1 to 30
+    private static final double[] T_CRITICAL_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double Z_CRITICAL_95 = 1.960;
+
+    // Options
+    private static final String ROUNDS_OPTION = "--rounds=";
+    private static final String THRESHOLD_OPTION = "--threshold=";
+    private static final String BASELINE_OPTION = "--baseline=";
+    private static final String RECORD_OPTION = "--record";
+
+    // Exit values
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_REGRESSED = 1;
+    private static final int EXIT_ERROR = 2;
+
+    // Messages
+    private static final String UNKNOWN_OPTION = "Unknown option: '%s'.%n";
+    private static final String INVALID_WORKLOAD = "The workload file %s is not valid: %s%n";
+    private static final String MISSING_BASELINE = "No baseline for %s in %s. Record one with --record.%n";
+    private static final String WORKLOAD = "%d inputs, %d lines, %d rounds%n";
+    private static final String RECORDED = "Recorded the baseline in %s%n";
+    private static final String HEADER = "%-30s %14s %14s %9s %8s  %s%n";
+    private static final String ROW = "%-30s %14.1f %14.1f %8.1f%% %8.2f  %s%n";
+    private static final String PASSED = "No regression above %.1f%%.%n";
+    private static final String REGRESSED = "%d metric(s) regressed by more than %.1f%%.%n";
+
+    /**
+     * The measured metrics.
+     */
+    private enum Metric {
+        /** The number of verified lines per second. */
+        THROUGHPUT("throughput_lines_per_s", true),
+        /** The median time to verify an input, in microseconds. */
+        P50_FILE_TIME("p50_file_us", false),
+        /** The 99th percentile of the time to verify an input, in microseconds. */
+        P99_FILE_TIME("p99_file_us", false),
+        /** The number of bytes allocated per verified line. */
+        ALLOCATION("alloc_bytes_per_line", false),
+        /** The time spent in {@link Phase#PREPROCESSING} per round, in milliseconds. */
+        PREPROCESSING("phase_preprocessing_ms", false),
+        /** The time spent in {@link Phase#METHOD_TABLE} per round, in milliseconds. */
+        METHOD_TABLE("phase_method_table_ms", false),
+        /** The time spent in {@link Phase#MAIN_PASS} per round, in milliseconds. */
+        MAIN_PASS("phase_main_pass_ms", false);
+
+        private final String key;
+        private final boolean isHigherBetter;
+
+        Metric(String key, boolean isHigherBetter) {
+            this.key = key;
+            this.isHigherBetter = isHigherBetter;
+        }
+    }
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private RegressionGate() {}
+
+    /**
+     * Runs the gate.
+     * @param args The options.
+     * @throws IOException If the workload or the baseline cannot be read, or the baseline cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = DEFAULT_ROUNDS;
+        double threshold = DEFAULT_THRESHOLD_PERCENT;
+        Path baseline = Path.of(DEFAULT_BASELINE);
+        boolean isRecording = false;
+        for (String arg : args) {
+            if (arg.startsWith(ROUNDS_OPTION)) {
+                rounds = Integer.parseInt(arg.substring(ROUNDS_OPTION.length()));
+            } else if (arg.startsWith(THRESHOLD_OPTION)) {
+                threshold = Double.parseDouble(arg.substring(THRESHOLD_OPTION.length()));
+            } else if (arg.startsWith(BASELINE_OPTION)) {
+                baseline = Path.of(arg.substring(BASELINE_OPTION.length()));
+            } else if (arg.equals(RECORD_OPTION)) {
+                isRecording = true;
+            } else {
+                System.err.printf(UNKNOWN_OPTION, arg);
+                System.exit(EXIT_ERROR);
+            }
+        }
+        List<Input> workload = createWorkload();
+        long lines = 0;
+        for (Input input : workload) {
+            lines += input.lines;
+        }
+        System.out.printf(WORKLOAD, workload.size(), lines, rounds);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runRound(workload, lines);
+        }
+        double[][] samples = new double[Metric.values().length][rounds];
+        for (int i = 0; i < rounds; i++) {
+            double[] round = runRound(workload, lines);
+            for (Metric metric : Metric.values()) {
+                samples[metric.ordinal()][i] = round[metric.ordinal()];
+            }
+        }
+        if (isRecording) {
+            writeBaseline(baseline, samples);
+            System.out.printf(RECORDED, baseline);
+            System.exit(EXIT_PASSED);
+        }
+        System.exit(compare(readBaseline(baseline), samples, threshold, baseline));
+    }
+
+    /**
+     * Verifies the whole workload once.
+     * @param workload The inputs to verify.
+     * @param lines The total number of lines in the inputs.
+     * @return A sample of every metric, by the ordinal of the metric.
+     */
+    private static double[] runRound(List<Input> workload, long lines) {
+        SjavaVerifier verifier = new SjavaVerifier();
+        VerifierStats stats = new VerifierStats();
+        long[] fileNanos = new long[workload.size()];
+        System.gc(); // Do not collect the garbage of the previous round during this one
+        stats.attach();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < workload.size(); i++) {
+                long fileStart = System.nanoTime();
+                workload.get(i).verify(verifier);
+                fileNanos[i] = System.nanoTime() - fileStart;
+            }
+        } finally {
+            VerifierStats.detach();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        Arrays.sort(fileNanos);
+        double[] round = new double[Metric.values().length];
+        round[Metric.THROUGHPUT.ordinal()] = lines / (elapsed / NANOS_IN_SECOND);
+        round[Metric.P50_FILE_TIME.ordinal()] = percentile(fileNanos, P50) / NANOS_IN_MICRO;
+        round[Metric.P99_FILE_TIME.ordinal()] = percentile(fileNanos, P99) / NANOS_IN_MICRO;
+        round[Metric.ALLOCATION.ordinal()] = (double) allocated / lines;
+        round[Metric.PREPROCESSING.ordinal()] = stats.getPhaseNanos(Phase.PREPROCESSING) / NANOS_IN_MILLI;
+        round[Metric.METHOD_TABLE.ordinal()] = stats.getPhaseNanos(Phase.METHOD_TABLE) / NANOS_IN_MILLI;
+        round[Metric.MAIN_PASS.ordinal()] = stats.getPhaseNanos(Phase.MAIN_PASS) / NANOS_IN_MILLI;
+        return round;
+    }
+
+    /**
+     * Compares the samples with the baseline, and prints a report of every metric.
+     * @param baseline The baseline.
+     * @param samples The samples of every metric, by the ordinal of the metric.
+     * @param threshold The largest allowed regression, in percent.
+     * @param baselinePath The path of the baseline, for error messages.
+     * @return {@value #EXIT_PASSED} if no metric regressed, {@value #EXIT_REGRESSED} if some did, or
+     *         {@value #EXIT_ERROR} if the baseline is incomplete.
+     */
+    private static int compare(Properties baseline, double[][] samples, double threshold, Path baselinePath) {
+        int baselineSamples = Integer.parseInt(baseline.getProperty(SAMPLES_KEY, "0"));
+        int regressions = 0;
+        System.out.printf(HEADER, "metric", "baseline", "current", "change", "t", "verdict");
+        for (Metric metric : Metric.values()) {
+            String mean = baseline.getProperty(metric.key + MEAN_SUFFIX);
+            String deviation = baseline.getProperty(metric.key + STDDEV_SUFFIX);
+            if (mean == null || deviation == null || baselineSamples < 2) {
+                System.err.printf(MISSING_BASELINE, metric.key, baselinePath);
+                return EXIT_ERROR;
+            }
+            double baselineMean = Double.parseDouble(mean), baselineDeviation = Double.parseDouble(deviation);
+            double[] current = samples[metric.ordinal()];
+            double currentMean = mean(current), currentDeviation = standardDeviation(current);
+            double change = baselineMean == 0 ? 0 : PERCENT * (currentMean - baselineMean) / baselineMean;
+            double worsening = metric.isHigherBetter ? -change : change;
+            double t = welchT(baselineMean, baselineDeviation, baselineSamples,
+                              currentMean, currentDeviation, current.length);
+            boolean isSignificant = Math.abs(t) > criticalT(baselineDeviation, baselineSamples,
+                                                            currentDeviation, current.length);
+            String verdict;
+            if (isSignificant && worsening > threshold) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (isSignificant && worsening < -threshold) {
+                verdict = "improved";
+            } else {
+                verdict = "ok";
+            }
+            System.out.printf(Locale.ROOT, ROW, metric.key, baselineMean, currentMean, change, t, verdict);
+        }
+        if (regressions > 0) {
+            System.out.printf(Locale.ROOT, REGRESSED, regressions, threshold);
+            return EXIT_REGRESSED;
+        }
+        System.out.printf(Locale.ROOT, PASSED, threshold);
+        return EXIT_PASSED;
+    }
+
+    /**
+     * Computes the t statistic of Welch's t-test for the difference between two means.
+     * @return The t statistic, which is infinite if both samples have no variance and different means.
+     */
+    private static double welchT(double mean1, double deviation1, int count1,
+                                 double mean2, double deviation2, int count2) {
+        double error = Math.sqrt(deviation1 * deviation1 / count1 + deviation2 * deviation2 / count2);
+        if (error == 0) {
+            return mean1 == mean2 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, mean2 - mean1);
+        }
+        return (mean2 - mean1) / error;
+    }
+
+    /**
+     * Returns the two-sided 95% critical value of Welch's t-test, with the Welch-Satterthwaite degrees of
+     * freedom.
+     * @return The critical value.
+     */
+    private static double criticalT(double deviation1, int count1, double deviation2, int count2) {
+        double variance1 = deviation1 * deviation1 / count1, variance2 = deviation2 * deviation2 / count2;
+        double denominator = variance1 * variance1 / (count1 - 1) + variance2 * variance2 / (count2 - 1);
+        if (denominator == 0) {
+            return Z_CRITICAL_95;
+        }
+        int degrees = (int) Math.floor((variance1 + variance2) * (variance1 + variance2) / denominator);
+        return degrees >= 1 && degrees <= T_CRITICAL_95.length ? T_CRITICAL_95[degrees - 1] : Z_CRITICAL_95;
+    }
+
+    /**
+     * Writes the mean and the standard deviation of every metric to the baseline, in a stable order.
+     * @param baseline The path of the baseline.
+     * @param samples The samples of every metric, by the ordinal of the metric.
+     * @throws IOException If the baseline cannot be written.
+     */
+    private static void writeBaseline(Path baseline, double[][] samples) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Performance baseline of ex5.benchmark.RegressionGate, recorded with --record");
+        lines.add(SAMPLES_KEY + "=" + samples[0].length);
+        for (Metric metric : Metric.values()) {
+            double[] values = samples[metric.ordinal()];
+            lines.add(String.format(Locale.ROOT, "%s%s=%.3f", metric.key, MEAN_SUFFIX, mean(values)));
+            lines.add(String.format(Locale.ROOT, "%s%s=%.3f", metric.key, STDDEV_SUFFIX,
+                                    standardDeviation(values)));
+        }
+        if (baseline.getParent() != null) {
+            Files.createDirectories(baseline.getParent());
+        }
+        Files.write(baseline, lines);
+    }
+
+    /**
+     * Reads the baseline.
+     * @param baseline The path of the baseline.
+     * @return The properties of the baseline.
+     * @throws IOException If the baseline cannot be read.
+     */
+    private static Properties readBaseline(Path baseline) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseline)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Creates the workload: the files of the corpus followed by the generated inputs.
+     * <p>
+     *     Every generated input must be valid, and every input must give the same result in every round.
+     * </p>
+     * @return The inputs.
+     * @throws IOException If the corpus cannot be read.
+     */
+    private static List<Input> createWorkload() throws IOException {
+        List<Input> workload = new ArrayList<>();
+        for (String path : CORPUS_PATHS) {
+            try (Stream<Path> walk = Files.walk(Path.of(path))) {
+                List<Path> files = walk.filter(p -> p.toString().endsWith(SJAVA_FILE_ENDING)).sorted()
+                                       .toList();
+                for (Path file : files) {
+                    workload.add(new Input(file, null, countLines(Files.readString(file))));
+                }
+            }
+        }
+        for (String text : List.of(generateMethods(GENERATED_METHODS),
+                                   generateNestedBlocks(GENERATED_NESTED_BLOCKS, GENERATED_NESTING_DEPTH))) {
+            Input input = new Input(null, text, countLines(text));
+            VerificationResult result = input.verify(new SjavaVerifier());
+            if (!result.isValid()) {
+                System.err.printf(INVALID_WORKLOAD, "(generated)", result.getMessage());
+                System.exit(EXIT_ERROR);
+            }
+            workload.add(input);
+        }
+        return workload;
+    }
+
+    /**
+     * Generates a file with many small methods that declare, assign and compare variables, call each other
+     * and use the global variables.
+     * @param methods The number of methods.
+     * @return The text of the file.
+     */
+    private static String generateMethods(int methods) {
+        StringBuilder text = new StringBuilder("// Generated by RegressionGate\n");
+        text.append("int counter = 0;\nfinal double RATE = 1.5;\nString name = \"sjava\";\n\n");
+        for (int i = 0; i < methods; i++) {
+            int callee = (i * 7 + 3) % methods; // Calls methods that are declared before and after
+            text.append("void method").append(i).append("(int a, final double b, String s) {\n")
+                .append("    int x = a;\n")
+                .append("    double y = b, z = RATE;\n")
+                .append("    boolean flag = true;\n")
+                .append("    char c = 'c';\n")
+                .append("    String t = s;\n")
+                .append("// A comment line, which must start the line\n")
+                .append("    if (flag && x || y) {\n")
+                .append("        while (x || false) {\n")
+                .append("            x = 5;\n")
+                .append("            y = -3.25;\n")
+                .append("            counter = x;\n")
+                .append("            method").append(callee).append("(x, z, \"call\");\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append("    t = name;\n")
+                .append("    return;\n")
+                .append("}\n\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates a file with a single method that contains many blocks of deeply nested conditions.
+     * @param blocks The number of nested blocks.
+     * @param depth The nesting depth of every block.
+     * @return The text of the file.
+     */
+    private static String generateNestedBlocks(int blocks, int depth) {
+        StringBuilder text = new StringBuilder("// Generated by RegressionGate\nvoid nested(int a) {\n");
+        text.append("    boolean b = true;\n");
+        for (int i = 0; i < blocks; i++) {
+            for (int level = 0; level < depth; level++) {
+                text.append(level % 2 == 0 ? "    if (b && a) {\n" : "    while (a || 1.5) {\n")
+                    .append("    int v").append(level).append(" = a;\n");
+            }
+            text.append("    nested(v0);\n    return;\n");
+            text.append("    }\n".repeat(depth));
+        }
+        return text.append("    return;\n}\n").toString();
+    }
+
+    /**
+     * Counts the lines of a text, like the verifier does.
+     * @param text The text.
+     * @return The number of lines.
+     */
+    private static long countLines(String text) {
+        return text.lines().count();
+    }
+
+    /**
+     * Returns a percentile of sorted values, by the nearest-rank method.
+     * @param sorted The values, in ascending order.
+     * @param fraction The percentile, between 0 and 1.
+     * @return The percentile.
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double standardDeviation(double[] values) {
+        double mean = mean(values), sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return values.length > 1 ? Math.sqrt(sum / (values.length - 1)) : 0;
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * An input of the workload: either a file of the corpus or a generated text.
+     */
+    private static final class Input {
+
+        // Private fields
+        private final Path file;
+        private final String text;
+        private final long lines;
+
+        /**
+         * Constructs an input.
+         * @param file The file of the input, or {@code null} if it is generated.
+         * @param text The generated text of the input, or {@code null} if it is a file.
+         * @param lines The number of lines of the input.
+         */
+        private Input(Path file, String text, long lines) {
+            this.file = file;
+            this.text = text;
+            this.lines = lines;
+        }
+
+        /**
+         * Verifies the input.
+         * @param verifier The verifier to verify with.
+         * @return The result of the verification.
+         */
+        private VerificationResult verify(SjavaVerifier verifier) {
+            return file != null ? verifier.verify(file) : verifier.verify(text);
+        }
+    }
+
+}
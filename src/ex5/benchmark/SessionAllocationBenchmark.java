@@ -0,0 +1,150 @@
+package ex5.benchmark;
+
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.preprocessor.FileCleaner;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.verifier.VerifierSession;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Measures the bytes allocated per verified file, with a new {@link CodeVerifier} for every file
+ * and with a single reused {@link VerifierSession}.
+ * <p>
+ *     Usage: {@code java ex5.benchmark.SessionAllocationBenchmark [rounds] [path...]}, where every path is a
+ *     .sjava file or a directory of .sjava files. The default paths are the directories of the test corpus.
+ *     Before measuring, the benchmark makes sure both ways give identical results for every file.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class SessionAllocationBenchmark {
+
+    // Constants
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final String VALID = "valid";
+    private static final List<String> DEFAULT_PATHS = List.of("tests/SchoolTests/input", "tests/OurTests");
+    private static final String MISMATCH = "Results differ for %s:%n  fresh:   %s%n  session: %s%n";
+    private static final String REPORT = "%-8s %12.0f bytes/file%n";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private SessionAllocationBenchmark() {}
+
+    /**
+     * Runs the benchmark.
+     * @param args The number of measured rounds, followed by the paths to verify.
+     * @throws IOException If the paths cannot be listed.
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        List<String> files = collectFiles(args.length > 1 ? List.of(args).subList(1, args.length) :
+                                          DEFAULT_PATHS);
+        VerifierSession session = new VerifierSession();
+        for (String file : files) { // Results must not depend on the files verified before
+            String fresh = verifyFresh(file), reused = verifyWithSession(session, file);
+            if (!Objects.equals(fresh, reused)) {
+                System.err.printf(MISMATCH, file, fresh, reused);
+                System.exit(1);
+            }
+        }
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runFresh(files);
+            runWithSession(session, files);
+        }
+        long freshBytes = 0, sessionBytes = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = allocatedBytes();
+            runFresh(files);
+            long middle = allocatedBytes();
+            runWithSession(session, files);
+            sessionBytes += allocatedBytes() - middle;
+            freshBytes += middle - start;
+        }
+        double verifiedFiles = (double) rounds * files.size();
+        System.out.printf("%d files, %d rounds%n", files.size(), rounds);
+        System.out.printf(REPORT, "fresh", freshBytes / verifiedFiles);
+        System.out.printf(REPORT, "session", sessionBytes / verifiedFiles);
+        System.out.printf("saved    %11.1f%%%n", 100.0 * (freshBytes - sessionBytes) / freshBytes);
+    }
+
+    private static void runFresh(List<String> files) {
+        for (String file : files) {
+            verifyFresh(file);
+        }
+    }
+
+    private static void runWithSession(VerifierSession session, List<String> files) {
+        for (String file : files) {
+            verifyWithSession(session, file);
+        }
+    }
+
+    /**
+     * Verifies a file with a new verifier.
+     * @param file The file to verify.
+     * @return {@code "valid"} if the file is valid, or the error message otherwise.
+     */
+    private static String verifyFresh(String file) {
+        try {
+            Map<Long, String> lines = FileCleaner.cleanFile(file);
+            new CodeVerifier(lines, file).verifyCode();
+            return VALID;
+        } catch (IOException | RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Verifies a file with the given session.
+     * @param session The session to verify with.
+     * @param file The file to verify.
+     * @return {@code "valid"} if the file is valid, or the error message otherwise.
+     */
+    private static String verifyWithSession(VerifierSession session, String file) {
+        try {
+            session.verifyFile(file, VerificationMode.TWO_PASS);
+            return VALID;
+        } catch (IOException | RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Collects the .sjava files in the given paths, in a stable order.
+     * @param paths Paths of .sjava files or of directories containing them.
+     * @return The paths of the .sjava files.
+     * @throws IOException If a directory cannot be listed.
+     */
+    private static List<String> collectFiles(List<String> paths) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String path : paths) {
+            try (Stream<Path> walk = Files.walk(Path.of(path))) {
+                walk.map(Path::toString).filter(p -> p.endsWith(SJAVA_FILE_ENDING)).sorted()
+                    .forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,301 @@
+package ex5.conformance;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Verifies the whole test corpus inside a single JVM, in parallel, and compares every result with the
+ * expected one.
+ * <p>
+ *     Usage: {@code java ex5.conformance.ConformanceRunner [--threads=N] [--mode=MODE] [--verbose] [root]},
+ *     where the root is the directory of the tests ({@code tests} by default) and the mode is
+ *     {@code two_pass} (the default), {@code streaming} or {@code pipelined}.
+ * </p>
+ * <p>
+ *     The expected exit code of {@code SchoolTests/input/X.sjava} is the first character of
+ *     {@code SchoolTests/expected/X.sjava}. The files of {@code OurTests} have no expected results, so they
+ *     only have to be verified without an error in reading them or in the verifier itself, and their results
+ *     are printed with {@code --verbose}. The runner prints every failure, followed by the number of passed
+ *     and failed files, the elapsed time and the throughput, and exits with 0 only if no file failed.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class ConformanceRunner {
+
+    // Constants
+    private static final String DEFAULT_ROOT = "tests";
+    private static final String SCHOOL_INPUT = "SchoolTests/input";
+    private static final String SCHOOL_EXPECTED = "SchoolTests/expected";
+    private static final String OUR_TESTS = "OurTests";
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final String OPTION_PREFIX = "--";
+    private static final String THREADS_OPTION = "--threads=";
+    private static final String MODE_OPTION = "--mode=";
+    private static final String VERBOSE_OPTION = "--verbose";
+    private static final int NO_EXPECTED_STATUS = -1;
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+    private static final double BYTES_IN_KILOBYTE = 1024.0;
+
+    // Messages
+    private static final String UNKNOWN_OPTION = "Unknown option: '%s'.%n";
+    private static final String WRONG_STATUS = "FAIL %s: expected %d, got %d%s%n";
+    private static final String CRASHED = "FAIL %s: the verifier crashed: %s%n";
+    private static final String UNREADABLE = "FAIL %s: %s%n";
+    private static final String RESULT = "     %s: %d%s%n";
+    private static final String SUMMARY = "%d passed, %d failed (%d files, %d with expected results)%n";
+    private static final String TIMING = "%.1f ms with %d thread(s), %.0f files/s, %.0f KB/s, " +
+                                         "verification %.1f ms in total, slowest %s (%.2f ms)%n";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private ConformanceRunner() {}
+
+    /**
+     * Runs the corpus.
+     * @param args The options, followed by the root directory of the tests.
+     * @throws IOException If the test directories or an expected result cannot be read.
+     * @throws InterruptedException If the runner is interrupted while waiting for the results.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        VerificationMode mode = VerificationMode.TWO_PASS;
+        boolean isVerbose = false;
+        String root = DEFAULT_ROOT;
+        for (String arg : args) {
+            if (arg.startsWith(THREADS_OPTION)) {
+                threads = Integer.parseInt(arg.substring(THREADS_OPTION.length()));
+            } else if (arg.startsWith(MODE_OPTION)) {
+                mode = VerificationMode.valueOf(arg.substring(MODE_OPTION.length()).toUpperCase(Locale.ROOT));
+            } else if (arg.equals(VERBOSE_OPTION)) {
+                isVerbose = true;
+            } else if (arg.startsWith(OPTION_PREFIX)) {
+                System.err.printf(UNKNOWN_OPTION, arg);
+                System.exit(EXIT_USAGE);
+            } else {
+                root = arg;
+            }
+        }
+        List<TestCase> cases = collectCases(Path.of(root));
+        System.exit(run(cases, new SjavaVerifier(mode, CodeVerifier.DEFAULT_LINE_CACHE_SIZE), threads,
+                        isVerbose));
+    }
+
+    /**
+     * Verifies the given cases in parallel, and prints their failures and a summary.
+     * @param cases The cases to verify.
+     * @param verifier The verifier to verify with.
+     * @param threads The number of threads to verify with.
+     * @param isVerbose Whether to print the results of the cases without expected results.
+     * @return {@value #EXIT_PASSED} if every case passed, {@value #EXIT_FAILED} otherwise.
+     * @throws InterruptedException If the runner is interrupted while waiting for the results.
+     */
+    private static int run(List<TestCase> cases, SjavaVerifier verifier, int threads, boolean isVerbose)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<Outcome>> futures = new ArrayList<>(cases.size());
+        for (TestCase testCase : cases) {
+            futures.add(executor.submit(() -> testCase.verify(verifier)));
+        }
+        List<Outcome> outcomes = new ArrayList<>(cases.size());
+        for (Future<Outcome> future : futures) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) { // Verification errors are caught by the cases themselves
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        int passed = 0, withExpected = 0;
+        long verificationNanos = 0, bytes = 0;
+        Outcome slowest = outcomes.isEmpty() ? null : outcomes.get(0);
+        for (Outcome outcome : outcomes) {
+            verificationNanos += outcome.nanos;
+            bytes += outcome.testCase.size;
+            if (outcome.nanos > slowest.nanos) {
+                slowest = outcome;
+            }
+            if (outcome.testCase.expectedStatus != NO_EXPECTED_STATUS) {
+                withExpected++;
+            }
+            if (outcome.report(isVerbose)) {
+                passed++;
+            }
+        }
+        System.out.printf(SUMMARY, passed, outcomes.size() - passed, outcomes.size(), withExpected);
+        if (slowest != null) {
+            System.out.printf(Locale.ROOT, TIMING, elapsed / NANOS_IN_MILLI, threads,
+                              outcomes.size() / (elapsed / NANOS_IN_SECOND),
+                              bytes / BYTES_IN_KILOBYTE / (elapsed / NANOS_IN_SECOND),
+                              verificationNanos / NANOS_IN_MILLI, slowest.testCase.name,
+                              slowest.nanos / NANOS_IN_MILLI);
+        }
+        return passed == outcomes.size() ? EXIT_PASSED : EXIT_FAILED;
+    }
+
+    /**
+     * Collects the cases of the corpus under the given root, in a stable order.
+     * @param root The root directory of the tests.
+     * @return The cases.
+     * @throws IOException If a directory or an expected result cannot be read.
+     */
+    private static List<TestCase> collectCases(Path root) throws IOException {
+        List<TestCase> cases = new ArrayList<>();
+        Path expectedDirectory = root.resolve(SCHOOL_EXPECTED);
+        for (Path input : listFiles(root.resolve(SCHOOL_INPUT))) {
+            Path expected = expectedDirectory.resolve(input.getFileName());
+            cases.add(new TestCase(input, readExpectedStatus(expected)));
+        }
+        for (Path input : listFiles(root.resolve(OUR_TESTS))) {
+            cases.add(new TestCase(input, NO_EXPECTED_STATUS));
+        }
+        return cases;
+    }
+
+    /**
+     * Lists the .sjava files in the given directory and its subdirectories, in a stable order.
+     * @param directory The directory.
+     * @return The paths of the files.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(path -> path.toString().endsWith(SJAVA_FILE_ENDING)).sorted().toList();
+        }
+    }
+
+    /**
+     * Reads an expected exit code, which is the first character of the expected result.
+     * @param expected The path to the expected result.
+     * @return The expected exit code.
+     * @throws IOException If the expected result cannot be read or does not start with a digit.
+     */
+    private static int readExpectedStatus(Path expected) throws IOException {
+        try (Reader reader = Files.newBufferedReader(expected)) {
+            int status = Character.digit(reader.read(), 10);
+            if (status < 0) {
+                throw new IOException("No expected exit code in " + expected);
+            }
+            return status;
+        }
+    }
+
+    /**
+     * A file of the corpus together with its expected exit code.
+     */
+    private static final class TestCase {
+
+        // Private fields
+        private final Path path;
+        private final String name;
+        private final int expectedStatus;
+        private final long size;
+
+        /**
+         * Constructs a case.
+         * @param path The path to the file.
+         * @param expectedStatus The expected exit code, or {@value #NO_EXPECTED_STATUS} if it is not known.
+         * @throws IOException If the size of the file cannot be read.
+         */
+        private TestCase(Path path, int expectedStatus) throws IOException {
+            this.path = path;
+            this.name = path.toString();
+            this.expectedStatus = expectedStatus;
+            this.size = Files.size(path);
+        }
+
+        /**
+         * Verifies the file of the case.
+         * @param verifier The verifier to verify with.
+         * @return The outcome of the verification.
+         */
+        private Outcome verify(SjavaVerifier verifier) {
+            long start = System.nanoTime();
+            try {
+                VerificationResult result = verifier.verify(path);
+                return new Outcome(this, result, null, System.nanoTime() - start);
+            } catch (RuntimeException e) { // A bug in the verifier must not stop the other cases
+                return new Outcome(this, null, e, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * The outcome of verifying a case.
+     */
+    private static final class Outcome {
+
+        // Private fields
+        private final TestCase testCase;
+        private final VerificationResult result;
+        private final RuntimeException crash;
+        private final long nanos;
+
+        /**
+         * Constructs an outcome.
+         * @param testCase The verified case.
+         * @param result The result of the verification, or {@code null} if the verifier crashed.
+         * @param crash The exception the verifier crashed with, or {@code null} if it did not crash.
+         * @param nanos The time the verification took, in nanoseconds.
+         */
+        private Outcome(TestCase testCase, VerificationResult result, RuntimeException crash, long nanos) {
+            this.testCase = testCase;
+            this.result = result;
+            this.crash = crash;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Prints the outcome if it is a failure, or if it is verbose and has no expected result.
+         * @param isVerbose Whether to print the results of the cases without expected results.
+         * @return {@code true} if the case passed, {@code false} otherwise.
+         */
+        private boolean report(boolean isVerbose) {
+            if (crash != null) {
+                System.out.printf(CRASHED, testCase.name, crash);
+                return false;
+            }
+            String message = result.isValid() ? "" : " (" + result.getMessage() + ")";
+            if (testCase.expectedStatus == NO_EXPECTED_STATUS) {
+                if (result.getExitStatus() >= VerificationResult.EXIT_ERROR) {
+                    System.out.printf(UNREADABLE, testCase.name, result.getMessage());
+                    return false;
+                }
+                if (isVerbose) {
+                    System.out.printf(RESULT, testCase.name, result.getExitStatus(), message);
+                }
+                return true;
+            }
+            if (result.getExitStatus() != testCase.expectedStatus) {
+                System.out.printf(WRONG_STATUS, testCase.name, testCase.expectedStatus,
+                                  result.getExitStatus(), message);
+                return false;
+            }
+            return true;
+        }
+    }
+
+}
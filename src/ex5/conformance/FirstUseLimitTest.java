@@ -0,0 +1,129 @@
+package ex5.conformance;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationLimits;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Checks that the first verifications of a JVM are not charged for setting up the verifier: a trivial file
+ * must be valid under tight limits on its first verification, on every thread and in every mode, while a
+ * large input must still exceed the same limits.
+ * <p>
+ *     Usage: {@code java ex5.conformance.FirstUseLimitTest [path]}, where the trivial file is
+ *     {@code tests/SchoolTests/input/test001.sjava} by default. The test must run in a new JVM, since it
+ *     checks the first use of the verifier. It prints every failure, and exits with 0 only if there was
+ *     none.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class FirstUseLimitTest {
+
+    // Constants
+    private static final String DEFAULT_PATH = "tests/SchoolTests/input/test001.sjava";
+    private static final String TRIVIAL_TEXT = "int a;";
+    private static final long TIME_LIMIT_MILLIS = 10;
+    private static final long MEMORY_LIMIT_BYTES = 64 * 1024;
+    private static final int THREADS = 4;
+    private static final int LARGE_INPUT_LINES = 100_000;
+    private static final String LARGE_INPUT_LINE = "int a%d = %d;%n";
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_FAILED = 1;
+
+    // Messages
+    private static final String NOT_VALID = "FAIL %s: a trivial input is not valid under the limits: %s%n";
+    private static final String NOT_EXCEEDED = "FAIL %s: a large input did not exceed the limits: %s%n";
+    private static final String SUMMARY = "%d passed, %d failed%n";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private FirstUseLimitTest() {}
+
+    /**
+     * Runs the checks.
+     * @param args The path of the trivial file, optionally.
+     * @throws InterruptedException If the test is interrupted while waiting for the threads.
+     * @throws ExecutionException If a verification on another thread threw an exception.
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        Path path = Path.of(args.length > 0 ? args[0] : DEFAULT_PATH);
+        VerificationLimits limits = new VerificationLimits(TIME_LIMIT_MILLIS, MEMORY_LIMIT_BYTES);
+        int passed = 0, failed = 0;
+        for (VerificationMode mode : VerificationMode.values()) {
+            SjavaVerifier verifier = new SjavaVerifier(mode, CodeVerifier.DEFAULT_LINE_CACHE_SIZE, limits);
+            List<VerificationResult> results = new ArrayList<>();
+            results.add(verifier.verify(path));
+            results.add(verifier.verify(TRIVIAL_TEXT));
+            results.addAll(verifyOnNewThreads(verifier, v -> v.verify(path)));
+            for (VerificationResult result : results) {
+                if (result.isValid()) {
+                    passed++;
+                } else {
+                    failed++;
+                    System.out.printf(NOT_VALID, mode, result);
+                }
+            }
+            VerificationResult large = verifier.verify(largeInput());
+            if (large.isTimeout()) {
+                passed++;
+            } else {
+                failed++;
+                System.out.printf(NOT_EXCEEDED, mode, large);
+            }
+        }
+        System.out.printf(SUMMARY, passed, failed);
+        System.exit(failed == 0 ? EXIT_PASSED : EXIT_FAILED);
+    }
+
+    /**
+     * Runs a verification at the same time on new threads, which have not used the verifier before.
+     * @param verifier The verifier.
+     * @param verification The verification.
+     * @return The result of every thread.
+     * @throws InterruptedException If the test is interrupted while waiting for the threads.
+     * @throws ExecutionException If a verification threw an exception.
+     */
+    private static List<VerificationResult> verifyOnNewThreads(
+            SjavaVerifier verifier, Function<SjavaVerifier, VerificationResult> verification)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<VerificationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> verification.apply(verifier)));
+            }
+            List<VerificationResult> results = new ArrayList<>();
+            for (Future<VerificationResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return A valid input that is large enough to exceed the limits of the test.
+     */
+    private static String largeInput() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < LARGE_INPUT_LINES; i++) {
+            input.append(String.format(LARGE_INPUT_LINE, i, i));
+        }
+        return input.toString();
+    }
+
+}
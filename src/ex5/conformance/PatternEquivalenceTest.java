@@ -0,0 +1,501 @@
+package ex5.conformance;
+
+import ex5.sjava_verifier.verifier.LinearPatterns;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Checks that every matcher of {@link LinearPatterns} gives exactly the result of the regular expression it
+ * replaced, on the lines of the corpus and on generated lines.
+ * <p>
+ *     Usage: {@code java ex5.conformance.PatternEquivalenceTest [--generated=N] [--seed=S] [path...]}. The
+ *     paths are files and directories of {@code .sjava} files, which are {@code tests/SchoolTests/input}
+ *     and {@code tests/OurTests} by default.
+ * </p>
+ * <p>
+ *     The inputs are every line of the corpus, as it is and stripped, with its parts between commas,
+ *     semicolons and parentheses, followed by {@code N} generated lines (200,000 by default). Half of the
+ *     generated lines are lines of the corpus with a few fragments inserted, removed or replaced, and the
+ *     rest are random sequences of fragments. The fragments are the keywords, names, constants and
+ *     operators of s-java, the whitespaces and the line terminators of Java's regular expressions, and a
+ *     few letters and marks outside of ASCII, and the same seed always generates the same lines.
+ * </p>
+ * <p>
+ *     Every matcher is run on every input, both directly and through a {@link LinearPatterns.Region} over
+ *     a copy of the input between random characters, and the regular expression is run with the operation
+ *     its matcher documents. A matcher agrees with its regular expression when both accept the same inputs
+ *     with the same bounds for every group. The test prints every disagreement, up to a few of every
+ *     matcher, and the number of inputs every matcher accepted, and exits with 0 only if every matcher
+ *     agreed with its regular expression on every input.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class PatternEquivalenceTest {
+
+    // Constants
+    private static final List<String> DEFAULT_PATHS = List.of("tests/SchoolTests/input", "tests/OurTests");
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final String OPTION_PREFIX = "--";
+    private static final String GENERATED_OPTION = "--generated=";
+    private static final String SEED_OPTION = "--seed=";
+    private static final int DEFAULT_GENERATED = 200_000;
+    private static final long DEFAULT_SEED = 47;
+    private static final int MAX_FRAGMENTS = 16;
+    private static final int MAX_EDITS = 3;
+    private static final int MAX_PADDING = 3;
+    private static final int MAX_PRINTED = 5;
+    private static final String PARTS_SEPARATORS = "[,;()]";
+    private static final String PADDING = "a_1 ;(\n";
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final int[] ACCEPTED = new int[0];
+
+    // The replaced regular expressions
+    private static final String TYPE_REGEX = "int|double|String|boolean|char";
+    private static final String NAME_REGEX =
+            "(?!\\b(?:" + TYPE_REGEX + "|void|if|return|final|while|true|false)\\b)" +
+            "(?!^_$)(?!__)[a-zA-Z_][a-zA-Z_\\d]*";
+    private static final Pattern OPEN_PAREN_SPLIT = Pattern.compile("\\s*\\(");
+    private static final Pattern EQUALS_SPLIT = Pattern.compile("\\s*=\\s*");
+
+    // The fragments of the generated lines
+    private static final String[] FRAGMENTS = {
+            "int", "double", "String", "boolean", "char", "void", "if", "while", "return", "final", "true",
+            "false", "a", "b1", "_", "__", "_x", "x_", "intx", "ifs", "returned", "1", "-2", "+3", "4.5",
+            ".5", "6.", "\"s\"", "\"", "'c'", "'", "'\uD83D\uDE00'", "(", ")", "{", "{{", "}", ";", ";;", ",",
+            "=", "//", "||", "&&", ".", "-", "+", " ", " ", " ", "  ", "\t", "\u000B", "\f", "\n", "\r",
+            "\u0085",
+            "\u2028", "\u2029", "\u00A0", "\u0301", "\u00E9", "\u05D0", "\u00B2", "\uD83D\uDE00"
+    };
+
+    // Messages
+    private static final String UNKNOWN_OPTION = "Unknown option: '%s'.%n";
+    private static final String MISMATCH = "MISMATCH %s on '%s'%s: regex %s, matcher %s%n";
+    private static final String IN_REGION = " in [%d, %d) of '%s'";
+    private static final String CHECK_SUMMARY = "%-28s %9d accepted, %9d rejected, %d mismatches%n";
+    private static final String SUMMARY = "%d mismatches on %d inputs (%d from the corpus, %d generated)%n";
+
+    /**
+     * The operations of a regular expression, each the way a matcher documents it.
+     */
+    private enum Operation {
+        /** The entire input must match, like {@link Matcher#matches()}. */
+        MATCHES,
+        /** A prefix of the input must match, like {@link Matcher#lookingAt()}. */
+        LOOKING_AT,
+        /** Any part of the input may match, like {@link Matcher#find()}. */
+        FIND;
+
+        /**
+         * @param matcher The matcher of the regular expression, over its input or its region.
+         * @return {@code true} if the regular expression matched, {@code false} otherwise.
+         */
+        boolean apply(Matcher matcher) {
+            return switch (this) {
+                case MATCHES -> matcher.matches();
+                case LOOKING_AT -> matcher.lookingAt();
+                case FIND -> matcher.find();
+            };
+        }
+    }
+
+    /**
+     * A matcher of {@link LinearPatterns} and the regular expression it replaced.
+     */
+    private static final class Check {
+
+        private final String name;
+        private final Pattern pattern;
+        private final Operation operation;
+        private final boolean isComparingGroups;
+        private final Function<CharSequence, int[]> matcher; // The bounds of its groups, or null
+        private long accepted = 0;
+        private long rejected = 0;
+        private long mismatches = 0;
+
+        /**
+         * @param name The name of the matcher.
+         * @param regex The regular expression it replaced.
+         * @param operation The operation of the regular expression.
+         * @param isComparingGroups Whether the bounds of the groups are compared, or only whether both
+         *                          accepted the input.
+         * @param matcher Runs the matcher, returning the bounds of its groups or {@code null} if it rejects.
+         */
+        private Check(String name, String regex, Operation operation, boolean isComparingGroups,
+                      Function<CharSequence, int[]> matcher) {
+            this.name = name;
+            this.pattern = Pattern.compile(regex);
+            this.operation = operation;
+            this.isComparingGroups = isComparingGroups;
+            this.matcher = matcher;
+        }
+
+        /**
+         * Compares the matcher with its regular expression on an input, both directly and through a region.
+         * @param input The input.
+         * @param random Generates the characters around the region.
+         */
+        void compare(String input, Random random) {
+            int[] expected = expected(pattern.matcher(input));
+            int[] actual = matcher.apply(input);
+            report(input, "", expected, actual);
+            if (expected == null) {
+                rejected++;
+            } else {
+                accepted++;
+            }
+            String before = padding(random), after = padding(random);
+            String text = before + input + after;
+            LinearPatterns.Region region = new LinearPatterns.Region(text);
+            int[] viewed = matcher.apply(region.set(before.length(), before.length() + input.length()));
+            report(input, String.format(IN_REGION, region.start(), region.start() + input.length(), text),
+                   expected, viewed);
+        }
+
+        /**
+         * @param regex The matcher of the regular expression.
+         * @return The bounds of the groups of the regular expression, or {@code null} if it did not match.
+         */
+        int[] expected(Matcher regex) {
+            if (!operation.apply(regex)) {
+                return null;
+            }
+            int[] bounds = new int[2 * (regex.groupCount() + 1)];
+            for (int group = 0; group <= regex.groupCount(); group++) {
+                bounds[2 * group] = regex.start(group);
+                bounds[2 * group + 1] = regex.end(group);
+            }
+            return bounds;
+        }
+
+        /**
+         * Prints a disagreement of the matcher with its regular expression, if there is one.
+         * @param input The input.
+         * @param where Where the input was matched.
+         * @param expected The bounds of the groups of the regular expression, or {@code null}.
+         * @param actual The bounds of the groups of the matcher, or {@code null}.
+         */
+        void report(String input, String where, int[] expected, int[] actual) {
+            boolean isSame = isComparingGroups ? Arrays.equals(expected, actual)
+                                               : (expected == null) == (actual == null);
+            if (isSame) {
+                return;
+            }
+            if (mismatches++ < MAX_PRINTED) {
+                System.out.printf(MISMATCH, name, escape(input), escape(where), describe(expected),
+                                  describe(actual));
+            }
+        }
+    }
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private PatternEquivalenceTest() {}
+
+    /**
+     * Compares every matcher with its regular expression.
+     * @param args The options, followed by the paths of the files.
+     * @throws IOException If a file of the corpus cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int generated = DEFAULT_GENERATED;
+        long seed = DEFAULT_SEED;
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(GENERATED_OPTION)) {
+                generated = Integer.parseInt(arg.substring(GENERATED_OPTION.length()));
+            } else if (arg.startsWith(SEED_OPTION)) {
+                seed = Long.parseLong(arg.substring(SEED_OPTION.length()));
+            } else if (arg.startsWith(OPTION_PREFIX)) {
+                System.err.printf(UNKNOWN_OPTION, arg);
+                System.exit(EXIT_USAGE);
+            } else {
+                paths.add(arg);
+            }
+        }
+        List<String> corpus = readCorpus(paths.isEmpty() ? DEFAULT_PATHS : paths);
+        System.exit(run(corpus, generated, new Random(seed)));
+    }
+
+    /**
+     * Compares every matcher with its regular expression on the corpus and on the generated lines, and
+     * prints the disagreements and a summary.
+     * @param corpus The inputs from the corpus.
+     * @param generated The number of generated lines.
+     * @param random Generates the lines.
+     * @return {@value #EXIT_PASSED} if every matcher agreed on every input, {@value #EXIT_FAILED} otherwise.
+     */
+    private static int run(List<String> corpus, int generated, Random random) {
+        List<Check> checks = createChecks();
+        Check nameEnd = new Check("nameEnd", NAME_REGEX, Operation.LOOKING_AT, false, null);
+        long mismatches = 0;
+        for (int i = 0; i < corpus.size() + generated; i++) {
+            String input = i < corpus.size() ? corpus.get(i) : generate(corpus, random);
+            for (Check check : checks) {
+                check.compare(input, random);
+            }
+            mismatches += compareNameEnd(nameEnd, input, random.nextInt(input.length() + 1));
+            mismatches += compareSplit(input, '(', OPEN_PAREN_SPLIT) + compareSplit(input, '=', EQUALS_SPLIT);
+        }
+        for (Check check : checks) {
+            mismatches += check.mismatches;
+            System.out.printf(CHECK_SUMMARY, check.name, check.accepted, check.rejected, check.mismatches);
+        }
+        System.out.printf(CHECK_SUMMARY, nameEnd.name, nameEnd.accepted, nameEnd.rejected,
+                          nameEnd.mismatches);
+        System.out.printf(SUMMARY, mismatches, corpus.size() + generated, corpus.size(), generated);
+        return mismatches == 0 ? EXIT_PASSED : EXIT_FAILED;
+    }
+
+    /**
+     * @return The checks of every matcher of {@link LinearPatterns} but {@link LinearPatterns#nameEnd} and
+     *         {@link LinearPatterns#beforeFirst}, which are compared separately.
+     */
+    private static List<Check> createChecks() {
+        String condition = "^(while|if)\\s*\\(\\s*(.*)\\)\\s*";
+        String call = "^(" + NAME_REGEX + ")\\s*\\((.*)\\)\\s*";
+        String declaration = "^(final\\s+)?(" + TYPE_REGEX + ")\\s+";
+        return List.of(
+                accepting("isDisregarded", "^//.*|^\\s*$", Operation.MATCHES, LinearPatterns::isDisregarded),
+                accepting("isInt", "[-+]?\\d+", Operation.MATCHES,
+                          t -> LinearPatterns.isInt(t, 0, t.length())),
+                accepting("isDouble", "[-+]?(?:\\d+\\.\\d+|\\.\\d+|\\d+\\.)", Operation.MATCHES,
+                          t -> LinearPatterns.isDouble(t, 0, t.length())),
+                accepting("isBoolean", "true|false", Operation.MATCHES,
+                          t -> LinearPatterns.isBoolean(t, 0, t.length())),
+                accepting("isString", "\".*\"", Operation.MATCHES,
+                          t -> LinearPatterns.isString(t, 0, t.length())),
+                accepting("isChar", "'.'", Operation.MATCHES,
+                          t -> LinearPatterns.isChar(t, 0, t.length())),
+                accepting("isReturn", "^return\\s*;$", Operation.MATCHES, LinearPatterns::isReturn),
+                accepting("endsWithMultipleSemicolons", ";;+$", Operation.FIND,
+                          LinearPatterns::endsWithMultipleSemicolons),
+                accepting("hasMultipleOpenBrackets", "\\{\\{+", Operation.FIND,
+                          LinearPatterns::hasMultipleOpenBrackets),
+                accepting("startsWithName", NAME_REGEX, Operation.LOOKING_AT,
+                          LinearPatterns::startsWithName),
+                accepting("isName", NAME_REGEX, Operation.MATCHES, LinearPatterns::isName),
+                matching("conditionStatement", condition + "\\{", Operation.MATCHES, 2,
+                         LinearPatterns::conditionStatement),
+                matching("conditionWithoutBracket", condition, Operation.MATCHES, 2,
+                         LinearPatterns::conditionWithoutBracket),
+                matching("methodCall", call, Operation.LOOKING_AT, 2, LinearPatterns::methodCall),
+                matching("methodDeclaration", call + "\\{", Operation.MATCHES, 2,
+                         LinearPatterns::methodDeclaration),
+                matching("parameter", declaration + "(" + NAME_REGEX + ")", Operation.MATCHES, 3,
+                         LinearPatterns::parameter),
+                matching("variableDeclaration", declaration + "(.*);$", Operation.LOOKING_AT, 3,
+                         LinearPatterns::variableDeclaration),
+                accepting("isDeclarationPrefix", declaration + "(.*)", Operation.MATCHES,
+                          LinearPatterns::isDeclarationPrefix),
+                matching("declarator", "(" + NAME_REGEX + ")(\\s*(=)(\\s*[^,;]+)?)?", Operation.MATCHES, 4,
+                         LinearPatterns::declarator),
+                matching("assignment", "^(" + NAME_REGEX + ")\\s*=\\s*([^,;]+)", Operation.LOOKING_AT, 2,
+                         LinearPatterns::assignment)
+        );
+    }
+
+    /**
+     * @param name The name of a matcher that only accepts or rejects.
+     * @param regex The regular expression it replaced.
+     * @param operation The operation of the regular expression.
+     * @param matcher The matcher.
+     * @return The check of the matcher, which compares the bounds of the entire match only.
+     */
+    private static Check accepting(String name, String regex, Operation operation,
+                                   Predicate<CharSequence> matcher) {
+        return new Check(name, regex, operation, false, text -> matcher.test(text) ? ACCEPTED : null);
+    }
+
+    /**
+     * @param name The name of a matcher that returns a match.
+     * @param regex The regular expression it replaced.
+     * @param operation The operation of the regular expression.
+     * @param groupCount The number of groups of the regular expression.
+     * @param matcher The matcher.
+     * @return The check of the matcher, which compares the bounds of every group.
+     */
+    private static Check matching(String name, String regex, Operation operation, int groupCount,
+                                  Function<CharSequence, LinearPatterns.Match> matcher) {
+        return new Check(name, regex, operation, true, text -> {
+            LinearPatterns.Match match = matcher.apply(text);
+            if (match == null) {
+                return null;
+            }
+            int[] bounds = new int[2 * (groupCount + 1)];
+            for (int group = 0; group <= groupCount; group++) {
+                bounds[2 * group] = match.start(group);
+                bounds[2 * group + 1] = match.end(group);
+            }
+            return bounds;
+        });
+    }
+
+    /**
+     * Compares {@link LinearPatterns#nameEnd} with {@code NAME} at an index of an input, where {@code ^}
+     * is the start of the input and {@code \b} sees the characters before the index.
+     * @param check The check of the matcher.
+     * @param input The input.
+     * @param from The index.
+     * @return The number of disagreements, 0 or 1.
+     */
+    private static int compareNameEnd(Check check, String input, int from) {
+        Matcher regex = check.pattern.matcher(input).region(from, input.length())
+                                     .useAnchoringBounds(false).useTransparentBounds(true);
+        int expected = regex.lookingAt() ? regex.end() : -1;
+        int actual = LinearPatterns.nameEnd(input, from);
+        if (expected == -1) {
+            check.rejected++;
+        } else {
+            check.accepted++;
+        }
+        if (expected == actual) {
+            return 0;
+        }
+        if (check.mismatches++ < MAX_PRINTED) {
+            System.out.printf(MISMATCH, check.name, escape(input), " at " + from, expected, actual);
+        }
+        return 1;
+    }
+
+    /**
+     * Compares {@link LinearPatterns#beforeFirst} with the first element of splitting an input.
+     * @param input The input.
+     * @param c The character to split the input around.
+     * @param split The split that {@link LinearPatterns#beforeFirst} replaced.
+     * @return The number of disagreements, 0 or 1.
+     */
+    private static int compareSplit(String input, char c, Pattern split) {
+        String[] parts = split.split(input);
+        String expected = parts.length == 0 ? "" : parts[0];
+        String actual = LinearPatterns.beforeFirst(input, c);
+        if (expected.equals(actual)) {
+            return 0;
+        }
+        System.out.printf(MISMATCH, "beforeFirst", escape(input), " around " + c, escape(expected),
+                          escape(actual));
+        return 1;
+    }
+
+    /**
+     * Reads every line of the corpus, as it is and stripped, with its parts between commas, semicolons and
+     * parentheses.
+     * @param paths The files and directories of the corpus.
+     * @return The distinct inputs, in the order they were read.
+     * @throws IOException If a file cannot be read.
+     */
+    private static List<String> readCorpus(List<String> paths) throws IOException {
+        Set<String> inputs = new LinkedHashSet<>();
+        for (String path : paths) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(Path.of(path))) {
+                files = walk.filter(file -> file.toString().endsWith(SJAVA_FILE_ENDING)).sorted().toList();
+            }
+            for (Path file : files) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    inputs.add(line);
+                    inputs.add(line.strip());
+                    for (String part : line.split(PARTS_SEPARATORS)) {
+                        inputs.add(part);
+                        inputs.add(part.strip());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(inputs);
+    }
+
+    /**
+     * Generates a line, which is either a line of the corpus with a few of its fragments edited, or a
+     * random sequence of fragments.
+     * @param corpus The inputs from the corpus.
+     * @param random Generates the line.
+     * @return The line.
+     */
+    private static String generate(List<String> corpus, Random random) {
+        StringBuilder line = new StringBuilder();
+        if (random.nextBoolean() && !corpus.isEmpty()) {
+            line.append(corpus.get(random.nextInt(corpus.size())));
+            int edits = 1 + random.nextInt(MAX_EDITS);
+            for (int i = 0; i < edits; i++) {
+                int at = random.nextInt(line.length() + 1);
+                switch (random.nextInt(3)) {
+                    case 0 -> line.insert(at, fragment(random));
+                    case 1 -> line.delete(at, Math.min(line.length(), at + 1 + random.nextInt(MAX_EDITS)));
+                    default -> line.replace(at, Math.min(line.length(), at + 1), fragment(random));
+                }
+            }
+        } else {
+            int fragments = 1 + random.nextInt(MAX_FRAGMENTS);
+            for (int i = 0; i < fragments; i++) {
+                line.append(fragment(random));
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * @param random Picks the fragment.
+     * @return A random fragment.
+     */
+    private static String fragment(Random random) {
+        return FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+    }
+
+    /**
+     * @param random Generates the padding.
+     * @return A few random characters to put around a region.
+     */
+    private static String padding(Random random) {
+        StringBuilder padding = new StringBuilder();
+        int length = random.nextInt(MAX_PADDING + 1);
+        for (int i = 0; i < length; i++) {
+            padding.append(PADDING.charAt(random.nextInt(PADDING.length())));
+        }
+        return padding.toString();
+    }
+
+    /**
+     * @param bounds The bounds of the groups of a match, or {@code null}.
+     * @return A description of the bounds.
+     */
+    private static String describe(int[] bounds) {
+        return bounds == null ? "no match" : bounds == ACCEPTED ? "match" : Arrays.toString(bounds);
+    }
+
+    /**
+     * @param text A text.
+     * @return The text, with the characters outside of printable ASCII escaped.
+     */
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < ' ' || c > '~') {
+                builder.append(String.format("\\u%04X", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,417 @@
+package ex5.conformance;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Runs a candidate engine in the shadow of the reference engine: both verify the same inputs, every
+ * divergence of their results is reported, and the speedup of the candidate is measured for every input.
+ * <p>
+ *     Usage: {@code java ex5.conformance.ShadowRunner [--reference=ENGINE] [--candidate=ENGINE]
+ *     [--mutants=N] [--seed=S] [--rounds=N] [--verbose] [path...]}, where an engine is one of
+ *     {@link Engine}, in lower case. The reference is {@code two_pass} and the candidate is
+ *     {@code no_line_cache} by default. The paths are files and directories of {@code .sjava} files, which
+ *     are {@code tests/SchoolTests/input} and {@code tests/OurTests} by default, such as generated workloads.
+ * </p>
+ * <p>
+ *     Besides the given files, the workload holds {@code N} generated mutants of every file (2 by default),
+ *     each made of a few random edits of the lines of the file: a line is removed, repeated or swapped with
+ *     the next one, or a character is removed or inserted. The mutants are mostly invalid in new ways, so
+ *     they compare which error wins and its message, and the same seed always generates the same mutants.
+ * </p>
+ * <p>
+ *     Two results diverge when their exit values, categories, line numbers or messages differ. Every input is
+ *     verified on a single thread by both engines in every round, after a round that warms them up, and the
+ *     fastest time of every engine is kept. The runner prints every divergence and every input that crashed
+ *     both engines, and with {@code --verbose} the speedup of every input, followed by a summary, and exits
+ *     with 0 only if every input gave the same result with both engines.
+ * </p>
+ * <p>
+ *     The {@code streaming} and {@code pipelined} engines report the first error in the file, so they are
+ *     expected to diverge from {@code two_pass} on the error of a file with several errors, while their
+ *     exit values are the same.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class ShadowRunner {
+
+    // Constants
+    private static final List<String> DEFAULT_PATHS = List.of("tests/SchoolTests/input", "tests/OurTests");
+    private static final String SJAVA_FILE_ENDING = ".sjava";
+    private static final String OPTION_PREFIX = "--";
+    private static final String REFERENCE_OPTION = "--reference=";
+    private static final String CANDIDATE_OPTION = "--candidate=";
+    private static final String MUTANTS_OPTION = "--mutants=";
+    private static final String SEED_OPTION = "--seed=";
+    private static final String ROUNDS_OPTION = "--rounds=";
+    private static final String VERBOSE_OPTION = "--verbose";
+    private static final int DEFAULT_MUTANTS = 2;
+    private static final long DEFAULT_SEED = 47;
+    private static final int DEFAULT_ROUNDS = 3;
+    private static final int MAX_EDITS = 3;
+    private static final int EDIT_KINDS = 5;
+    private static final String INSERTED_CHARACTERS = ";{}(),= \"'";
+    private static final String MUTANT_NAME = "%s#%d";
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+
+    // Messages
+    private static final String UNKNOWN_OPTION = "Unknown option: '%s'.%n";
+    private static final String DIVERGED = "DIVERGED %s:%n  reference %s%n  candidate %s%n";
+    private static final String CRASHED = "DIVERGED %s: the %s engine crashed: %s%n";
+    private static final String BOTH_CRASHED = "FAIL %s: both engines crashed: %s%n";
+    private static final String SPEEDUP = "     %s: %.3f ms, %.3f ms, %.2fx%n";
+    private static final String SUMMARY = "%d failed (%d inputs: %d files, %d mutants), %s against %s%n";
+    private static final String TIMING = "reference %.1f ms, candidate %.1f ms, speedup %.2fx in total, " +
+                                         "%.2fx geometric mean, from %.2fx (%s) to %.2fx (%s)%n";
+
+    /**
+     * The engines that can verify the inputs, each a configuration of {@link SjavaVerifier} that must give
+     * exactly the results of the others.
+     */
+    enum Engine {
+        /** Cleans the whole input, and then verifies it in two passes, with the line cache. */
+        TWO_PASS(VerificationMode.TWO_PASS, CodeVerifier.DEFAULT_LINE_CACHE_SIZE),
+        /** Verifies the input in a single pass while it is read, with the line cache. */
+        STREAMING(VerificationMode.STREAMING, CodeVerifier.DEFAULT_LINE_CACHE_SIZE),
+        /** Verifies the input in a single pass while another thread reads it, with the line cache. */
+        PIPELINED(VerificationMode.PIPELINED, CodeVerifier.DEFAULT_LINE_CACHE_SIZE),
+        /** Like {@link #TWO_PASS}, without the line cache. */
+        NO_LINE_CACHE(VerificationMode.TWO_PASS, 0),
+        /** Cleans the whole input, checks its structure, and then verifies it in two passes. */
+        TIERED(VerificationMode.TIERED, CodeVerifier.DEFAULT_LINE_CACHE_SIZE);
+
+        private final VerificationMode mode;
+        private final int lineCacheSize;
+
+        Engine(VerificationMode mode, int lineCacheSize) {
+            this.mode = mode;
+            this.lineCacheSize = lineCacheSize;
+        }
+
+        /**
+         * @return A new verifier of this engine.
+         */
+        SjavaVerifier createVerifier() {
+            return new SjavaVerifier(mode, lineCacheSize);
+        }
+    }
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private ShadowRunner() {}
+
+    /**
+     * Runs both engines on the workload.
+     * @param args The options, followed by the paths of the files.
+     * @throws IOException If a file of the workload cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Engine reference = Engine.TWO_PASS;
+        Engine candidate = Engine.NO_LINE_CACHE;
+        int mutants = DEFAULT_MUTANTS;
+        long seed = DEFAULT_SEED;
+        int rounds = DEFAULT_ROUNDS;
+        boolean isVerbose = false;
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(REFERENCE_OPTION)) {
+                reference = parseEngine(arg.substring(REFERENCE_OPTION.length()));
+            } else if (arg.startsWith(CANDIDATE_OPTION)) {
+                candidate = parseEngine(arg.substring(CANDIDATE_OPTION.length()));
+            } else if (arg.startsWith(MUTANTS_OPTION)) {
+                mutants = Integer.parseInt(arg.substring(MUTANTS_OPTION.length()));
+            } else if (arg.startsWith(SEED_OPTION)) {
+                seed = Long.parseLong(arg.substring(SEED_OPTION.length()));
+            } else if (arg.startsWith(ROUNDS_OPTION)) {
+                rounds = Integer.parseInt(arg.substring(ROUNDS_OPTION.length()));
+            } else if (arg.equals(VERBOSE_OPTION)) {
+                isVerbose = true;
+            } else if (arg.startsWith(OPTION_PREFIX)) {
+                System.err.printf(UNKNOWN_OPTION, arg);
+                System.exit(EXIT_USAGE);
+            } else {
+                paths.add(arg);
+            }
+        }
+        List<Input> workload = createWorkload(paths.isEmpty() ? DEFAULT_PATHS : paths, mutants, seed);
+        System.exit(run(workload, reference, candidate, Math.max(1, rounds), isVerbose));
+    }
+
+    /**
+     * Verifies every input with both engines, and prints the divergences and a summary.
+     * @param workload The inputs.
+     * @param reference The reference engine.
+     * @param candidate The candidate engine.
+     * @param rounds The number of timed rounds.
+     * @param isVerbose Whether to print the speedup of every input.
+     * @return {@value #EXIT_PASSED} if every input gave the same result, {@value #EXIT_FAILED} otherwise.
+     */
+    private static int run(List<Input> workload, Engine reference, Engine candidate, int rounds,
+                           boolean isVerbose) {
+        SjavaVerifier referenceVerifier = reference.createVerifier();
+        SjavaVerifier candidateVerifier = candidate.createVerifier();
+        int failed = 0, mutants = 0;
+        double referenceNanos = 0, candidateNanos = 0, logSpeedups = 0;
+        Input slowest = null, fastest = null;
+        for (Input input : workload) {
+            input.verify(referenceVerifier, candidateVerifier, rounds);
+            if (input.isMutant) {
+                mutants++;
+            }
+            if (!input.report()) {
+                failed++;
+                continue;
+            }
+            referenceNanos += input.referenceNanos;
+            candidateNanos += input.candidateNanos;
+            logSpeedups += Math.log(input.speedup());
+            if (slowest == null || input.speedup() < slowest.speedup()) {
+                slowest = input;
+            }
+            if (fastest == null || input.speedup() > fastest.speedup()) {
+                fastest = input;
+            }
+            if (isVerbose) {
+                System.out.printf(Locale.ROOT, SPEEDUP, input.name, input.referenceNanos / NANOS_IN_MILLI,
+                                  input.candidateNanos / NANOS_IN_MILLI, input.speedup());
+            }
+        }
+        String referenceName = reference.name().toLowerCase(Locale.ROOT);
+        String candidateName = candidate.name().toLowerCase(Locale.ROOT);
+        System.out.printf(SUMMARY, failed, workload.size(), workload.size() - mutants, mutants,
+                          candidateName, referenceName);
+        if (slowest != null) {
+            int compared = workload.size() - failed;
+            System.out.printf(Locale.ROOT, TIMING, referenceNanos / NANOS_IN_MILLI,
+                              candidateNanos / NANOS_IN_MILLI, referenceNanos / candidateNanos,
+                              Math.exp(logSpeedups / compared), slowest.speedup(), slowest.name,
+                              fastest.speedup(), fastest.name);
+        }
+        return failed == 0 ? EXIT_PASSED : EXIT_FAILED;
+    }
+
+    /**
+     * @param name The name of an engine, in any case.
+     * @return The engine.
+     */
+    private static Engine parseEngine(String name) {
+        try {
+            return Engine.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.printf(UNKNOWN_OPTION, name);
+            System.exit(EXIT_USAGE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the workload: the files of the given paths, each followed by its mutants.
+     * @param paths The files and directories of the files.
+     * @param mutants The number of mutants of every file.
+     * @param seed The seed of the mutants.
+     * @return The inputs.
+     * @throws IOException If a file or a directory cannot be read.
+     */
+    private static List<Input> createWorkload(List<String> paths, int mutants, long seed) throws IOException {
+        List<Input> workload = new ArrayList<>();
+        Random random = new Random(seed);
+        for (String path : paths) {
+            for (Path file : listFiles(Path.of(path))) {
+                String text = Files.readString(file, StandardCharsets.ISO_8859_1); // Keeps every byte
+                workload.add(new Input(file.toString(), text, false));
+                for (int i = 1; i <= mutants; i++) {
+                    workload.add(new Input(String.format(MUTANT_NAME, file, i), mutate(text, random), true));
+                }
+            }
+        }
+        return workload;
+    }
+
+    /**
+     * Lists the .sjava files of the given path, in a stable order.
+     * @param path A file, or a directory whose files and subdirectories are listed.
+     * @return The paths of the files.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private static List<Path> listFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(file -> file.toString().endsWith(SJAVA_FILE_ENDING)).sorted().toList();
+        }
+    }
+
+    /**
+     * Generates a mutant of a file by a few random edits of its lines.
+     * @param text The content of the file.
+     * @param random The source of the edits.
+     * @return The content of the mutant.
+     */
+    private static String mutate(String text, Random random) {
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        int edits = 1 + random.nextInt(MAX_EDITS);
+        for (int i = 0; i < edits && !lines.isEmpty(); i++) {
+            int index = random.nextInt(lines.size());
+            String line = lines.get(index);
+            switch (random.nextInt(EDIT_KINDS)) {
+                case 0:
+                    lines.remove(index);
+                    break;
+                case 1:
+                    lines.add(index, line);
+                    break;
+                case 2:
+                    if (index + 1 < lines.size()) {
+                        lines.set(index, lines.get(index + 1));
+                        lines.set(index + 1, line);
+                    }
+                    break;
+                case 3:
+                    if (!line.isEmpty()) {
+                        int at = random.nextInt(line.length());
+                        lines.set(index, line.substring(0, at) + line.substring(at + 1));
+                    }
+                    break;
+                default:
+                    int at = random.nextInt(line.length() + 1);
+                    char inserted = INSERTED_CHARACTERS.charAt(random.nextInt(INSERTED_CHARACTERS.length()));
+                    lines.set(index, line.substring(0, at) + inserted + line.substring(at));
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * An input of the workload, with the results and the fastest times of both engines.
+     */
+    private static final class Input {
+
+        // Private fields
+        private final String name;
+        private final byte[] bytes;
+        private final boolean isMutant;
+        private VerificationResult referenceResult;
+        private VerificationResult candidateResult;
+        private RuntimeException referenceCrash;
+        private RuntimeException candidateCrash;
+        private long referenceNanos = Long.MAX_VALUE;
+        private long candidateNanos = Long.MAX_VALUE;
+
+        /**
+         * Constructs an input.
+         * @param name The name of the input, which is its path or the path of the file it mutates.
+         * @param text The content of the input, where every character is a byte.
+         * @param isMutant Whether the input is a mutant.
+         */
+        private Input(String name, String text, boolean isMutant) {
+            this.name = name;
+            this.bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            this.isMutant = isMutant;
+        }
+
+        /**
+         * Verifies the input with both engines, after a round that warms them up.
+         * @param reference The verifier of the reference engine.
+         * @param candidate The verifier of the candidate engine.
+         * @param rounds The number of timed rounds.
+         */
+        private void verify(SjavaVerifier reference, SjavaVerifier candidate, int rounds) {
+            try {
+                referenceResult = verify(reference, rounds, true);
+            } catch (RuntimeException e) { // A bug in an engine must not stop the other inputs
+                referenceCrash = e;
+            }
+            try {
+                candidateResult = verify(candidate, rounds, false);
+            } catch (RuntimeException e) {
+                candidateCrash = e;
+            }
+        }
+
+        /**
+         * Verifies the input with a single engine, and keeps its fastest time.
+         * @param verifier The verifier of the engine.
+         * @param rounds The number of timed rounds.
+         * @param isReference Whether the engine is the reference engine.
+         * @return The result of the last round.
+         */
+        private VerificationResult verify(SjavaVerifier verifier, int rounds, boolean isReference) {
+            VerificationResult result = verifier.verify(new ByteArrayInputStream(bytes), name);
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                result = verifier.verify(new ByteArrayInputStream(bytes), name);
+                long nanos = Math.max(1, System.nanoTime() - start);
+                if (isReference) {
+                    referenceNanos = Math.min(referenceNanos, nanos);
+                } else {
+                    candidateNanos = Math.min(candidateNanos, nanos);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return The time of the reference engine divided by the time of the candidate engine.
+         */
+        private double speedup() {
+            return (double) referenceNanos / candidateNanos;
+        }
+
+        /**
+         * Prints the divergence of the engines, if they diverged or crashed.
+         * @return {@code true} if the engines gave the same result, {@code false} otherwise.
+         */
+        private boolean report() {
+            if (referenceCrash != null && candidateCrash != null) { // A bug of the verifier, not of an engine
+                System.out.printf(BOTH_CRASHED, name, referenceCrash);
+                return false;
+            }
+            if (referenceCrash != null || candidateCrash != null) {
+                boolean isReference = referenceCrash != null;
+                System.out.printf(CRASHED, name, isReference ? "reference" : "candidate",
+                                  isReference ? referenceCrash : candidateCrash);
+                return false;
+            }
+            if (referenceResult.getExitStatus() != candidateResult.getExitStatus() ||
+                referenceResult.getCategory() != candidateResult.getCategory() ||
+                referenceResult.getLineNumber() != candidateResult.getLineNumber() ||
+                !Objects.equals(referenceResult.getMessage(), candidateResult.getMessage())) {
+                System.out.printf(DIVERGED, name, describe(referenceResult), describe(candidateResult));
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * @param result A result.
+         * @return A description of every field of the result that is compared.
+         */
+        private static String describe(VerificationResult result) {
+            return result.getExitStatus() + " " + result.getCategory() + " line " + result.getLineNumber() +
+                   (result.isValid() ? "" : ": " + result.getMessage());
+        }
+    }
+
+}
@@ -1,15 +1,29 @@
 package ex5.main;
 
-import ex5.sjava_verifier.verifier.IllegalTypeException;
-import ex5.sjava_verifier.verifier.condition_management.ConditionException;
-import ex5.sjava_verifier.verifier.method_management.MethodException;
-import ex5.sjava_verifier.verifier.SyntaxException;
-import ex5.sjava_verifier.verifier.variable_management.VarException;
-import ex5.sjava_verifier.preprocessor.FileCleaner;
-import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.BatchVerifier;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.batch.InputFormat;
+import ex5.sjava_verifier.report.JsonLinesReporter;
+import ex5.sjava_verifier.report.ResultReporter;
+import ex5.sjava_verifier.report.SarifReporter;
+import ex5.sjava_verifier.rules.Diagnostic;
+import ex5.sjava_verifier.shard.ResultJournal;
+import ex5.sjava_verifier.shard.ShardCoordinator;
+import ex5.sjava_verifier.statistics.VerifierStats;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Map;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
 
 /**
  * Sjavac is a program that verifies the validity of SJava (Simple Java) files.
@@ -20,46 +34,216 @@ import java.util.Map;
 public class Sjavac {
     
     // Exit values
-    private static final int EXIT_SUCCESS = 0; // Valid SJava file
-    private static final int EXIT_FAILURE = 1; // Invalid SJava file
-    private static final int EXIT_ERROR = 2; // Error rose while interrogating file validity
+    private static final int EXIT_VALID = VerificationResult.EXIT_VALID;
+    private static final int EXIT_ERROR = VerificationResult.EXIT_ERROR; // Error while reading the input
     
     // Error messages
-    private static final String INVALID_ARG_COUNT = "Invalid number of arguments." +
-                                                    " Expected 1 argument but got: %d.";
-    private static final String SJAVA_FILE_ENDING = ".sjava";
-    private static final String INVALID_FILE_FORMAT = "Invalid file format.";
+    private static final String OUTPUT_ERROR = "An error occurred while writing the output: ";
+    private static final String WORKERS_ERROR = "An error occurred while running the workers: ";
+    private static final String JOURNAL_ERROR = "An error occurred while opening the journal: ";
+
+    // Constants
+    private static final String TEXT_FORMAT = SjavacOptions.TEXT_FORMAT;
+    private static final String JSON_FORMAT = SjavacOptions.JSON_FORMAT;
+    private static final String JSON_LINES_FORMAT = SjavacOptions.JSON_LINES_FORMAT;
+    private static final String SARIF_FORMAT = SjavacOptions.SARIF_FORMAT;
+    private static final String STDIN_PATH = SjavacOptions.STDIN_PATH;
+    private static final String STDIN_SOURCE_NAME = "<stdin>";
+    private static final String RESULT_RECORD = "%s\t%d\t%s%n";
+    private static final String NO_MESSAGE = "";
+    private static final String ENTRY_MESSAGE = "%s: %s";
 
     /**
      * The main method of the program.
      * <p>
-     *     It receives a path to a file as an argument and verifies it using {@link CodeVerifier}.
+     *     It receives a path to a file as an argument, preceded by the options described in
+     *     {@link SjavacOptions}, and verifies it using {@link SjavaVerifier}. A single file, or every file of
+     *     an archive, of the standard input or of a list, is verified, and the error of every invalid file is
+     *     printed. The program exits with the highest exit value of the files, as given by
+     *     {@link VerificationResult}, or with {@value #EXIT_ERROR} if the arguments are invalid.
      * </p>
-     * @param args The program arguments. The first and only argument should be the path to the file.
-     * @see CodeVerifier
+     * @param args The program arguments.
+     *             The last and only non-option argument should be the path to the file.
+     * @see SjavaVerifier
+     * @see VerifierStats
      */
     public static void main(String[] args) {
+        SjavacOptions options;
         try {
-            if (args.length != 1) { // Throw IOException in the case of invalid argument count.
-                throw new IOException(String.format(INVALID_ARG_COUNT, args.length));
-            }
-            String inputFilePath = args[0]; // path to file (if legal)
-            if (!inputFilePath.endsWith(SJAVA_FILE_ENDING)) { // Make sure that file format is valid
-                throw new IOException(INVALID_FILE_FORMAT);
-            }
-            // Clean the input file from valid comments, empty lines and leading/trailing whitespaces
-            Map<Long, String> fileContent = FileCleaner.cleanFile(inputFilePath);
-            CodeVerifier verifier = new CodeVerifier(fileContent);
-            verifier.verifyCode();
-            System.exit(EXIT_SUCCESS); // No exception was raised, the file is valid. Exit with 0.
-        } catch (IOException e) { // Error in reading the file or input error.
+            options = SjavacOptions.parse(args);
+        } catch (IOException e) { // Input error.
             System.err.println(e.getMessage());
             System.exit(EXIT_ERROR); // Exit with 2.
-        } catch (VarException | IllegalTypeException | SyntaxException |
-                 MethodException | ConditionException e) {
-            System.err.println(e.getMessage());
-            System.exit(EXIT_FAILURE); // Errors were found in the verification process. Exit with 1.
+            return;
+        }
+        String statsFormat = options.getStatsFormat();
+        VerifierStats stats = new VerifierStats();
+        if (statsFormat != null) {
+            stats.attach();
+        }
+        int exitCode;
+        try {
+            exitCode = verifyFile(options, stats);
+        } finally {
+            VerifierStats.detach();
+        }
+        if (exitCode != EXIT_ERROR && statsFormat != null) {
+            PrintStream statsOutput = options.getOutputFormat().equals(TEXT_FORMAT) ? System.out : System.err;
+            if (statsFormat.equals(JSON_FORMAT)) {
+                statsOutput.println(stats.toJson());
+            } else {
+                statsOutput.print(stats.toText());
+            }
         }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Verifies the file given in the program arguments, and prints the error if there is one.
+     * @param options The options and the path given in the program arguments.
+     * @param stats The statistics of the verification.
+     * @return The exit value of the program.
+     */
+    private static int verifyFile(SjavacOptions options, VerifierStats stats) {
+        String outputFormat = options.getOutputFormat();
+        if (options.isList()) {
+            ResultReporter reporter = createReporter(outputFormat, false, true);
+            return verifyList(options, reporter);
+        }
+        SjavaVerifier verifier = new SjavaVerifier(options.getMode(), options.getLineCacheSize(),
+                                                   options.getLimits(), options.getRules());
+        InputFormat format = options.getFormat();
+        if (!outputFormat.equals(TEXT_FORMAT) || options.isStdin() || format != InputFormat.SJAVA) {
+            ResultReporter reporter = createReporter(outputFormat, options.isStdin(), format.isArchive());
+            return verifyBatch(options, verifier, reporter);
+        }
+        stats.countFile();
+        VerificationResult result = verifier.verify(Path.of(options.getPath()));
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            System.err.println(diagnostic);
+        }
+        if (!result.isValid()) { // Error in reading the file, or errors found in the verification process
+            System.err.println(result.getMessage());
+        }
+        return result.getExitStatus();
+    }
+
+    /**
+     * Creates the reporter that prints the results in the given format.
+     * <p>
+     *     In the text format, the results of the standard input are printed as records, the error of every
+     *     invalid file of an archive or a list is printed after the path of the file, and the error of a
+     *     single file is printed alone. The diagnostics of the rules are printed before the error, after the
+     *     path of their file unless it is a single file.
+     * </p>
+     * @param outputFormat The format in which the results are printed.
+     * @param isStdin Whether the input is the standard input.
+     * @param hasManyFiles Whether the input is an archive or a list of files.
+     * @return The reporter.
+     */
+    private static ResultReporter createReporter(String outputFormat, boolean isStdin, boolean hasManyFiles) {
+        // Not System.out, which hides the errors of writing, so a closed output stops the verification
+        Writer output = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                                               StandardCharsets.UTF_8);
+        if (outputFormat.equals(JSON_LINES_FORMAT)) {
+            return new JsonLinesReporter(output);
+        }
+        if (outputFormat.equals(SARIF_FORMAT)) {
+            return new SarifReporter(output);
+        }
+        return entry -> {
+            VerificationResult result = entry.getResult();
+            for (Diagnostic diagnostic : result.getDiagnostics()) {
+                System.err.println(hasManyFiles || isStdin ?
+                                   String.format(ENTRY_MESSAGE, entry.getPath(), diagnostic) : diagnostic);
+            }
+            if (isStdin) {
+                String message = result.isValid() ? NO_MESSAGE : result.getMessage();
+                System.out.printf(RESULT_RECORD, entry.getPath(), result.getExitStatus(), message);
+            } else if (!result.isValid()) {
+                String message = result.getMessage();
+                System.err.println(hasManyFiles ? String.format(ENTRY_MESSAGE, entry.getPath(), message) :
+                                   message);
+            }
+        };
+    }
+
+    /**
+     * Verifies every file of the input, such as a compressed file, an archive or the standard input, and
+     * reports the result of every file.
+     * @param options The options and the path of the input.
+     * @param verifier The verifier to verify every file with.
+     * @param reporter Receives the result of every file, and is closed after the last one.
+     * @return The highest exit value of the files.
+     */
+    private static int verifyBatch(SjavacOptions options, SjavaVerifier verifier, ResultReporter reporter) {
+        int[] exitCode = {EXIT_VALID};
+        Consumer<EntryResult> listener = reportTo(reporter, exitCode);
+        try (BatchVerifier batchVerifier = new BatchVerifier(verifier, options.getThreadCount(),
+                                                             options.isDeduplicating());
+             reporter) {
+            if (options.isStdin()) {
+                batchVerifier.verifyDocuments(System.in, STDIN_SOURCE_NAME, options.isSeparated(), listener);
+            } else {
+                batchVerifier.verify(Path.of(options.getPath()), listener);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_ERROR;
+        } catch (IOException | UncheckedIOException e) { // The output was closed, such as by a pipe
+            System.err.println(OUTPUT_ERROR + e.getMessage());
+            return EXIT_ERROR;
+        }
+        return exitCode[0];
+    }
+
+    /**
+     * Verifies the files of a list with worker JVMs, and reports the result of every file in the order of the
+     * list.
+     * @param options The options and the path of the list, which set how the workers verify the files.
+     * @param reporter Receives the result of every file, and is closed after the last one.
+     * @return The highest exit value of the files.
+     */
+    private static int verifyList(SjavacOptions options, ResultReporter reporter) {
+        int[] exitCode = {EXIT_VALID};
+        ResultJournal journal;
+        try {
+            journal = options.getJournal() == null ? null : new ResultJournal(Path.of(options.getJournal()));
+        } catch (IOException | InvalidPathException e) {
+            System.err.println(JOURNAL_ERROR + e.getMessage());
+            return EXIT_ERROR;
+        }
+        try (reporter; journal) {
+            try (ShardCoordinator coordinator = new ShardCoordinator(options.getMode(),
+                                                                     options.getLineCacheSize(),
+                                                                     options.getWorkerCount(),
+                                                                     options.isDeduplicating(),
+                                                                     options.getLimits())) {
+                coordinator.verify(Path.of(options.getListPath()), journal, reportTo(reporter, exitCode));
+            } catch (IOException e) { // A worker cannot be started, or the workers keep crashing
+                System.err.println(WORKERS_ERROR + e.getMessage());
+                return EXIT_ERROR;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_ERROR;
+        } catch (IOException | UncheckedIOException e) { // The output was closed, such as by a pipe
+            System.err.println(OUTPUT_ERROR + e.getMessage());
+            return EXIT_ERROR;
+        }
+        return exitCode[0];
+    }
+
+    /**
+     * @param reporter A reporter.
+     * @param exitCode Holds the highest exit value of the reported files.
+     * @return A listener that reports every result, and keeps the highest exit value.
+     */
+    private static Consumer<EntryResult> reportTo(ResultReporter reporter, int[] exitCode) {
+        return entry -> {
+            reporter.accept(entry);
+            exitCode[0] = Math.max(exitCode[0], entry.getResult().getExitStatus());
+        };
     }
 
 }
@@ -0,0 +1,454 @@
+package ex5.main;
+
+import ex5.sjava_verifier.api.VerificationLimits;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.batch.BatchVerifier;
+import ex5.sjava_verifier.batch.InputFormat;
+import ex5.sjava_verifier.report.JsonLinesReporter;
+import ex5.sjava_verifier.report.SarifReporter;
+import ex5.sjava_verifier.rules.Rule;
+import ex5.sjava_verifier.shard.ResultJournal;
+import ex5.sjava_verifier.shard.ShardCoordinator;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The options of {@link Sjavac}, which precede the path in the program arguments, and the path itself.
+ * <p>
+ *     {@code --stats} (or {@code --stats=text}) prints the timings and counters of the verification to the
+ *     standard output, and {@code --stats=json} prints them as a single JSON object.
+ * </p>
+ * <p>
+ *     {@code --stream} verifies a file in a single pass while it is read, without holding it in memory, and
+ *     stops reading at the first error. {@code --pipeline} does the same, while a separate thread reads and
+ *     cleans the file. {@code --tiered} checks the structure of a file in a single cheap scan first, and
+ *     verifies it fully only if its structure is legal; the exit value is always the same, and so is the
+ *     error, unless the file also has an error of its types, scopes or methods before its first structural
+ *     error. {@code --structure} checks only the structure, in a single pass, and accepts files whose only
+ *     errors are of their types, scopes or methods. It takes precedence over the other modes, and
+ *     {@code --tiered} takes precedence over {@code --stream} and {@code --pipeline}. {@code --no-line-cache}
+ *     disables the cache of line classifications, which does not change the result.
+ * </p>
+ * <p>
+ *     The path may be a {@code .sjava} or a {@code .sjava.gz} file, or a {@code .zip}, {@code .tar},
+ *     {@code .tar.gz} or {@code .tgz} archive, whose {@code .sjava} and {@code .sjava.gz} entries are
+ *     verified in parallel by {@link BatchVerifier} on {@code --threads=N} threads, the number of processors
+ *     by default. The path {@code -} reads the code from the standard input, which holds many documents
+ *     separated by NUL characters with {@code --null-separated}, and prints a record of the name, the exit
+ *     value and the error of every document, separated by tabs. A path that starts with {@code @} is a list
+ *     of files, one on every line, which are verified by {@code --workers=N} worker JVMs that
+ *     {@link ShardCoordinator} starts and restarts when they crash, and whose results are recorded in the
+ *     {@link ResultJournal} given by {@code --journal=FILE}, so a stopped verification of the list can be
+ *     resumed.
+ * </p>
+ * <p>
+ *     {@code --output=jsonl} prints the result of every file as a JSON object on a line of its own, written
+ *     by {@link JsonLinesReporter}, and {@code --output=sarif} prints a single SARIF log of the errors,
+ *     written by {@link SarifReporter}; the statistics are then printed to the standard error.
+ *     {@code --dedup} reuses the result of a file for the later files whose cleaned lines are identical.
+ *     {@code --time-limit=MS} and {@code --memory-limit=BYTES} set the {@link VerificationLimits} of every
+ *     file. {@code --rule=CLASS}, which may be given many times, runs the {@link Rule} of the given class,
+ *     which has a public constructor without parameters, on the traversal of every file that is not in a
+ *     list.
+ * </p>
+ * <p>
+ *     An unknown option is taken as the path, so it is reported like any other invalid arguments.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class SjavacOptions {
+
+    // Formats
+    /** The default format of the statistics and the output. */
+    static final String TEXT_FORMAT = "text";
+    /** The format of the statistics as a single JSON object. */
+    static final String JSON_FORMAT = "json";
+    /** The format of the output as JSON Lines. */
+    static final String JSON_LINES_FORMAT = "jsonl";
+    /** The format of the output as a SARIF log. */
+    static final String SARIF_FORMAT = "sarif";
+    /** The path of the standard input. */
+    static final String STDIN_PATH = "-";
+
+    // Error messages
+    private static final String INVALID_ARG_COUNT = "Invalid number of arguments." +
+                                                    " Expected 1 argument but got: %d.";
+    private static final String INVALID_FILE_FORMAT = "Invalid file format.";
+    private static final String SEPARATED_WITHOUT_STDIN = "The --null-separated option requires the" +
+                                                          " standard input ('-').";
+    private static final String WORKERS_WITHOUT_LIST = "The --workers option requires a list of files" +
+                                                       " ('@file').";
+    private static final String JOURNAL_WITHOUT_LIST = "The --journal option requires a list of files" +
+                                                       " ('@file').";
+    private static final String RULE_WITH_LIST = "The --rule option cannot be used with a list of files" +
+                                                 " ('@file').";
+    private static final String INVALID_RULE = "Cannot load the rule '%s': %s";
+    private static final String INVALID_THREADS = "Invalid number of threads: '%s'.";
+    private static final String INVALID_WORKERS = "Invalid number of workers: '%s'.";
+    private static final String INVALID_TIME_LIMIT = "Invalid time limit: '%s'.";
+    private static final String INVALID_MEMORY_LIMIT = "Invalid memory limit: '%s'.";
+    private static final String UNKNOWN_STATS_FORMAT = "Unknown statistics format: '%s'.";
+    private static final String UNKNOWN_OUTPUT_FORMAT = "Unknown output format: '%s'.";
+
+    // Options
+    private static final String OPTION_PREFIX = "--";
+    private static final String STATS_OPTION = "--stats";
+    private static final String STATS_FORMAT_OPTION = "--stats=";
+    private static final String STREAM_OPTION = "--stream";
+    private static final String PIPELINE_OPTION = "--pipeline";
+    private static final String NO_LINE_CACHE_OPTION = "--no-line-cache";
+    private static final String TIERED_OPTION = "--tiered";
+    private static final String STRUCTURE_OPTION = "--structure";
+    private static final String THREADS_OPTION = "--threads=";
+    private static final String NULL_SEPARATED_OPTION = "--null-separated";
+    private static final String OUTPUT_OPTION = "--output=";
+    private static final String WORKERS_OPTION = "--workers=";
+    private static final String DEDUP_OPTION = "--dedup";
+    private static final String JOURNAL_OPTION = "--journal=";
+    private static final String TIME_LIMIT_OPTION = "--time-limit=";
+    private static final String MEMORY_LIMIT_OPTION = "--memory-limit=";
+    private static final String RULE_OPTION = "--rule=";
+    private static final String LIST_PREFIX = "@";
+
+    // Private fields, set once by parse
+    private String path;
+    private InputFormat format;
+    private String statsFormat; // null if no statistics are requested
+    private VerificationMode mode = VerificationMode.TWO_PASS;
+    private int lineCacheSize = CodeVerifier.DEFAULT_LINE_CACHE_SIZE;
+    private int threadCount;
+    private boolean isSeparated = false;
+    private String outputFormat = TEXT_FORMAT;
+    private int workerCount;
+    private boolean isDeduplicating = false;
+    private String journal; // null if no journal is kept
+    private VerificationLimits limits;
+    private List<Supplier<Rule>> rules;
+
+    /**
+     * Constructs the default options, which {@link #parse(String[])} then sets.
+     */
+    private SjavacOptions() {
+    }
+
+    /**
+     * Parses the program arguments.
+     * @param args The program arguments: the options, and then the path.
+     * @return The options.
+     * @throws IOException If the arguments are invalid, with the message to print.
+     */
+    static SjavacOptions parse(String[] args) throws IOException {
+        SjavacOptions options = new SjavacOptions();
+        String threads = null;
+        String workers = null;
+        String timeLimit = null;
+        String memoryLimit = null;
+        List<String> ruleClasses = new ArrayList<>();
+        int index = 0;
+        for (; index < args.length && isOption(args[index]); index++) {
+            String arg = args[index];
+            if (arg.startsWith(RULE_OPTION)) {
+                ruleClasses.add(arg.substring(RULE_OPTION.length()));
+            } else if (arg.startsWith(TIME_LIMIT_OPTION)) {
+                timeLimit = arg.substring(TIME_LIMIT_OPTION.length());
+            } else if (arg.startsWith(MEMORY_LIMIT_OPTION)) {
+                memoryLimit = arg.substring(MEMORY_LIMIT_OPTION.length());
+            } else if (arg.startsWith(JOURNAL_OPTION)) {
+                options.journal = arg.substring(JOURNAL_OPTION.length());
+            } else if (arg.equals(DEDUP_OPTION)) {
+                options.isDeduplicating = true;
+            } else if (arg.startsWith(WORKERS_OPTION)) {
+                workers = arg.substring(WORKERS_OPTION.length());
+            } else if (arg.startsWith(OUTPUT_OPTION)) {
+                options.outputFormat = arg.substring(OUTPUT_OPTION.length());
+            } else if (arg.startsWith(THREADS_OPTION)) {
+                threads = arg.substring(THREADS_OPTION.length());
+            } else if (arg.equals(NULL_SEPARATED_OPTION)) {
+                options.isSeparated = true;
+            } else if (arg.equals(NO_LINE_CACHE_OPTION)) {
+                options.lineCacheSize = 0;
+            } else if (arg.equals(STATS_OPTION)) {
+                options.statsFormat = TEXT_FORMAT;
+            } else if (arg.startsWith(STATS_FORMAT_OPTION)) {
+                options.statsFormat = arg.substring(STATS_FORMAT_OPTION.length());
+            } else {
+                options.mode = withMode(options.mode, arg);
+            }
+        }
+        options.validate(args.length - index == 1 ? args[index] : null, args.length - index, workers != null,
+                         !ruleClasses.isEmpty());
+        options.threadCount = parseCount(threads, INVALID_THREADS);
+        options.workerCount = parseCount(workers, INVALID_WORKERS);
+        options.limits = new VerificationLimits(parseLimit(timeLimit, INVALID_TIME_LIMIT),
+                                                parseLimit(memoryLimit, INVALID_MEMORY_LIMIT));
+        options.rules = loadRules(ruleClasses);
+        return options;
+    }
+
+    /**
+     * @return The path given in the program arguments.
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The format of the input, which is {@link InputFormat#SJAVA} for the standard input and a list.
+     */
+    InputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return {@code true} if the path is the standard input, {@code false} otherwise.
+     */
+    boolean isStdin() {
+        return path.equals(STDIN_PATH);
+    }
+
+    /**
+     * @return {@code true} if the path is a list of files, {@code false} otherwise.
+     */
+    boolean isList() {
+        return path.startsWith(LIST_PREFIX) && path.length() > LIST_PREFIX.length();
+    }
+
+    /**
+     * @return The path to the list of files, if the path is a list.
+     */
+    String getListPath() {
+        return path.substring(LIST_PREFIX.length());
+    }
+
+    /**
+     * @return The format in which statistics are requested, or {@code null} if they are not.
+     */
+    String getStatsFormat() {
+        return statsFormat;
+    }
+
+    /**
+     * @return The way to verify the files.
+     */
+    VerificationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return The maximal number of lines in the line cache, or 0 to disable it.
+     */
+    int getLineCacheSize() {
+        return lineCacheSize;
+    }
+
+    /**
+     * @return The number of threads to verify archives with.
+     */
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return Whether the standard input holds many documents separated by NUL characters.
+     */
+    boolean isSeparated() {
+        return isSeparated;
+    }
+
+    /**
+     * @return The format in which the results are printed.
+     */
+    String getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * @return The number of worker JVMs to verify a list of files with.
+     */
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * @return Whether to reuse the result of every distinct content for the files with the same content.
+     */
+    boolean isDeduplicating() {
+        return isDeduplicating;
+    }
+
+    /**
+     * @return The path to the journal of a list of files, or {@code null} to keep no journal.
+     */
+    String getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return The limits on the verification of every file.
+     */
+    VerificationLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return A factory of every rule to run, in the order of the options.
+     */
+    List<Supplier<Rule>> getRules() {
+        return rules;
+    }
+
+    /**
+     * Checks the formats and the path, and the options that require a kind of path.
+     * @param path The path, or {@code null} if there is not exactly one argument after the options.
+     * @param argCount The number of arguments after the options.
+     * @param hasWorkers Whether the {@code --workers} option was given.
+     * @param hasRules Whether the {@code --rule} option was given.
+     * @throws IOException If the formats, the path or the options are invalid.
+     */
+    private void validate(String path, int argCount, boolean hasWorkers, boolean hasRules)
+            throws IOException {
+        if (statsFormat != null && !statsFormat.equals(TEXT_FORMAT) && !statsFormat.equals(JSON_FORMAT)) {
+            throw new IOException(String.format(UNKNOWN_STATS_FORMAT, statsFormat));
+        }
+        if (!outputFormat.equals(TEXT_FORMAT) && !outputFormat.equals(JSON_LINES_FORMAT) &&
+            !outputFormat.equals(SARIF_FORMAT)) {
+            throw new IOException(String.format(UNKNOWN_OUTPUT_FORMAT, outputFormat));
+        }
+        if (path == null || path.startsWith(OPTION_PREFIX)) { // Invalid argument count.
+            throw new IOException(String.format(INVALID_ARG_COUNT, argCount));
+        }
+        this.path = path;
+        format = isStdin() || isList() ? InputFormat.SJAVA : InputFormat.of(path);
+        if (format == null) { // Make sure that file format is valid
+            throw new IOException(INVALID_FILE_FORMAT);
+        }
+        if (isSeparated && !isStdin()) {
+            throw new IOException(SEPARATED_WITHOUT_STDIN);
+        }
+        if (hasWorkers && !isList()) {
+            throw new IOException(WORKERS_WITHOUT_LIST);
+        }
+        if (journal != null && !isList()) {
+            throw new IOException(JOURNAL_WITHOUT_LIST);
+        }
+        if (hasRules && isList()) {
+            throw new IOException(RULE_WITH_LIST);
+        }
+    }
+
+    /**
+     * @param arg A program argument.
+     * @return {@code true} if the argument is a known option, {@code false} otherwise.
+     */
+    private static boolean isOption(String arg) {
+        return arg.equals(STATS_OPTION) || arg.startsWith(STATS_FORMAT_OPTION) ||
+               arg.equals(STREAM_OPTION) || arg.equals(PIPELINE_OPTION) || arg.equals(NO_LINE_CACHE_OPTION) ||
+               arg.equals(TIERED_OPTION) || arg.equals(STRUCTURE_OPTION) || arg.startsWith(THREADS_OPTION) ||
+               arg.equals(NULL_SEPARATED_OPTION) || arg.startsWith(OUTPUT_OPTION) ||
+               arg.startsWith(WORKERS_OPTION) || arg.equals(DEDUP_OPTION) ||
+               arg.startsWith(JOURNAL_OPTION) || arg.startsWith(TIME_LIMIT_OPTION) ||
+               arg.startsWith(MEMORY_LIMIT_OPTION) || arg.startsWith(RULE_OPTION);
+    }
+
+    /**
+     * Applies a mode option, where {@code --structure} takes precedence over {@code --tiered}, which takes
+     * precedence over {@code --pipeline}, which takes precedence over {@code --stream}.
+     * @param mode The mode given by the previous options.
+     * @param option The mode option.
+     * @return The mode given by the options so far.
+     */
+    private static VerificationMode withMode(VerificationMode mode, String option) {
+        switch (option) {
+            case STREAM_OPTION:
+                return mode == VerificationMode.TWO_PASS ? VerificationMode.STREAMING : mode;
+            case PIPELINE_OPTION:
+                return mode == VerificationMode.TWO_PASS || mode == VerificationMode.STREAMING ?
+                       VerificationMode.PIPELINED : mode;
+            case TIERED_OPTION:
+                return mode == VerificationMode.STRUCTURE ? mode : VerificationMode.TIERED;
+            default: // STRUCTURE_OPTION
+                return VerificationMode.STRUCTURE;
+        }
+    }
+
+    /**
+     * Loads the classes of the rules given by the {@code --rule} option.
+     * <p>
+     *     Every rule is created once here, so a rule that cannot be created is reported before any file is
+     *     verified.
+     * </p>
+     * @param ruleClasses The names of the classes of the rules.
+     * @return A factory of every rule, in the order of the options.
+     * @throws IOException If a class cannot be loaded, is not a {@link Rule}, or cannot be created.
+     */
+    private static List<Supplier<Rule>> loadRules(List<String> ruleClasses) throws IOException {
+        List<Supplier<Rule>> rules = new ArrayList<>(ruleClasses.size());
+        for (String className : ruleClasses) {
+            Constructor<? extends Rule> constructor;
+            try {
+                constructor = Class.forName(className).asSubclass(Rule.class).getConstructor();
+                constructor.newInstance();
+            } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+                throw new IOException(String.format(INVALID_RULE, className, e));
+            }
+            rules.add(() -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) { // Was created above
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        return rules;
+    }
+
+    /**
+     * Parses the value of the {@code --threads} or the {@code --workers} option.
+     * @param value The value of the option, or {@code null} if it was not given.
+     * @param error The error to report if the value is invalid.
+     * @return The number, which is the number of processors by default.
+     * @throws IOException If the value is not a positive number.
+     */
+    private static int parseCount(String value, String error) throws IOException {
+        if (value == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int count = Integer.parseInt(value);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException ignored) { // Reported below
+        }
+        throw new IOException(String.format(error, value));
+    }
+
+    /**
+     * Parses the value of the {@code --time-limit} or the {@code --memory-limit} option.
+     * @param value The value of the option, or {@code null} if it was not given.
+     * @param error The error to report if the value is invalid.
+     * @return The limit, or 0 for no limit.
+     * @throws IOException If the value is not a positive number.
+     */
+    private static long parseLimit(String value, String error) throws IOException {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            long limit = Long.parseLong(value);
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException ignored) { // Reported below
+        }
+        throw new IOException(String.format(error, value));
+    }
+
+}
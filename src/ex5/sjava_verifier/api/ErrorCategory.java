@@ -0,0 +1,26 @@
+package ex5.sjava_verifier.api;
+
+/**
+ * The category of the error that made a verification fail.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum ErrorCategory {
+    /** The input is valid. */
+    NONE,
+    /** The input could not be read. */
+    IO,
+    /** A variable is declared, assigned or used illegally. */
+    VARIABLE,
+    /** A variable is declared with an illegal type. */
+    TYPE,
+    /** A line is illegal. */
+    SYNTAX,
+    /** A method declaration or a method call is illegal. */
+    METHOD,
+    /** A condition of an if or a while statement is illegal. */
+    CONDITION,
+    /** The verification exceeded its limit on time or on allocated memory, so the input was not verified. */
+    TIMEOUT
+}
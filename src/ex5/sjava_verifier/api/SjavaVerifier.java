@@ -0,0 +1,335 @@
+package ex5.sjava_verifier.api;
+
+import ex5.sjava_verifier.rules.Diagnostic;
+import ex5.sjava_verifier.rules.Rule;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.verifier.IllegalTypeException;
+import ex5.sjava_verifier.verifier.LimitExceededException;
+import ex5.sjava_verifier.verifier.SyntaxException;
+import ex5.sjava_verifier.verifier.VerifierSession;
+import ex5.sjava_verifier.verifier.Watchdog;
+import ex5.sjava_verifier.verifier.condition_management.ConditionException;
+import ex5.sjava_verifier.verifier.method_management.MethodException;
+import ex5.sjava_verifier.verifier.variable_management.VarException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Verifies s-java code from files or from memory, for embedding the verifier in other programs.
+ * <p>
+ *     Every call returns a {@link VerificationResult} instead of printing the error or exiting, and
+ *     gives exactly the result of the command line verifier for the same code.
+ * </p>
+ * <p>
+ *     This class is thread-safe: concurrent calls on different inputs are allowed. Every thread verifies
+ *     with its own {@link VerifierSession}, which is reused for the next call on the same thread.
+ *     The timings and counters of a call are added to the
+ *     {@link ex5.sjava_verifier.statistics.VerifierStats VerifierStats} attached to the calling thread.
+ * </p>
+ * <p>
+ *     Every call is stopped once it exceeds the {@link VerificationLimits} of the verifier, and returns a
+ *     {@link VerificationResult#timeout(String, long) timeout} instead. The first limited verifier in the
+ *     JVM verifies a few small inputs in every mode when it is constructed, so the loading of the classes
+ *     of the verifier is not counted in the limits of the first input. An unexpected exception of the
+ *     verifier or of a rule does not escape a call either, and is returned as an
+ *     {@link VerificationResult#error(String) error}.
+ * </p>
+ * <p>
+ *     The {@link Rule rules} of the verifier run on the same traversal as the verification, and their
+ *     diagnostics are {@link VerificationResult#getDiagnostics() attached} to the result. Every thread
+ *     creates its own instances of the rules, so a rule does not have to be thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class SjavaVerifier {
+
+    // Constants
+    private static final String TEXT_SOURCE_NAME = "<text>";
+    private static final String INTERNAL_ERROR = "Internal error while verifying the input: ";
+
+    // Private fields
+    private final VerificationMode mode;
+    private final VerificationLimits limits;
+    private final ThreadLocal<VerifierSession> sessions;
+
+    /**
+     * Constructs a verifier that verifies files in two passes, with a line cache of the default size.
+     */
+    public SjavaVerifier() {
+        this(VerificationMode.TWO_PASS, CodeVerifier.DEFAULT_LINE_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a verifier.
+     * @param mode The way to verify files and streams. Inputs in memory are verified in two passes, since
+     *             they are already held in memory, unless the mode verifies them in tiers or only their
+     *             structure.
+     * @param lineCacheSize The maximal number of lines in the line cache of every thread, or 0 to disable it.
+     */
+    public SjavaVerifier(VerificationMode mode, int lineCacheSize) {
+        this(mode, lineCacheSize, VerificationLimits.NONE);
+    }
+
+    /**
+     * Constructs a verifier whose verifications are limited.
+     * @param mode The way to verify files and streams. Inputs in memory are verified in two passes, since
+     *             they are already held in memory, unless the mode verifies them in tiers or only their
+     *             structure.
+     * @param lineCacheSize The maximal number of lines in the line cache of every thread, or 0 to disable it.
+     * @param limits The limits on every verification.
+     */
+    public SjavaVerifier(VerificationMode mode, int lineCacheSize, VerificationLimits limits) {
+        this(mode, lineCacheSize, limits, List.of());
+    }
+
+    /**
+     * Constructs a verifier whose verifications are limited, and which runs the given rules.
+     * @param mode The way to verify files and streams. Inputs in memory are verified in two passes, since
+     *             they are already held in memory, unless the mode verifies them in tiers or only their
+     *             structure. The rules do not run when only the structure is verified.
+     * @param lineCacheSize The maximal number of lines in the line cache of every thread, or 0 to disable it.
+     * @param limits The limits on every verification.
+     * @param rules The factories of the rules, which are called once on every thread that verifies inputs.
+     */
+    public SjavaVerifier(VerificationMode mode, int lineCacheSize, VerificationLimits limits,
+                         List<? extends Supplier<? extends Rule>> rules) {
+        this.mode = Objects.requireNonNull(mode);
+        this.limits = Objects.requireNonNull(limits);
+        List<Supplier<? extends Rule>> ruleFactories = List.copyOf(rules);
+        this.sessions = ThreadLocal.withInitial(
+                () -> new VerifierSession(lineCacheSize, createRules(ruleFactories))
+        );
+        if (!limits.isNone()) {
+            WarmUp.ensure(); // Loads the classes of the verifier before any limit is measured
+        }
+    }
+
+    /**
+     * Verifies the given file.
+     * @param file The path to the file to verify.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(Path file) {
+        return verify(session -> session.verifyFile(file.toString(), mode));
+    }
+
+    /**
+     * Verifies the content of the given stream, such as a decompressed file or an entry of an archive,
+     * decoded with the default charset like a file.
+     * @param input The stream to verify, which is read like a file in the mode of this verifier.
+     *              It is closed when this method returns.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(InputStream input, String sourceName) {
+        return verify(session -> session.verifyInput(input, sourceName, mode));
+    }
+
+    /**
+     * Verifies the given text as the content of a file.
+     * @param text The text to verify.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(CharSequence text) {
+        return verify(text, TEXT_SOURCE_NAME);
+    }
+
+    /**
+     * Verifies the given text as the content of a file.
+     * @param text The text to verify.
+     * @param sourceName The name of the source of the text, used when reporting events.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(CharSequence text, String sourceName) {
+        return verify(session -> session.verifyText(text, sourceName, mode));
+    }
+
+    /**
+     * Verifies lines that were already cleaned by {@link ex5.sjava_verifier.preprocessor.FileCleaner
+     * FileCleaner}, such as lines whose content was compared with other files before it is verified.
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code,
+     *                   in the order of the lines. The map is not changed.
+     * @param sourceName The name of the source of the lines, used when reporting events.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(Map<Long, String> cleanLines, String sourceName) {
+        return verify(session -> session.verify(cleanLines, sourceName, mode));
+    }
+
+    /**
+     * Cleans the content of the given stream into the given map, like the first of the two passes of a
+     * verification, without verifying it.
+     * @param input The stream to clean, which is read like a file. It is closed when this method returns.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     * @return A valid result if the stream was cleaned, or the result of a stream that could not be read or
+     *         whose cleaning exceeded the limits of this verifier.
+     */
+    public VerificationResult clean(InputStream input, String sourceName, Map<Long, String> cleanLines) {
+        return verify(session -> session.cleanInput(input, sourceName, cleanLines));
+    }
+
+    /**
+     * Verifies the given bytes as the content of a file, decoded with the default charset like a file.
+     * @param bytes The bytes to verify, from their position to their limit. The position is not changed.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(ByteBuffer bytes) {
+        return verify(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Verifies the given bytes as the content of a file, decoded with the given charset.
+     * Malformed input is replaced, like when reading a file.
+     * @param bytes The bytes to verify, from their position to their limit. The position is not changed.
+     * @param charset The charset of the bytes.
+     * @return The result of the verification.
+     */
+    public VerificationResult verify(ByteBuffer bytes, Charset charset) {
+        return verify(session -> {
+            CharBuffer text = charset.newDecoder()
+                                     .onMalformedInput(CodingErrorAction.REPLACE)
+                                     .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                                     .decode(bytes.duplicate());
+            session.verifyText(text, TEXT_SOURCE_NAME, mode);
+        });
+    }
+
+    /**
+     * Runs the given verification with the session of the current thread, and turns its outcome and the
+     * diagnostics of the rules into a result.
+     * @param verification The verification to run.
+     * @return The result of the verification.
+     */
+    private VerificationResult verify(Verification verification) {
+        VerifierSession session = sessions.get();
+        Watchdog.start(limits.getTimeLimitMillis(), limits.getMemoryLimitBytes());
+        try {
+            VerificationResult result = run(verification, session);
+            List<Diagnostic> diagnostics = session.getDiagnostics();
+            return diagnostics.isEmpty() ? result : result.withDiagnostics(diagnostics);
+        } finally {
+            Watchdog.stop();
+            session.reset(); // Do not hold the lines of the input until the next call
+        }
+    }
+
+    /**
+     * Runs the given verification with the given session, and turns its outcome into a result.
+     * @param verification The verification to run.
+     * @param session The session of the current thread.
+     * @return The result of the verification, without the diagnostics of the rules. An unexpected exception
+     *         is an error result, so no exception escapes.
+     */
+    private static VerificationResult run(Verification verification, VerifierSession session) {
+        try {
+            verification.run(session);
+            return VerificationResult.valid();
+        } catch (IOException e) { // Error in reading the input
+            return VerificationResult.error(e.getMessage());
+        } catch (VarException e) {
+            return VerificationResult.invalid(ErrorCategory.VARIABLE, e.getMessage(), e.getLineNumber());
+        } catch (IllegalTypeException e) {
+            return VerificationResult.invalid(ErrorCategory.TYPE, e.getMessage(), e.getLineNumber());
+        } catch (SyntaxException e) {
+            return VerificationResult.invalid(ErrorCategory.SYNTAX, e.getMessage(), e.getLineNumber());
+        } catch (MethodException e) {
+            return VerificationResult.invalid(ErrorCategory.METHOD, e.getMessage(), e.getLineNumber());
+        } catch (ConditionException e) {
+            return VerificationResult.invalid(ErrorCategory.CONDITION, e.getMessage(), e.getLineNumber());
+        } catch (LimitExceededException e) {
+            return VerificationResult.timeout(e.getMessage(), e.getLineNumber());
+        } catch (RuntimeException e) { // A bug of the verifier or of a rule, which fails only this input
+            return VerificationResult.error(INTERNAL_ERROR + e);
+        }
+    }
+
+    /**
+     * Creates the rules of a session.
+     * @param ruleFactories The factories of the rules.
+     * @return A new instance of every rule, in the order of the factories.
+     */
+    private static List<Rule> createRules(List<Supplier<? extends Rule>> ruleFactories) {
+        List<Rule> rules = new ArrayList<>(ruleFactories.size());
+        for (Supplier<? extends Rule> factory : ruleFactories) {
+            rules.add(factory.get());
+        }
+        return rules;
+    }
+
+    /**
+     * Loads and initializes the classes of the verifier once in the JVM, by verifying a valid and an
+     * invalid sample in every mode when this class is initialized, without limits.
+     */
+    private static final class WarmUp {
+
+        // Constants
+        private static final String VALID_SAMPLE = String.join(System.lineSeparator(),
+                "final int a = 1;", "double b = 2.5, c;", "String s = \"s\";", "char h = 'h';",
+                "boolean d = true;", "void foo(int x, final String y) {", "// A comment", "c = a;",
+                "if (d || x) {", "while (b && true) {", "foo(x, y);", "}", "}", "return;", "}");
+        private static final String INVALID_SAMPLE = "int a = \"s\";";
+        private static final String SAMPLE_NAME = "<warm-up>";
+
+        static {
+            warmUp();
+        }
+
+        /**
+         * Makes sure that the verifier was warmed up: the first call initializes this class, which verifies
+         * the samples, and later calls do nothing.
+         */
+        private static void ensure() {}
+
+        /**
+         * Verifies the samples, without counting them in the statistics of the current thread.
+         */
+        private static void warmUp() {
+            VerifierStats stats = VerifierStats.current();
+            VerifierStats.detach();
+            try {
+                for (VerificationMode mode : VerificationMode.values()) {
+                    SjavaVerifier verifier = new SjavaVerifier(mode, CodeVerifier.DEFAULT_LINE_CACHE_SIZE);
+                    for (String sample : List.of(VALID_SAMPLE, INVALID_SAMPLE)) {
+                        byte[] bytes = sample.getBytes(Charset.defaultCharset());
+                        verifier.verify(new ByteArrayInputStream(bytes), SAMPLE_NAME);
+                        verifier.verify(sample, SAMPLE_NAME);
+                    }
+                }
+            } finally {
+                if (stats != null) {
+                    stats.attach();
+                }
+            }
+        }
+    }
+
+    /**
+     * A verification of a single input with a session.
+     */
+    @FunctionalInterface
+    private interface Verification {
+        /**
+         * Runs the verification.
+         * @param session The session to verify with.
+         * @throws IOException If an error occurs while reading the input.
+         */
+        void run(VerifierSession session) throws IOException;
+    }
+
+}
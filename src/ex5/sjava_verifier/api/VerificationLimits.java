@@ -0,0 +1,62 @@
+package ex5.sjava_verifier.api;
+
+/**
+ * The immutable limits on the verification of a single input, which stop a pathological input from holding
+ * its thread for too long.
+ * <p>
+ *     The limits are checked cooperatively, on every line of every pass while the input is read, cleaned and
+ *     verified, so a verification may overrun its limits by the cost of a single line, whose matchers run in
+ *     time linear in its length. An input whose verification exceeded a limit is reported with
+ *     {@link VerificationResult#timeout(String, long)}, whose exit status is
+ *     {@value VerificationResult#EXIT_LIMIT_EXCEEDED}, and the thread moves on to the next input.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class VerificationLimits {
+
+    /** No limits. */
+    public static final VerificationLimits NONE = new VerificationLimits(0, 0);
+
+    // Private fields
+    private final long timeLimitMillis;
+    private final long memoryLimitBytes;
+
+    /**
+     * Constructs limits.
+     * @param timeLimitMillis The maximal wall time of a verification in milliseconds, or 0 for no limit.
+     * @param memoryLimitBytes The maximal number of bytes that a verification may allocate on the heap, or
+     *                         0 for no limit. It is ignored if the JVM cannot measure the allocations of a
+     *                         thread.
+     */
+    public VerificationLimits(long timeLimitMillis, long memoryLimitBytes) {
+        if (timeLimitMillis < 0 || memoryLimitBytes < 0) {
+            throw new IllegalArgumentException(timeLimitMillis + ", " + memoryLimitBytes);
+        }
+        this.timeLimitMillis = timeLimitMillis;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+
+    /**
+     * @return The maximal wall time of a verification in milliseconds, or 0 if there is no limit.
+     */
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    /**
+     * @return The maximal number of bytes that a verification may allocate, or 0 if there is no limit.
+     */
+    public long getMemoryLimitBytes() {
+        return memoryLimitBytes;
+    }
+
+    /**
+     * @return {@code true} if there is no limit, {@code false} otherwise.
+     */
+    public boolean isNone() {
+        return timeLimitMillis == 0 && memoryLimitBytes == 0;
+    }
+
+}
@@ -0,0 +1,41 @@
+package ex5.sjava_verifier.api;
+
+import ex5.sjava_verifier.verifier.VerifierSession;
+
+/**
+ * The ways in which a {@link SjavaVerifier} can verify a file.
+ * <p>
+ *     All the modes except {@link #STRUCTURE} accept exactly the same files. They differ in the memory they
+ *     use, and in the error they report when a file has several errors. Every entry point of a
+ *     {@link VerifierSession}, such as {@link VerifierSession#verifyFile(String, VerificationMode)}, takes
+ *     the mode to verify its input in.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum VerificationMode {
+    /**
+     * Reads the whole file, collects its methods and then verifies it.
+     */
+    TWO_PASS,
+    /**
+     * Verifies the file in a single pass while it is read, and stops reading at the first error.
+     */
+    STREAMING,
+    /**
+     * Verifies the file in a single pass while a separate thread reads it.
+     */
+    PIPELINED,
+    /**
+     * Reads the whole file, checks its structure in a single cheap scan, and verifies it fully only if its
+     * structure is legal.
+     */
+    TIERED,
+    /**
+     * Checks only the structure of the file in a single pass while it is read. Unlike the other modes, it
+     * accepts files whose only errors are in the types, the scopes or the methods of their variables and
+     * calls.
+     */
+    STRUCTURE
+}
@@ -0,0 +1,208 @@
+package ex5.sjava_verifier.api;
+
+import ex5.sjava_verifier.rules.Diagnostic;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The immutable result of verifying a single input.
+ * <p>
+ *     The exit status and the message are exactly what the command line verifier exits with and prints:
+ *     {@value #EXIT_VALID} and no message for a valid input, {@value #EXIT_INVALID} and the error for an
+ *     invalid input, {@value #EXIT_ERROR} and the reason for an input that could not be read, and
+ *     {@value #EXIT_LIMIT_EXCEEDED} and the limit for an input whose verification exceeded the
+ *     {@link VerificationLimits limits} of the verifier.
+ * </p>
+ * <p>
+ *     A result may also carry the {@link Diagnostic diagnostics} of the
+ *     {@link ex5.sjava_verifier.rules.Rule rules} of the verifier, which do not change its exit status.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class VerificationResult {
+
+    /** The exit status of a valid input. */
+    public static final int EXIT_VALID = 0;
+    /** The exit status of an invalid input. */
+    public static final int EXIT_INVALID = 1;
+    /** The exit status of an input that could not be read or verified. */
+    public static final int EXIT_ERROR = 2;
+    /** The exit status of an input whose verification exceeded the limits of the verifier. */
+    public static final int EXIT_LIMIT_EXCEEDED = 3;
+
+    // Constants
+    private static final String LINE_PREFIX = " in line "; // As in "SyntaxException in line 3 -> ..."
+    private static final String LINE_SEPARATOR = " -> ";
+    private static final VerificationResult VALID = new VerificationResult(EXIT_VALID, null, 0,
+                                                                           ErrorCategory.NONE, List.of());
+
+    // Private fields
+    private final int exitStatus;
+    private final String message;
+    private final long lineNumber;
+    private final ErrorCategory category;
+    private final List<Diagnostic> diagnostics;
+
+    /**
+     * Constructs a result.
+     * @param exitStatus The exit status.
+     * @param message The error message, or {@code null} for a valid input.
+     * @param lineNumber The line number of the error, or 0 if it is not known.
+     * @param category The category of the error.
+     * @param diagnostics The diagnostics of the rules.
+     */
+    private VerificationResult(int exitStatus, String message, long lineNumber, ErrorCategory category,
+                               List<Diagnostic> diagnostics) {
+        this.exitStatus = exitStatus;
+        this.message = message;
+        this.lineNumber = lineNumber;
+        this.category = category;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * @return The result of a valid input.
+     */
+    public static VerificationResult valid() {
+        return VALID;
+    }
+
+    /**
+     * Returns the result of an invalid input.
+     * @param category The category of the error, which is not {@link ErrorCategory#NONE},
+     *                 {@link ErrorCategory#IO} or {@link ErrorCategory#TIMEOUT}.
+     * @param message The error message.
+     * @param lineNumber The line number of the error, or 0 if it is not known.
+     * @return The result.
+     */
+    public static VerificationResult invalid(ErrorCategory category, String message, long lineNumber) {
+        if (category == ErrorCategory.NONE || category == ErrorCategory.IO ||
+            category == ErrorCategory.TIMEOUT) {
+            throw new IllegalArgumentException(category.toString());
+        }
+        return new VerificationResult(EXIT_INVALID, message, lineNumber, category, List.of());
+    }
+
+    /**
+     * Returns the result of an input that could not be read.
+     * @param message The reason the input could not be read.
+     * @return The result.
+     */
+    public static VerificationResult error(String message) {
+        return new VerificationResult(EXIT_ERROR, message, 0, ErrorCategory.IO, List.of());
+    }
+
+    /**
+     * Returns the result of an input whose verification exceeded the limits of the verifier, and was
+     * stopped before it was complete.
+     * @param message The limit that was exceeded.
+     * @param lineNumber The line at which the verification was stopped, or 0 if it is not known.
+     * @return The result.
+     */
+    public static VerificationResult timeout(String message, long lineNumber) {
+        return new VerificationResult(EXIT_LIMIT_EXCEEDED, message, lineNumber, ErrorCategory.TIMEOUT,
+                                      List.of());
+    }
+
+    /**
+     * Returns this result with the given diagnostics of the rules, in place of its own.
+     * @param diagnostics The diagnostics, in the order they were reported.
+     * @return The result.
+     */
+    public VerificationResult withDiagnostics(List<Diagnostic> diagnostics) {
+        return new VerificationResult(exitStatus, message, lineNumber, category, List.copyOf(diagnostics));
+    }
+
+    /**
+     * @return {@code true} if the input is valid, {@code false} otherwise.
+     */
+    public boolean isValid() {
+        return exitStatus == EXIT_VALID;
+    }
+
+    /**
+     * @return {@code true} if the verification exceeded the limits of the verifier, {@code false} otherwise.
+     */
+    public boolean isTimeout() {
+        return category == ErrorCategory.TIMEOUT;
+    }
+
+    /**
+     * @return The exit status of the command line verifier for the input.
+     */
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    /**
+     * @return The error message, or {@code null} if the input is valid.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the error message without the kind of the error and its line, which the category and the line
+     * number already give, such as {@code Illegal line of code: a} for the message
+     * {@code SyntaxException in line 1 -> Illegal line of code: a}.
+     * @return The bare error message, or {@code null} if the input is valid.
+     */
+    public String getBareMessage() {
+        if (exitStatus != EXIT_INVALID || lineNumber <= 0) {
+            return message;
+        }
+        String prefix = LINE_PREFIX + lineNumber + LINE_SEPARATOR;
+        int start = message.indexOf(prefix);
+        return start < 0 ? message : message.substring(start + prefix.length());
+    }
+
+    /**
+     * @return The line number of the error, or 0 if the input is valid or the line is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return The category of the error, or {@link ErrorCategory#NONE} if the input is valid.
+     */
+    public ErrorCategory getCategory() {
+        return category;
+    }
+
+    /**
+     * @return The diagnostics of the rules of the verifier, in the order they were reported, or an empty list
+     *         if there are none.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof VerificationResult)) {
+            return false;
+        }
+        VerificationResult result = (VerificationResult) other;
+        return exitStatus == result.exitStatus && lineNumber == result.lineNumber &&
+               category == result.category && Objects.equals(message, result.message) &&
+               diagnostics.equals(result.diagnostics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(exitStatus, message, lineNumber, category, diagnostics);
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "valid" : exitStatus + " " + category + " (line " + lineNumber + "): " + message;
+    }
+
+}
@@ -0,0 +1,30 @@
+package ex5.sjava_verifier.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the files of an archive one after the other, holding only the current file in memory.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+interface ArchiveReader extends Closeable {
+
+    /**
+     * Moves to the next file of the archive, skipping the rest of the current one.
+     * @return The path of the file in the archive, or {@code null} if there are no more files.
+     * @throws IOException If an error occurs while reading the archive, or if it is not a valid archive.
+     */
+    String nextFile() throws IOException;
+
+    /**
+     * Reads the whole content of the current file into memory, unless it is larger than the given size.
+     * @param maxSize The maximal number of bytes to read.
+     * @return The content of the file, or {@code null} if the file is larger than the given size, in which
+     *         case the rest of it is skipped by {@link #nextFile()}.
+     * @throws IOException If an error occurs while reading the archive.
+     */
+    byte[] readFile(int maxSize) throws IOException;
+
+}
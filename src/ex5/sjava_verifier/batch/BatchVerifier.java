@@ -0,0 +1,462 @@
+package ex5.sjava_verifier.batch;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.preprocessor.FileCleaner;
+import ex5.sjava_verifier.statistics.VerifierStats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Verifies s-java files that are compressed or bundled in archives, without extracting them to the disk.
+ * <p>
+ *     An input may be a {@code .sjava} file, a {@code .sjava.gz} file, or a zip or tar archive, which may
+ *     be compressed with gzip. Every {@code .sjava} and {@code .sjava.gz} entry of an archive is verified,
+ *     and its result is reported with the path of the archive followed by
+ *     {@value EntryResult#ENTRY_SEPARATOR} and the path of the entry.
+ * </p>
+ * <p>
+ *     The archive is decompressed as a stream on the calling thread, and its entries are verified in
+ *     parallel by a pool of threads. Only the entries that wait for or are under verification are held in
+ *     memory, up to {@value #PENDING_PER_THREAD} entries for every thread. The results are reported on the
+ *     calling thread in the order of the entries, each as soon as it and the entries before it are verified.
+ * </p>
+ * <p>
+ *     Since the entries are verified in parallel while the archive is read on, every entry is read whole into
+ *     memory before it is verified, rather than streamed to the verifier. An entry larger than
+ *     {@value #MAX_ENTRY_SIZE} bytes is therefore not read, and is reported as an error. An entry whose
+ *     verification fails unexpectedly is reported as an error too, and the other entries are verified on.
+ * </p>
+ * <p>
+ *     A stream, such as the standard input, may also hold many documents separated by NUL characters, which
+ *     are verified one after the other while they are read.
+ * </p>
+ * <p>
+ *     A batch verifier may also verify every distinct content only once, and reuse its result for the other
+ *     files of the batch with the same content, as described by {@link ResultCache}. The results are the
+ *     same, and the reused ones are reported as duplicates.
+ * </p>
+ * <p>
+ *     If statistics are attached to the calling thread, the statistics of every entry are merged into them.
+ *     A batch verifier must be {@link #close() closed} to stop its threads.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class BatchVerifier implements AutoCloseable {
+
+    // Constants
+    private static final int PENDING_PER_THREAD = 2;
+    /** The maximal size in bytes of an entry of an archive, which is held in memory while it is verified. */
+    public static final int MAX_ENTRY_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 65536;
+    private static final String THREAD_NAME = "sjava-batch-";
+
+    // Errors
+    private static final String ARCHIVE_ERROR = "An error occurred while reading the archive: ";
+    private static final String INPUT_ERROR = "An error occurred while reading the input: ";
+    private static final String UNSUPPORTED_FORMAT = "Unsupported input format: '%s'.";
+    private static final String TOO_LARGE_ENTRY = "The entry is larger than the limit of %d bytes.";
+    private static final String INTERNAL_ERROR = "Internal error while verifying the entry: ";
+
+    // Private fields
+    private final SjavaVerifier verifier;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final ResultCache cache;
+
+    /**
+     * Constructs a batch verifier that verifies every file.
+     * @param verifier The verifier to verify every file with.
+     * @param threads The number of threads to verify the entries of archives with.
+     */
+    public BatchVerifier(SjavaVerifier verifier, int threads) {
+        this(verifier, threads, false);
+    }
+
+    /**
+     * Constructs a batch verifier.
+     * @param verifier The verifier to verify every file with.
+     * @param threads The number of threads to verify the entries of archives with.
+     * @param isDeduplicating Whether to verify every distinct content only once, and reuse its result for
+     *                        the other files with the same content, for as long as this verifier is used.
+     */
+    public BatchVerifier(SjavaVerifier verifier, int threads, boolean isDeduplicating) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(Integer.toString(threads));
+        }
+        this.verifier = verifier;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, THREAD_NAME + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPending = PENDING_PER_THREAD * threads;
+        this.cache = isDeduplicating ? new ResultCache(verifier) : null;
+    }
+
+    /**
+     * Verifies the given input, and reports the result of every file in it.
+     * <p>
+     *     A single file is verified on the calling thread. An archive that cannot be read is reported as a
+     *     single result with the path of the archive, after the results of the entries that were read.
+     * </p>
+     * @param input The path to the input, whose format is recognized by {@link InputFormat#of(String)}.
+     * @param listener Receives the result of every file, on the calling thread.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     * @throws IllegalArgumentException If the format of the input is not supported.
+     */
+    public void verify(Path input, Consumer<EntryResult> listener) throws InterruptedException {
+        String path = input.toString();
+        InputFormat format = InputFormat.of(path);
+        if (format == null) {
+            throw new IllegalArgumentException(String.format(UNSUPPORTED_FORMAT, path));
+        }
+        switch (format) {
+            case SJAVA:
+            case SJAVA_GZIP:
+                countFile(VerifierStats.current());
+                if (format == InputFormat.SJAVA && cache == null) { // Read in the mode of the verifier
+                    long start = System.nanoTime();
+                    VerificationResult result = verifier.verify(input);
+                    listener.accept(new EntryResult(path, result, System.nanoTime() - start));
+                } else {
+                    listener.accept(verifyFile(path, format, () -> new FileInputStream(path)));
+                }
+                break;
+            default:
+                verifyArchive(input, format, listener);
+        }
+    }
+
+    /**
+     * Verifies the documents of the given stream one after the other on the calling thread, reading every
+     * document as a stream while it is verified, and reports the result of every document.
+     * <p>
+     *     If the documents are separated by NUL characters, the path of every document is the name of the
+     *     source followed by {@value EntryResult#DOCUMENT_SEPARATOR} and the number of the document, starting
+     *     at 1. Otherwise, the whole stream is a single document whose path is the name of the source.
+     *     A stream that cannot be read is reported as a single result with the name of the source, after the
+     *     results of the documents that were read.
+     * </p>
+     * @param input The stream to verify, which is read up to its end and is not closed.
+     * @param sourceName The name of the source of the stream.
+     * @param isSeparated Whether the documents of the stream are separated by NUL characters.
+     * @param listener Receives the result of every document, on the calling thread.
+     */
+    public void verifyDocuments(InputStream input, String sourceName, boolean isSeparated,
+                                Consumer<EntryResult> listener) {
+        VerifierStats stats = VerifierStats.current();
+        DocumentInputStream documents = new DocumentInputStream(input, isSeparated);
+        int documentCount = 0;
+        try {
+            while (documents.nextDocument() || (!isSeparated && documentCount == 0)) { // An empty file
+                documentCount++;
+                String path = isSeparated ? sourceName + EntryResult.DOCUMENT_SEPARATOR + documentCount :
+                              sourceName;
+                countFile(stats);
+                long start = System.nanoTime();
+                if (cache != null) {
+                    listener.accept(cache.verify(path, documents, start));
+                } else {
+                    VerificationResult result = verifier.verify(documents, path);
+                    listener.accept(new EntryResult(path, result, System.nanoTime() - start));
+                }
+                if (!isSeparated) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            VerificationResult result = VerificationResult.error(INPUT_ERROR + e.getMessage());
+            listener.accept(new EntryResult(sourceName, result, 0));
+        }
+    }
+
+    /**
+     * Stops the threads of the verifier. Verifications that already started are completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Verifies the entries of an archive in parallel.
+     * @param input The path to the archive.
+     * @param format The format of the archive.
+     * @param listener Receives the result of every entry, on the calling thread.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     */
+    private void verifyArchive(Path input, InputFormat format, Consumer<EntryResult> listener)
+            throws InterruptedException {
+        VerifierStats stats = VerifierStats.current();
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        IOException failure = null;
+        try {
+            try (ArchiveReader archive = openArchive(input, format)) {
+                String entry;
+                while ((entry = archive.nextFile()) != null) {
+                    InputFormat entryFormat = InputFormat.of(entry);
+                    if (entryFormat == null || entryFormat.isArchive()) {
+                        continue; // Nested archives and other files are not verified
+                    }
+                    byte[] content = archive.readFile(MAX_ENTRY_SIZE);
+                    String path = input + EntryResult.ENTRY_SEPARATOR + entry;
+                    boolean isCounted = stats != null;
+                    Future<Outcome> future = content == null ?
+                            CompletableFuture.completedFuture(tooLargeEntry(path, isCounted)) :
+                            executor.submit(() -> verifyEntry(path, entryFormat, content, isCounted));
+                    pending.add(new PendingEntry(path, future));
+                    deliver(pending, listener, stats, maxPending);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            deliver(pending, listener, stats, 0);
+        } catch (InterruptedException e) { // Do not verify entries that nobody waits for
+            pending.forEach(entry -> entry.future.cancel(true));
+            throw e;
+        }
+        if (failure != null) {
+            VerificationResult result = VerificationResult.error(ARCHIVE_ERROR + failure.getMessage());
+            listener.accept(new EntryResult(input.toString(), result, 0));
+        }
+    }
+
+    /**
+     * Opens an archive for reading its entries as a stream.
+     * @param input The path to the archive.
+     * @param format The format of the archive.
+     * @return The reader of the archive.
+     * @throws IOException If the archive cannot be opened.
+     */
+    private static ArchiveReader openArchive(Path input, InputFormat format) throws IOException {
+        // Opened like a file, so a missing archive is reported like a missing file
+        InputStream stream = new BufferedInputStream(new FileInputStream(input.toFile()), BUFFER_SIZE);
+        try {
+            switch (format) {
+                case ZIP:
+                    return new ZipReader(new ZipInputStream(stream));
+                case TAR_GZIP:
+                    return new TarReader(new GZIPInputStream(stream, BUFFER_SIZE));
+                default:
+                    return new TarReader(stream);
+            }
+        } catch (IOException e) { // Not in the gzip format
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Verifies a single entry of an archive. Runs on a thread of the pool.
+     * @param path The reported path of the entry.
+     * @param format The format of the entry.
+     * @param content The content of the entry.
+     * @param isCounted Whether to collect the statistics of the entry.
+     * @return The outcome of the verification.
+     */
+    private Outcome verifyEntry(String path, InputFormat format, byte[] content, boolean isCounted) {
+        VerifierStats stats = isCounted ? new VerifierStats() : null;
+        if (stats != null) {
+            stats.attach();
+            stats.countFile();
+        }
+        try {
+            return new Outcome(verifyFile(path, format, () -> new ByteArrayInputStream(content)), stats);
+        } finally {
+            VerifierStats.detach();
+        }
+    }
+
+    /**
+     * Returns the outcome of an entry of an archive that is too large to be read into memory.
+     * @param path The reported path of the entry.
+     * @param isCounted Whether to collect the statistics of the entry.
+     * @return The outcome, which is an error.
+     */
+    private static Outcome tooLargeEntry(String path, boolean isCounted) {
+        VerifierStats stats = isCounted ? new VerifierStats() : null;
+        countFile(stats);
+        VerificationResult result = VerificationResult.error(String.format(TOO_LARGE_ENTRY, MAX_ENTRY_SIZE));
+        return new Outcome(new EntryResult(path, result, 0), stats);
+    }
+
+    /**
+     * Verifies a single file, which may be compressed with gzip.
+     * @param path The reported path of the file.
+     * @param format The format of the file, which is not an archive.
+     * @param opener Opens the content of the file.
+     * @return The result of the verification.
+     */
+    private EntryResult verifyFile(String path, InputFormat format, StreamOpener opener) {
+        long start = System.nanoTime();
+        VerificationResult result;
+        InputStream input = null;
+        try {
+            input = opener.open();
+            if (format == InputFormat.SJAVA_GZIP) {
+                input = new GZIPInputStream(input, BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            closeQuietly(input);
+            result = VerificationResult.error(FileCleaner.ERROR_PREFIX + e.getMessage());
+            return new EntryResult(path, result, System.nanoTime() - start);
+        }
+        if (cache != null) {
+            return cache.verify(path, input, start);
+        }
+        result = verifier.verify(input, path);
+        return new EntryResult(path, result, System.nanoTime() - start);
+    }
+
+    /**
+     * Reports the results at the head of the pending entries, as long as they are ready or there are too
+     * many pending entries.
+     * <p>
+     *     An entry whose verification threw an exception is reported as an error, without statistics.
+     * </p>
+     * @param pending The pending entries, in the order of the entries.
+     * @param listener Receives the results.
+     * @param stats The statistics to merge the statistics of the entries into, or {@code null}.
+     * @param maxPending The number of entries that may stay pending.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     */
+    private static void deliver(Deque<PendingEntry> pending, Consumer<EntryResult> listener,
+                                VerifierStats stats, int maxPending) throws InterruptedException {
+        while (!pending.isEmpty() && (pending.peekFirst().future.isDone() || pending.size() > maxPending)) {
+            PendingEntry entry = pending.pollFirst();
+            Outcome outcome;
+            try {
+                outcome = entry.future.get();
+            } catch (ExecutionException e) { // Verification errors are results, so this is a bug
+                VerificationResult result = VerificationResult.error(INTERNAL_ERROR + e.getCause());
+                outcome = new Outcome(new EntryResult(entry.path, result, 0), null);
+            }
+            if (stats != null && outcome.stats != null) {
+                stats.merge(outcome.stats);
+            }
+            listener.accept(outcome.result);
+        }
+    }
+
+    /**
+     * Counts a verified file in the given statistics, if there are any.
+     * @param stats The statistics, or {@code null}.
+     */
+    private static void countFile(VerifierStats stats) {
+        if (stats != null) {
+            stats.countFile();
+        }
+    }
+
+    /**
+     * Closes a stream, ignoring the errors of closing it.
+     * @param input The stream, or {@code null}.
+     */
+    private static void closeQuietly(InputStream input) {
+        if (input != null) {
+            try {
+                input.close();
+            } catch (IOException ignored) { // The error of opening the stream is the one reported
+            }
+        }
+    }
+
+    /**
+     * Opens the content of a file.
+     */
+    @FunctionalInterface
+    private interface StreamOpener {
+        /**
+         * @return The content of the file.
+         * @throws IOException If the file cannot be opened.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * The result of verifying an entry, together with its statistics.
+     */
+    private static final class Outcome {
+
+        // Private fields
+        private final EntryResult result;
+        private final VerifierStats stats;
+
+        private Outcome(EntryResult result, VerifierStats stats) {
+            this.result = result;
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * An entry of an archive that was read, and whose outcome may not be known yet.
+     */
+    private static final class PendingEntry {
+
+        // Private fields
+        private final String path;
+        private final Future<Outcome> future;
+
+        private PendingEntry(String path, Future<Outcome> future) {
+            this.path = path;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Reads the files of a zip archive.
+     */
+    private static final class ZipReader implements ArchiveReader {
+
+        // Private fields
+        private final ZipInputStream zip;
+
+        private ZipReader(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public String nextFile() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return entry.getName();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public byte[] readFile(int maxSize) throws IOException {
+            byte[] content = zip.readNBytes(maxSize + 1); // Reads up to the end of the current entry
+            return content.length > maxSize ? null : content;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+}
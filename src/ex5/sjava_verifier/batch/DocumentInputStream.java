@@ -0,0 +1,148 @@
+package ex5.sjava_verifier.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the documents of a stream one after the other, where the documents may be separated by NUL
+ * characters.
+ * <p>
+ *     Every document is read as a stream of its own, which ends at the separator after it. Closing this
+ *     stream skips the rest of the current document without closing the underlying stream, so a verification
+ *     that stops reading at its first error does not leave the rest of the document for the next one.
+ *     A separator after the last document does not start another document.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class DocumentInputStream extends InputStream {
+
+    // Constants
+    private static final int BUFFER_SIZE = 65536;
+    private static final byte SEPARATOR = 0;
+    private static final int END_OF_STREAM = -1;
+
+    // Private fields
+    private final InputStream input;
+    private final boolean isSeparated;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean isDocumentEnded = true;
+    private boolean isInputEnded;
+
+    /**
+     * Constructs a stream over the documents of the given stream.
+     * @param input The underlying stream, which is not closed by this stream.
+     * @param isSeparated Whether the documents are separated by NUL characters. Otherwise, the whole
+     *                    underlying stream is a single document.
+     */
+    DocumentInputStream(InputStream input, boolean isSeparated) {
+        this.input = input;
+        this.isSeparated = isSeparated;
+    }
+
+    /**
+     * Moves to the next document, skipping the rest of the current one.
+     * @return {@code true} if there is another document, {@code false} if the underlying stream ended.
+     * @throws IOException If an error occurs while reading the underlying stream.
+     */
+    boolean nextDocument() throws IOException {
+        skipDocument();
+        if (!fill()) {
+            return false;
+        }
+        isDocumentEnded = false;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == END_OF_STREAM ? END_OF_STREAM : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (isDocumentEnded || !fill()) {
+            isDocumentEnded = true;
+            return END_OF_STREAM;
+        }
+        int end = Math.min(limit, position + length);
+        int separator = isSeparated ? indexOfSeparator(end) : end;
+        int count = separator - position;
+        System.arraycopy(buffer, position, bytes, offset, count);
+        position = separator;
+        if (separator < end) { // The separator ends the document
+            position++;
+            isDocumentEnded = true;
+            return count == 0 ? END_OF_STREAM : count;
+        }
+        return count;
+    }
+
+    /**
+     * Skips the rest of the current document. The underlying stream stays open.
+     * @throws IOException If an error occurs while reading the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        skipDocument();
+    }
+
+    /**
+     * Skips the rest of the current document, if there is one.
+     * @throws IOException If an error occurs while reading the underlying stream.
+     */
+    private void skipDocument() throws IOException {
+        while (!isDocumentEnded && fill()) {
+            int separator = isSeparated ? indexOfSeparator(limit) : limit;
+            if (separator < limit) {
+                position = separator + 1;
+                isDocumentEnded = true;
+            } else {
+                position = limit;
+            }
+        }
+        isDocumentEnded = true;
+    }
+
+    /**
+     * Reads more of the underlying stream into the buffer, if the buffer was read completely.
+     * @return {@code true} if the buffer has unread bytes, {@code false} if the underlying stream ended.
+     * @throws IOException If an error occurs while reading the underlying stream.
+     */
+    private boolean fill() throws IOException {
+        while (position == limit && !isInputEnded) {
+            int read = input.read(buffer, 0, buffer.length);
+            if (read == END_OF_STREAM) {
+                isInputEnded = true;
+            } else {
+                position = 0;
+                limit = read;
+            }
+        }
+        return position < limit;
+    }
+
+    /**
+     * @param end The end of the range of the buffer to search, after the current position.
+     * @return The index of the first separator in the range, or the end of the range if there is none.
+     */
+    private int indexOfSeparator(int end) {
+        for (int i = position; i < end; i++) {
+            if (buffer[i] == SEPARATOR) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+}
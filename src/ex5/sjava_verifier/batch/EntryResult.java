@@ -0,0 +1,89 @@
+package ex5.sjava_verifier.batch;
+
+import ex5.sjava_verifier.api.VerificationResult;
+
+import java.util.Objects;
+
+/**
+ * The immutable result of verifying a single file of a batch, which may be an entry of an archive.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class EntryResult {
+
+    /** The separator between the path of an archive and the path of an entry in it. */
+    public static final String ENTRY_SEPARATOR = "!/";
+
+    /** The separator between the name of a stream and the number of a document in it. */
+    public static final String DOCUMENT_SEPARATOR = "#";
+
+    // Private fields
+    private final String path;
+    private final VerificationResult result;
+    private final long durationNanos;
+    private final boolean isDuplicate;
+
+    /**
+     * Constructs a result.
+     * @param path The path of the file, where the path of an entry of an archive is the path of the archive
+     *             followed by {@value #ENTRY_SEPARATOR} and the path of the entry in it, and the path of a
+     *             document of a stream is the name of the stream followed by {@value #DOCUMENT_SEPARATOR}
+     *             and the number of the document.
+     * @param result The result of the verification.
+     * @param durationNanos The time the verification took, in nanoseconds.
+     */
+    public EntryResult(String path, VerificationResult result, long durationNanos) {
+        this(path, result, durationNanos, false);
+    }
+
+    /**
+     * Constructs a result that may be reused from another file of the batch.
+     * @param path The path of the file, like in {@link #EntryResult(String, VerificationResult, long)}.
+     * @param result The result of the verification.
+     * @param durationNanos The time the verification took, in nanoseconds.
+     * @param isDuplicate Whether the file has the same content as a file that was already verified, so the
+     *                    result of that file was reused instead of verifying this one.
+     */
+    public EntryResult(String path, VerificationResult result, long durationNanos, boolean isDuplicate) {
+        this.path = Objects.requireNonNull(path);
+        this.result = Objects.requireNonNull(result);
+        this.durationNanos = durationNanos;
+        this.isDuplicate = isDuplicate;
+    }
+
+    /**
+     * @return The path of the file.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The result of the verification.
+     */
+    public VerificationResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return The time the verification took, in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return {@code true} if the result was reused from a file with the same content, {@code false} if the
+     *         file was verified.
+     */
+    public boolean isDuplicate() {
+        return isDuplicate;
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + result;
+    }
+
+}
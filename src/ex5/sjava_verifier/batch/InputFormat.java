@@ -0,0 +1,58 @@
+package ex5.sjava_verifier.batch;
+
+/**
+ * The formats of the inputs that can be verified, recognized by the endings of their names.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum InputFormat {
+    /** A single s-java file. */
+    SJAVA(false, ".sjava"),
+    /** A single s-java file compressed with gzip. */
+    SJAVA_GZIP(false, ".sjava.gz"),
+    /** A zip archive of s-java files. */
+    ZIP(true, ".zip"),
+    /** A tar archive of s-java files. */
+    TAR(true, ".tar"),
+    /** A tar archive of s-java files compressed with gzip. */
+    TAR_GZIP(true, ".tar.gz", ".tgz");
+
+    // Private fields
+    private final boolean isArchive;
+    private final String[] fileEndings;
+
+    /**
+     * Constructs a format.
+     * @param isArchive Whether the inputs of the format hold many files.
+     * @param fileEndings The endings of the names of the inputs of the format.
+     */
+    InputFormat(boolean isArchive, String... fileEndings) {
+        this.isArchive = isArchive;
+        this.fileEndings = fileEndings;
+    }
+
+    /**
+     * Finds the format of an input by its name.
+     * @param name The name or path of the input.
+     * @return The format of the input, or {@code null} if the input cannot be verified.
+     */
+    public static InputFormat of(String name) {
+        for (InputFormat format : values()) {
+            for (String fileEnding : format.fileEndings) {
+                if (name.endsWith(fileEnding)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the inputs of this format hold many files, {@code false} if they hold one.
+     */
+    public boolean isArchive() {
+        return isArchive;
+    }
+
+}
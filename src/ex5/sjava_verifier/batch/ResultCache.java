@@ -0,0 +1,150 @@
+package ex5.sjava_verifier.batch;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.preprocessor.FileCleaner;
+import ex5.sjava_verifier.statistics.VerifierStats;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Verifies every distinct content of a batch once, and reuses its result for the other files with the same
+ * content.
+ * <p>
+ *     A file is cleaned by {@link FileCleaner} before it is verified, and its content is identified by the
+ *     SHA-256 digest of its cleaned lines together with their numbers in the original file. Files that
+ *     differ only in comments, empty lines and the whitespace around their lines share a content, while
+ *     files whose lines are numbered differently do not, so the line of a reused error is always correct.
+ *     The result of a content depends only on its cleaned lines, so a reused result is exactly the result
+ *     of verifying the file. Files that cannot be read, and contents whose verification exceeded the limits
+ *     of the verifier, are not remembered.
+ * </p>
+ * <p>
+ *     The whole file is cleaned before it is verified, so every file is verified in two passes, unless the
+ *     mode of the verifier verifies it in tiers or only its structure. Only the digests and the results are
+ *     remembered, until the cache is no longer used.
+ * </p>
+ * <p>
+ *     This class is thread-safe. A thread that finds a content that another thread is still verifying waits
+ *     for its result instead of verifying it again.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class ResultCache {
+
+    // Constants
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    // Private fields
+    private final SjavaVerifier verifier;
+    private final ConcurrentMap<ByteBuffer, CompletableFuture<VerificationResult>> results =
+            new ConcurrentHashMap<>();
+    private final ThreadLocal<ContentReader> readers = ThreadLocal.withInitial(ContentReader::new);
+
+    /**
+     * Constructs an empty cache.
+     * @param verifier The verifier to verify every distinct content with.
+     */
+    ResultCache(SjavaVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    /**
+     * Verifies the content of the given stream, unless a file with the same content was already verified.
+     * @param path The reported path of the file.
+     * @param input The content of the file, which is read like a file. It is closed when this method returns.
+     * @param start The time the verification of the file started, as given by {@link System#nanoTime()}.
+     * @return The result of the file, which is a duplicate if it was reused.
+     */
+    EntryResult verify(String path, InputStream input, long start) {
+        ContentReader reader = readers.get();
+        try {
+            VerificationResult cleaned = verifier.clean(input, path, reader.cleanLines);
+            if (!cleaned.isValid()) { // Not remembered, since it is not an error of the content
+                return new EntryResult(path, cleaned, System.nanoTime() - start);
+            }
+            ByteBuffer digest = reader.digest();
+            CompletableFuture<VerificationResult> result = new CompletableFuture<>();
+            CompletableFuture<VerificationResult> known = results.putIfAbsent(digest, result);
+            if (known != null) {
+                VerifierStats.countDuplicateFile();
+                return new EntryResult(path, known.join(), System.nanoTime() - start, true);
+            }
+            try {
+                VerificationResult verified = verifier.verify(reader.cleanLines, path);
+                if (verified.isTimeout()) { // The next file with the content may be verified in time
+                    results.remove(digest, result);
+                }
+                result.complete(verified);
+            } catch (RuntimeException e) { // A bug, which the threads that wait for the result also report
+                results.remove(digest, result);
+                result.completeExceptionally(e);
+                throw e;
+            }
+            return new EntryResult(path, result.join(), System.nanoTime() - start);
+        } finally {
+            reader.cleanLines.clear(); // Do not hold the lines of the file until the next one
+        }
+    }
+
+    /**
+     * The buffers of a single thread for cleaning and digesting files.
+     */
+    private static final class ContentReader {
+
+        // Private fields
+        private final Map<Long, String> cleanLines = new LinkedHashMap<>(); // Keeps the order of the lines
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final MessageDigest digest;
+
+        private ContentReader() {
+            try {
+                digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) { // Every Java platform supports it
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Digests the cleaned lines, where every line is its number and its length followed by its
+         * characters, so different lines never have the same bytes.
+         * @return The digest of the cleaned lines.
+         */
+        private ByteBuffer digest() {
+            for (Map.Entry<Long, String> line : cleanLines.entrySet()) {
+                String text = line.getValue();
+                makeRoom(Long.BYTES + Integer.BYTES);
+                buffer.putLong(line.getKey()).putInt(text.length());
+                for (int i = 0; i < text.length(); i++) {
+                    makeRoom(Character.BYTES);
+                    buffer.putChar(text.charAt(i));
+                }
+            }
+            makeRoom(BUFFER_SIZE);
+            return ByteBuffer.wrap(digest.digest());
+        }
+
+        /**
+         * Digests the bytes of the buffer if it has less than the given room left.
+         * @param bytes The number of bytes that are about to be written to the buffer.
+         */
+        private void makeRoom(int bytes) {
+            if (buffer.remaining() < bytes) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+package ex5.sjava_verifier.batch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the regular files of a tar archive from a stream, one after the other.
+ * <p>
+ *     Reads the ustar format together with the GNU long names and the paths of pax extended headers, which
+ *     cover the archives written by the common tar tools. Directories, links and other special entries are
+ *     skipped. Only the file that is currently read is held in memory.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class TarReader implements ArchiveReader {
+
+    // Constants
+    private static final int BLOCK_SIZE = 512;
+    private static final int SKIP_BUFFER_SIZE = 8192;
+    private static final int NAME_OFFSET = 0;
+    private static final int NAME_LENGTH = 100;
+    private static final int SIZE_OFFSET = 124;
+    private static final int SIZE_LENGTH = 12;
+    private static final int CHECKSUM_OFFSET = 148;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final int TYPE_OFFSET = 156;
+    private static final int MAGIC_OFFSET = 257;
+    private static final int PREFIX_OFFSET = 345;
+    private static final int PREFIX_LENGTH = 155;
+    private static final String USTAR_MAGIC = "ustar";
+    private static final String PAX_PATH_KEY = "path=";
+    private static final char REGULAR_FILE = '0';
+    private static final char OLD_REGULAR_FILE = '\0';
+    private static final char CONTIGUOUS_FILE = '7';
+    private static final char GNU_LONG_NAME = 'L';
+    private static final char PAX_HEADER = 'x';
+    private static final int OCTAL_RADIX = 8;
+    private static final int BASE_256_FLAG = 0x80;
+    private static final char SPACE = ' ';
+
+    // Errors
+    private static final String INVALID_HEADER = "Invalid tar header.";
+    private static final String UNEXPECTED_END = "Unexpected end of the tar archive.";
+    private static final String TOO_LARGE_ENTRY = "The tar entry '%s' is too large.";
+
+    // Private fields
+    private final InputStream input;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private final byte[] skipBuffer = new byte[SKIP_BUFFER_SIZE];
+    private String name;
+    private long size;
+    private boolean isContentRead = true;
+
+    /**
+     * Constructs a reader over the given stream, which is positioned at the start of the archive.
+     * @param input The stream of the archive, which is closed when the reader is closed.
+     */
+    TarReader(InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public String nextFile() throws IOException {
+        skipContent();
+        String longName = null;
+        while (readHeader()) {
+            char type = (char) header[TYPE_OFFSET];
+            name = longName != null ? longName : headerName();
+            size = headerSize();
+            isContentRead = false;
+            longName = null;
+            if (type == REGULAR_FILE || type == OLD_REGULAR_FILE || type == CONTIGUOUS_FILE) {
+                return name;
+            }
+            if (type == GNU_LONG_NAME) {
+                longName = trimAtNul(new String(readContent(), StandardCharsets.UTF_8));
+            } else if (type == PAX_HEADER) {
+                longName = paxPath(new String(readContent(), StandardCharsets.UTF_8));
+            } else {
+                skipContent();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public byte[] readFile(int maxSize) throws IOException {
+        return size > maxSize ? null : readContent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Reads the next header block.
+     * @return {@code true} if a header was read, {@code false} if the end of the archive was reached.
+     * @throws IOException If an error occurs while reading the archive, or if the header is invalid.
+     */
+    private boolean readHeader() throws IOException {
+        int read = input.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) { // Some writers omit the blocks that mark the end of the archive
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException(UNEXPECTED_END);
+        }
+        long checksum = 0;
+        boolean isEmpty = true;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            isEmpty &= header[i] == 0;
+            boolean isChecksum = i >= CHECKSUM_OFFSET && i < CHECKSUM_OFFSET + CHECKSUM_LENGTH;
+            checksum += isChecksum ? SPACE : header[i] & 0xFF; // The checksum is summed as spaces
+        }
+        if (isEmpty) {
+            return false;
+        }
+        if (checksum != parseNumber(CHECKSUM_OFFSET, CHECKSUM_LENGTH)) {
+            throw new IOException(INVALID_HEADER);
+        }
+        return true;
+    }
+
+    /**
+     * @return The path in the current header, including its ustar prefix.
+     */
+    private String headerName() {
+        String path = field(NAME_OFFSET, NAME_LENGTH);
+        if (field(MAGIC_OFFSET, USTAR_MAGIC.length()).equals(USTAR_MAGIC)) {
+            String prefix = field(PREFIX_OFFSET, PREFIX_LENGTH);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + path;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return The size of the content of the current entry.
+     * @throws IOException If the size is invalid.
+     */
+    private long headerSize() throws IOException {
+        if ((header[SIZE_OFFSET] & BASE_256_FLAG) != 0) { // The GNU encoding of large sizes
+            long value = header[SIZE_OFFSET] & ~BASE_256_FLAG & 0xFF;
+            for (int i = SIZE_OFFSET + 1; i < SIZE_OFFSET + SIZE_LENGTH; i++) {
+                value = (value << Byte.SIZE) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        return parseNumber(SIZE_OFFSET, SIZE_LENGTH);
+    }
+
+    /**
+     * Parses an octal number of the current header, which may be surrounded by spaces and NUL characters.
+     * @param offset The offset of the field.
+     * @param length The length of the field.
+     * @return The number.
+     * @throws IOException If the field is not an octal number.
+     */
+    private long parseNumber(int offset, int length) throws IOException {
+        String field = new String(header, offset, length, StandardCharsets.US_ASCII);
+        String digits = trimAtNul(field.strip()).strip();
+        try {
+            return digits.isEmpty() ? 0 : Long.parseLong(digits, OCTAL_RADIX);
+        } catch (NumberFormatException e) {
+            throw new IOException(INVALID_HEADER);
+        }
+    }
+
+    /**
+     * Reads a text field of the current header, which ends at its first NUL character.
+     * @param offset The offset of the field.
+     * @param length The length of the field.
+     * @return The text.
+     */
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the content of the current entry, together with the padding after it.
+     * @return The content.
+     * @throws IOException If an error occurs while reading the archive, or if the entry is too large.
+     */
+    private byte[] readContent() throws IOException {
+        if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+            throw new IOException(String.format(TOO_LARGE_ENTRY, name));
+        }
+        byte[] content = input.readNBytes((int) size);
+        if (content.length < size) {
+            throw new EOFException(UNEXPECTED_END);
+        }
+        skip(padding());
+        isContentRead = true;
+        return content;
+    }
+
+    /**
+     * Skips the content of the current entry, if it was not read yet.
+     * @throws IOException If an error occurs while reading the archive.
+     */
+    private void skipContent() throws IOException {
+        if (!isContentRead) {
+            skip(size + padding());
+            isContentRead = true;
+        }
+    }
+
+    /**
+     * Skips the given number of bytes of the archive.
+     * @param count The number of bytes.
+     * @throws IOException If an error occurs while reading the archive, or if it ends before the bytes.
+     */
+    private void skip(long count) throws IOException {
+        while (count > 0) { // Read instead of skipped, since a file may be skipped past its end
+            int read = input.read(skipBuffer, 0, (int) Math.min(count, skipBuffer.length));
+            if (read < 0) {
+                throw new EOFException(UNEXPECTED_END);
+            }
+            count -= read;
+        }
+    }
+
+    /**
+     * @return The number of bytes after the content of the current entry that fill its last block.
+     */
+    private long padding() {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    /**
+     * Finds the path in the records of a pax extended header, which have the form "length key=value\n".
+     * @param records The records.
+     * @return The path, or {@code null} if the records have none.
+     */
+    private static String paxPath(String records) {
+        for (String record : records.split("\n")) {
+            int keyStart = record.indexOf(SPACE) + 1;
+            if (record.startsWith(PAX_PATH_KEY, keyStart)) {
+                return record.substring(keyStart + PAX_PATH_KEY.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param text A text.
+     * @return The text up to its first NUL character.
+     */
+    private static String trimAtNul(String text) {
+        int nul = text.indexOf('\0');
+        return nul < 0 ? text : text.substring(0, nul);
+    }
+
+}
@@ -0,0 +1,45 @@
+package ex5.sjava_verifier.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for reading a file and cleaning it from comments and empty lines.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+@Name("ex5.FileClean")
+@Label("File Read and Clean")
+@Category({"SJava Verifier"})
+@Description("Reading an s-java file and cleaning it from comments, empty lines and whitespaces")
+public class FileCleanEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    private String file;
+
+    @Label("Lines Read")
+    private long linesRead;
+
+    @Label("Clean Lines")
+    private long cleanLines;
+
+    /**
+     * Ends the event and commits it if it passes the recording settings.
+     * @param file The path of the cleaned file.
+     * @param linesRead The number of lines that were read from the file.
+     * @param cleanLines The number of lines that are left after cleaning.
+     */
+    public void finish(String file, long linesRead, long cleanLines) {
+        end();
+        if (shouldCommit()) {
+            this.file = file;
+            this.linesRead = linesRead;
+            this.cleanLines = cleanLines;
+            commit();
+        }
+    }
+
+}
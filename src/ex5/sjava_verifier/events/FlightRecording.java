@@ -0,0 +1,50 @@
+package ex5.sjava_verifier.events;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Tells the verifier whether to create its events at all.
+ * <p>
+ *     Loading the first event class sets up the Java Flight Recorder, which takes hundreds of milliseconds,
+ *     even when nothing is recorded. So the events are only created once the Flight Recorder was
+ *     initialized by a recording, started with {@code -XX:StartFlightRecording} or with {@code jcmd}, and
+ *     until then the event classes are not even loaded. The type of {@link SlowLineEvent} is looked up in a
+ *     lazy holder, so that an event is not created for every line while its type is disabled.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class FlightRecording {
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private FlightRecording() {}
+
+    /**
+     * @return {@code true} if the Flight Recorder was initialized, so the events may be recorded,
+     *         {@code false} otherwise.
+     */
+    public static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * @return {@code true} if a {@link SlowLineEvent} may be recorded, {@code false} otherwise.
+     */
+    public static boolean isSlowLineEnabled() {
+        return isRecording() && EventTypes.SLOW_LINE.isEnabled();
+    }
+
+    /**
+     * Holds the types of the events, which are only looked up once a recording was started.
+     */
+    private static final class EventTypes {
+
+        // Constants
+        private static final EventType SLOW_LINE = EventType.getEventType(SlowLineEvent.class);
+    }
+
+}
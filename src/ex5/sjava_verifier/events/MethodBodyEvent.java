@@ -0,0 +1,51 @@
+package ex5.sjava_verifier.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for verifying the body of a single method,
+ * from its declaration line to its closing bracket.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+@Name("ex5.MethodBody")
+@Label("Method Body Verification")
+@Category({"SJava Verifier"})
+@Description("Verifying the body of a single method")
+public class MethodBodyEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    private String file;
+
+    @Label("Method")
+    private String method;
+
+    @Label("First Line")
+    private long firstLine;
+
+    @Label("Last Line")
+    private long lastLine;
+
+    /**
+     * Ends the event and commits it if it passes the recording settings.
+     * @param file The name of the verified file.
+     * @param method The name of the method.
+     * @param firstLine The line number of the method declaration.
+     * @param lastLine The line number of the closing bracket of the method.
+     */
+    public void finish(String file, String method, long firstLine, long lastLine) {
+        end();
+        if (shouldCommit()) {
+            this.file = file;
+            this.method = method;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            commit();
+        }
+    }
+
+}
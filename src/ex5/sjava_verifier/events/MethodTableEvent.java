@@ -0,0 +1,40 @@
+package ex5.sjava_verifier.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the pre-pass that collects the method declarations of a file.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+@Name("ex5.MethodTable")
+@Label("Method Table Construction")
+@Category({"SJava Verifier"})
+@Description("Collecting and verifying the method declarations of an s-java file")
+public class MethodTableEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    private String file;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+
+    /**
+     * Ends the event and commits it if it passes the recording settings.
+     * @param file The name of the verified file.
+     * @param succeeded Whether all the method declarations were valid.
+     */
+    public void finish(String file, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.file = file;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package ex5.sjava_verifier.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for a single line whose verification took longer than a threshold.
+ * <p>
+ *     The threshold defaults to 1 ms, and can be configured like any other event setting,
+ *     for example: {@code -XX:StartFlightRecording:ex5.SlowLine#threshold=100us}.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+@Name("ex5.SlowLine")
+@Label("Slow Line")
+@Category({"SJava Verifier"})
+@Description("A single line whose verification took longer than the threshold")
+@Threshold("1 ms")
+public class SlowLineEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    private String file;
+
+    @Label("Line Number")
+    private long lineNumber;
+
+    @Label("Handler")
+    @Description("The kind of line that was matched by the verifier")
+    private String handler;
+
+    /**
+     * Ends the event and commits it if it passes the recording settings.
+     * @param file The name of the verified file.
+     * @param lineNumber The number of the line in the original file.
+     * @param handler The name of the handler that matched the line.
+     */
+    public void finish(String file, long lineNumber, String handler) {
+        end();
+        if (shouldCommit()) {
+            this.file = file;
+            this.lineNumber = lineNumber;
+            this.handler = handler;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package ex5.sjava_verifier.preprocessor;
+
+import ex5.sjava_verifier.events.FileCleanEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a file and cleans its lines one at a time, like {@link FileCleaner} does for a whole file.
+ * <p>
+ *     Only the current line is kept in memory, and reading stops as soon as the reader is closed,
+ *     so a file can be verified while it is read, and its verification can stop at the first error
+ *     without reading the rest of it.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class CleanLineReader implements CleanLineSource, Closeable {
+
+    // Private fields
+    private final ReusableLineReader reader;
+    private String sourceName;
+    private FileCleanEvent event;
+    private long lineCounter;
+    private long cleanLineCounter;
+    private String line;
+
+    /**
+     * Constructs a reader that reads files with the given reusable reader.
+     * @param reader The reader to read the files with.
+     */
+    public CleanLineReader(ReusableLineReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens the given file for reading, closing the previously opened file if there is one.
+     * @param filePath The path to the file to read.
+     * @throws IOException if the file cannot be opened.
+     */
+    public void open(String filePath) throws IOException {
+        start(filePath);
+        try {
+            reader.open(filePath);
+        } catch (IOException e) { // Catch the error in order to add the error prefix to its message
+            throw new IOException(FileCleaner.ERROR_PREFIX + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the given stream for reading like the content of a file, closing the previously opened file
+     * if there is one. The stream is closed when the reader is closed.
+     * @param input The stream to read.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @throws IOException if an error occurs while closing the previously opened file.
+     */
+    public void open(InputStream input, String sourceName) throws IOException {
+        start(sourceName);
+        reader.open(input);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        try {
+            String rawLine;
+            while ((rawLine = reader.readLine()) != null) {
+                lineCounter++;
+                line = FileCleaner.cleanLine(rawLine);
+                if (line != null) {
+                    cleanLineCounter++;
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) { // Catch the error in order to add the error prefix to its message
+            throw new IOException(FileCleaner.ERROR_PREFIX + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getLineNumber() {
+        return lineCounter;
+    }
+
+    @Override
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Closes the opened file, if there is one, and reports how many lines were read from it.
+     * @throws IOException if an error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        FileCleaner.finishEvent(event, sourceName, lineCounter, cleanLineCounter);
+        event = null;
+        reader.close();
+    }
+
+    /**
+     * Closes the previously opened file, and starts counting the lines of a new one.
+     * @param sourceName The name of the new file.
+     * @throws IOException if an error occurs while closing the previously opened file.
+     */
+    private void start(String sourceName) throws IOException {
+        close();
+        this.sourceName = sourceName;
+        lineCounter = 0;
+        cleanLineCounter = 0;
+        line = null;
+        event = FileCleaner.beginEvent();
+    }
+
+}
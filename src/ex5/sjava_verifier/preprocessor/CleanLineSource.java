@@ -0,0 +1,34 @@
+package ex5.sjava_verifier.preprocessor;
+
+import java.io.IOException;
+
+/**
+ * A source of cleaned lines of code, given one at a time in the order of the file.
+ * <p>
+ *     Unlike the map built by {@link FileCleaner#cleanFile(String)}, a source does not have to keep the lines
+ *     it already gave, so a file can be verified while it is read without holding all of it in memory.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public interface CleanLineSource {
+
+    /**
+     * Advances to the next cleaned line.
+     * @return {@code true} if there is a next line, {@code false} if the end of the file was reached.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return The number of the current line in the original file.
+     */
+    long getLineNumber();
+
+    /**
+     * @return The current cleaned line.
+     */
+    String getLine();
+
+}
@@ -1,11 +1,19 @@
 package ex5.sjava_verifier.preprocessor;
 
+import ex5.sjava_verifier.events.FileCleanEvent;
+import ex5.sjava_verifier.events.FlightRecording;
+import ex5.sjava_verifier.statistics.LineKind;
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.LinearPatterns;
+import ex5.sjava_verifier.verifier.Watchdog;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * This class is responsible for cleaning the input file from comments, empty lines,
@@ -25,12 +33,8 @@ import java.util.regex.Pattern;
  */
 public class FileCleaner {
 
-    private static final String ERROR_PREFIX = "An error occurred while reading the file: ";
-    private static final String COMMENT_REGEX = "^//.*";
-    private static final String EMPTY_LINE_REGEX = "^\\s*$";
-    private static final Pattern DISREGARD_PATTERN = Pattern.compile(
-            String.format("%s|%s", COMMENT_REGEX, EMPTY_LINE_REGEX)
-    );
+    /** The prefix of the messages of errors that occur while reading a file. */
+    public static final String ERROR_PREFIX = "An error occurred while reading the file: ";
 
     /**
      * An empty constructor to prevent instantiation.
@@ -50,24 +54,214 @@ public class FileCleaner {
      * @throws IOException if an error occurs while reading the file.
      */
     public static Map<Long, String> cleanFile(String filePath) throws IOException {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(filePath));
-            Map<Long, String> cleanLines = new LinkedHashMap<>(); // Using LinkedHashMap to maintain order
-            String line;
-            long lineCounter = 0;
-            // Adds cleaned lines to the map as long as the file still has lines.
-            // Comment lines still contribute to the overall line counter,
-            // but will not appear in the final map.
-            while ((line = reader.readLine()) != null) {
-                lineCounter++;
-                if (!DISREGARD_PATTERN.matcher(line).matches()) {
-                    cleanLines.put(lineCounter, line.strip());
-                }
-            }
-            return cleanLines;
+        Map<Long, String> cleanLines = new LinkedHashMap<>(); // Using LinkedHashMap to maintain order
+        cleanFile(filePath, cleanLines);
+        return cleanLines;
+    }
+
+    /**
+     * Cleans the input file into the given map.
+     * <p>
+     *      Works like {@link #cleanFile(String)}, but adds the cleaned lines to a map supplied by the caller,
+     *      so the same map can be cleared and reused for many files.
+     * </p>
+     * @param filePath the path to the file to be cleaned.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    public static void cleanFile(String filePath, Map<Long, String> cleanLines) throws IOException {
+        FileCleanEvent event = beginEvent();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            long lineCounter = cleanLines(reader::readLine, cleanLines);
+            finishEvent(event, filePath, lineCounter, cleanLines.size());
         } catch (IOException e) { // Catch the error in order to add the error prefix to its message
             throw new IOException(ERROR_PREFIX + e.getMessage());
         }
     }
 
+    /**
+     * Cleans the input file into the given map, reading it with the given reusable reader.
+     * <p>
+     *      Works like {@link #cleanFile(String, Map)}, but reuses the buffers of the reader,
+     *      so cleaning many files one after the other only allocates their lines.
+     * </p>
+     * @param filePath the path to the file to be cleaned.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     * @param reader The reader to read the file with. It is closed when this method returns.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    public static void cleanFile(String filePath, Map<Long, String> cleanLines, ReusableLineReader reader)
+            throws IOException {
+        FileCleanEvent event = beginEvent();
+        try (reader) {
+            reader.open(filePath);
+            long lineCounter = cleanLines(reader::readLine, cleanLines);
+            finishEvent(event, filePath, lineCounter, cleanLines.size());
+        } catch (IOException e) { // Catch the error in order to add the error prefix to its message
+            throw new IOException(ERROR_PREFIX + e.getMessage());
+        }
+    }
+
+    /**
+     * Cleans the content of the given stream into the given map, reading it with the given reusable reader.
+     * <p>
+     *      Works like {@link #cleanFile(String, Map, ReusableLineReader)} on a stream that holds the content
+     *      of a file, such as an entry of an archive.
+     * </p>
+     * @param input The stream to be cleaned. It is closed when this method returns.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     * @param reader The reader to read the stream with. It is closed when this method returns.
+     * @throws IOException if an error occurs while reading the stream.
+     */
+    public static void cleanStream(InputStream input, String sourceName, Map<Long, String> cleanLines,
+                                   ReusableLineReader reader) throws IOException {
+        FileCleanEvent event = beginEvent();
+        try (reader) {
+            reader.open(input);
+            long lineCounter = cleanLines(reader::readLine, cleanLines);
+            finishEvent(event, sourceName, lineCounter, cleanLines.size());
+        } catch (IOException e) { // Catch the error in order to add the error prefix to its message
+            throw new IOException(ERROR_PREFIX + e.getMessage());
+        }
+    }
+
+    /**
+     * Cleans the given text into the given map.
+     * <p>
+     *      Works like {@link #cleanFile(String, Map)} on text that is already in memory. Lines end with
+     *      {@code '\n'}, {@code '\r'} or {@code "\r\n"}, exactly like the lines of a file.
+     * </p>
+     * @param text The text to be cleaned.
+     * @param sourceName The name of the source of the text, used when reporting events.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     */
+    public static void cleanText(CharSequence text, String sourceName, Map<Long, String> cleanLines) {
+        FileCleanEvent event = beginEvent();
+        long lineCounter = cleanLines(new TextLines(text)::readLine, cleanLines);
+        finishEvent(event, sourceName, lineCounter, cleanLines.size());
+    }
+
+    /**
+     * Reads all the lines from the given source, and adds the cleaned ones to the given map.
+     * @param source The source of the lines.
+     * @param cleanLines The map to add the cleaned lines to.
+     * @param <E> The type of the errors of the source.
+     * @return The number of lines that were read.
+     * @throws E if an error occurs while reading the lines.
+     */
+    private static <E extends Exception> long cleanLines(LineSource<E> source, Map<Long, String> cleanLines)
+            throws E {
+        String line;
+        long lineCounter = 0;
+        // Adds cleaned lines to the map as long as the file still has lines.
+        // Comment lines still contribute to the overall line counter,
+        // but will not appear in the final map.
+        while ((line = source.readLine()) != null) {
+            lineCounter++;
+            Watchdog.check(lineCounter); // Stops a file of too many lines
+            String cleanLine = cleanLine(line);
+            if (cleanLine != null) {
+                cleanLines.put(lineCounter, cleanLine);
+            }
+        }
+        return lineCounter;
+    }
+
+    /**
+     * Cleans a single line.
+     * @param line The line to clean.
+     * @return The line without leading and trailing whitespaces,
+     *         or {@code null} if the line is a comment or an empty line.
+     */
+    static String cleanLine(String line) {
+        VerifierStats.countPattern(PatternId.DISREGARD);
+        if (LinearPatterns.isDisregarded(line)) {
+            VerifierStats.countLine(LineKind.DISREGARDED);
+            return null;
+        }
+        return line.strip();
+    }
+
+    /**
+     * Begins the event of cleaning a file, if a recording may record it.
+     * @return The begun event, or {@code null} if no recording was started.
+     */
+    static FileCleanEvent beginEvent() {
+        if (!FlightRecording.isRecording()) {
+            return null;
+        }
+        FileCleanEvent event = new FileCleanEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of cleaning a file, if it was begun.
+     * @param event The event, or {@code null} if it was not begun.
+     * @param sourceName The name of the cleaned file.
+     * @param linesRead The number of lines that were read from the file.
+     * @param cleanLines The number of lines that are left after cleaning.
+     */
+    static void finishEvent(FileCleanEvent event, String sourceName, long linesRead, long cleanLines) {
+        if (event != null) {
+            event.finish(sourceName, linesRead, cleanLines);
+        }
+    }
+
+    /**
+     * A source of lines, such as {@link BufferedReader#readLine()}.
+     * @param <E> The type of the errors that may occur while reading a line.
+     */
+    @FunctionalInterface
+    private interface LineSource<E extends Exception> {
+        /**
+         * @return The next line, or {@code null} if there are no more lines.
+         * @throws E if an error occurs while reading the line.
+         */
+        String readLine() throws E;
+    }
+
+    /**
+     * Splits text in memory into lines, the same way {@link BufferedReader#readLine()} splits a file.
+     */
+    private static final class TextLines {
+
+        // Private fields
+        private final CharSequence text;
+        private int position = 0;
+
+        /**
+         * Constructs the lines of the given text.
+         * @param text The text to split.
+         */
+        private TextLines(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * @return The next line without its line terminator, or {@code null} if there are no more lines.
+         */
+        private String readLine() {
+            int length = text.length();
+            if (position >= length) {
+                return null;
+            }
+            int start = position;
+            while (position < length) {
+                char c = text.charAt(position);
+                if (c == '\n' || c == '\r') {
+                    String line = text.subSequence(start, position).toString();
+                    position++;
+                    if (c == '\r' && position < length && text.charAt(position) == '\n') { // "\r\n"
+                        position++;
+                    }
+                    return line;
+                }
+                position++;
+            }
+            return text.subSequence(start, position).toString(); // The last line has no terminator
+        }
+    }
+
 }
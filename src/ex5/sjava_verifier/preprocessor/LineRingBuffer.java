@@ -0,0 +1,189 @@
+package ex5.sjava_verifier.preprocessor;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer, single-consumer ring buffer of cleaned lines and their line numbers.
+ * <p>
+ *     The producer thread waits while the buffer is full and the consumer thread waits while it is empty,
+ *     so at most {@code capacity} lines are held at any time. A waiting thread spins for a short while,
+ *     unless there is a single processor, and then parks. A parked consumer is only woken once the buffer
+ *     is half full, and a parked producer once it is half empty, so the threads do not wake each other for
+ *     every line.
+ * </p>
+ * <p>
+ *     Only the producer writes the tail and only the consumer writes the head, so no locks are needed:
+ *     a slot is published by the volatile write of the tail after it is filled, and released by the
+ *     volatile write of the head after it is read.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+class LineRingBuffer {
+
+    // Constants
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 256 : 0;
+
+    // Private fields
+    private final long[] lineNumbers;
+    private final String[] lines;
+    private final int mask;
+    private final int wakeUpThreshold; // Half of the capacity
+    private volatile long head; // The next slot to take, written by the consumer only
+    private volatile long tail; // The next slot to put, written by the producer only
+    private volatile boolean isFinished; // Written by the producer once no more lines will be put
+    private volatile boolean isCancelled; // Written by the consumer once no more lines will be taken
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private Exception failure; // Published by the write of isFinished
+    private long lineNumber;
+    private String line;
+
+    /**
+     * Constructs an empty buffer.
+     * @param capacity The maximal number of lines in the buffer, rounded up to a power of two.
+     */
+    LineRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        lineNumbers = new long[size];
+        lines = new String[size];
+        mask = size - 1;
+        wakeUpThreshold = size / 2;
+    }
+
+    /**
+     * Empties the buffer so it can be used again.
+     * <p>
+     *     Must only be called while neither thread uses the buffer.
+     * </p>
+     */
+    void clear() {
+        for (long i = head; i < tail; i++) {
+            lines[(int) i & mask] = null;
+        }
+        head = 0;
+        tail = 0;
+        isFinished = false;
+        isCancelled = false;
+        failure = null;
+        line = null;
+    }
+
+    /**
+     * Puts a line into the buffer, waiting while it is full. Called by the producer.
+     * @param number The number of the line in the original file.
+     * @param cleanLine The cleaned line.
+     * @return {@code true} if the line was put, {@code false} if the consumer cancelled the buffer.
+     */
+    boolean put(long number, String cleanLine) {
+        long currentTail = tail;
+        for (int spins = 0; currentTail - head == lines.length; spins++) {
+            if (isCancelled) {
+                return false;
+            }
+            if (spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            waitingProducer = Thread.currentThread();
+            if (currentTail - head == lines.length && !isCancelled) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+        }
+        int slot = (int) currentTail & mask;
+        lineNumbers[slot] = number;
+        lines[slot] = cleanLine;
+        tail = currentTail + 1;
+        if (currentTail + 1 - head >= wakeUpThreshold) {
+            LockSupport.unpark(waitingConsumer);
+        }
+        return !isCancelled;
+    }
+
+    /**
+     * Marks that no more lines will be put. Called by the producer.
+     * @param error The error that stopped the producer, either an {@link IOException} or a
+     *              {@link RuntimeException}, or {@code null} if it reached the end of the file.
+     */
+    void finish(Exception error) {
+        failure = error;
+        isFinished = true;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * Takes the next line from the buffer, waiting while it is empty. Called by the consumer.
+     * @return {@code true} if a line was taken, {@code false} if the producer finished and all the lines
+     *         were taken.
+     * @throws IOException If the producer finished with an error, once all the lines before it were taken.
+     *         A {@link RuntimeException} of the producer is thrown as is.
+     */
+    boolean take() throws IOException {
+        long currentHead = head;
+        for (int spins = 0; currentHead == tail; spins++) {
+            if (isFinished) {
+                if (currentHead != tail) { // Lines put just before finishing
+                    break;
+                }
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure != null) {
+                    throw (IOException) failure;
+                }
+                return false;
+            }
+            if (spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (currentHead == tail && !isFinished) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+        }
+        int slot = (int) currentHead & mask;
+        lineNumber = lineNumbers[slot];
+        line = lines[slot];
+        lines[slot] = null; // Do not hold the line once its slot is released
+        head = currentHead + 1;
+        if (tail - (currentHead + 1) <= wakeUpThreshold) {
+            LockSupport.unpark(waitingProducer);
+        }
+        return true;
+    }
+
+    /**
+     * Marks that no more lines will be taken, releasing the producer if it waits. Called by the consumer.
+     */
+    void cancel() {
+        isCancelled = true;
+        LockSupport.unpark(waitingProducer);
+    }
+
+    /**
+     * @return {@code true} if the consumer cancelled the buffer, {@code false} otherwise.
+     */
+    boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * @return The number of the last taken line in the original file.
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return The last taken line.
+     */
+    String getLine() {
+        return line;
+    }
+
+}
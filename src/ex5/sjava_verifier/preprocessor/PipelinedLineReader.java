@@ -0,0 +1,181 @@
+package ex5.sjava_verifier.preprocessor;
+
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.LimitExceededException;
+import ex5.sjava_verifier.verifier.Watchdog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads and cleans a file on a separate reader thread, while the lines are consumed on the calling thread.
+ * <p>
+ *     The reader thread cleans the lines with a {@link CleanLineReader} into a bounded
+ *     {@link LineRingBuffer}, and {@link #next()} takes them from it. Reading and verification therefore
+ *     overlap: the time to verify a large file approaches the longer of the two instead of their sum.
+ *     The reader thread waits whenever the buffer is full, so at most {@code capacity} lines are held in
+ *     memory.
+ * </p>
+ * <p>
+ *     Closing the reader stops the reader thread, so verification that stops at the first error also stops
+ *     reading. If statistics are attached to the thread that opens a file, the lines cleaned by the reader
+ *     thread are counted into them when the file is closed. Likewise, the reader thread checks the
+ *     {@link Watchdog} of the thread that opens a file, so the lines it reads count towards the limits of
+ *     the verification, and a limit it exceeds is thrown by {@link #next()}.
+ * </p>
+ * <p>
+ *     This class is not thread-safe: it must be opened, read and closed by a single thread.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class PipelinedLineReader implements CleanLineSource, Closeable {
+
+    // Constants
+    /** The default number of lines that may wait in the buffer. */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final String THREAD_NAME = "sjava-reader";
+    private static final String READER_FAILED = "The reader thread failed.";
+
+    // Private fields
+    private final CleanLineReader reader;
+    private final LineRingBuffer buffer;
+    private Thread readerThread;
+    private VerifierStats stats; // The statistics of the consuming thread, if any
+    private VerifierStats readerStats;
+    private Watchdog watchdog; // The watchdog of the consuming thread, if any
+
+    /**
+     * Constructs a reader that cleans files with the given reader, with a buffer of the default capacity.
+     * @param reader The reader to clean the files with. It is only used by the reader thread while a file
+     *               is open.
+     */
+    public PipelinedLineReader(CleanLineReader reader) {
+        this(reader, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a reader that cleans files with the given reader.
+     * @param reader The reader to clean the files with. It is only used by the reader thread while a file
+     *               is open.
+     * @param capacity The maximal number of cleaned lines that may wait in the buffer.
+     */
+    public PipelinedLineReader(CleanLineReader reader, int capacity) {
+        this.reader = reader;
+        this.buffer = new LineRingBuffer(capacity);
+    }
+
+    /**
+     * Opens the given file and starts reading it on the reader thread, closing the previously opened file
+     * if there is one.
+     * @param filePath The path to the file to read.
+     * @throws IOException if the file cannot be opened.
+     */
+    public void open(String filePath) throws IOException {
+        close();
+        reader.open(filePath); // Opened here, so an unreadable file fails like with a CleanLineReader
+        start();
+    }
+
+    /**
+     * Opens the given stream and starts reading it on the reader thread like the content of a file,
+     * closing the previously opened file if there is one. The stream is closed when the reader is closed.
+     * @param input The stream to read.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @throws IOException if an error occurs while closing the previously opened file.
+     */
+    public void open(InputStream input, String sourceName) throws IOException {
+        close();
+        reader.open(input, sourceName);
+        start();
+    }
+
+    /**
+     * Starts the reader thread on the opened file.
+     */
+    private void start() {
+        buffer.clear();
+        stats = VerifierStats.current();
+        readerStats = stats == null ? null : new VerifierStats();
+        watchdog = Watchdog.current();
+        readerThread = new Thread(this::readLines, THREAD_NAME);
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        return buffer.take();
+    }
+
+    @Override
+    public long getLineNumber() {
+        return buffer.getLineNumber();
+    }
+
+    @Override
+    public String getLine() {
+        return buffer.getLine();
+    }
+
+    /**
+     * Stops the reader thread, waits for it and closes the opened file, if there is one.
+     * @throws IOException if an error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (readerThread != null) {
+            buffer.cancel();
+            boolean isInterrupted = false;
+            while (readerThread.isAlive()) {
+                try {
+                    readerThread.join();
+                } catch (InterruptedException e) { // The reader thread must stop before the file is closed
+                    isInterrupted = true;
+                }
+            }
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+            readerThread = null;
+            if (readerStats != null) {
+                stats.merge(readerStats);
+                readerStats = null;
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Cleans the lines of the opened file into the buffer, until the end of the file, an error,
+     * or until the buffer is cancelled. Runs on the reader thread.
+     */
+    private void readLines() {
+        if (readerStats != null) {
+            readerStats.attach();
+        }
+        Watchdog.join(watchdog);
+        Exception failure = null;
+        boolean isStopped = false;
+        try {
+            while (!buffer.isCancelled() && reader.next()) {
+                Watchdog.check(reader.getLineNumber());
+                if (!buffer.put(reader.getLineNumber(), reader.getLine())) {
+                    break;
+                }
+            }
+            isStopped = true;
+        } catch (IOException | LimitExceededException e) {
+            failure = e;
+            isStopped = true;
+        } finally {
+            VerifierStats.detach();
+            Watchdog.stop();
+            // An unexpected error must not look like the end of the file to the consumer
+            buffer.finish(isStopped ? failure : new IOException(FileCleaner.ERROR_PREFIX + READER_FAILED));
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package ex5.sjava_verifier.preprocessor;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A line reader that can be reopened on one file or stream after the other, reusing its buffers.
+ * <p>
+ *     Reads lines exactly like a {@link java.io.BufferedReader} over a {@link java.io.FileReader}:
+ *     the file is decoded with the default charset, malformed input is replaced,
+ *     and a line is terminated by '\n', '\r' or "\r\n".
+ *     Unlike them, the byte buffer, the char buffer, the decoder and the line builder are allocated once,
+ *     so reading a file only allocates the returned lines.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class ReusableLineReader implements Closeable {
+
+    // Constants
+    private static final int BUFFER_SIZE = 8192;
+    private static final char LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+
+    // Private fields
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                                                  .onMalformedInput(CodingErrorAction.REPLACE)
+                                                  .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder();
+    private ReadableByteChannel channel;
+    private boolean isEndOfInput;
+    private boolean skipLineFeed;
+
+    /**
+     * Opens the given file for reading, closing the previously opened file if there is one.
+     * @param filePath The path to the file to read.
+     * @throws IOException If the file cannot be opened.
+     */
+    public void open(String filePath) throws IOException {
+        close();
+        open(new FileInputStream(filePath).getChannel()); // Same errors as a FileReader
+    }
+
+    /**
+     * Opens the given stream for reading, closing the previously opened file if there is one.
+     * The stream is read like the content of a file, and is closed when the reader is closed.
+     * @param input The stream to read.
+     * @throws IOException If an error occurs while closing the previously opened file.
+     */
+    public void open(InputStream input) throws IOException {
+        close();
+        open(Channels.newChannel(input));
+    }
+
+    /**
+     * Reads the next line of the opened file.
+     * @return The next line without its terminator, or {@code null} if the end of the file was reached.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public String readLine() throws IOException {
+        line.setLength(0);
+        boolean isLineStarted = false;
+        while (chars.hasRemaining() || fill()) {
+            char c = chars.get();
+            if (skipLineFeed) { // The previous line ended with '\r', which may be followed by '\n'
+                skipLineFeed = false;
+                if (c == LINE_FEED) {
+                    continue;
+                }
+            }
+            if (c == LINE_FEED) {
+                return line.toString();
+            }
+            if (c == CARRIAGE_RETURN) {
+                skipLineFeed = true;
+                return line.toString();
+            }
+            line.append(c);
+            isLineStarted = true;
+        }
+        return isLineStarted ? line.toString() : null; // The last line may have no terminator
+    }
+
+    /**
+     * Closes the opened file, if there is one. The reader can still be opened on another file.
+     * @throws IOException If an error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Starts reading the given channel from its start.
+     * @param channel The channel to read.
+     */
+    private void open(ReadableByteChannel channel) {
+        this.channel = channel;
+        bytes.clear();
+        chars.clear().flip();
+        decoder.reset();
+        isEndOfInput = false;
+        skipLineFeed = false;
+    }
+
+    /**
+     * Decodes more characters from the file into the char buffer.
+     * @return {@code true} if characters were decoded, {@code false} if the end of the file was reached.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !isEndOfInput) {
+            if (channel.read(bytes) < 0) {
+                isEndOfInput = true;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, isEndOfInput);
+            bytes.compact();
+            if (isEndOfInput) {
+                decoder.flush(chars);
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+}
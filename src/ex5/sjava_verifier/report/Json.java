@@ -0,0 +1,75 @@
+package ex5.sjava_verifier.report;
+
+import java.util.Locale;
+
+/**
+ * Writes the values of the JSON reports.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class Json {
+
+    // Constants
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+    private static final String MILLIS_FORMAT = "%.3f";
+    private static final String NULL = "null";
+    private static final char QUOTE = '"';
+    private static final char BACKSLASH = '\\';
+    private static final char FIRST_PRINTABLE = ' ';
+    private static final String UNICODE_ESCAPE = "\\u%04x";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private Json() {}
+
+    /**
+     * Appends a string as a JSON string, escaping the characters that JSON does not allow in it.
+     * @param builder The builder to append to.
+     * @param value The string, or {@code null} for a JSON null.
+     * @return The builder.
+     */
+    static StringBuilder appendString(StringBuilder builder, String value) {
+        if (value == null) {
+            return builder.append(NULL);
+        }
+        builder.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case QUOTE:
+                case BACKSLASH:
+                    builder.append(BACKSLASH).append(c);
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < FIRST_PRINTABLE) {
+                        builder.append(String.format(UNICODE_ESCAPE, (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append(QUOTE);
+    }
+
+    /**
+     * Appends a duration in milliseconds, with the precision of the statistics.
+     * @param builder The builder to append to.
+     * @param nanos The duration in nanoseconds.
+     * @return The builder.
+     */
+    static StringBuilder appendMillis(StringBuilder builder, long nanos) {
+        return builder.append(String.format(Locale.ROOT, MILLIS_FORMAT, nanos / NANOS_IN_MILLI));
+    }
+
+}
@@ -0,0 +1,111 @@
+package ex5.sjava_verifier.report;
+
+import ex5.sjava_verifier.api.ErrorCategory;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.rules.Diagnostic;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Reports every result as a single line holding a JSON object (JSON Lines), such as:
+ * <pre>
+ * {"path":"a.sjava","status":"invalid","category":"syntax","line":3,"message":"...","duration_ms":0.412}
+ * </pre>
+ * <p>
+ *     The status is {@code valid}, {@code invalid}, {@code error}, for an input that could not be read, or
+ *     {@code timeout}, for an input whose verification exceeded the limits of the verifier.
+ *     The category, the line and the message are {@code null} for a valid input, and the line is
+ *     {@code null} when it is not known. The message is the
+ *     {@link VerificationResult#getBareMessage() bare message}, without the kind of the error and its line.
+ *     Every record is flushed once it is written, so a consumer reads the result of every input as soon as
+ *     it completes.
+ * </p>
+ * <p>
+ *     The {@link Diagnostic diagnostics} of the rules of the verifier, if a result has any, are added to its
+ *     record before the duration, as
+ *     {@code "diagnostics":[{"rule":"unused-variable","line":4,"message":"..."}]}.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class JsonLinesReporter implements ResultReporter {
+
+    // Constants
+    private static final int BUFFER_SIZE = 65536;
+    private static final String[] STATUSES = {"valid", "invalid", "error", "timeout"};
+    private static final String NULL = "null";
+
+    // Private fields
+    private final BufferedWriter writer;
+    private final StringBuilder record = new StringBuilder();
+
+    /**
+     * Constructs a reporter.
+     * @param output The writer to write the records to. It is flushed after every record, and not closed
+     *               when the reporter is closed.
+     */
+    public JsonLinesReporter(Writer output) {
+        this.writer = new BufferedWriter(output, BUFFER_SIZE);
+    }
+
+    @Override
+    public void accept(EntryResult entry) {
+        VerificationResult result = entry.getResult();
+        ErrorCategory category = result.getCategory();
+        record.setLength(0);
+        Json.appendString(record.append("{\"path\":"), entry.getPath());
+        record.append(",\"status\":\"").append(STATUSES[result.getExitStatus()]).append('"');
+        Json.appendString(record.append(",\"category\":"),
+                          category == ErrorCategory.NONE ? null : category.name().toLowerCase(Locale.ROOT));
+        record.append(",\"line\":");
+        if (result.getLineNumber() > 0) {
+            record.append(result.getLineNumber());
+        } else {
+            record.append(NULL);
+        }
+        Json.appendString(record.append(",\"message\":"), result.getBareMessage());
+        if (!result.getDiagnostics().isEmpty()) {
+            appendDiagnostics(result);
+        }
+        Json.appendMillis(record.append(",\"duration_ms\":"), entry.getDurationNanos()).append('}');
+        try {
+            writer.append(record).append('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Appends the diagnostics of the given result to the record.
+     * @param result The result, which has diagnostics.
+     */
+    private void appendDiagnostics(VerificationResult result) {
+        record.append(",\"diagnostics\":[");
+        String separator = "";
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            Json.appendString(record.append(separator).append("{\"rule\":"), diagnostic.getRuleId());
+            record.append(",\"line\":");
+            if (diagnostic.getLineNumber() > 0) {
+                record.append(diagnostic.getLineNumber());
+            } else {
+                record.append(NULL);
+            }
+            Json.appendString(record.append(",\"message\":"), diagnostic.getMessage()).append('}');
+            separator = ",";
+        }
+        record.append(']');
+    }
+
+}
@@ -0,0 +1,39 @@
+package ex5.sjava_verifier.report;
+
+import ex5.sjava_verifier.batch.EntryResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Reports the results of a batch of verifications as they complete, such as to the output of a program.
+ * <p>
+ *     A reporter receives the results on a single thread, and must be {@link #close() closed} after the last
+ *     result to complete its report. A reporter that fails to write a result throws an
+ *     {@link UncheckedIOException}, since it is called as a listener.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public interface ResultReporter extends Consumer<EntryResult>, Closeable {
+
+    /**
+     * Reports the result of a single file.
+     * @param result The result.
+     * @throws UncheckedIOException If an error occurs while writing the report.
+     */
+    @Override
+    void accept(EntryResult result);
+
+    /**
+     * Completes the report after the last result. Does nothing by default.
+     * @throws IOException If an error occurs while writing the report.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,241 @@
+package ex5.sjava_verifier.report;
+
+import ex5.sjava_verifier.api.ErrorCategory;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.rules.Diagnostic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reports the results as a single SARIF 2.1.0 log, which code scanning tools read.
+ * <p>
+ *     The log has a single run, whose rules are the categories of errors. Every invalid input and every input
+ *     that could not be read is a result of the rule of its category, located at the line of its error when
+ *     it is known. Valid inputs have no results.
+ * </p>
+ * <p>
+ *     The location of an entry of an archive is a nested artifact: the archive is an artifact of the run,
+ *     and the entry is an artifact whose parent is the archive and whose URI is the path of the entry,
+ *     relative to the archive. The location of a result in an entry refers to the artifact of the entry by
+ *     its index. The artifacts are written after the results, since they are only known once all the results
+ *     were reported.
+ * </p>
+ * <p>
+ *     Every {@link Diagnostic diagnostic} of the rules of the verifier is a result with the warning level,
+ *     whose rule id is the id of its rule, before the result of the error of its input. These rules are not
+ *     listed in the run, so their results have no rule index.
+ * </p>
+ * <p>
+ *     The log is written as a stream: its start is written before the first result, every result is written
+ *     as it is reported, and its end is written when the reporter is closed. The log is written through a
+ *     buffer, which is flushed when the reporter is closed.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class SarifReporter implements ResultReporter {
+
+    // Constants
+    private static final int BUFFER_SIZE = 65536;
+    private static final String VERSION = "2.1.0";
+    private static final String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+    private static final String TOOL_NAME = "Sjavac";
+    private static final String LEVEL = "error";
+    private static final String DIAGNOSTIC_LEVEL = "warning";
+    private static final String RESULT_SEPARATOR = ",";
+    private static final String RESULTS_END = "]";
+    private static final String LOG_END = "}]}\n";
+    private static final String FILE_SCHEME = "file://";
+    private static final String URI_SAFE_CHARACTERS = "-._~/!$&'()*+,;=:@";
+    private static final String PERCENT_ENCODING = "%%%02X";
+
+    // Private fields
+    private final BufferedWriter writer;
+    private final StringBuilder record = new StringBuilder();
+    private boolean isStarted;
+    private boolean isFirstResult = true;
+    private final Map<String, Integer> artifactIndices = new HashMap<>(); // By the path of the artifact
+    private final StringBuilder artifacts = new StringBuilder();
+
+    /**
+     * Constructs a reporter.
+     * @param output The writer to write the log to. It is flushed, but not closed, when the reporter is
+     *               closed.
+     */
+    public SarifReporter(Writer output) {
+        this.writer = new BufferedWriter(output, BUFFER_SIZE);
+    }
+
+    @Override
+    public void accept(EntryResult entry) {
+        VerificationResult result = entry.getResult();
+        try {
+            start();
+            for (Diagnostic diagnostic : result.getDiagnostics()) {
+                record.setLength(0);
+                Json.appendString(record.append("{\"ruleId\":"), diagnostic.getRuleId());
+                record.append(",\"level\":\"").append(DIAGNOSTIC_LEVEL).append('"');
+                Json.appendString(record.append(",\"message\":{\"text\":"), diagnostic.getMessage());
+                appendLocation(entry.getPath(), diagnostic.getLineNumber());
+                writeResult(record.append('}'));
+            }
+            if (result.isValid()) {
+                return;
+            }
+            record.setLength(0);
+            Json.appendString(record.append("{\"ruleId\":"), ruleIdOf(result.getCategory()));
+            record.append(",\"ruleIndex\":").append(result.getCategory().ordinal() - 1)
+                  .append(",\"level\":\"").append(LEVEL).append('"');
+            Json.appendString(record.append(",\"message\":{\"text\":"), result.getMessage());
+            appendLocation(entry.getPath(), result.getLineNumber());
+            Json.appendMillis(record.append(",\"properties\":{\"duration_ms\":"), entry.getDurationNanos())
+                .append("}}");
+            writeResult(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the end of the log, which is a complete log even if no result was reported.
+     * @throws IOException If an error occurs while writing the log.
+     */
+    @Override
+    public void close() throws IOException {
+        start();
+        writer.append(RESULTS_END);
+        if (!artifactIndices.isEmpty()) {
+            writer.append(",\"artifacts\":[").append(artifacts).append(']');
+        }
+        writer.append(LOG_END);
+        writer.flush();
+    }
+
+    /**
+     * Appends the location of a result to the record, after its message.
+     * @param path The path of the input of the result.
+     * @param lineNumber The line number of the result, or 0 if it is not known.
+     */
+    private void appendLocation(String path, long lineNumber) {
+        record.append("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":");
+        int separator = path.indexOf(EntryResult.ENTRY_SEPARATOR);
+        if (separator < 0) {
+            Json.appendString(record.append("{\"uri\":"), toUri(path, false)).append('}');
+        } else {
+            String entry = path.substring(separator + EntryResult.ENTRY_SEPARATOR.length());
+            int archiveIndex = artifactIndex(path.substring(0, separator), false, -1);
+            int entryIndex = artifactIndex(path, true, archiveIndex);
+            Json.appendString(record.append("{\"uri\":"), toUri(entry, true));
+            record.append(",\"index\":").append(entryIndex).append('}');
+        }
+        if (lineNumber > 0) {
+            record.append(",\"region\":{\"startLine\":").append(lineNumber).append('}');
+        }
+        record.append("}}]");
+    }
+
+    /**
+     * Returns the index of the artifact of a path, adding the artifact to the run if it is not there yet.
+     * @param path The path of the artifact, which is the path of the archive followed by the path of the
+     *             entry for an entry of an archive.
+     * @param isEntry Whether the artifact is an entry of an archive.
+     * @param parentIndex The index of the artifact of the archive of an entry, or -1 if there is none.
+     * @return The index of the artifact.
+     */
+    private int artifactIndex(String path, boolean isEntry, int parentIndex) {
+        Integer index = artifactIndices.get(path);
+        if (index != null) {
+            return index;
+        }
+        index = artifactIndices.size();
+        artifactIndices.put(path, index);
+        String uri = isEntry ? path.substring(path.indexOf(EntryResult.ENTRY_SEPARATOR) +
+                                              EntryResult.ENTRY_SEPARATOR.length()) : path;
+        artifacts.append(index == 0 ? "" : RESULT_SEPARATOR).append("{\"location\":{\"uri\":");
+        Json.appendString(artifacts, toUri(uri, isEntry)).append('}');
+        if (parentIndex >= 0) {
+            artifacts.append(",\"parentIndex\":").append(parentIndex);
+        }
+        artifacts.append('}');
+        return index;
+    }
+
+    /**
+     * Writes a result to the log, after the results that were written before it.
+     * @param result The result.
+     * @throws IOException If an error occurs while writing the log.
+     */
+    private void writeResult(CharSequence result) throws IOException {
+        writer.append(isFirstResult ? "" : RESULT_SEPARATOR).append(result);
+        isFirstResult = false;
+    }
+
+    /**
+     * Writes the start of the log, up to its results, if it was not written yet.
+     * @throws IOException If an error occurs while writing the log.
+     */
+    private void start() throws IOException {
+        if (isStarted) {
+            return;
+        }
+        isStarted = true;
+        StringBuilder start = new StringBuilder();
+        Json.appendString(start.append("{\"version\":"), VERSION);
+        Json.appendString(start.append(",\"$schema\":"), SCHEMA);
+        Json.appendString(start.append(",\"runs\":[{\"tool\":{\"driver\":{\"name\":"), TOOL_NAME);
+        start.append(",\"rules\":[");
+        String separator = "";
+        for (ErrorCategory category : ErrorCategory.values()) {
+            if (category != ErrorCategory.NONE) { // So the index of a rule is the ordinal of its category - 1
+                Json.appendString(start.append(separator).append("{\"id\":"), ruleIdOf(category)).append('}');
+                separator = RESULT_SEPARATOR;
+            }
+        }
+        writer.append(start.append("]}},\"results\":["));
+    }
+
+    /**
+     * @param category The category of an error.
+     * @return The id of the rule of the category.
+     */
+    private static String ruleIdOf(ErrorCategory category) {
+        return category.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Turns a path into a URI reference, percent-encoding the characters that a URI does not allow.
+     * @param path The path.
+     * @param isEntry Whether the path is the path of an entry in an archive, which is always relative to the
+     *                archive.
+     * @return A file URI for an absolute path of a file, or a relative URI reference otherwise.
+     */
+    private static String toUri(String path, boolean isEntry) {
+        StringBuilder uri = new StringBuilder();
+        if (isEntry) {
+            path = path.replaceFirst("^/+", "");
+        } else if (new File(path).isAbsolute()) {
+            uri.append(path.startsWith(File.separator) ? FILE_SCHEME : FILE_SCHEME + '/');
+        }
+        for (byte b : path.replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                URI_SAFE_CHARACTERS.indexOf(c) >= 0) {
+                uri.append(c);
+            } else {
+                uri.append(String.format(PERCENT_ENCODING, b & 0xFF));
+            }
+        }
+        return uri.toString();
+    }
+
+}
@@ -0,0 +1,87 @@
+package ex5.sjava_verifier.rules;
+
+import java.util.Objects;
+
+/**
+ * An immutable diagnostic that a {@link Rule} reported for a line of a file.
+ * <p>
+ *     Diagnostics do not change whether the file is valid. They are reported together with the error of the
+ *     verifier, if there is one.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class Diagnostic {
+
+    // Messages
+    private static final String LINE_MESSAGE = "%s in line %d -> %s";
+    private static final String FILE_MESSAGE = "%s -> %s";
+
+    // Private fields
+    private final String ruleId;
+    private final long lineNumber;
+    private final String message;
+
+    /**
+     * Constructs a diagnostic.
+     * @param ruleId The id of the rule that reported the diagnostic.
+     * @param lineNumber The line number of the diagnostic, or 0 if it is not about a single line.
+     * @param message The message of the diagnostic.
+     */
+    public Diagnostic(String ruleId, long lineNumber, String message) {
+        this.ruleId = Objects.requireNonNull(ruleId);
+        this.lineNumber = lineNumber;
+        this.message = Objects.requireNonNull(message);
+    }
+
+    /**
+     * @return The id of the rule that reported the diagnostic.
+     */
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    /**
+     * @return The line number of the diagnostic, or 0 if it is not about a single line.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return The message of the diagnostic.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Diagnostic)) {
+            return false;
+        }
+        Diagnostic diagnostic = (Diagnostic) other;
+        return lineNumber == diagnostic.lineNumber && ruleId.equals(diagnostic.ruleId) &&
+               message.equals(diagnostic.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ruleId, lineNumber, message);
+    }
+
+    /**
+     * @return The diagnostic in the format of the errors of the verifier, with the id of the rule in place of
+     *         the type of the error.
+     */
+    @Override
+    public String toString() {
+        return lineNumber > 0 ? String.format(LINE_MESSAGE, ruleId, lineNumber, message) :
+               String.format(FILE_MESSAGE, ruleId, message);
+    }
+
+}
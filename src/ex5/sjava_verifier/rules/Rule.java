@@ -0,0 +1,122 @@
+package ex5.sjava_verifier.rules;
+
+/**
+ * An extra check that runs during the verification of every file, such as a lint rule, and reports
+ * {@link Diagnostic diagnostics} in addition to the error of the verifier.
+ * <p>
+ *     A rule receives the events of the same traversal of the lines that verifies them, in the order of the
+ *     lines, so running rules does not read or parse the file again. Every event is a callback with the
+ *     number of the line it happened at, and does nothing by default, so a rule overrides only the events it
+ *     needs. The events of a line come after the reads of the variables that the line uses.
+ * </p>
+ * <p>
+ *     The events stop at the error of the file, and {@link #endFile()} is only called for a valid file. In
+ *     the streaming modes, the error of a call to a method that is declared later is only known at the
+ *     declaration, so the lines up to it may pass their events first.
+ *     The global scope is open for the whole file, so it has no scope events. Rules run in every mode that
+ *     verifies the whole file, and not in the structure-only mode. A file with an illegal structure is not
+ *     traversed at all in the tiered mode.
+ * </p>
+ * <p>
+ *     Every thread that verifies files has its own instance of every rule, which is reused for the files it
+ *     verifies one after the other. A rule must depend only on the events of the current file, since the
+ *     result of a file, with its diagnostics, is reused for the files with the same content.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public interface Rule {
+
+    /**
+     * @return The id of the rule, which is reported with its diagnostics, such as {@code unused-variable}.
+     */
+    String getId();
+
+    /**
+     * Starts a new file, before any other event of the file.
+     * @param context The context to report the diagnostics of the file to.
+     */
+    default void startFile(RuleContext context) {
+    }
+
+    /**
+     * A method declaration, before the scope of the method and its parameters.
+     * @param line The number of the line.
+     * @param name The name of the method.
+     */
+    default void methodStart(long line, String name) {
+    }
+
+    /**
+     * The closing bracket of a method, after its scope is removed.
+     * @param line The number of the line.
+     * @param name The name of the method.
+     */
+    default void methodEnd(long line, String name) {
+    }
+
+    /**
+     * A scope that was added, for the body of a method or of a condition.
+     * @param line The number of the line.
+     * @param depth The depth of the new scope, where the global scope is 1 and a method body is 2.
+     */
+    default void scopePush(long line, int depth) {
+    }
+
+    /**
+     * A scope that was removed, together with its variables.
+     * @param line The number of the line.
+     * @param depth The depth of the removed scope.
+     */
+    default void scopePop(long line, int depth) {
+    }
+
+    /**
+     * A variable that was declared in the current scope.
+     * @param line The number of the line.
+     * @param variable The declared variable. The same object is given in the later events of the variable.
+     * @param isParameter Whether the variable is a parameter of the method that starts at the line.
+     */
+    default void declaration(long line, Symbol variable, boolean isParameter) {
+    }
+
+    /**
+     * A value that was assigned to a variable that was declared before.
+     * @param line The number of the line.
+     * @param variable The assigned variable.
+     */
+    default void assignment(long line, Symbol variable) {
+    }
+
+    /**
+     * A variable whose value is used, as an assigned value, in a condition or as an argument of a call.
+     * @param line The number of the line.
+     * @param variable The used variable.
+     */
+    default void read(long line, Symbol variable) {
+    }
+
+    /**
+     * An {@code if} or a {@code while} statement, before its scope.
+     * @param line The number of the line.
+     * @param isLoop Whether the statement is a {@code while} loop.
+     */
+    default void condition(long line, boolean isLoop) {
+    }
+
+    /**
+     * A method call.
+     * @param line The number of the line.
+     * @param method The name of the called method, which may be declared later in the file.
+     */
+    default void call(long line, String method) {
+    }
+
+    /**
+     * Ends a valid file, after all its lines, while its global variables are still in scope.
+     */
+    default void endFile() {
+    }
+
+}
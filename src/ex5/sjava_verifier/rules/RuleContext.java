@@ -0,0 +1,18 @@
+package ex5.sjava_verifier.rules;
+
+/**
+ * The context of a {@link Rule} while it checks a file, which receives its diagnostics.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public interface RuleContext {
+
+    /**
+     * Reports a diagnostic of the rule in the current file.
+     * @param line The number of the line of the diagnostic, or 0 if it is not about a single line.
+     * @param message The message of the diagnostic.
+     */
+    void report(long line, String message);
+
+}
@@ -0,0 +1,32 @@
+package ex5.sjava_verifier.rules;
+
+import ex5.sjava_verifier.verifier.VarType;
+
+/**
+ * A declared variable, as seen by a {@link Rule}.
+ * <p>
+ *     Every declaration is a different symbol, so a variable that shadows another one is a different symbol
+ *     even if it has the same name.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public interface Symbol {
+
+    /**
+     * @return The name of the variable.
+     */
+    String getName();
+
+    /**
+     * @return The type of the variable.
+     */
+    VarType getType();
+
+    /**
+     * @return {@code true} if the variable is final, {@code false} otherwise.
+     */
+    boolean isFinal();
+
+}
@@ -0,0 +1,197 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.batch.EntryResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable journal of the results of a list of files, so a verification of the list that was stopped can
+ * be resumed without verifying the files again.
+ * <p>
+ *     The results are appended in the order of the list, each as a line encoded by {@link ShardProtocol},
+ *     and the journal is synced to the disk once for every {@value #SYNC_GROUP_SIZE} results, or once
+ *     {@value #SYNC_INTERVAL_MILLIS} milliseconds passed since the last sync, so syncing costs a small
+ *     fraction of the verification. When the journal is opened again, its results are replayed before the
+ *     rest of the list is verified, so the results are the same as those of a verification that was never
+ *     stopped. A record that was only partly written when the verification was stopped, and everything after
+ *     it, is removed, so the files of these records are verified again.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class ResultJournal implements Closeable {
+
+    // Constants
+    private static final int SYNC_GROUP_SIZE = 256;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+    private static final long SYNC_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MILLIS);
+    private static final int BUFFER_SIZE = 65536;
+    private static final byte LINE_END = '\n';
+    private static final int END_OF_STREAM = -1;
+
+    // Private fields
+    private final Path file;
+    private final FileChannel channel;
+    private final Writer writer;
+    private BufferedReader recovered;
+    private long recoveredCount;
+    private long replayedCount;
+    private int unsyncedCount;
+    private long lastSync = System.nanoTime();
+
+    /**
+     * Opens a journal, creating it if it does not exist.
+     * @param file The path to the journal.
+     * @throws IOException If the journal cannot be read or written.
+     */
+    public ResultJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        try {
+            long length = recover();
+            channel.truncate(length); // The partly written record of a stopped verification, and after it
+            channel.position(length);
+            channel.force(false);
+            InputStream records = Files.newInputStream(file);
+            this.recovered = new BufferedReader(new InputStreamReader(records, StandardCharsets.UTF_8),
+                                                BUFFER_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                                                                StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @return The number of results that were recovered when the journal was opened.
+     */
+    public long getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    /**
+     * Reads the next recovered result, in the order of the list.
+     * @return The result, or {@code null} if all the recovered results were read.
+     * @throws IOException If the journal cannot be read.
+     */
+    EntryResult replay() throws IOException {
+        if (recovered == null) {
+            return null;
+        }
+        String record = replayedCount < recoveredCount ? recovered.readLine() : null;
+        if (record == null) { // The rest of the journal holds the appended results
+            recovered.close();
+            recovered = null;
+            return null;
+        }
+        replayedCount++;
+        return ShardProtocol.decodeRecord(record);
+    }
+
+    /**
+     * Appends the result of the next file of the list, and syncs the journal if its group is full.
+     * @param index The index of the file in the list.
+     * @param result The result of the file.
+     * @throws IOException If the journal cannot be written.
+     */
+    void append(long index, EntryResult result) throws IOException {
+        writer.append(ShardProtocol.encodeRecord(index, result)).append((char) LINE_END);
+        if (++unsyncedCount >= SYNC_GROUP_SIZE || System.nanoTime() - lastSync >= SYNC_INTERVAL_NANOS) {
+            sync();
+        }
+    }
+
+    /**
+     * Syncs the journal, and closes it.
+     * @throws IOException If the journal cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            if (recovered != null) {
+                recovered.close();
+            }
+            sync();
+        }
+    }
+
+    /**
+     * Writes the appended results to the disk.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void sync() throws IOException {
+        writer.flush();
+        channel.force(false);
+        unsyncedCount = 0;
+        lastSync = System.nanoTime();
+    }
+
+    /**
+     * Finds the valid records at the start of the journal, and counts them.
+     * @return The length of the valid records, in bytes.
+     * @throws IOException If the journal cannot be read.
+     */
+    private long recover() throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        long length = 0;
+        long offset = 0;
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != END_OF_STREAM) {
+                int recordStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != LINE_END) {
+                        continue;
+                    }
+                    record.write(buffer, recordStart, i - recordStart);
+                    if (!isValid(record.toString(StandardCharsets.UTF_8), recoveredCount)) {
+                        return length;
+                    }
+                    record.reset();
+                    recoveredCount++;
+                    length = offset + i + 1;
+                    recordStart = i + 1;
+                }
+                record.write(buffer, recordStart, read - recordStart);
+                offset += read;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param record A record of the journal.
+     * @param index The index of the file of the record in the list.
+     * @return {@code true} if the record is a valid result of the file, {@code false} otherwise.
+     */
+    private static boolean isValid(String record, long index) {
+        try {
+            return ShardProtocol.recordIndex(record) == index && ShardProtocol.decodeRecord(record) != null;
+        } catch (IOException e) { // Written only partly before the verification was stopped
+            return false;
+        }
+    }
+
+}
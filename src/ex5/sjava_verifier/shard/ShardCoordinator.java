@@ -0,0 +1,563 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.api.VerificationLimits;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.batch.InputFormat;
+import ex5.sjava_verifier.statistics.VerifierStats;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Verifies a list of files with a number of worker processes, each a JVM of its own running
+ * {@link ShardWorker}, so a large batch is not limited by the heap and the garbage collection of a single
+ * JVM.
+ * <p>
+ *     The list is read as a stream, and every file is sent as a task to the worker with the fewest bytes
+ *     waiting for it, so the work is balanced by the sizes of the files and a slow file does not hold the
+ *     files behind it. Every worker holds up to {@value #PENDING_PER_WORKER} tasks, and the results are
+ *     reported on the calling thread in the order of the list, each as soon as it and the files before it
+ *     are verified.
+ * </p>
+ * <p>
+ *     A worker that exits, crashes or sends an invalid message is restarted, and its unfinished tasks are
+ *     sent again. A file whose worker crashed {@value #MAX_ATTEMPTS} times is reported as an error, so a
+ *     single file cannot crash the workers forever, and the verification fails if the workers keep crashing
+ *     without verifying any file.
+ * </p>
+ * <p>
+ *     The workers are started when the first task is sent to them, and exit when the coordinator is
+ *     {@link #close() closed}. A coordinator whose verification failed can only be closed. The statistics of
+ *     the workers are not collected, except for the counts of files and duplicates, which are added to the
+ *     statistics attached to the calling thread. This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class ShardCoordinator implements AutoCloseable {
+
+    // Constants
+    private static final int PENDING_PER_WORKER = 16;
+    private static final int REORDER_PER_WORKER = 4 * PENDING_PER_WORKER;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final int MAX_CONSECUTIVE_CRASHES = 8;
+    private static final int BUFFER_SIZE = 65536;
+    private static final String WORKER_CLASS = ShardWorker.class.getName();
+    private static final String JAVA_COMMAND = "java";
+    private static final String BIN_DIRECTORY = "bin";
+    private static final String CLASS_PATH_OPTION = "-cp";
+    private static final String READER_THREAD_NAME = "sjava-shard-reader-";
+
+    // Errors
+    private static final String INVALID_FILE_FORMAT = "Invalid file format.";
+    private static final String INVALID_PATH = "Invalid path: '%s'.";
+    private static final String WORKER_CRASHED = "The worker verifying the file crashed %d times.";
+    private static final String WORKERS_CRASHING = "The workers keep crashing without verifying any file.";
+    private static final String LIST_ERROR = "An error occurred while reading the list of files: ";
+    private static final String JOURNAL_MISMATCH = "The journal does not belong to the list of files: the" +
+                                                   " file %d of the list is not '%s'.";
+
+    // Private fields
+    private final List<String> workerCommand;
+    private final Worker[] workers;
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private final Deque<Task> retries = new ArrayDeque<>();
+    private final Map<Long, EntryResult> completed = new HashMap<>();
+    private final int maxUndelivered;
+    private long nextIndex;
+    private long nextDelivered;
+    private int pendingTasks;
+    private int consecutiveCrashes;
+    private IOException listError;
+    private ResultJournal journal;
+
+    /**
+     * Constructs a coordinator. No worker is started until there is a file to verify.
+     * @param mode The way the workers verify files.
+     * @param lineCacheSize The maximal number of lines in the line cache of every worker, or 0 to disable it.
+     * @param workerCount The number of worker processes.
+     * @param isDeduplicating Whether every worker reuses the result of every distinct content it verified
+     *                        for its later files with the same content.
+     * @param limits The limits on the verification of every file by the workers.
+     */
+    public ShardCoordinator(VerificationMode mode, int lineCacheSize, int workerCount,
+                            boolean isDeduplicating, VerificationLimits limits) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException(Integer.toString(workerCount));
+        }
+        String java = Path.of(System.getProperty("java.home"), BIN_DIRECTORY, JAVA_COMMAND).toString();
+        this.workerCommand = List.of(java, CLASS_PATH_OPTION, System.getProperty("java.class.path"),
+                                     WORKER_CLASS, Objects.requireNonNull(mode).name(),
+                                     Integer.toString(lineCacheSize), Boolean.toString(isDeduplicating),
+                                     Long.toString(limits.getTimeLimitMillis()),
+                                     Long.toString(limits.getMemoryLimitBytes()));
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i + 1);
+        }
+        this.maxUndelivered = REORDER_PER_WORKER * workerCount;
+    }
+
+    /**
+     * Verifies the files of the given list, and reports the result of every file.
+     * <p>
+     *     Every non-blank line of the list is the path of a {@code .sjava} or {@code .sjava.gz} file,
+     *     relative to the working directory. A list that cannot be read is reported as a single result with
+     *     the path of the list, after the results of the files that were read.
+     * </p>
+     * @param fileList The path to the list of files.
+     * @param listener Receives the result of every file, on the calling thread.
+     * @throws IOException If a worker cannot be started, or if the workers keep crashing.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     */
+    public void verify(Path fileList, Consumer<EntryResult> listener)
+            throws IOException, InterruptedException {
+        verify(fileList, null, listener);
+    }
+
+    /**
+     * Verifies the files of the given list like {@link #verify(Path, Consumer)}, and records the result of
+     * every file in the given journal.
+     * <p>
+     *     The results that the journal recovered from an earlier verification of the list are reported first,
+     *     without verifying their files again, and only the rest of the list is verified. The results are
+     *     recorded in the order of the list as they are reported, so at most the results that wait for the
+     *     files before them are verified again after a stop.
+     * </p>
+     * @param fileList The path to the list of files.
+     * @param journal The journal of the list, or {@code null} to record nothing.
+     * @param listener Receives the result of every file, on the calling thread.
+     * @throws IOException If a worker cannot be started, if the workers keep crashing, if the journal does
+     *                     not belong to the list, or if the journal cannot be read or written.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     */
+    public void verify(Path fileList, ResultJournal journal, Consumer<EntryResult> listener)
+            throws IOException, InterruptedException {
+        this.journal = journal;
+        listError = null;
+        FileInputStream input = null;
+        try { // Opened like a file, so a missing list is reported like a missing file
+            input = new FileInputStream(fileList.toFile());
+        } catch (IOException e) {
+            listError = e;
+        }
+        if (input != null) {
+            Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+            try (BufferedReader list = new BufferedReader(reader, BUFFER_SIZE)) {
+                verify(list, listener);
+            }
+        }
+        if (listError != null) {
+            String message = LIST_ERROR + listError.getMessage();
+            listener.accept(new EntryResult(fileList.toString(), VerificationResult.error(message), 0));
+        }
+    }
+
+    /**
+     * Stops the workers. A worker that is still verifying files is killed.
+     */
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Verifies the files of the given list, sending the files to the workers and reporting their results in
+     * the order of the list.
+     * @param list The list of files.
+     * @param listener Receives the result of every file.
+     * @throws IOException If a worker cannot be started, or if the workers keep crashing.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a result.
+     */
+    private void verify(BufferedReader list, Consumer<EntryResult> listener)
+            throws IOException, InterruptedException {
+        String path = replay(list, listener);
+        while (path != null || pendingTasks > 0 || !retries.isEmpty()) {
+            // The retried files are already inside the window of the results that wait to be reported
+            while (!retries.isEmpty() || (path != null && nextIndex - nextDelivered < maxUndelivered)) {
+                Task task = retries.poll();
+                if (task == null) {
+                    task = createTask(path, nextIndex++);
+                    path = nextPath(list);
+                }
+                if (task != null && !dispatch(task)) { // Every worker is full
+                    retries.addFirst(task);
+                    break;
+                }
+            }
+            flushWorkers();
+            deliver(listener);
+            if (pendingTasks > 0) {
+                handle(events.take());
+            }
+        }
+        deliver(listener);
+    }
+
+    /**
+     * Reports the results that the journal recovered, which are the results of the first files of the list.
+     * @param list The list of files.
+     * @param listener Receives the results.
+     * @return The path of the first file of the list that has no result in the journal, or {@code null} if
+     *         the list ended or cannot be read.
+     * @throws IOException If the journal does not belong to the list, or if it cannot be read.
+     */
+    private String replay(BufferedReader list, Consumer<EntryResult> listener) throws IOException {
+        String path = nextPath(list);
+        EntryResult result;
+        while (journal != null && (result = journal.replay()) != null) {
+            if (!result.getPath().equals(path)) {
+                throw new IOException(String.format(JOURNAL_MISMATCH, nextIndex + 1, result.getPath()));
+            }
+            nextIndex++;
+            nextDelivered++;
+            report(result, listener);
+            path = nextPath(list);
+        }
+        return path;
+    }
+
+    /**
+     * @param list The list of files.
+     * @return The next non-blank path of the list, or {@code null} if the list ended or cannot be read.
+     */
+    private String nextPath(BufferedReader list) {
+        try {
+            String line;
+            while ((line = list.readLine()) != null) {
+                if (!line.isBlank()) {
+                    return line.strip();
+                }
+            }
+        } catch (IOException e) { // Reported after the results of the files that were read
+            listError = e;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the task of verifying a file, or completes the file at once if it cannot be sent to a worker.
+     * @param path The path of the file.
+     * @param index The index of the file in the list.
+     * @return The task, or {@code null} if the file was completed.
+     */
+    private Task createTask(String path, long index) {
+        InputFormat format = InputFormat.of(path);
+        if (format == null || format.isArchive()) {
+            complete(index, new EntryResult(path, VerificationResult.error(INVALID_FILE_FORMAT), 0));
+            return null;
+        }
+        long size;
+        try {
+            size = Files.size(Path.of(path));
+        } catch (InvalidPathException e) {
+            complete(index, new EntryResult(path, VerificationResult.error(String.format(INVALID_PATH, path)),
+                                            0));
+            return null;
+        } catch (IOException e) { // The worker reports the error of reading the file
+            size = 0;
+        }
+        return new Task(index, path, size);
+    }
+
+    /**
+     * Sends a task to the worker with the fewest bytes waiting for it, starting the worker if needed.
+     * @param task The task.
+     * @return {@code true} if the task was sent, {@code false} if every worker is full.
+     * @throws IOException If the worker cannot be started.
+     */
+    private boolean dispatch(Task task) throws IOException {
+        Worker target = null;
+        for (Worker worker : workers) {
+            if (worker.pending.size() < PENDING_PER_WORKER &&
+                (target == null || worker.pendingBytes < target.pendingBytes)) {
+                target = worker;
+            }
+        }
+        if (target == null) {
+            return false;
+        }
+        target.send(task);
+        pendingTasks++;
+        return true;
+    }
+
+    /**
+     * Flushes the tasks that were sent to the workers.
+     */
+    private void flushWorkers() {
+        for (Worker worker : workers) {
+            worker.flush();
+        }
+    }
+
+    /**
+     * Handles an event of a worker.
+     * @param event The event.
+     * @throws IOException If a worker crashed, and the workers keep crashing without verifying any file.
+     */
+    private void handle(Event event) throws IOException {
+        Worker worker = event.worker;
+        if (event.generation != worker.generation) {
+            return; // An event of a process that was already replaced
+        }
+        if (event.message != null) {
+            try {
+                long index = ShardProtocol.resultIndex(event.message);
+                Task task = worker.pending.get(index);
+                if (task != null) {
+                    EntryResult result = ShardProtocol.decodeResult(event.message, task.path);
+                    worker.complete(task);
+                    pendingTasks--;
+                    consecutiveCrashes = 0;
+                    complete(index, result);
+                    return;
+                }
+            } catch (IOException e) { // An invalid message, so the worker is not trusted anymore
+                System.err.println(e.getMessage());
+            }
+        }
+        crash(worker);
+    }
+
+    /**
+     * Stops a crashed worker and sends its unfinished tasks again. Only the first task was being verified
+     * when the worker crashed, since a worker verifies its tasks in order, so only that task is reported as
+     * an error after too many attempts.
+     * @param worker The worker.
+     * @throws IOException If the workers keep crashing without verifying any file.
+     */
+    private void crash(Worker worker) throws IOException {
+        worker.stop();
+        if (++consecutiveCrashes > MAX_CONSECUTIVE_CRASHES) {
+            throw new IOException(WORKERS_CRASHING);
+        }
+        List<Task> unfinished = new ArrayList<>(worker.pending.values());
+        for (int i = unfinished.size() - 1; i >= 0; i--) { // Keep the order of the tasks
+            Task task = unfinished.get(i);
+            worker.complete(task);
+            pendingTasks--;
+            if (i == 0 && ++task.attempts >= MAX_ATTEMPTS) {
+                String message = String.format(WORKER_CRASHED, task.attempts);
+                complete(task.index, new EntryResult(task.path, VerificationResult.error(message), 0));
+            } else {
+                retries.addFirst(task);
+            }
+        }
+    }
+
+    /**
+     * Records the result of a file, until it is reported in the order of the list.
+     * @param index The index of the file.
+     * @param result The result.
+     */
+    private void complete(long index, EntryResult result) {
+        completed.put(index, result);
+    }
+
+    /**
+     * Reports the results at the head of the list that are completed, and records them in the journal.
+     * @param listener Receives the results.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void deliver(Consumer<EntryResult> listener) throws IOException {
+        EntryResult result;
+        while ((result = completed.remove(nextDelivered)) != null) {
+            if (journal != null) {
+                journal.append(nextDelivered, result);
+            }
+            nextDelivered++;
+            report(result, listener);
+        }
+    }
+
+    /**
+     * Reports the result of a file, and counts it in the statistics attached to the calling thread.
+     * @param result The result.
+     * @param listener Receives the result.
+     */
+    private static void report(EntryResult result, Consumer<EntryResult> listener) {
+        VerifierStats stats = VerifierStats.current();
+        if (stats != null) {
+            stats.countFile();
+        }
+        if (result.isDuplicate()) {
+            VerifierStats.countDuplicateFile();
+        }
+        listener.accept(result);
+    }
+
+    /**
+     * The task of verifying a single file of the list.
+     */
+    private static final class Task {
+
+        // Private fields
+        private final long index;
+        private final String path;
+        private final long size;
+        private int attempts;
+
+        private Task(long index, String path, long size) {
+            this.index = index;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A line sent by a worker, or the end of its output if the message is {@code null}.
+     */
+    private static final class Event {
+
+        // Private fields
+        private final Worker worker;
+        private final int generation;
+        private final String message;
+
+        private Event(Worker worker, int generation, String message) {
+            this.worker = worker;
+            this.generation = generation;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A worker process, which is replaced by a new process of the next generation when it crashes.
+     */
+    private final class Worker {
+
+        // Private fields
+        private final int id;
+        private final Map<Long, Task> pending = new LinkedHashMap<>();
+        private long pendingBytes;
+        private int generation;
+        private Process process;
+        private BufferedWriter tasks;
+        private boolean isFlushNeeded;
+
+        private Worker(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Sends a task to the process, starting it if it is not running.
+         * @param task The task.
+         * @throws IOException If the process cannot be started.
+         */
+        private void send(Task task) throws IOException {
+            if (process == null) {
+                start();
+            }
+            pending.put(task.index, task);
+            pendingBytes += task.size;
+            try {
+                tasks.append(ShardProtocol.encodeTask(task.index, task.path)).append('\n');
+                isFlushNeeded = true;
+            } catch (IOException e) { // The process died, which its reader reports
+                isFlushNeeded = false;
+            }
+        }
+
+        /**
+         * Flushes the tasks that were sent to the process.
+         */
+        private void flush() {
+            if (isFlushNeeded) {
+                isFlushNeeded = false;
+                try {
+                    tasks.flush();
+                } catch (IOException ignored) { // The process died, which its reader reports
+                }
+            }
+        }
+
+        /**
+         * Removes a finished task.
+         * @param task The task.
+         */
+        private void complete(Task task) {
+            pending.remove(task.index);
+            pendingBytes -= task.size;
+        }
+
+        /**
+         * Starts a new process, together with a thread that reads its results into the events.
+         * @throws IOException If the process cannot be started.
+         */
+        private void start() throws IOException {
+            process = new ProcessBuilder(workerCommand).redirectError(ProcessBuilder.Redirect.INHERIT)
+                                                       .start();
+            tasks = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                                                              StandardCharsets.UTF_8), BUFFER_SIZE);
+            BufferedReader results = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                                                                              StandardCharsets.UTF_8));
+            int readGeneration = generation;
+            Thread reader = new Thread(() -> read(results, readGeneration), READER_THREAD_NAME + id);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * Reads the results of a process into the events, followed by the end of its output.
+         * @param results The output of the process.
+         * @param readGeneration The generation of the process.
+         */
+        private void read(BufferedReader results, int readGeneration) {
+            try (results) {
+                String line;
+                while ((line = results.readLine()) != null) {
+                    events.add(new Event(this, readGeneration, line));
+                }
+            } catch (IOException ignored) { // The end of the output, like when the process is killed
+            }
+            events.add(new Event(this, readGeneration, null));
+        }
+
+        /**
+         * Stops the process, if it is running, and ignores the events it already sent. Closing its input
+         * lets an idle process exit by itself, and a process with unfinished tasks is killed.
+         */
+        private void stop() {
+            if (process == null) {
+                return;
+            }
+            generation++;
+            try {
+                tasks.close();
+            } catch (IOException ignored) { // The process is killed below anyway
+            }
+            if (!pending.isEmpty()) {
+                process.destroyForcibly();
+            }
+            process = null;
+            tasks = null;
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.api.ErrorCategory;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.EntryResult;
+
+import java.io.IOException;
+
+/**
+ * Encodes the messages between a {@link ShardCoordinator} and its workers, each as a single line. The
+ * results files of a {@link SpoolDirectory} hold results in the same encoding, and the records of a
+ * {@link ResultJournal} are the path of a file followed by its result.
+ * <p>
+ *     A task is the index of a file and its path, and a result is the index of a file, its exit status,
+ *     the category and the line of its error, the time its verification took, whether it was a duplicate
+ *     and its message. The fields of
+ *     a message are separated by tabs, and the tabs, line breaks and backslashes in the paths and the
+ *     messages are escaped with backslashes.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class ShardProtocol {
+
+    // Constants
+    private static final char SEPARATOR = '\t';
+    private static final char ESCAPE = '\\';
+    private static final int TASK_FIELDS = 2;
+    private static final int RESULT_FIELDS = 7;
+    private static final int INDEX_FIELD = 0;
+    private static final int PATH_FIELD = 1;
+    private static final int STATUS_FIELD = 1;
+    private static final int CATEGORY_FIELD = 2;
+    private static final int LINE_FIELD = 3;
+    private static final int DURATION_FIELD = 4;
+    private static final int DUPLICATE_FIELD = 5;
+    private static final int MESSAGE_FIELD = 6;
+    private static final String DUPLICATE = "1";
+    private static final String NOT_DUPLICATE = "0";
+
+    // Errors
+    private static final String INVALID_MESSAGE = "Invalid message from a worker: '%s'.";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private ShardProtocol() {}
+
+    /**
+     * @param index The index of a file.
+     * @param path The path of the file.
+     * @return The task of verifying the file.
+     */
+    static String encodeTask(long index, String path) {
+        return index + String.valueOf(SEPARATOR) + escape(path);
+    }
+
+    /**
+     * @param index The index of a file.
+     * @param entry The result of verifying the file.
+     * @return The message of the result.
+     */
+    static String encodeResult(long index, EntryResult entry) {
+        VerificationResult result = entry.getResult();
+        String message = result.getMessage();
+        return String.valueOf(index) + SEPARATOR + result.getExitStatus() + SEPARATOR +
+               result.getCategory().name() + SEPARATOR + result.getLineNumber() + SEPARATOR +
+               entry.getDurationNanos() + SEPARATOR + (entry.isDuplicate() ? DUPLICATE : NOT_DUPLICATE) +
+               SEPARATOR + (message == null ? "" : escape(message));
+    }
+
+    /**
+     * @param index The index of a file.
+     * @param entry The result of verifying the file.
+     * @return The record of the result in a journal, which holds the path of the file.
+     */
+    static String encodeRecord(long index, EntryResult entry) {
+        return escape(entry.getPath()) + SEPARATOR + encodeResult(index, entry);
+    }
+
+    /**
+     * @param record A record of a journal.
+     * @return The index of the file of the record.
+     * @throws IOException If the record is invalid.
+     */
+    static long recordIndex(String record) throws IOException {
+        return resultIndex(record.substring(record.indexOf(SEPARATOR) + 1));
+    }
+
+    /**
+     * Decodes a record of a journal.
+     * @param record The record.
+     * @return The result of the record.
+     * @throws IOException If the record is invalid.
+     */
+    static EntryResult decodeRecord(String record) throws IOException {
+        int separator = record.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IOException(String.format(INVALID_MESSAGE, record));
+        }
+        return decodeResult(record.substring(separator + 1), unescape(record.substring(0, separator)));
+    }
+
+    /**
+     * @param task A task.
+     * @return The index of the file of the task.
+     * @throws IOException If the task is invalid.
+     */
+    static long taskIndex(String task) throws IOException {
+        return parseLong(task, split(task, TASK_FIELDS)[INDEX_FIELD]);
+    }
+
+    /**
+     * @param task A task.
+     * @return The path of the file of the task.
+     * @throws IOException If the task is invalid.
+     */
+    static String taskPath(String task) throws IOException {
+        return unescape(split(task, TASK_FIELDS)[PATH_FIELD]);
+    }
+
+    /**
+     * @param result The message of a result.
+     * @return The index of the file of the result.
+     * @throws IOException If the message is invalid.
+     */
+    static long resultIndex(String result) throws IOException {
+        return parseLong(result, split(result, RESULT_FIELDS)[INDEX_FIELD]);
+    }
+
+    /**
+     * Decodes the message of a result.
+     * @param result The message.
+     * @param path The path of the file of the result.
+     * @return The result.
+     * @throws IOException If the message is invalid.
+     */
+    static EntryResult decodeResult(String result, String path) throws IOException {
+        String[] fields = split(result, RESULT_FIELDS);
+        long duration = parseLong(result, fields[DURATION_FIELD]);
+        boolean isDuplicate = fields[DUPLICATE_FIELD].equals(DUPLICATE);
+        if (!isDuplicate && !fields[DUPLICATE_FIELD].equals(NOT_DUPLICATE)) {
+            throw new IOException(String.format(INVALID_MESSAGE, result));
+        }
+        String message = unescape(fields[MESSAGE_FIELD]);
+        try {
+            switch ((int) parseLong(result, fields[STATUS_FIELD])) {
+                case VerificationResult.EXIT_VALID:
+                    return new EntryResult(path, VerificationResult.valid(), duration, isDuplicate);
+                case VerificationResult.EXIT_INVALID:
+                    ErrorCategory category = ErrorCategory.valueOf(fields[CATEGORY_FIELD]);
+                    long line = parseLong(result, fields[LINE_FIELD]);
+                    VerificationResult invalid = VerificationResult.invalid(category, message, line);
+                    return new EntryResult(path, invalid, duration, isDuplicate);
+                case VerificationResult.EXIT_ERROR:
+                    return new EntryResult(path, VerificationResult.error(message), duration, isDuplicate);
+                case VerificationResult.EXIT_LIMIT_EXCEEDED:
+                    long timeoutLine = parseLong(result, fields[LINE_FIELD]);
+                    VerificationResult timeout = VerificationResult.timeout(message, timeoutLine);
+                    return new EntryResult(path, timeout, duration, isDuplicate);
+                default:
+                    throw new IOException(String.format(INVALID_MESSAGE, result));
+            }
+        } catch (IllegalArgumentException e) { // An unknown category
+            throw new IOException(String.format(INVALID_MESSAGE, result));
+        }
+    }
+
+    /**
+     * Splits a message into its fields.
+     * @param message The message.
+     * @param count The number of fields of the message.
+     * @return The fields, which are still escaped.
+     * @throws IOException If the message does not have the given number of fields.
+     */
+    private static String[] split(String message, int count) throws IOException {
+        String[] fields = message.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != count) {
+            throw new IOException(String.format(INVALID_MESSAGE, message));
+        }
+        return fields;
+    }
+
+    /**
+     * @param message The message of a field.
+     * @param field The field.
+     * @return The number in the field.
+     * @throws IOException If the field is not a number.
+     */
+    private static long parseLong(String message, String field) throws IOException {
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format(INVALID_MESSAGE, message));
+        }
+    }
+
+    /**
+     * @param text A text.
+     * @return The text, with its tabs, line breaks and backslashes escaped.
+     */
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case SEPARATOR:
+                    builder.append(ESCAPE).append('t');
+                    break;
+                case '\n':
+                    builder.append(ESCAPE).append('n');
+                    break;
+                case '\r':
+                    builder.append(ESCAPE).append('r');
+                    break;
+                case ESCAPE:
+                    builder.append(ESCAPE).append(ESCAPE);
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param text An escaped text.
+     * @return The original text.
+     */
+    private static String unescape(String text) {
+        if (text.indexOf(ESCAPE) < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ESCAPE && i + 1 < text.length()) {
+                char escaped = text.charAt(++i);
+                c = escaped == 't' ? SEPARATOR : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+}
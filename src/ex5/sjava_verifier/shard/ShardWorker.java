@@ -0,0 +1,123 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationLimits;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.batch.BatchVerifier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A worker process of a {@link ShardCoordinator}, which verifies the files it receives on its standard input
+ * and writes their results to its standard output.
+ * <p>
+ *     Usage: {@code java ex5.sjava_verifier.shard.ShardWorker MODE LINE_CACHE_SIZE DEDUPLICATE TIME_LIMIT
+ *     MEMORY_LIMIT}, where the mode is the name of a {@link VerificationMode}, {@code DEDUPLICATE} is
+ *     {@code true} to reuse the result of every distinct content for the later files of the worker with the
+ *     same content, and the limits are those of {@link VerificationLimits}, in milliseconds and bytes. Every
+ *     line of the input is a task and every line of the output is a result, encoded by {@link ShardProtocol}.
+ *     The results are written in the order of the tasks, and are flushed whenever no more tasks are waiting.
+ *     The worker exits when its input ends.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class ShardWorker {
+
+    // Constants
+    private static final int MODE_ARG = 0;
+    private static final int LINE_CACHE_SIZE_ARG = 1;
+    private static final int DEDUPLICATE_ARG = 2;
+    private static final int TIME_LIMIT_ARG = 3;
+    private static final int MEMORY_LIMIT_ARG = 4;
+    private static final int ARG_COUNT = 5;
+    private static final int BUFFER_SIZE = 65536;
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 2;
+
+    // Errors
+    private static final String USAGE = "Usage: ShardWorker MODE LINE_CACHE_SIZE DEDUPLICATE TIME_LIMIT" +
+                                        " MEMORY_LIMIT";
+    private static final String WORKER_ERROR = "The worker failed: ";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private ShardWorker() {}
+
+    /**
+     * The main method of a worker.
+     * @param args The mode, the size of the line cache, whether to reuse the results of duplicates and the
+     *             limits on every file.
+     */
+    public static void main(String[] args) {
+        SjavaVerifier verifier;
+        try {
+            if (args.length != ARG_COUNT) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            VerificationLimits limits = new VerificationLimits(Long.parseLong(args[TIME_LIMIT_ARG]),
+                                                               Long.parseLong(args[MEMORY_LIMIT_ARG]));
+            verifier = new SjavaVerifier(VerificationMode.valueOf(args[MODE_ARG]),
+                                         Integer.parseInt(args[LINE_CACHE_SIZE_ARG]), limits);
+        } catch (IllegalArgumentException e) { // Also an invalid mode, size or limit
+            System.err.println(USAGE);
+            System.exit(EXIT_FAILURE);
+            return;
+        }
+        try {
+            work(verifier, Boolean.parseBoolean(args[DEDUPLICATE_ARG]));
+        } catch (IOException | UncheckedIOException e) { // The coordinator is gone
+            System.err.println(WORKER_ERROR + e.getMessage());
+            System.exit(EXIT_FAILURE);
+        }
+        System.exit(EXIT_SUCCESS);
+    }
+
+    /**
+     * Verifies the tasks of the standard input until it ends.
+     * @param verifier The verifier to verify every file with.
+     * @param isDeduplicating Whether to reuse the result of every distinct content for the later files with
+     *                        the same content.
+     * @throws IOException If an error occurs while reading a task or writing a result.
+     */
+    private static void work(SjavaVerifier verifier, boolean isDeduplicating) throws IOException {
+        BufferedReader tasks = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+                                                  BUFFER_SIZE);
+        // Not System.out, which hides the errors of writing
+        Writer results = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                                                                   StandardCharsets.UTF_8), BUFFER_SIZE);
+        try (BatchVerifier batchVerifier = new BatchVerifier(verifier, 1, isDeduplicating)) {
+            String task;
+            while ((task = tasks.readLine()) != null) {
+                long index = ShardProtocol.taskIndex(task);
+                Path file = Path.of(ShardProtocol.taskPath(task));
+                batchVerifier.verify(file, entry -> {
+                    try {
+                        results.append(ShardProtocol.encodeResult(index, entry)).append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (!tasks.ready()) { // Flush once for all the tasks that were already waiting
+                    results.flush();
+                }
+            }
+        } catch (InterruptedException e) { // Only single files are verified, on this thread
+            Thread.currentThread().interrupt();
+        }
+        results.flush();
+    }
+
+}
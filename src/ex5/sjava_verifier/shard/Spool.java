@@ -0,0 +1,279 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationLimits;
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.report.JsonLinesReporter;
+import ex5.sjava_verifier.report.ResultReporter;
+import ex5.sjava_verifier.report.SarifReporter;
+import ex5.sjava_verifier.verifier.CodeVerifier;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Runs the roles of a verification job that many machines share through a {@link SpoolDirectory}.
+ * <p>
+ *     Usage:
+ * </p>
+ * <ul>
+ *     <li>{@code java ex5.sjava_verifier.shard.Spool submit SPOOL LIST [--batch-size=N]} splits the list of
+ *     files into batches of {@value #DEFAULT_BATCH_SIZE} files by default, and adds them to the spool.</li>
+ *     <li>{@code java ex5.sjava_verifier.shard.Spool work SPOOL [--worker-id=ID] [--lease=SECONDS]
+ *     [--mode=MODE] [--dedup] [--time-limit=MS] [--memory-limit=BYTES]} runs a {@link SpoolWorker} until
+ *     the spool has no more work. The id is the host name and the process id by default, the lease is
+ *     {@value #DEFAULT_LEASE_SECONDS} seconds by default, and the mode is {@code two_pass} (the default),
+ *     {@code streaming} or {@code pipelined}. With {@code --dedup}, the worker reuses the result of every
+ *     distinct content it verified for its later files with the same content. The limits are the
+ *     {@link VerificationLimits} of every file, and there are none by default.</li>
+ *     <li>{@code java ex5.sjava_verifier.shard.Spool collect SPOOL [--wait] [--output=FORMAT]} prints the
+ *     results of all the files in the order of the list, like {@code Sjavac} prints the results of a list,
+ *     and exits with the highest exit value of the files. With {@code --wait}, it waits until all the
+ *     batches are done. The format is {@code text} (the default), {@code jsonl} or {@code sarif}.</li>
+ * </ul>
+ * <p>
+ *     Any number of workers may run on any number of machines that share the spool, and a temporary
+ *     directory with a few local workers stands in for a shared filesystem when testing.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class Spool {
+
+    // Constants
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int DEFAULT_LEASE_SECONDS = 60;
+    private static final long MILLIS_IN_SECOND = 1000;
+    private static final long POLL_MILLIS = 500;
+    private static final int COMMAND_ARG = 0;
+    private static final int SPOOL_ARG = 1;
+    private static final int LIST_ARG = 2;
+    private static final int EXIT_VALID = VerificationResult.EXIT_VALID;
+    private static final int EXIT_ERROR = VerificationResult.EXIT_ERROR;
+
+    // Commands and options
+    private static final String SUBMIT_COMMAND = "submit";
+    private static final String WORK_COMMAND = "work";
+    private static final String COLLECT_COMMAND = "collect";
+    private static final String BATCH_SIZE_OPTION = "--batch-size=";
+    private static final String WORKER_ID_OPTION = "--worker-id=";
+    private static final String LEASE_OPTION = "--lease=";
+    private static final String MODE_OPTION = "--mode=";
+    private static final String DEDUP_OPTION = "--dedup";
+    private static final String TIME_LIMIT_OPTION = "--time-limit=";
+    private static final String MEMORY_LIMIT_OPTION = "--memory-limit=";
+    private static final String WAIT_OPTION = "--wait";
+    private static final String OUTPUT_OPTION = "--output=";
+    private static final String TEXT_FORMAT = "text";
+    private static final String JSON_LINES_FORMAT = "jsonl";
+    private static final String SARIF_FORMAT = "sarif";
+    private static final String WORKER_ID_SEPARATOR = "-";
+
+    // Messages
+    private static final String USAGE =
+            "Usage: Spool submit SPOOL LIST [--batch-size=N] | " +
+            "Spool work SPOOL [--worker-id=ID] [--lease=SECONDS] [--mode=MODE] [--dedup] " +
+            "[--time-limit=MS] [--memory-limit=BYTES] | " +
+            "Spool collect SPOOL [--wait] [--output=FORMAT]";
+    private static final String UNKNOWN_OPTION = "Unknown option: '%s'.";
+    private static final String INVALID_NUMBER = "Invalid value of the option '%s'.";
+    private static final String SUBMITTED = "Submitted %d batches.%n";
+    private static final String WORKED = "Worker %s completed %d batches.%n";
+    private static final String ENTRY_MESSAGE = "%s: %s";
+    private static final String SPOOL_ERROR = "An error occurred while using the spool: ";
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private Spool() {}
+
+    /**
+     * Runs a role of the job.
+     * @param args The command, the spool, and the arguments and options of the command.
+     */
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(args);
+        } catch (IllegalArgumentException e) { // Invalid arguments
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            exitCode = EXIT_ERROR;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(SPOOL_ERROR + e.getMessage());
+            exitCode = EXIT_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = EXIT_ERROR;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs the command of the arguments.
+     * @param args The program arguments.
+     * @return The exit value of the program.
+     * @throws IOException If the spool cannot be read or written.
+     * @throws InterruptedException If the program is interrupted while waiting.
+     */
+    private static int run(String[] args) throws IOException, InterruptedException {
+        if (args.length <= SPOOL_ARG) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        SpoolDirectory spool = new SpoolDirectory(Path.of(args[SPOOL_ARG]));
+        switch (args[COMMAND_ARG]) {
+            case SUBMIT_COMMAND:
+                if (args.length <= LIST_ARG) {
+                    throw new IllegalArgumentException(USAGE);
+                }
+                int batchSize = DEFAULT_BATCH_SIZE;
+                for (int i = LIST_ARG + 1; i < args.length; i++) {
+                    batchSize = (int) parseOption(args[i], BATCH_SIZE_OPTION);
+                }
+                System.out.printf(SUBMITTED, spool.submit(Path.of(args[LIST_ARG]), batchSize));
+                return EXIT_VALID;
+            case WORK_COMMAND:
+                return work(spool, args);
+            case COLLECT_COMMAND:
+                return collect(spool, args);
+            default:
+                throw new IllegalArgumentException(USAGE);
+        }
+    }
+
+    /**
+     * Runs a worker until the spool has no more work.
+     * @param spool The spool.
+     * @param args The program arguments.
+     * @return The exit value of the program.
+     * @throws IOException If the spool cannot be read or written.
+     * @throws InterruptedException If the worker is interrupted while waiting for work.
+     */
+    private static int work(SpoolDirectory spool, String[] args) throws IOException, InterruptedException {
+        String workerId = InetAddress.getLocalHost().getHostName() + WORKER_ID_SEPARATOR +
+                          ProcessHandle.current().pid();
+        long leaseSeconds = DEFAULT_LEASE_SECONDS;
+        VerificationMode mode = VerificationMode.TWO_PASS;
+        boolean isDeduplicating = false;
+        long timeLimitMillis = 0;
+        long memoryLimitBytes = 0;
+        for (int i = SPOOL_ARG + 1; i < args.length; i++) {
+            if (args[i].equals(DEDUP_OPTION)) {
+                isDeduplicating = true;
+            } else if (args[i].startsWith(WORKER_ID_OPTION)) {
+                workerId = args[i].substring(WORKER_ID_OPTION.length());
+            } else if (args[i].startsWith(MODE_OPTION)) {
+                mode = VerificationMode.valueOf(args[i].substring(MODE_OPTION.length())
+                                                       .toUpperCase(Locale.ROOT));
+            } else if (args[i].startsWith(TIME_LIMIT_OPTION)) {
+                timeLimitMillis = parseOption(args[i], TIME_LIMIT_OPTION);
+            } else if (args[i].startsWith(MEMORY_LIMIT_OPTION)) {
+                memoryLimitBytes = parseOption(args[i], MEMORY_LIMIT_OPTION);
+            } else {
+                leaseSeconds = parseOption(args[i], LEASE_OPTION);
+            }
+        }
+        SjavaVerifier verifier = new SjavaVerifier(mode, CodeVerifier.DEFAULT_LINE_CACHE_SIZE,
+                                                   new VerificationLimits(timeLimitMillis, memoryLimitBytes));
+        SpoolWorker worker = new SpoolWorker(spool, verifier, isDeduplicating, workerId,
+                                             leaseSeconds * MILLIS_IN_SECOND);
+        int completed = worker.run();
+        System.out.printf(WORKED, workerId, completed);
+        return EXIT_VALID;
+    }
+
+    /**
+     * Prints the results of all the files of the spool.
+     * @param spool The spool.
+     * @param args The program arguments.
+     * @return The highest exit value of the files.
+     * @throws IOException If the spool cannot be read, or if it is not complete.
+     * @throws InterruptedException If the program is interrupted while waiting for the batches.
+     */
+    private static int collect(SpoolDirectory spool, String[] args) throws IOException, InterruptedException {
+        boolean isWaiting = false;
+        String outputFormat = TEXT_FORMAT;
+        for (int i = SPOOL_ARG + 1; i < args.length; i++) {
+            if (args[i].equals(WAIT_OPTION)) {
+                isWaiting = true;
+            } else if (args[i].startsWith(OUTPUT_OPTION)) {
+                outputFormat = args[i].substring(OUTPUT_OPTION.length());
+            } else {
+                throw new IllegalArgumentException(String.format(UNKNOWN_OPTION, args[i]));
+            }
+        }
+        ResultReporter reporter = createReporter(outputFormat);
+        while (isWaiting && (!spool.isSubmitted() || spool.completedCount() < spool.batchCount())) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        int[] exitCode = {EXIT_VALID};
+        try (reporter) {
+            spool.collect(entry -> {
+                reporter.accept(entry);
+                exitCode[0] = Math.max(exitCode[0], entry.getResult().getExitStatus());
+            });
+        }
+        return exitCode[0];
+    }
+
+    /**
+     * @param outputFormat The format in which the results are printed.
+     * @return The reporter that prints the results in the format.
+     */
+    private static ResultReporter createReporter(String outputFormat) {
+        // Not System.out, which hides the errors of writing
+        Writer output = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                                               StandardCharsets.UTF_8);
+        switch (outputFormat) {
+            case JSON_LINES_FORMAT:
+                return new JsonLinesReporter(output);
+            case SARIF_FORMAT:
+                return new SarifReporter(output);
+            case TEXT_FORMAT:
+                return entry -> {
+                    VerificationResult result = entry.getResult();
+                    if (!result.isValid()) {
+                        System.err.println(String.format(ENTRY_MESSAGE, entry.getPath(),
+                                                         result.getMessage()));
+                    }
+                };
+            default:
+                throw new IllegalArgumentException(String.format(UNKNOWN_OPTION,
+                                                                 OUTPUT_OPTION + outputFormat));
+        }
+    }
+
+    /**
+     * Parses a positive number option.
+     * @param arg The argument of the option.
+     * @param option The option, including its {@code =}.
+     * @return The value of the option.
+     * @throws IllegalArgumentException If the argument is not the option, or if its value is not a positive
+     *                                  number.
+     */
+    private static long parseOption(String arg, String option) {
+        if (!arg.startsWith(option)) {
+            throw new IllegalArgumentException(String.format(UNKNOWN_OPTION, arg));
+        }
+        try {
+            long value = Long.parseLong(arg.substring(option.length()));
+            if (value > 0 && value <= Integer.MAX_VALUE) {
+                return value;
+            }
+        } catch (NumberFormatException ignored) { // Reported below
+        }
+        throw new IllegalArgumentException(String.format(INVALID_NUMBER, arg));
+    }
+
+}
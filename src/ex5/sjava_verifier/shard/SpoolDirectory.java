@@ -0,0 +1,401 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.batch.EntryResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A work queue of files to verify in a directory that many workers share, such as on a shared filesystem,
+ * without any broker.
+ * <p>
+ *     A list of files is {@link #submit(Path, int) submitted} as batches, which are files in the
+ *     {@code pending} directory. A worker {@link #claim(String, long) claims} a batch by renaming it into the
+ *     {@code leased} directory under a name that holds the worker and the expiry of its lease, and renews
+ *     the lease by renaming it again. Since a rename is atomic, only one worker claims every batch. A worker
+ *     {@link #complete(Lease, List) completes} a batch by writing its results into the {@code results}
+ *     directory and renaming the batch into the {@code done} directory. A lease that expires, like when its
+ *     worker dies, is {@link #reclaimExpired() reclaimed} into the {@code pending} directory by any worker.
+ * </p>
+ * <p>
+ *     Files are written into the {@code tmp} directory and renamed into place, so a reader never sees a
+ *     partly written file. A batch may be verified twice if its lease expires while it is verified, and then
+ *     its results are written twice, which gives the same results. The expiry of leases is compared with the
+ *     clocks of the workers, which must be roughly in sync.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class SpoolDirectory {
+
+    // Constants
+    private static final String PENDING = "pending";
+    private static final String LEASED = "leased";
+    private static final String RESULTS = "results";
+    private static final String DONE = "done";
+    private static final String TMP = "tmp";
+    private static final String MANIFEST = "manifest";
+    private static final String BATCH_NAME = "batch-%08d";
+    private static final String LEASE_SEPARATOR = "@";
+    private static final String PATH_SEPARATOR = "/";
+    private static final int LEASE_BATCH = 0;
+    private static final int LEASE_EXPIRY = 2; // The worker is in between
+    private static final int LEASE_FIELDS = 3;
+    private static final int BUFFER_SIZE = 65536;
+
+    // Errors
+    private static final String ALREADY_SUBMITTED = "Files were already submitted to the spool '%s'.";
+    private static final String INVALID_WORKER_ID = "Invalid worker id: '%s'.";
+    private static final String INVALID_BATCH_SIZE = "Invalid batch size: %d.";
+    private static final String NOT_COMPLETE = "%d of the %d batches of the spool are not complete.";
+    private static final String MISSING_RESULT = "The results of the batch '%s' are incomplete.";
+
+    // Private fields
+    private final Path root;
+    private final Path pending;
+    private final Path leased;
+    private final Path results;
+    private final Path done;
+    private final Path tmp;
+    private final Path manifest;
+
+    /**
+     * Constructs a spool in the given directory. Nothing is created until files are submitted.
+     * @param root The directory of the spool.
+     */
+    public SpoolDirectory(Path root) {
+        this.root = Objects.requireNonNull(root);
+        this.pending = root.resolve(PENDING);
+        this.leased = root.resolve(LEASED);
+        this.results = root.resolve(RESULTS);
+        this.done = root.resolve(DONE);
+        this.tmp = root.resolve(TMP);
+        this.manifest = root.resolve(MANIFEST);
+    }
+
+    /**
+     * Splits a list of files into batches, and adds them to the spool. Files can be submitted to a spool
+     * only once, and workers treat the spool as submitted only after all of its batches were added.
+     * @param fileList The list of files, whose every non-blank line is the path of a file.
+     * @param batchSize The maximal number of files in a batch.
+     * @return The number of batches.
+     * @throws IOException If the list cannot be read, if the spool cannot be written, or if files were
+     *                     already submitted to it.
+     */
+    public int submit(Path fileList, int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(String.format(INVALID_BATCH_SIZE, batchSize));
+        }
+        if (Files.exists(manifest)) {
+            throw new FileAlreadyExistsException(String.format(ALREADY_SUBMITTED, root));
+        }
+        for (Path directory : List.of(pending, leased, results, done, tmp)) {
+            Files.createDirectories(directory);
+        }
+        int batchCount = 0;
+        // Opened like a file, so a missing list is reported like a missing file
+        Reader reader = new InputStreamReader(new FileInputStream(fileList.toFile()), StandardCharsets.UTF_8);
+        try (BufferedReader list = new BufferedReader(reader, BUFFER_SIZE)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = list.readLine()) != null) {
+                if (!line.isBlank()) {
+                    batch.add(line.strip());
+                }
+                if (batch.size() == batchSize) {
+                    writeAtomically(pending.resolve(String.format(BATCH_NAME, batchCount++)), batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeAtomically(pending.resolve(String.format(BATCH_NAME, batchCount++)), batch);
+            }
+        }
+        writeAtomically(manifest, List.of(Integer.toString(batchCount)));
+        return batchCount;
+    }
+
+    /**
+     * @return {@code true} if all the batches of the spool were submitted, {@code false} otherwise.
+     */
+    public boolean isSubmitted() {
+        return Files.exists(manifest);
+    }
+
+    /**
+     * @return {@code true} if some batches are pending or leased, {@code false} otherwise.
+     * @throws IOException If the spool cannot be read.
+     */
+    public boolean hasWork() throws IOException {
+        return !list(pending).isEmpty() || !list(leased).isEmpty();
+    }
+
+    /**
+     * Claims the first pending batch that no other worker claimed first.
+     * @param workerId The id of the worker, which must not contain {@code @} or {@code /}.
+     * @param leaseMillis The duration of the lease, in milliseconds.
+     * @return The lease of the batch, or {@code null} if no batch is pending.
+     * @throws IOException If the spool cannot be read or written.
+     */
+    public Lease claim(String workerId, long leaseMillis) throws IOException {
+        if (workerId.isEmpty() || workerId.contains(LEASE_SEPARATOR) || workerId.contains(PATH_SEPARATOR)) {
+            throw new IllegalArgumentException(String.format(INVALID_WORKER_ID, workerId));
+        }
+        for (String batch : list(pending)) {
+            long expiry = System.currentTimeMillis() + leaseMillis;
+            Path lease = leased.resolve(leaseName(batch, workerId, expiry));
+            if (move(pending.resolve(batch), lease)) {
+                List<String> paths;
+                try {
+                    paths = Files.readAllLines(lease, StandardCharsets.UTF_8);
+                } catch (NoSuchFileException e) { // The lease expired and was reclaimed already
+                    continue;
+                }
+                return new Lease(batch, workerId, expiry, lease, paths);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extends a lease from now.
+     * @param lease The lease, which is replaced by the renewed lease.
+     * @param leaseMillis The duration of the lease, in milliseconds.
+     * @return The renewed lease, or {@code null} if the lease was lost, since it expired and was reclaimed.
+     * @throws IOException If the spool cannot be written.
+     */
+    public Lease renew(Lease lease, long leaseMillis) throws IOException {
+        long expiry = System.currentTimeMillis() + leaseMillis;
+        Path renewed = leased.resolve(leaseName(lease.batch, lease.workerId, expiry));
+        if (!move(lease.file, renewed)) {
+            return null;
+        }
+        return new Lease(lease.batch, lease.workerId, expiry, renewed, lease.paths);
+    }
+
+    /**
+     * Writes the results of a batch, and marks the batch as done. The results are written even if the
+     * lease was lost, since they are the same results.
+     * @param lease The lease of the batch.
+     * @param resultLines The results of the files of the batch, in their order, encoded by
+     *                    {@link ShardProtocol#encodeResult(long, EntryResult)}.
+     * @throws IOException If the spool cannot be written.
+     */
+    public void complete(Lease lease, List<String> resultLines) throws IOException {
+        writeAtomically(results.resolve(lease.batch), resultLines);
+        if (!move(lease.file, done.resolve(lease.batch))) { // Lost, so the batch is done by a copy
+            writeAtomically(done.resolve(lease.batch), lease.paths);
+        }
+    }
+
+    /**
+     * Returns the expired leases to the pending batches. A batch whose results were already written is marked
+     * as done instead.
+     * @return The number of reclaimed leases.
+     * @throws IOException If the spool cannot be read or written.
+     */
+    public int reclaimExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        int reclaimed = 0;
+        for (String name : list(leased)) {
+            String[] fields = name.split(LEASE_SEPARATOR);
+            if (fields.length != LEASE_FIELDS || parseExpiry(fields[LEASE_EXPIRY]) > now) {
+                continue;
+            }
+            String batch = fields[LEASE_BATCH];
+            Path target = Files.exists(results.resolve(batch)) ? done.resolve(batch) : pending.resolve(batch);
+            if (move(leased.resolve(name), target)) {
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Reports the results of all the batches, in the order of the submitted list.
+     * @param listener Receives the result of every file.
+     * @throws IOException If the spool cannot be read, or if some batches are not complete.
+     */
+    public void collect(Consumer<EntryResult> listener) throws IOException {
+        int batchCount = batchCount();
+        int completed = list(done).size();
+        if (completed < batchCount) {
+            throw new IOException(String.format(NOT_COMPLETE, batchCount - completed, batchCount));
+        }
+        for (int i = 0; i < batchCount; i++) {
+            String batch = String.format(BATCH_NAME, i);
+            List<String> paths = Files.readAllLines(done.resolve(batch), StandardCharsets.UTF_8);
+            List<String> lines = Files.readAllLines(results.resolve(batch), StandardCharsets.UTF_8);
+            if (lines.size() != paths.size()) {
+                throw new IOException(String.format(MISSING_RESULT, batch));
+            }
+            for (int j = 0; j < lines.size(); j++) {
+                if (ShardProtocol.resultIndex(lines.get(j)) != j) {
+                    throw new IOException(String.format(MISSING_RESULT, batch));
+                }
+                listener.accept(ShardProtocol.decodeResult(lines.get(j), paths.get(j)));
+            }
+        }
+    }
+
+    /**
+     * @return The number of batches that were submitted.
+     * @throws IOException If the spool was not submitted, or if its manifest is invalid.
+     */
+    public int batchCount() throws IOException {
+        String count = Files.readString(manifest, StandardCharsets.UTF_8).strip();
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return The number of batches that are done.
+     * @throws IOException If the spool cannot be read.
+     */
+    public int completedCount() throws IOException {
+        return list(done).size();
+    }
+
+    /**
+     * @param batch The name of a batch.
+     * @param workerId The id of the worker that claims it.
+     * @param expiry The time the lease expires, in milliseconds since the epoch.
+     * @return The name of the lease of the batch.
+     */
+    private static String leaseName(String batch, String workerId, long expiry) {
+        return batch + LEASE_SEPARATOR + workerId + LEASE_SEPARATOR + expiry;
+    }
+
+    /**
+     * @param expiry The expiry field of the name of a lease.
+     * @return The expiry, or {@link Long#MAX_VALUE} for a name that is not a lease, which is never reclaimed.
+     */
+    private static long parseExpiry(String expiry) {
+        try {
+            return Long.parseLong(expiry);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @param directory A directory of the spool.
+     * @return The sorted names of the files in the directory, which are none if it does not exist.
+     * @throws IOException If the directory cannot be read.
+     */
+    private static List<String> list(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        } catch (NoSuchFileException e) { // Not submitted yet
+            return names;
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Renames a file atomically, replacing the target if it exists.
+     * @param source The file.
+     * @param target The new path of the file.
+     * @return {@code true} if the file was renamed, {@code false} if it no longer exists, since another
+     *         worker renamed it first.
+     * @throws IOException If the file cannot be renamed.
+     */
+    private static boolean move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (AtomicMoveNotSupportedException e) { // The leases rely on atomic renames
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes lines into a file of the {@code tmp} directory, and renames it into place.
+     * @param target The path of the file.
+     * @param lines The lines.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeAtomically(Path target, List<String> lines) throws IOException {
+        Path temporary = Files.createTempFile(tmp, target.getFileName().toString(), null);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        move(temporary, target);
+    }
+
+    /**
+     * The lease of a worker on a batch, which holds the paths of the files of the batch.
+     */
+    public static final class Lease {
+
+        // Private fields
+        private final String batch;
+        private final String workerId;
+        private final long expiry;
+        private final Path file;
+        private final List<String> paths;
+
+        private Lease(String batch, String workerId, long expiry, Path file, List<String> paths) {
+            this.batch = batch;
+            this.workerId = workerId;
+            this.expiry = expiry;
+            this.file = file;
+            this.paths = List.copyOf(paths);
+        }
+
+        /**
+         * @return The name of the batch.
+         */
+        public String getBatch() {
+            return batch;
+        }
+
+        /**
+         * @return The time the lease expires, in milliseconds since the epoch.
+         */
+        public long getExpiry() {
+            return expiry;
+        }
+
+        /**
+         * @return The paths of the files of the batch, in their order.
+         */
+        public List<String> getPaths() {
+            return paths;
+        }
+    }
+
+}
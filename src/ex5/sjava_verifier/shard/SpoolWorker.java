@@ -0,0 +1,136 @@
+package ex5.sjava_verifier.shard;
+
+import ex5.sjava_verifier.api.SjavaVerifier;
+import ex5.sjava_verifier.api.VerificationResult;
+import ex5.sjava_verifier.batch.BatchVerifier;
+import ex5.sjava_verifier.batch.EntryResult;
+import ex5.sjava_verifier.batch.InputFormat;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Claims batches of a {@link SpoolDirectory} and verifies them, until the spool has no more work.
+ * <p>
+ *     The worker renews its lease on a batch whenever half of the lease passed, and gives up a batch whose
+ *     lease was lost, since another worker verifies it again. Whenever it looks for a batch, it first
+ *     reclaims the expired leases of dead workers. When no batch is pending, the worker waits for the
+ *     batches that other workers hold, so it can reclaim them if their workers die, and stops when the spool
+ *     has no pending or leased batches.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class SpoolWorker {
+
+    // Constants
+    private static final long POLL_MILLIS = 500;
+    private static final int RENEW_DIVISOR = 2;
+
+    // Errors
+    private static final String INVALID_FILE_FORMAT = "Invalid file format.";
+    private static final String INVALID_PATH = "Invalid path: '%s'.";
+
+    // Private fields
+    private final SpoolDirectory spool;
+    private final SjavaVerifier verifier;
+    private final boolean isDeduplicating;
+    private final String workerId;
+    private final long leaseMillis;
+
+    /**
+     * Constructs a worker.
+     * @param spool The spool to take batches from.
+     * @param verifier The verifier to verify every file with.
+     * @param isDeduplicating Whether to reuse the result of every distinct content that the worker verified
+     *                        for its later files with the same content.
+     * @param workerId The id of the worker, which is unique among the workers of the spool.
+     * @param leaseMillis The duration of the leases of the worker, in milliseconds.
+     */
+    public SpoolWorker(SpoolDirectory spool, SjavaVerifier verifier, boolean isDeduplicating, String workerId,
+                       long leaseMillis) {
+        this.spool = Objects.requireNonNull(spool);
+        this.verifier = Objects.requireNonNull(verifier);
+        this.isDeduplicating = isDeduplicating;
+        this.workerId = Objects.requireNonNull(workerId);
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Verifies batches until the spool has no more work.
+     * @return The number of batches this worker completed.
+     * @throws IOException If the spool cannot be read or written.
+     * @throws InterruptedException If the worker is interrupted while waiting for work.
+     */
+    public int run() throws IOException, InterruptedException {
+        int completed = 0;
+        try (BatchVerifier batchVerifier = new BatchVerifier(verifier, 1, isDeduplicating)) {
+            while (true) {
+                spool.reclaimExpired();
+                SpoolDirectory.Lease lease = spool.claim(workerId, leaseMillis);
+                if (lease != null) {
+                    completed += verify(batchVerifier, lease) ? 1 : 0;
+                } else if (spool.isSubmitted() && !spool.hasWork()) {
+                    return completed;
+                } else { // Wait for the submission, or for the leases of other workers
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies the files of a batch, and completes it.
+     * @param batchVerifier The verifier to verify every file with.
+     * @param lease The lease of the batch.
+     * @return {@code true} if the batch was completed, {@code false} if its lease was lost.
+     * @throws IOException If the spool cannot be written.
+     * @throws InterruptedException Never, since only single files are verified, on this thread.
+     */
+    private boolean verify(BatchVerifier batchVerifier, SpoolDirectory.Lease lease)
+            throws IOException, InterruptedException {
+        List<String> paths = lease.getPaths();
+        List<String> results = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            if (System.currentTimeMillis() > lease.getExpiry() - leaseMillis / RENEW_DIVISOR) {
+                lease = spool.renew(lease, leaseMillis);
+                if (lease == null) { // Another worker verifies the batch again
+                    return false;
+                }
+            }
+            long index = results.size();
+            EntryResult error = check(path);
+            if (error != null) {
+                results.add(ShardProtocol.encodeResult(index, error));
+            } else {
+                batchVerifier.verify(Path.of(path), entry -> results.add(ShardProtocol.encodeResult(index,
+                                                                                                    entry)));
+            }
+        }
+        spool.complete(lease, results);
+        return true;
+    }
+
+    /**
+     * @param path The path of a file of a batch.
+     * @return The result of a file that cannot be verified, or {@code null} if the file can be verified.
+     */
+    private static EntryResult check(String path) {
+        InputFormat format = InputFormat.of(path);
+        if (format == null || format.isArchive()) {
+            return new EntryResult(path, VerificationResult.error(INVALID_FILE_FORMAT), 0);
+        }
+        try {
+            Path.of(path);
+            return null;
+        } catch (InvalidPathException e) {
+            return new EntryResult(path, VerificationResult.error(String.format(INVALID_PATH, path)), 0);
+        }
+    }
+
+}
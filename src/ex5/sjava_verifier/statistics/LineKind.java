@@ -0,0 +1,30 @@
+package ex5.sjava_verifier.statistics;
+
+/**
+ * Represents the kind of line that was handled during the verification process.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum LineKind {
+    /** A comment line or an empty line, removed by the preprocessor. */
+    DISREGARDED,
+    /** A method declaration line. */
+    METHOD_DECLARATION,
+    /** A closing bracket of a method. */
+    METHOD_END,
+    /** An 'if' or 'while' statement. */
+    CONDITION,
+    /** A closing bracket of an 'if' or 'while' block. */
+    BLOCK_END,
+    /** A variable declaration line. */
+    VARIABLE_DECLARATION,
+    /** A variable assignment line. */
+    ASSIGNMENT,
+    /** A method call line. */
+    METHOD_CALL,
+    /** A return statement inside a method. */
+    RETURN,
+    /** A line that was rejected by the verifier. */
+    REJECTED
+}
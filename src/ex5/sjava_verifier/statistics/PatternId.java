@@ -0,0 +1,50 @@
+package ex5.sjava_verifier.statistics;
+
+/**
+ * Identifies a pattern the verifier tries to match lines against, for counting match attempts.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum PatternId {
+    /** Comment or empty line, used by the preprocessor. */
+    DISREGARD,
+    /** An integer constant. */
+    INT,
+    /** A double constant. */
+    DOUBLE,
+    /** A boolean constant. */
+    BOOLEAN,
+    /** A String constant. */
+    STRING,
+    /** A char constant. */
+    CHAR,
+    /** Multiple semicolons at the end of a line. */
+    MULTIPLE_SEMICOLON,
+    /** Multiple opening brackets. */
+    MULTIPLE_OPEN_BRACKETS,
+    /** A return statement. */
+    RETURN,
+    /** A full 'if'/'while' statement. */
+    CONDITION_STATEMENT,
+    /** An 'if'/'while' statement without its opening bracket. */
+    CONDITION_WITHOUT_BRACKET,
+    /** A method call. */
+    METHOD_CALL,
+    /** A method declaration. */
+    METHOD_DECLARATION,
+    /** A parameter in a method declaration. */
+    METHOD_PARAMETER,
+    /** A legal name. */
+    NAME,
+    /** An illegal name. */
+    NOT_NAME,
+    /** The prefix of a variable declaration. */
+    VARIABLE_DECLARATION,
+    /** A variable declaration without a semicolon. */
+    MISSING_SEMICOLON_DECLARATION,
+    /** A single declarator in a variable declaration. */
+    DECLARATOR,
+    /** A single variable assignment. */
+    ASSIGNMENT
+}
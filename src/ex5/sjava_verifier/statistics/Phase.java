@@ -0,0 +1,20 @@
+package ex5.sjava_verifier.statistics;
+
+/**
+ * Represents a phase of the verification process that is timed by {@link VerifierStats}.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public enum Phase {
+    /** Reading the file and cleaning it from comments, empty lines and whitespaces. */
+    PREPROCESSING,
+    /** The pre-pass that collects and verifies all the method declarations. */
+    METHOD_TABLE,
+    /** The main pass that verifies every line of code. */
+    MAIN_PASS,
+    /** Reading, cleaning and verifying the file in a single streaming pass, replacing the phases above. */
+    SINGLE_PASS,
+    /** The structural check of the tiered and structure-only verification. */
+    STRUCTURE
+}
@@ -0,0 +1,362 @@
+package ex5.sjava_verifier.statistics;
+
+import java.util.Locale;
+
+/**
+ * Collects timings and hot-path counters of the verification process.
+ * <p>
+ *     The counters are thread-confined: a {@link VerifierStats} object is attached to the thread that runs
+ *     the verification, and the verifier records into it through the static counting methods, without any
+ *     synchronization. When no object is attached to the current thread, counting does nothing.
+ *     Objects collected by several threads can be folded together using {@link #merge(VerifierStats)}
+ *     once their threads are done.
+ * </p>
+ * <p>
+ *     The collected data can be printed as human-readable text or as JSON.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class VerifierStats {
+
+    // Constants
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+    private static final String TEXT_ROW = "  %-32s %d%n";
+    private static final String TEXT_TIME_ROW = "  %-32s %.3f%n";
+    private static final String JSON_SEPARATOR = ",";
+
+    // Thread-confined current statistics
+    private static final ThreadLocal<VerifierStats> CURRENT = new ThreadLocal<>();
+
+    // Private fields
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] lines = new long[LineKind.values().length];
+    private final long[] patternAttempts = new long[PatternId.values().length];
+    private long files;
+    private long duplicateFiles;
+    private long scopePushes;
+    private long scopePops;
+    private int maxScopeDepth;
+    private long lookups;
+    private long scopesWalked;
+    private long methodCallsChecked;
+    private long lineCacheHits;
+    private long lineCacheMisses;
+
+    /**
+     * Attaches this object to the current thread, so the verifier running on it will record into it.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Detaches the statistics attached to the current thread, if any.
+     */
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return The statistics attached to the current thread, or {@code null} if there are none.
+     */
+    public static VerifierStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Counts a line of the given kind.
+     * @param kind The kind of the line.
+     */
+    public static void countLine(LineKind kind) {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.lines[kind.ordinal()]++;
+        }
+    }
+
+    /**
+     * Counts an attempt to match the given pattern.
+     * @param pattern The pattern that was tried.
+     */
+    public static void countPattern(PatternId pattern) {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.patternAttempts[pattern.ordinal()]++;
+        }
+    }
+
+    /**
+     * Counts a new scope.
+     * @param depth The number of scopes after the new scope was added.
+     */
+    public static void countScopePush(int depth) {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.scopePushes++;
+            stats.maxScopeDepth = Math.max(stats.maxScopeDepth, depth);
+        }
+    }
+
+    /**
+     * Counts a removed scope.
+     */
+    public static void countScopePop() {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.scopePops++;
+        }
+    }
+
+    /**
+     * Counts a symbol lookup.
+     * @param walked The number of scopes that were searched during the lookup.
+     */
+    public static void countLookup(int walked) {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.lookups++;
+            stats.scopesWalked += walked;
+        }
+    }
+
+    /**
+     * Counts a method call that was checked against the method table.
+     */
+    public static void countMethodCall() {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.methodCallsChecked++;
+        }
+    }
+
+    /**
+     * Counts a file whose content was already verified in the same batch, so its result was reused.
+     */
+    public static void countDuplicateFile() {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.duplicateFiles++;
+        }
+    }
+
+    /**
+     * Counts a line whose shape was found in the line cache.
+     */
+    public static void countLineCacheHit() {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.lineCacheHits++;
+        }
+    }
+
+    /**
+     * Counts a line whose shape was not found in the line cache.
+     */
+    public static void countLineCacheMiss() {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.lineCacheMisses++;
+        }
+    }
+
+    /**
+     * Adds the given time to a phase of the statistics attached to the current thread.
+     * @param phase The timed phase.
+     * @param nanos The time spent in the phase, in nanoseconds.
+     */
+    public static void countPhase(Phase phase, long nanos) {
+        VerifierStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.recordPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * Counts a verified file.
+     */
+    public void countFile() {
+        files++;
+    }
+
+    /**
+     * Adds the given time to a phase.
+     * @param phase The timed phase.
+     * @param nanos The time spent in the phase, in nanoseconds.
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Folds the given statistics into this object.
+     * <p>
+     *     The given object must not be recorded into while it is being merged.
+     * </p>
+     * @param other The statistics to add to this object.
+     */
+    public void merge(VerifierStats other) {
+        addAll(phaseNanos, other.phaseNanos);
+        addAll(lines, other.lines);
+        addAll(patternAttempts, other.patternAttempts);
+        files += other.files;
+        duplicateFiles += other.duplicateFiles;
+        scopePushes += other.scopePushes;
+        scopePops += other.scopePops;
+        maxScopeDepth = Math.max(maxScopeDepth, other.maxScopeDepth);
+        lookups += other.lookups;
+        scopesWalked += other.scopesWalked;
+        methodCallsChecked += other.methodCallsChecked;
+        lineCacheHits += other.lineCacheHits;
+        lineCacheMisses += other.lineCacheMisses;
+    }
+
+    /**
+     * @param phase The phase.
+     * @return The time spent in the given phase, in nanoseconds.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @param kind The kind of line.
+     * @return The number of lines of the given kind.
+     */
+    public long getLineCount(LineKind kind) {
+        return lines[kind.ordinal()];
+    }
+
+    /**
+     * @param pattern The pattern.
+     * @return The number of attempts to match the given pattern.
+     */
+    public long getPatternAttempts(PatternId pattern) {
+        return patternAttempts[pattern.ordinal()];
+    }
+
+    /**
+     * @return The fraction of the looked up lines whose shape was found in the line cache,
+     *         or 0 if no line was looked up.
+     */
+    public double getLineCacheHitRate() {
+        long lookedUp = lineCacheHits + lineCacheMisses;
+        return lookedUp == 0 ? 0 : (double) lineCacheHits / lookedUp;
+    }
+
+    /**
+     * @return The fraction of the verified files whose result was reused from a file with the same content,
+     *         or 0 if no file was verified.
+     */
+    public double getDuplicateRate() {
+        return files == 0 ? 0 : (double) duplicateFiles / files;
+    }
+
+    /**
+     * @return The statistics as human-readable text.
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Phase timings (ms):").append(System.lineSeparator());
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format(Locale.ROOT, TEXT_TIME_ROW, keyOf(phase),
+                                         phaseNanos[phase.ordinal()] / NANOS_IN_MILLI));
+        }
+        builder.append("Lines by kind:").append(System.lineSeparator());
+        for (LineKind kind : LineKind.values()) {
+            builder.append(String.format(TEXT_ROW, keyOf(kind), lines[kind.ordinal()]));
+        }
+        builder.append("Pattern match attempts:").append(System.lineSeparator());
+        for (PatternId pattern : PatternId.values()) {
+            builder.append(String.format(TEXT_ROW, keyOf(pattern), patternAttempts[pattern.ordinal()]));
+        }
+        builder.append("Counters:").append(System.lineSeparator());
+        builder.append(String.format(TEXT_ROW, "files", files));
+        builder.append(String.format(TEXT_ROW, "duplicate_files", duplicateFiles));
+        builder.append(String.format(Locale.ROOT, TEXT_TIME_ROW, "duplicate_rate", getDuplicateRate()));
+        builder.append(String.format(TEXT_ROW, "scope_pushes", scopePushes));
+        builder.append(String.format(TEXT_ROW, "scope_pops", scopePops));
+        builder.append(String.format(TEXT_ROW, "max_scope_depth", maxScopeDepth));
+        builder.append(String.format(TEXT_ROW, "symbol_lookups", lookups));
+        builder.append(String.format(TEXT_ROW, "scopes_walked", scopesWalked));
+        builder.append(String.format(TEXT_ROW, "method_calls_checked", methodCallsChecked));
+        builder.append(String.format(TEXT_ROW, "line_cache_hits", lineCacheHits));
+        builder.append(String.format(TEXT_ROW, "line_cache_misses", lineCacheMisses));
+        builder.append(String.format(Locale.ROOT, TEXT_TIME_ROW, "line_cache_hit_rate",
+                                     getLineCacheHitRate()));
+        return builder.toString();
+    }
+
+    /**
+     * @return The statistics as a single JSON object.
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\"phases_ms\":{");
+        String separator = "";
+        for (Phase phase : Phase.values()) {
+            builder.append(separator).append(String.format(Locale.ROOT, "\"%s\":%.3f", keyOf(phase),
+                                                           phaseNanos[phase.ordinal()] / NANOS_IN_MILLI));
+            separator = JSON_SEPARATOR;
+        }
+        builder.append("},\"lines\":{");
+        separator = "";
+        for (LineKind kind : LineKind.values()) {
+            builder.append(separator).append(jsonField(keyOf(kind), lines[kind.ordinal()]));
+            separator = JSON_SEPARATOR;
+        }
+        builder.append("},\"pattern_attempts\":{");
+        separator = "";
+        for (PatternId pattern : PatternId.values()) {
+            builder.append(separator).append(
+                    jsonField(keyOf(pattern), patternAttempts[pattern.ordinal()])
+            );
+            separator = JSON_SEPARATOR;
+        }
+        builder.append("},").append(jsonField("files", files))
+               .append(JSON_SEPARATOR).append(jsonField("duplicate_files", duplicateFiles))
+               .append(JSON_SEPARATOR).append(String.format(Locale.ROOT, "\"duplicate_rate\":%.3f",
+                                                            getDuplicateRate()))
+               .append(JSON_SEPARATOR).append(jsonField("scope_pushes", scopePushes))
+               .append(JSON_SEPARATOR).append(jsonField("scope_pops", scopePops))
+               .append(JSON_SEPARATOR).append(jsonField("max_scope_depth", maxScopeDepth))
+               .append(JSON_SEPARATOR).append(jsonField("symbol_lookups", lookups))
+               .append(JSON_SEPARATOR).append(jsonField("scopes_walked", scopesWalked))
+               .append(JSON_SEPARATOR).append(jsonField("method_calls_checked", methodCallsChecked))
+               .append(JSON_SEPARATOR).append(jsonField("line_cache_hits", lineCacheHits))
+               .append(JSON_SEPARATOR).append(jsonField("line_cache_misses", lineCacheMisses))
+               .append(JSON_SEPARATOR).append(String.format(Locale.ROOT, "\"line_cache_hit_rate\":%.3f",
+                                                            getLineCacheHitRate()))
+               .append('}');
+        return builder.toString();
+    }
+
+    /**
+     * @param constant A phase, a kind of line or a pattern.
+     * @return The name of the constant in lower case, as it is printed.
+     */
+    private static String keyOf(Enum<?> constant) {
+        return constant.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param key The name of the field.
+     * @param value The value of the field.
+     * @return The field as a JSON member, such as {@code "files":3}.
+     */
+    private static String jsonField(String key, long value) {
+        return "\"" + key + "\":" + value;
+    }
+
+    /**
+     * Adds every counter of an array to the counter at the same index of another array.
+     * @param target The counters to add to.
+     * @param source The counters to add, of the same length as the target.
+     */
+    private static void addAll(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+}
@@ -1,18 +1,27 @@
 package ex5.sjava_verifier.verifier;
 
+import ex5.sjava_verifier.events.FlightRecording;
+import ex5.sjava_verifier.events.MethodBodyEvent;
+import ex5.sjava_verifier.events.MethodTableEvent;
+import ex5.sjava_verifier.events.SlowLineEvent;
+import ex5.sjava_verifier.preprocessor.CleanLineSource;
+import ex5.sjava_verifier.rules.Rule;
+import ex5.sjava_verifier.statistics.LineKind;
+import ex5.sjava_verifier.statistics.VerifierStats;
 import ex5.sjava_verifier.verifier.method_management.MethodException;
 import ex5.sjava_verifier.verifier.variable_management.VarException;
 import ex5.sjava_verifier.verifier.condition_management.ConditionException;
 
 import ex5.sjava_verifier.verifier.variable_management.Scopes;
+import ex5.sjava_verifier.verifier.variable_management.Variable;
 
 import ex5.sjava_verifier.verifier.method_management.MethodVerifier;
 import ex5.sjava_verifier.verifier.condition_management.ConditionVerifier;
 import ex5.sjava_verifier.verifier.variable_management.VariableVerifier;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A class that verifies the code in the clean lines.
@@ -24,53 +33,63 @@ import java.util.regex.Pattern;
  *     to verify the variables, methods and conditions in the code.
  *     The class uses the {@link Scopes} to manage the scopes of the variables and methods.
  * </p>
+ * <p>
+ *     The method table construction, every method body and every line that takes too long to verify
+ *     are reported as Java Flight Recorder events, see {@link ex5.sjava_verifier.events}.
+ * </p>
+ * <p>
+ *     The same traversal passes its events to the {@link Rule rules} of the verifier, if it has any.
+ * </p>
  *
  * @author Noam Kimhi
  * @author Or Forshmit
  */
 public class CodeVerifier {
 
-    // Error messages
-    private static final String ILLEGAL_LINE = "Illegal line of code: ";
-    private static final String NESTED_METHOD_DEC = "Method declaration inside another method is illegal.";
-    private static final String MISSING_SEMICOLON = "Missing semicolon ';' at the end of the line.";
-    private static final String MULTIPLE_STATEMENTS = "Only one statement is allowed per line.";
-    private static final String MISSING_RETURN_STATEMENT = "Missing return statement at " +
-                                                           "the end of the method %s.";
-    private static final String INVALID_RETURN_STATEMENT = "Return statement found outside of a method.";
-    private static final String ILLEGAL_METHOD_CALL = "Method call from the global scope is illegal.";
-    private static final String CONDITION_OUT_OF_METHOD = "'if' and 'while' statements outside " +
-                                                          "of a method is an illegal action.";
-    private static final String MISSING_OPENING_BRACKET = "%s statement missing curly bracket '{'.";
-    private static final String MISSING_CLOSING_BRACKET = "Missing closing curly bracket '}'.";
-    private static final String MULTIPLE_SEMICOLON = "Line has ended with multiple semicolons ';'.";
-    private static final String MULTIPLE_OPEN_BRACKETS = "Line has ended with multiple opening brackets '{'.";
-
-    // RegEx formats
-    /** A regx that matches all types */
-    public static String TYPE_REGEX = "int|double|String|boolean|char";
-
-    // Pattern instances
-    private static final Pattern RETURN_PATTERN = Pattern.compile("^return\\s*;$");
+    // Error messages, shared with the StructureVerifier
+    static final String ILLEGAL_LINE = "Illegal line of code: ";
+    static final String NESTED_METHOD_DEC = "Method declaration inside another method is illegal.";
+    static final String MISSING_SEMICOLON = "Missing semicolon ';' at the end of the line.";
+    static final String MULTIPLE_STATEMENTS = "Only one statement is allowed per line.";
+    static final String MISSING_RETURN_STATEMENT = "Missing return statement at " +
+                                                   "the end of the method %s.";
+    static final String INVALID_RETURN_STATEMENT = "Return statement found outside of a method.";
+    static final String ILLEGAL_METHOD_CALL = "Method call from the global scope is illegal.";
+    static final String CONDITION_OUT_OF_METHOD = "'if' and 'while' statements outside " +
+                                                  "of a method is an illegal action.";
+    static final String MISSING_OPENING_BRACKET = "%s statement missing curly bracket '{'.";
+    static final String MISSING_CLOSING_BRACKET = "Missing closing curly bracket '}'.";
+    static final String MULTIPLE_SEMICOLON = "Line has ended with multiple semicolons ';'.";
+    static final String MULTIPLE_OPEN_BRACKETS = "Line has ended with multiple opening brackets '{'.";
 
     // Constants
     private static final String START_OF_METHOD_DEC = "void";
-    private static final String SEMICOLON = ";";
-    private static final String CLOSING_CURLEY_BRACKET = "}";
-    private static final int TYPE_GROUP = 1;
+    private static final String WHILE_KEYWORD = "while";
+    private static final String UNKNOWN_SOURCE = "<unknown>";
+    private static final long NO_ERROR = Long.MAX_VALUE;
+    /** The default number of lines in the line cache. */
+    public static final int DEFAULT_LINE_CACHE_SIZE = 4096;
 
     // Final private fields
     private final Scopes scopes = new Scopes();
-    private final Map<Long, String> cleanLines;
     private final VariableVerifier varVerifier;
     private final MethodVerifier methodVerifier;
     private final ConditionVerifier conditionVerifier;
+    private final LineShapeCache lineShapes;
+    private final RulePipeline rules;
 
     // Private fields
+    private Map<Long, String> cleanLines;
+    private String sourceName = UNKNOWN_SOURCE;
     private long currentLine;
     private boolean isInMethod = false;
-    private String prevLine = "";
+    private LineKind prevLineKind; // The kind of the last handled line
     private String methodName;
+    private LineKind lineKind;
+    private boolean isRecording = false; // Whether to create events, which loads the Flight Recorder
+    private boolean isRecordingSlowLines = false;
+    private MethodBodyEvent methodEvent;
+    private long methodStartLine;
 
     /**
      * Constructs a CodeVerifier with the given map of clean lines.
@@ -79,17 +98,135 @@ public class CodeVerifier {
      * @throws MethodException If a method declaration is illegal.
      */
     public CodeVerifier(Map<Long, String> cleanLines) throws MethodException {
-        // First, create the methodVerifier, to make sure all the method declarations are valid.
+        this(cleanLines, UNKNOWN_SOURCE);
+    }
+
+    /**
+     * Constructs a CodeVerifier with the given map of clean lines, read from the given source.
+     *
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @param sourceName The name of the source of the lines (usually the file path),
+     *                   used when reporting events.
+     * @throws MethodException If a method declaration is illegal.
+     */
+    public CodeVerifier(Map<Long, String> cleanLines, String sourceName) throws MethodException {
+        this(cleanLines, sourceName, DEFAULT_LINE_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a CodeVerifier with the given map of clean lines, read from the given source,
+     * with a line cache of the given size.
+     * <p>
+     *     The line cache keeps the syntactic classification of recently seen lines, so a repeated line
+     *     is not matched against the patterns again. The result of the verification does not depend on it.
+     * </p>
+     *
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @param sourceName The name of the source of the lines (usually the file path),
+     *                   used when reporting events.
+     * @param lineCacheSize The maximal number of lines in the line cache, or 0 to disable it.
+     * @throws MethodException If a method declaration is illegal.
+     */
+    public CodeVerifier(Map<Long, String> cleanLines, String sourceName, int lineCacheSize)
+            throws MethodException {
+        this(lineCacheSize);
+        load(cleanLines, sourceName);
+    }
+
+    /**
+     * Constructs a CodeVerifier without any lines to verify.
+     * <p>
+     *     The lines are given by {@link #load(Map, String)}, and the verifier can be reused for another
+     *     file after a {@link #reset()}. The line cache is kept between files.
+     * </p>
+     * @param lineCacheSize The maximal number of lines in the line cache, or 0 to disable it.
+     * @see VerifierSession
+     */
+    CodeVerifier(int lineCacheSize) {
+        this(new LineShapeCache(lineCacheSize));
+    }
+
+    /**
+     * Constructs a CodeVerifier without any lines to verify, which takes the shapes of the lines from the
+     * given cache.
+     * @param lineShapes The cache of the shapes of the lines, which may be shared with a
+     *                   {@link StructureVerifier} on the same thread.
+     */
+    CodeVerifier(LineShapeCache lineShapes) {
+        this(lineShapes, new RulePipeline(List.of()));
+    }
+
+    /**
+     * Constructs a CodeVerifier without any lines to verify, which takes the shapes of the lines from the
+     * given cache and passes the events of its traversal to the given rules.
+     * @param lineShapes The cache of the shapes of the lines, which may be shared with a
+     *                   {@link StructureVerifier} on the same thread.
+     * @param rules The rules to pass the events to.
+     */
+    CodeVerifier(LineShapeCache lineShapes, RulePipeline rules) {
+        this.lineShapes = lineShapes;
+        this.rules = rules;
         methodVerifier = new MethodVerifier(
-                cleanLines, scopes::isVariableInScopes,
-                scopes::addVariableToCurrentScope, scopes::getVariable
+                scopes::isVariableInScopes, this::declareParameter, this::readVariable
         );
-        // Then, after we know that every method declaration is valid, we can create the verifier.
+        varVerifier = new VariableVerifier(this::assignVariable, this::declareVariable, this::readVariable);
+        conditionVerifier = new ConditionVerifier(this::readVariable);
+    }
+
+    /**
+     * Loads the lines to verify, and collects their method declarations.
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @param sourceName The name of the source of the lines, used when reporting events.
+     * @throws MethodException If a method declaration is illegal.
+     */
+    void load(Map<Long, String> cleanLines, String sourceName) throws MethodException {
         this.cleanLines = cleanLines;
-        varVerifier = new VariableVerifier(
-                scopes::changeVariableValue, scopes::addVariableToCurrentScope, scopes::getVariable
-        );
-        conditionVerifier = new ConditionVerifier(scopes::getVariable);
+        this.sourceName = sourceName;
+        startRecording();
+        // Collect the method declarations first, to make sure all of them are valid.
+        MethodTableEvent tableEvent = null;
+        if (isRecording) {
+            tableEvent = new MethodTableEvent();
+            tableEvent.begin();
+        }
+        boolean isTableValid = false;
+        try {
+            methodVerifier.initializeMethodTable(cleanLines);
+            isTableValid = true;
+        } finally {
+            if (tableEvent != null) {
+                tableEvent.finish(sourceName, isTableValid);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the events of the verification of the lines should be created, once for every input.
+     */
+    private void startRecording() {
+        isRecording = FlightRecording.isRecording();
+        isRecordingSlowLines = FlightRecording.isSlowLineEnabled();
+    }
+
+    /**
+     * Brings the verifier back to the state it had right after construction,
+     * keeping its tables for reuse.
+     */
+    void reset() {
+        scopes.reset();
+        methodVerifier.reset();
+        rules.reset();
+        cleanLines = null;
+        sourceName = UNKNOWN_SOURCE;
+        currentLine = 0;
+        isInMethod = false;
+        prevLineKind = null;
+        methodName = null;
+        lineKind = null;
+        isRecording = false;
+        isRecordingSlowLines = false;
+        methodEvent = null;
+        methodStartLine = 0;
     }
 
     /**
@@ -104,30 +241,184 @@ public class CodeVerifier {
      * @throws SyntaxException If the line is illegal.
      * @throws MethodException If a method declaration is illegal.
      * @throws ConditionException If a condition is illegal.
+     * @throws LimitExceededException If the limits of the {@link Watchdog} of the thread were exceeded.
      */
     public void verifyCode() throws VarException, IllegalTypeException,
                                     SyntaxException, MethodException, ConditionException {
+        rules.startFile();
         scopes.addScope(); // For global scope
         for (long numLine: cleanLines.keySet()) {
+            Watchdog.check(numLine);
             currentLine = numLine;
             String line = cleanLines.get(currentLine);
             if (line != null) {
                 handleLine(line);
             }
-            prevLine = line;
         }
         if (isInMethod || scopes.size() != 1) { // If there is a method\conditional without a closing bracket
             throw new SyntaxException(MISSING_CLOSING_BRACKET);
         }
+        rules.endFile();
+    }
+
+    /**
+     * Verifies the lines of the given source in a single pass, while they are read.
+     * <p>
+     *     Unlike {@link #verifyCode()}, the lines are not loaded and collected first. Every method is
+     *     declared when its declaration is reached, and a call to a method that is declared later is checked
+     *     once its method is declared. Only the method signatures, the scopes and those calls are kept in
+     *     memory.
+     * </p>
+     * <p>
+     *     Reading stops as soon as the first error is known: after an error, the rest of the file is only
+     *     read while an earlier call to a method that was not declared yet may still fail.
+     *     A file is valid exactly when {@link #verifyCode()} accepts it, and the first error in the order of
+     *     the lines is reported. Unlike {@link #verifyCode()}, an illegal method declaration that comes after
+     *     another error does not take precedence over it.
+     * </p>
+     * @param source The source of the clean lines. It is not closed by this method.
+     * @param sourceName The name of the source of the lines, used when reporting events.
+     * @throws IOException If an error occurs while reading the lines.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If the line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     * @throws LimitExceededException If the limits of the {@link Watchdog} of the thread were exceeded.
+     */
+    void verifyStream(CleanLineSource source, String sourceName) throws IOException, VarException,
+            IllegalTypeException, SyntaxException, MethodException, ConditionException {
+        this.sourceName = sourceName;
+        startRecording();
+        rules.startFile();
+        methodVerifier.startSinglePass();
+        scopes.addScope(); // For global scope
+        RuntimeException error = null;
+        long errorLine = NO_ERROR;
+        boolean isVerifying = true;
+        while (source.next()) {
+            currentLine = source.getLineNumber();
+            Watchdog.check(currentLine);
+            String line = source.getLine();
+            if (isVerifying) {
+                try {
+                    handleStreamedLine(line);
+                } catch (VarException | IllegalTypeException | SyntaxException |
+                         MethodException | ConditionException e) {
+                    error = e;
+                    errorLine = currentLine;
+                }
+            } else if (line.startsWith(START_OF_METHOD_DEC)) { // Only to check the earlier calls
+                try {
+                    methodVerifier.declareMethod(line);
+                } catch (MethodException e) {
+                    // Comes after the first error, so it is not reported
+                }
+            }
+            long firstErrorLine = Math.min(errorLine, methodVerifier.getFailedCallLine());
+            if (firstErrorLine != NO_ERROR) {
+                isVerifying = false;
+                if (!methodVerifier.hasUnresolvedCallsUpTo(firstErrorLine)) {
+                    break; // The first error is known
+                }
+            }
+        }
+        methodVerifier.resolveRemainingCalls();
+        long failedCallLine = methodVerifier.getFailedCallLine();
+        if (failedCallLine != NO_ERROR && failedCallLine <= errorLine) { // The call comes first in its line
+            throw methodVerifier.getFailedCallError();
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (isInMethod || scopes.size() != 1) { // If there is a method\conditional without a closing bracket
+            throw new SyntaxException(MISSING_CLOSING_BRACKET);
+        }
+        rules.endFile();
+    }
+
+    /**
+     * Handles a line of code that was just read, declaring the method first if it is a method declaration.
+     * @param line The line of code to handle.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If the line is illegal.
+     * @throws MethodException If a method declaration is illegal.
+     * @throws ConditionException If a condition is illegal.
+     */
+    private void handleStreamedLine(String line) throws VarException, IllegalTypeException,
+                                                        SyntaxException, MethodException, ConditionException {
+        if (line.startsWith(START_OF_METHOD_DEC)) {
+            try {
+                methodVerifier.declareMethod(line);
+            } catch (MethodException e) {
+                throw new MethodException(e.getMessage(), currentLine);
+            }
+        }
+        methodVerifier.setLineNumber(currentLine);
+        handleLine(line);
+    }
+
+    /**
+     * Declares a variable in the current scope, and passes the declaration to the rules.
+     * @param name The name of the variable.
+     * @param variable The variable to declare.
+     * @return {@code null}, as needed for the callback.
+     * @throws VarException If the variable is already declared in the current scope.
+     */
+    private Void declareVariable(String name, Variable variable) throws VarException {
+        scopes.addVariableToCurrentScope(name, variable);
+        rules.declaration(currentLine, variable, false);
+        return null;
+    }
+
+    /**
+     * Declares a parameter of the current method in its scope, and passes the declaration to the rules.
+     * @param name The name of the parameter.
+     * @param variable The parameter to declare.
+     * @return {@code null}, as needed for the callback.
+     * @throws VarException If the parameter is already declared in the scope of the method.
+     */
+    private Void declareParameter(String name, Variable variable) throws VarException {
+        scopes.addVariableToCurrentScope(name, variable);
+        rules.declaration(currentLine, variable, true);
+        return null;
+    }
+
+    /**
+     * Assigns a value to a variable of the scopes, and passes the assignment to the rules.
+     * @param name The name of the variable.
+     * @param type The type of the assigned value.
+     * @return {@code null}, as needed for the callback.
+     * @throws VarException If the variable does not exist in the scopes,
+     *                      or if it cannot be assigned a value of the given type.
+     */
+    private Void assignVariable(String name, VarType type) throws VarException {
+        Variable variable = scopes.getVariable(name);
+        variable.changeValue(type);
+        rules.assignment(currentLine, variable);
+        return null;
+    }
+
+    /**
+     * Returns a variable of the scopes whose value is used, and passes the read to the rules.
+     * @param name The name of the variable.
+     * @return The variable with the given name.
+     * @throws VarException If the variable does not exist in the scopes.
+     */
+    private Variable readVariable(String name) throws VarException {
+        Variable variable = scopes.getVariable(name);
+        rules.read(currentLine, variable);
+        return variable;
     }
 
     /**
      * Checks if a line contains multiple statements.
-     * @param line The line to check.
+     * @param shape The shape of the line to check.
      * @return {@code true} if the line contains multiple statements, {@code false} otherwise.
      */
-    private boolean checkForMultipleStatements(String line) {
-        if (line.split(SEMICOLON).length > 1) { // a; b;
+    private boolean checkForMultipleStatements(LineShape shape) {
+        if (shape.hasMultipleStatements()) { // a; b;
             throw new SyntaxException(MULTIPLE_STATEMENTS);
         }
         return false;
@@ -140,19 +431,28 @@ public class CodeVerifier {
      *     If the line is not a method declaration, it is returned as false.
      *     If the line is a method declaration and is inside a method, an exception is thrown.
      * </p>
-     * @param line The line to check if it is a method declaration.
+     * @param shape The shape of the line to check if it is a method declaration.
      * @return {@code true} if the line is a method declaration, {@code false} otherwise.
      * @throws MethodException If the method declaration is illegal.
      * @throws SyntaxException If the method declaration is inside another method.
      */
-    private boolean checkForMethodDec(String line) throws MethodException, SyntaxException {
-        if (line.startsWith(START_OF_METHOD_DEC)) {
+    private boolean checkForMethodDec(LineShape shape) throws MethodException, SyntaxException {
+        if (shape.isMethodDeclaration()) {
             if (isInMethod) {
                 throw new SyntaxException(NESTED_METHOD_DEC);
             }
             scopes.addScope(); // For method scope
-            methodName = methodVerifier.startSubroutine(line);
+            if (isRecording) {
+                methodEvent = new MethodBodyEvent();
+                methodEvent.begin();
+            }
+            methodStartLine = currentLine;
+            methodName = shape.getMethodName();
+            rules.methodStart(currentLine, methodName);
+            rules.scopePush(currentLine, scopes.size());
+            methodVerifier.startSubroutine(methodName);
             isInMethod = true;
+            lineKind = LineKind.METHOD_DECLARATION;
             return true;
         }
         return false;
@@ -164,36 +464,42 @@ public class CodeVerifier {
      *     If the line is a variable declaration, it is verified.
      *     If the line is not a variable declaration, it is returned as false.
      * </p>
-     * @param line The line to check if it is a variable declaration.
+     * @param shape The shape of the line to check if it is a variable declaration.
      * @return {@code true} if the line is a variable declaration, {@code false} otherwise.
      * @throws VarException If the variable declaration is illegal.
      * @throws SyntaxException If the variable declaration does not end with a semicolon.
      */
-    private boolean checkForVarDec(String line) throws VarException, SyntaxException {
-        if (!varVerifier.varDec(line)) {
-            if (RegexUtils.MULTIPLE_SEMICOLON_PATTERN.matcher(line).find()) {
+    private boolean checkForVarDec(LineShape shape) throws VarException, SyntaxException {
+        VariableVerifier.Declaration declaration = shape.getDeclaration();
+        if (declaration == null) {
+            if (shape.endsWithMultipleSemicolons()) {
                 throw new SyntaxException(MULTIPLE_SEMICOLON);
             }
-            if (VariableVerifier.MISSING_SEMICOLON_DEC.matcher(line).matches()) {
+            if (shape.isDeclarationPrefix()) {
                 throw new SyntaxException(MISSING_SEMICOLON);
             }
             return false;
         }
+        varVerifier.declare(declaration);
+        lineKind = LineKind.VARIABLE_DECLARATION;
         return true;
     }
 
     /**
      * Checks if the line is a variable assignment.
-     * @param line The line to check if it is a variable assignment.
+     * @param shape The shape of the line to check if it is a variable assignment.
      * @return {@code true} if the line is a variable assignment, {@code false} otherwise.
      * @throws VarException If the variable assignment is illegal.
      * @throws SyntaxException If the variable assignment does not end with a semicolon.
      */
-    private boolean checkForVarAssignment(String line) throws VarException, SyntaxException {
-        if (varVerifier.varAssignment(line)) {
-            if (!line.endsWith(SEMICOLON)) {
+    private boolean checkForVarAssignment(LineShape shape) throws VarException, SyntaxException {
+        VariableVerifier.Assignment assignment = shape.getAssignment();
+        if (assignment != null) {
+            varVerifier.assign(assignment);
+            if (!shape.endsWithSemicolon()) {
                 throw new SyntaxException(MISSING_SEMICOLON);
             }
+            lineKind = LineKind.ASSIGNMENT;
             return true;
         }
         return false;
@@ -207,56 +513,72 @@ public class CodeVerifier {
      *     If the line is not a conditional statement, it is returned as false.
      *     If the line is a conditional statement and is not inside a method, an exception is thrown.
      * </p>
-     * @param line The line to check if it is a conditional statement.
+     * @param shape The shape of the line to check if it is a conditional statement.
      * @return {@code true} iff the line is a conditional statement, {@code false} otherwise.
      * @throws ConditionException If the conditional statement is illegal.
      * @throws SyntaxException If the conditional statement is missing an opening bracket,
      *                         or if it is not inside a method.
      */
-    private boolean checkConditional(String line) throws ConditionException, SyntaxException {
-        if (!conditionVerifier.verifyConditionStatement(line)) { // The current line is not a cond statement.
-            if (scopes.size() > 2 && line.strip().equals(CLOSING_CURLEY_BRACKET)) {
+    private boolean checkConditional(LineShape shape) throws ConditionException, SyntaxException {
+        ConditionVerifier.Condition condition = shape.getCondition();
+        if (condition == null) { // The current line is not a cond statement.
+            if (scopes.size() > 2 && shape.isClosingBracket()) {
                 scopes.removeScope(); // For condition scope
+                rules.scopePop(currentLine, scopes.size() + 1);
+                lineKind = LineKind.BLOCK_END;
                 return true;
             } else {
-                Matcher matcher = ConditionVerifier.CONDITION_WITHOUT_CLOSING_BRACKET_PATTERN.matcher(line);
-                if (matcher.matches()) {
-                    String type = matcher.group(TYPE_GROUP);
+                String type = shape.getMissingBracketType();
+                if (type != null) {
                     throw new SyntaxException(String.format(MISSING_OPENING_BRACKET, type));
                 }
                 return false;
             }
         } else { // If matched
+            conditionVerifier.verifyCondition(condition);
             if (!isInMethod) {
                 throw new SyntaxException(CONDITION_OUT_OF_METHOD);
             }
             scopes.addScope(); // For condition scope
+            rules.condition(currentLine, shape.getLine().startsWith(WHILE_KEYWORD));
+            rules.scopePush(currentLine, scopes.size());
+            lineKind = LineKind.CONDITION;
             return true;
         }
     }
 
     /**
      * Checks if the line is a method call or a closing bracket of a method.
-     * @param line The line to check.
+     * @param shape The shape of the line to check.
      * @return {@code true} if the line is a method call or a closing bracket of a method,
      *         {@code false} otherwise.
      * @throws SyntaxException If the line is missing a semicolon,
      *                         or if the method is missing a return statement.
      * @throws MethodException If the method call is illegal.
      */
-    private boolean checkInMethodStatements(String line) throws SyntaxException, MethodException {
+    private boolean checkInMethodStatements(LineShape shape) throws SyntaxException, MethodException {
         if (isInMethod) {
-            if (methodVerifier.handleMethodCall(line)) {
-                if (!line.endsWith(SEMICOLON)) {
+            MethodVerifier.Call call = shape.getCall();
+            if (call != null && methodVerifier.handleMethodCall(call)) {
+                if (!shape.endsWithSemicolon()) {
                     throw new SyntaxException(MISSING_SEMICOLON);
                 }
+                rules.call(currentLine, call.getName());
+                lineKind = LineKind.METHOD_CALL;
                 return true;
-            } else if (line.strip().equals(CLOSING_CURLEY_BRACKET)) {
-                if (!RETURN_PATTERN.matcher(prevLine).matches()) {
+            } else if (shape.isClosingBracket()) {
+                if (prevLineKind != LineKind.RETURN) { // The last statement, so every path returns
                     throw new SyntaxException(String.format(MISSING_RETURN_STATEMENT, methodName));
                 } else {
                     isInMethod = false;
                     scopes.removeScope();
+                    rules.scopePop(currentLine, scopes.size() + 1);
+                    rules.methodEnd(currentLine, methodName);
+                    if (methodEvent != null) {
+                        methodEvent.finish(sourceName, methodName, methodStartLine, currentLine);
+                        methodEvent = null;
+                    }
+                    lineKind = LineKind.METHOD_END;
                     return true;
                 }
             }
@@ -269,26 +591,36 @@ public class CodeVerifier {
      * <p>
      *     This method is called when a line of code is suspicous.
      * </p>
-     * @param line The illegal line of code.
+     * @param shape The shape of the illegal line of code.
      * @throws SyntaxException That represents the problem with the line.
      */
-    private void handleSuspicousLine(String line) throws SyntaxException {
-        if (RETURN_PATTERN.matcher(line).matches()) {
+    private void handleSuspicousLine(LineShape shape) throws SyntaxException {
+        if (shape.isReturn()) {
             if (isInMethod) {
+                lineKind = LineKind.RETURN;
                 return;
             } else {
                 throw new SyntaxException(INVALID_RETURN_STATEMENT);
             }
-        } else if (MethodVerifier.CALL_PATTERN.matcher(line).lookingAt()) {
+        }
+        if (shape.getCall() != null) {
             throw new SyntaxException(ILLEGAL_METHOD_CALL);
-        } else if (RegexUtils.MULTIPLE_OPEN_BRACKETS_PATTERN.matcher(line).find()) {
+        }
+        if (shape.hasMultipleOpenBrackets()) {
             throw new SyntaxException(MULTIPLE_OPEN_BRACKETS);
         }
-        throw new SyntaxException(ILLEGAL_LINE + line);
+        throw new SyntaxException(ILLEGAL_LINE + shape.getLine());
     }
 
     /**
      * Handles a line of code.
+     * <p>
+     *     The shape of the line is taken from the line cache, so only the checks that depend on the scopes
+     *     and on the method table run again for a repeated line.
+     *     The kind of the handled line is counted in the {@link VerifierStats} of the current thread,
+     *     and reported in a {@link SlowLineEvent} if the line took longer than the event threshold. The event
+     *     is only created while it is enabled in a recording.
+     * </p>
      * @param line The line of code to handle.
      * @throws VarException If a variable is declared with an illegal name or is not initialized.
      * @throws IllegalTypeException If a variable is declared with an illegal type.
@@ -298,15 +630,22 @@ public class CodeVerifier {
      */
     private void handleLine(String line) throws VarException, IllegalTypeException,
                                                 SyntaxException, MethodException, ConditionException {
+        SlowLineEvent lineEvent = null;
+        if (isRecordingSlowLines) {
+            lineEvent = new SlowLineEvent();
+            lineEvent.begin();
+        }
+        lineKind = LineKind.REJECTED; // Until one of the checks accepts the line
         try {
-            if (checkForMultipleStatements(line)) { return; }
-            else if (checkForMethodDec(line)) { return; }
-            else if (checkConditional(line)) { return; }
-            else if (checkForVarDec(line)) { return; }
-            else if (checkForVarAssignment(line)) { return; }
-            else if (checkInMethodStatements(line)) { return; }
+            LineShape shape = lineShapes.get(line);
+            if (checkForMultipleStatements(shape)) { return; }
+            else if (checkForMethodDec(shape)) { return; }
+            else if (checkConditional(shape)) { return; }
+            else if (checkForVarDec(shape)) { return; }
+            else if (checkForVarAssignment(shape)) { return; }
+            else if (checkInMethodStatements(shape)) { return; }
             else {
-                handleSuspicousLine(line);
+                handleSuspicousLine(shape);
             }
         } catch (VarException e) {
             throw new VarException(e.getMessage(), currentLine);
@@ -318,6 +657,12 @@ public class CodeVerifier {
             throw new MethodException(e.getMessage(), currentLine);
         } catch (ConditionException e) {
             throw new ConditionException(e.getMessage(), currentLine);
+        } finally {
+            prevLineKind = lineKind;
+            VerifierStats.countLine(lineKind);
+            if (lineEvent != null) {
+                lineEvent.finish(sourceName, currentLine, lineKind.name());
+            }
         }
     }
 
@@ -10,12 +10,15 @@ public class IllegalTypeException extends RuntimeException {
 
     private static final String ERROR_PREFIX_WITH_LINE = "IllegalTypeException in line %d -> %s";
 
+    private final long lineNumber; // 0 if the line is not known
+
     /**
      * Constructs an illegal type exception with the given message.
      * @param message The message of the exception.
      */
     IllegalTypeException(String message) {
-        super(String.format(message));
+        super(message);
+        this.lineNumber = 0;
     }
 
     /**
@@ -25,6 +28,14 @@ public class IllegalTypeException extends RuntimeException {
      */
     IllegalTypeException(String message, long lineNumber) {
         super(String.format(ERROR_PREFIX_WITH_LINE, lineNumber, message));
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return The line number where the exception occurred, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
     }
 
 }
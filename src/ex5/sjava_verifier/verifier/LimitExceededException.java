@@ -0,0 +1,29 @@
+package ex5.sjava_verifier.verifier;
+
+/**
+ * Represents the verification of a .sjava file exceeding the limits of its {@link Watchdog}.
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private final long lineNumber; // 0 if the line is not known
+
+    /**
+     * Constructs a new exception with the given message and line number.
+     * @param message The message of the exception.
+     * @param line The line number at which the verification was stopped.
+     */
+    LimitExceededException(String message, long line) {
+        super(message);
+        this.lineNumber = line;
+    }
+
+    /**
+     * @return The line number at which the verification was stopped, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
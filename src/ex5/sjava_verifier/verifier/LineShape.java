@@ -0,0 +1,253 @@
+package ex5.sjava_verifier.verifier;
+
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.condition_management.ConditionVerifier;
+import ex5.sjava_verifier.verifier.method_management.MethodVerifier;
+import ex5.sjava_verifier.verifier.variable_management.VariableVerifier;
+
+/**
+ * The syntactic classification of a line of code, together with the parts extracted from it.
+ * <p>
+ *     A shape depends only on the text of its line: whether it is a method declaration, a condition,
+ *     a declaration, an assignment or a method call, and their parsed names, constants and arguments.
+ *     The checks that depend on the scopes and on the method table are left to the verifiers, and run on
+ *     every occurrence of the line.
+ * </p>
+ * <p>
+ *     Every part is computed the first time {@link CodeVerifier} needs it, so a line is matched only
+ *     against the patterns it reaches, and a shape that is reused for a repeated line is not matched again.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class LineShape {
+
+    // Constants
+    private static final String START_OF_METHOD_DEC = "void";
+    private static final String SEMICOLON = ";";
+    private static final char SEMICOLON_CHAR = ';';
+    private static final String CLOSING_CURLEY_BRACKET = "}";
+    private static final int TYPE_GROUP = 1;
+
+    // The parts of the shape, marked in the computed parts once their values are stored
+    private static final int METHOD_NAME = 1;
+    private static final int CONDITION = 1 << 1;
+    private static final int MISSING_BRACKET_TYPE = 1 << 2;
+    private static final int DECLARATION = 1 << 3;
+    private static final int MULTIPLE_SEMICOLONS = 1 << 4;
+    private static final int DECLARATION_PREFIX = 1 << 5;
+    private static final int ASSIGNMENT = 1 << 6;
+    private static final int CALL = 1 << 7;
+    private static final int RETURN = 1 << 8;
+    private static final int MULTIPLE_OPEN_BRACKETS = 1 << 9;
+
+    // Private fields
+    private final String line;
+    private final boolean hasMultipleStatements;
+    private int computedParts;
+    private String methodName;
+    private ConditionVerifier.Condition condition;
+    private String missingBracketType;
+    private VariableVerifier.Declaration declaration;
+    private boolean endsWithMultipleSemicolons;
+    private boolean isDeclarationPrefix;
+    private VariableVerifier.Assignment assignment;
+    private MethodVerifier.Call call;
+    private boolean isReturn;
+    private boolean hasMultipleOpenBrackets;
+
+    /**
+     * Constructs the shape of the given line.
+     * @param line A cleaned line of code.
+     */
+    LineShape(String line) {
+        this.line = line;
+        this.hasMultipleStatements = hasStatementAfterSemicolon(line); // a; b;
+    }
+
+    /**
+     * @return The line of this shape.
+     */
+    String getLine() {
+        return line;
+    }
+
+    /**
+     * @return {@code true} if the line contains multiple statements, {@code false} otherwise.
+     */
+    boolean hasMultipleStatements() {
+        return hasMultipleStatements;
+    }
+
+    /**
+     * @return {@code true} if the line is a method declaration, {@code false} otherwise.
+     */
+    boolean isMethodDeclaration() {
+        return line.startsWith(START_OF_METHOD_DEC);
+    }
+
+    /**
+     * @return The name of the declared method, if the line is a method declaration.
+     */
+    String getMethodName() {
+        if (isMissing(METHOD_NAME)) {
+            methodName = MethodVerifier.getSubroutineName(line);
+            computedParts |= METHOD_NAME;
+        }
+        return methodName;
+    }
+
+    /**
+     * @return The parsed condition, or {@code null} if the line is not a conditional line.
+     */
+    ConditionVerifier.Condition getCondition() {
+        if (isMissing(CONDITION)) {
+            condition = ConditionVerifier.parseConditionStatement(line);
+            computedParts |= CONDITION;
+        }
+        return condition;
+    }
+
+    /**
+     * @return {@code true} if the line is a closing bracket, {@code false} otherwise.
+     */
+    boolean isClosingBracket() {
+        return line.strip().equals(CLOSING_CURLEY_BRACKET);
+    }
+
+    /**
+     * @return The type of the condition ('if' or 'while') if the line is a condition without an opening
+     *         bracket, or {@code null} otherwise.
+     */
+    String getMissingBracketType() {
+        if (isMissing(MISSING_BRACKET_TYPE)) {
+            VerifierStats.countPattern(PatternId.CONDITION_WITHOUT_BRACKET);
+            LinearPatterns.Match match = LinearPatterns.conditionWithoutBracket(line);
+            missingBracketType = match != null ? match.group(TYPE_GROUP) : null;
+            computedParts |= MISSING_BRACKET_TYPE;
+        }
+        return missingBracketType;
+    }
+
+    /**
+     * @return The parsed declaration, or {@code null} if the line is not a variable declaration.
+     */
+    VariableVerifier.Declaration getDeclaration() {
+        if (isMissing(DECLARATION)) {
+            declaration = VariableVerifier.parseDeclaration(line);
+            computedParts |= DECLARATION;
+        }
+        return declaration;
+    }
+
+    /**
+     * @return {@code true} if the line ends with multiple semicolons, {@code false} otherwise.
+     */
+    boolean endsWithMultipleSemicolons() {
+        if (isMissing(MULTIPLE_SEMICOLONS)) {
+            VerifierStats.countPattern(PatternId.MULTIPLE_SEMICOLON);
+            endsWithMultipleSemicolons = LinearPatterns.endsWithMultipleSemicolons(line);
+            computedParts |= MULTIPLE_SEMICOLONS;
+        }
+        return endsWithMultipleSemicolons;
+    }
+
+    /**
+     * @return {@code true} if the line starts like a variable declaration, {@code false} otherwise.
+     */
+    boolean isDeclarationPrefix() {
+        if (isMissing(DECLARATION_PREFIX)) {
+            VerifierStats.countPattern(PatternId.MISSING_SEMICOLON_DECLARATION);
+            isDeclarationPrefix = LinearPatterns.isDeclarationPrefix(line);
+            computedParts |= DECLARATION_PREFIX;
+        }
+        return isDeclarationPrefix;
+    }
+
+    /**
+     * @return The parsed assignment, or {@code null} if the line is not a variable assignment.
+     */
+    VariableVerifier.Assignment getAssignment() {
+        if (isMissing(ASSIGNMENT)) {
+            assignment = VariableVerifier.parseAssignment(line);
+            computedParts |= ASSIGNMENT;
+        }
+        return assignment;
+    }
+
+    /**
+     * @return {@code true} if the line ends with a semicolon, {@code false} otherwise.
+     */
+    boolean endsWithSemicolon() {
+        return line.endsWith(SEMICOLON);
+    }
+
+    /**
+     * @return The parsed method call, or {@code null} if the line is not a method call.
+     */
+    MethodVerifier.Call getCall() {
+        if (isMissing(CALL)) {
+            call = MethodVerifier.parseMethodCall(line);
+            computedParts |= CALL;
+        }
+        return call;
+    }
+
+    /**
+     * @return {@code true} if the line is a return statement, {@code false} otherwise.
+     */
+    boolean isReturn() {
+        if (isMissing(RETURN)) {
+            VerifierStats.countPattern(PatternId.RETURN);
+            isReturn = LinearPatterns.isReturn(line);
+            computedParts |= RETURN;
+        }
+        return isReturn;
+    }
+
+    /**
+     * @return {@code true} if the line ends with multiple opening brackets, {@code false} otherwise.
+     */
+    boolean hasMultipleOpenBrackets() {
+        if (isMissing(MULTIPLE_OPEN_BRACKETS)) {
+            VerifierStats.countPattern(PatternId.MULTIPLE_OPEN_BRACKETS);
+            hasMultipleOpenBrackets = LinearPatterns.hasMultipleOpenBrackets(line);
+            computedParts |= MULTIPLE_OPEN_BRACKETS;
+        }
+        return hasMultipleOpenBrackets;
+    }
+
+    /**
+     * Checks whether a part of the shape must be computed. A part is marked as computed only once its value
+     * is stored, so a part whose parser threw is computed again the next time it is needed.
+     * @param part The part of the shape.
+     * @return {@code true} if the part was not computed before, and must be computed now,
+     *         {@code false} otherwise.
+     */
+    private boolean isMissing(int part) {
+        return (computedParts & part) == 0;
+    }
+
+    /**
+     * Checks whether a line holds a statement after its first semicolon, like splitting it around its
+     * semicolons gives more than one part, without allocating the parts.
+     * @param line A cleaned line of code.
+     * @return {@code true} if a character other than a semicolon follows the first semicolon of the line,
+     *         {@code false} otherwise.
+     */
+    private static boolean hasStatementAfterSemicolon(String line) {
+        int semicolon = line.indexOf(SEMICOLON_CHAR);
+        if (semicolon < 0) {
+            return false;
+        }
+        for (int i = semicolon + 1; i < line.length(); i++) {
+            if (line.charAt(i) != SEMICOLON_CHAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,72 @@
+package ex5.sjava_verifier.verifier;
+
+import ex5.sjava_verifier.statistics.VerifierStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the {@link LineShape shapes} of lines, keyed by the exact text of the line.
+ * <p>
+ *     Code repeats the same lines over and over, such as {@code return;}, '}' and identical
+ *     conditions, so the shape of a repeated line is taken from the cache instead of being matched against
+ *     the patterns again. When the cache is full, the least recently used shape is evicted. Long lines are
+ *     rarely repeated, so they are not cached.
+ * </p>
+ * <p>
+ *     Hits and misses are counted in the {@link VerifierStats} of the current thread.
+ *     This class is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+class LineShapeCache {
+
+    // Constants
+    private static final int MAX_CACHED_LINE_LENGTH = 256;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // Private fields
+    private final int capacity;
+    private final Map<String, LineShape> shapes;
+
+    /**
+     * Constructs an empty cache.
+     * @param capacity The maximal number of cached shapes, or 0 to disable the cache.
+     */
+    LineShapeCache(int capacity) {
+        this.capacity = capacity;
+        this.shapes = new LinkedHashMap<>(16, LOAD_FACTOR, true) { // In access order, for LRU eviction
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LineShape> eldest) {
+                return size() > LineShapeCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the shape of the given line, from the cache if the line was seen recently.
+     * @param line A cleaned line of code.
+     * @return The shape of the line.
+     */
+    LineShape get(String line) {
+        if (capacity == 0) { // Disabled
+            return new LineShape(line);
+        }
+        if (line.length() > MAX_CACHED_LINE_LENGTH) {
+            VerifierStats.countLineCacheMiss();
+            return new LineShape(line);
+        }
+        LineShape shape = shapes.get(line);
+        if (shape != null) {
+            VerifierStats.countLineCacheHit();
+            return shape;
+        }
+        VerifierStats.countLineCacheMiss();
+        shape = new LineShape(line);
+        shapes.put(line, shape);
+        return shape;
+    }
+
+}
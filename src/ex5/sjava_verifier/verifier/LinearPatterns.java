@@ -0,0 +1,833 @@
+package ex5.sjava_verifier.verifier;
+
+/**
+ * Hand-written matchers for the patterns of s-java, which run in time linear in the length of the line.
+ * <p>
+ *     Every matcher is equivalent to a regular expression that was previously matched with
+ *     {@link java.util.regex.Pattern}, and gives the same accept/reject result and the same groups for every
+ *     input. The equivalent regular expression and matching operation are given in the documentation of
+ *     each matcher.
+ * </p>
+ * <p>
+ *     Unlike a backtracking regular expression engine, the matchers never try more than a constant number of
+ *     alternatives for each position in the line, so a long or crafted line cannot stall the verifier.
+ * </p>
+ * <p>
+ *     In the documentation below, {@code NAME} stands for the regular expression of a valid name:
+ *     {@code (?!\b(?:int|double|String|boolean|char|void|if|return|final|while|true|false)\b)(?!^_$)(?!__)
+ *     [a-zA-Z_][a-zA-Z_\d]*}, and {@code TYPE} stands for {@code int|double|String|boolean|char}.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class LinearPatterns {
+
+    // Constants
+    private static final String[] KEYWORDS = {
+            "int", "double", "String", "boolean", "char", "void", "if", "return", "final", "while", "true",
+            "false"
+    };
+    private static final String[] TYPES = {"int", "double", "String", "boolean", "char"};
+    private static final String[] CONDITION_KEYWORDS = {"while", "if"};
+    private static final String FINAL_KEYWORD = "final";
+    private static final String RETURN_KEYWORD = "return";
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    private static final String COMMENT_PREFIX = "//";
+    private static final char SEMICOLON = ';';
+    private static final char COMMA = ',';
+    private static final char EQUALS = '=';
+    private static final char OPEN_PAREN = '(';
+    private static final char CLOSE_PAREN = ')';
+    private static final char OPEN_CURLY_BRACKET = '{';
+    private static final char DOUBLE_QUOTE = '"';
+    private static final char SINGLE_QUOTE = '\'';
+    private static final char DOT = '.';
+    private static final char UNDERSCORE = '_';
+    private static final char PLUS = '+';
+    private static final char MINUS = '-';
+    private static final char LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * An empty constructor to prevent instantiation.
+     */
+    private LinearPatterns() {}
+
+    /**
+     * A successful match of one of the matchers, holding the bounds of the groups of the equivalent
+     * regular expression. Group 0 is the entire match.
+     */
+    public static final class Match {
+
+        private final CharSequence input;
+        private final int[] bounds; // Start and end of every group, -1 if the group did not participate
+
+        /**
+         * Constructs a match with the given number of groups, none of which participated yet.
+         * @param input The matched input.
+         * @param groupCount The number of groups, not including group 0.
+         */
+        private Match(CharSequence input, int groupCount) {
+            this.input = input;
+            this.bounds = new int[2 * (groupCount + 1)];
+            java.util.Arrays.fill(bounds, NOT_FOUND);
+        }
+
+        private Match set(int group, int start, int end) {
+            bounds[2 * group] = start;
+            bounds[2 * group + 1] = end;
+            return this;
+        }
+
+        /**
+         * @param group The index of the group.
+         * @return The text of the group, or {@code null} if the group did not participate in the match.
+         */
+        public String group(int group) {
+            int start = bounds[2 * group];
+            return start == NOT_FOUND ? null : input.subSequence(start, bounds[2 * group + 1]).toString();
+        }
+
+        /**
+         * @param group The index of the group.
+         * @return The start index of the group, or -1 if the group did not participate in the match.
+         */
+        public int start(int group) {
+            return bounds[2 * group];
+        }
+
+        /**
+         * @param group The index of the group.
+         * @return The end index of the group, or -1 if the group did not participate in the match.
+         */
+        public int end(int group) {
+            return bounds[2 * group + 1];
+        }
+
+    }
+
+    /**
+     * A view of a region of a text, which lets the matchers run over a part of a line exactly as they would
+     * over a copy of that part, without copying it.
+     * <p>
+     *     The region can be moved over its text, so a single view serves every part of a line. A match of the
+     *     view refers to its current region, so its groups must be read before the view is moved.
+     * </p>
+     */
+    public static final class Region implements CharSequence {
+
+        private final String text;
+        private int start;
+        private int end;
+
+        /**
+         * Constructs an empty view at the start of the given text.
+         * @param text The text to view.
+         */
+        public Region(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Moves the view to the given region of the text.
+         * @param start The start of the region in the text, inclusive.
+         * @param end The end of the region in the text, exclusive.
+         * @return This view.
+         */
+        public Region set(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        /**
+         * Shrinks the view to exclude the whitespaces at its start and end, like {@link String#strip()}.
+         * @return This view.
+         */
+        public Region strip() {
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            return this;
+        }
+
+        /**
+         * @return The start of the region in the text, inclusive.
+         */
+        public int start() {
+            return start;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text.substring(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text.substring(start, end);
+        }
+
+    }
+
+    /**
+     * Equivalent to {@code ^//.*|^\s*$} with {@code matches()}.
+     * @param line The line to match.
+     * @return {@code true} if the line is a comment or an empty line, {@code false} otherwise.
+     */
+    public static boolean isDisregarded(CharSequence line) {
+        int length = line.length();
+        if (startsWith(line, 0, COMMENT_PREFIX)) {
+            return firstLineTerminator(line, COMMENT_PREFIX.length(), length) == length;
+        }
+        return skipWhitespace(line, 0, length) == length;
+    }
+
+    /**
+     * Equivalent to {@code [-+]?\d+} with {@code matches()} over the given region.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the region is an int constant, {@code false} otherwise.
+     */
+    public static boolean isInt(CharSequence text, int from, int to) {
+        int i = skipSign(text, from, to);
+        int digitsEnd = skipDigits(text, i, to);
+        return digitsEnd > i && digitsEnd == to;
+    }
+
+    /**
+     * Equivalent to {@code [-+]?(?:\d+\.\d+|\.\d+|\d+\.)} with {@code matches()} over the given region.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the region is a double constant, {@code false} otherwise.
+     */
+    public static boolean isDouble(CharSequence text, int from, int to) {
+        int i = skipSign(text, from, to);
+        int integerEnd = skipDigits(text, i, to);
+        if (integerEnd == to || text.charAt(integerEnd) != DOT) {
+            return false;
+        }
+        int fractionEnd = skipDigits(text, integerEnd + 1, to);
+        return fractionEnd == to && (integerEnd > i || fractionEnd > integerEnd + 1);
+    }
+
+    /**
+     * Equivalent to {@code true|false} with {@code matches()} over the given region.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the region is a boolean constant, {@code false} otherwise.
+     */
+    public static boolean isBoolean(CharSequence text, int from, int to) {
+        return regionEquals(text, from, to, TRUE) || regionEquals(text, from, to, FALSE);
+    }
+
+    /**
+     * Equivalent to {@code ".*"} with {@code matches()} over the given region.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the region is a String constant, {@code false} otherwise.
+     */
+    public static boolean isString(CharSequence text, int from, int to) {
+        return to - from >= 2 && text.charAt(from) == DOUBLE_QUOTE && text.charAt(to - 1) == DOUBLE_QUOTE &&
+               firstLineTerminator(text, from + 1, to - 1) == to - 1;
+    }
+
+    /**
+     * Equivalent to {@code '.'} with {@code matches()} over the given region.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the region is a char constant, {@code false} otherwise.
+     */
+    public static boolean isChar(CharSequence text, int from, int to) {
+        int length = to - from;
+        if (length < 3 || text.charAt(from) != SINGLE_QUOTE || text.charAt(to - 1) != SINGLE_QUOTE) {
+            return false;
+        }
+        if (length == 3) {
+            return !isLineTerminator(text.charAt(from + 1));
+        }
+        // '.' matches a whole code point, which may be a surrogate pair
+        return length == 4 && Character.isHighSurrogate(text.charAt(from + 1)) &&
+               Character.isLowSurrogate(text.charAt(from + 2));
+    }
+
+    /**
+     * Equivalent to {@code ^return\s*;$} with {@code matches()}.
+     * @param line The line to match.
+     * @return {@code true} if the line is a return statement, {@code false} otherwise.
+     */
+    public static boolean isReturn(CharSequence line) {
+        int length = line.length();
+        if (!startsWith(line, 0, RETURN_KEYWORD)) {
+            return false;
+        }
+        int i = skipWhitespace(line, RETURN_KEYWORD.length(), length);
+        return i == length - 1 && line.charAt(i) == SEMICOLON;
+    }
+
+    /**
+     * Equivalent to {@code ;;+$} with {@code find()}.
+     * @param line The line to search.
+     * @return {@code true} if the line ends with multiple semicolons, {@code false} otherwise.
+     */
+    public static boolean endsWithMultipleSemicolons(CharSequence line) {
+        int length = line.length();
+        for (int end = length; end >= Math.max(0, length - 2); end--) { // Every position '$' may match at
+            if (isEndOfInput(line, end) && end >= 2 && line.charAt(end - 1) == SEMICOLON &&
+                line.charAt(end - 2) == SEMICOLON) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Equivalent to {@code \{\{+} with {@code find()}.
+     * @param line The line to search.
+     * @return {@code true} if the line contains multiple consecutive opening brackets,
+     *         {@code false} otherwise.
+     */
+    public static boolean hasMultipleOpenBrackets(CharSequence line) {
+        for (int i = 1; i < line.length(); i++) {
+            if (line.charAt(i) == OPEN_CURLY_BRACKET && line.charAt(i - 1) == OPEN_CURLY_BRACKET) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches {@code NAME} at the given index, like {@code lookingAt()} would at the start of a region with
+     * transparent and non-anchoring bounds, which is how {@code NAME} matches inside a longer expression.
+     * <p>
+     *     The index matters for {@code (?!^_$)}, which may only reject a name at the start of the text, and
+     *     for {@code \b}, which sees the character before the index.
+     * </p>
+     * @param text The text to match.
+     * @param from The index to match at.
+     * @return The end index of the name, or -1 if there is no valid name at the given index.
+     */
+    public static int nameEnd(CharSequence text, int from) {
+        int length = text.length();
+        if (from >= length || !isNameStart(text.charAt(from)) || startsWithKeyword(text, from)) {
+            return NOT_FOUND;
+        }
+        if (text.charAt(from) == UNDERSCORE) {
+            if (from == 0 && isEndOfInput(text, 1)) { // (?!^_$)
+                return NOT_FOUND;
+            }
+            if (from + 1 < length && text.charAt(from + 1) == UNDERSCORE) { // (?!__)
+                return NOT_FOUND;
+            }
+        }
+        int i = from + 1;
+        while (i < length && isNamePart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Equivalent to {@code NAME} with {@code lookingAt()}.
+     * @param text The text to match.
+     * @return {@code true} if the text starts with a valid name, {@code false} otherwise.
+     */
+    public static boolean startsWithName(CharSequence text) {
+        return nameEnd(text, 0) != NOT_FOUND;
+    }
+
+    /**
+     * Equivalent to {@code NAME} with {@code matches()}.
+     * @param text The text to match.
+     * @return {@code true} if the text is a valid name, {@code false} otherwise.
+     */
+    public static boolean isName(CharSequence text) {
+        return nameEnd(text, 0) == text.length();
+    }
+
+    /**
+     * Equivalent to {@code ^(while|if)\s*\(\s*(.*)\)\s*\{} with {@code matches()}.
+     * @param line The line to match.
+     * @return The match, with the statement type in group 1 and the conditions in group 2,
+     *         or {@code null} if the line does not match.
+     */
+    public static Match conditionStatement(CharSequence line) {
+        int length = line.length();
+        if (length == 0 || line.charAt(length - 1) != OPEN_CURLY_BRACKET) {
+            return null;
+        }
+        return conditionHeader(line, length - 1);
+    }
+
+    /**
+     * Equivalent to {@code ^(while|if)\s*\(\s*(.*)\)\s*} with {@code matches()}.
+     * @param line The line to match.
+     * @return The match, with the statement type in group 1 and the conditions in group 2,
+     *         or {@code null} if the line does not match.
+     */
+    public static Match conditionWithoutBracket(CharSequence line) {
+        return conditionHeader(line, line.length());
+    }
+
+    /**
+     * Equivalent to {@code ^(NAME)\s*\((.*)\)\s*} with {@code lookingAt()}.
+     * @param line The line to match.
+     * @return The match, with the method name in group 1 and the arguments in group 2,
+     *         or {@code null} if the line does not match.
+     */
+    public static Match methodCall(CharSequence line) {
+        int nameEnd = nameEnd(line, 0);
+        if (nameEnd == NOT_FOUND) {
+            return null;
+        }
+        int open = skipWhitespace(line, nameEnd, line.length());
+        if (open == line.length() || line.charAt(open) != OPEN_PAREN) {
+            return null;
+        }
+        int lineEnd = firstLineTerminator(line, open + 1, line.length()); // '.*' stops at a line terminator
+        int close = lastIndexOf(line, CLOSE_PAREN, open + 1, lineEnd);
+        if (close == NOT_FOUND) {
+            return null;
+        }
+        return new Match(line, 2).set(0, 0, skipWhitespace(line, close + 1, line.length()))
+                                  .set(1, 0, nameEnd).set(2, open + 1, close);
+    }
+
+    /**
+     * Equivalent to {@code ^(NAME)\s*\((.*)\)\s*\{} with {@code matches()}.
+     * @param text The method declaration, without the 'void' keyword.
+     * @return The match, with the method name in group 1 and the parameters in group 2,
+     *         or {@code null} if the text does not match.
+     */
+    public static Match methodDeclaration(CharSequence text) {
+        int length = text.length();
+        int nameEnd = nameEnd(text, 0);
+        if (nameEnd == NOT_FOUND || text.charAt(length - 1) != OPEN_CURLY_BRACKET) {
+            return null;
+        }
+        int open = skipWhitespace(text, nameEnd, length);
+        if (open == length || text.charAt(open) != OPEN_PAREN) {
+            return null;
+        }
+        int close = closingParenBefore(text, open, length - 1);
+        if (close == NOT_FOUND || firstLineTerminator(text, open + 1, close) != close) {
+            return null;
+        }
+        return new Match(text, 2).set(0, 0, length).set(1, 0, nameEnd).set(2, open + 1, close);
+    }
+
+    /**
+     * Equivalent to {@code ^(final\s+)?(TYPE)\s+(NAME)} with {@code matches()}.
+     * @param text The parameter declaration.
+     * @return The match, with the final keyword in group 1, the type in group 2 and the name in group 3,
+     *         or {@code null} if the text does not match.
+     */
+    public static Match parameter(CharSequence text) {
+        Match match = declarationPrefix(text, 3);
+        if (match == null) {
+            return null;
+        }
+        int nameStart = match.end(0);
+        int nameEnd = nameEnd(text, nameStart);
+        if (nameEnd != text.length()) {
+            return null;
+        }
+        return match.set(0, 0, nameEnd).set(3, nameStart, nameEnd);
+    }
+
+    /**
+     * Equivalent to {@code ^(final\s+)?(TYPE)\s+(.*);$} with {@code lookingAt()}.
+     * @param line The line to match.
+     * @return The match, with the final keyword in group 1, the type in group 2 and the declared variables
+     *         in group 3, or {@code null} if the line does not match.
+     */
+    public static Match variableDeclaration(CharSequence line) {
+        Match match = declarationPrefix(line, 3);
+        if (match == null) {
+            return null;
+        }
+        int varsStart = match.end(0), length = line.length();
+        int lineEnd = firstLineTerminator(line, varsStart, length); // '.*' stops at a line terminator
+        // The greediest ';$' first
+        for (int end = length; end >= Math.max(varsStart + 1, length - 2); end--) {
+            int semicolon = end - 1;
+            if (semicolon <= lineEnd && line.charAt(semicolon) == SEMICOLON && isEndOfInput(line, end)) {
+                return match.set(0, 0, end).set(3, varsStart, semicolon);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Equivalent to {@code ^(final\s+)?(TYPE)\s+(.*)} with {@code matches()}.
+     * @param line The line to match.
+     * @return {@code true} if the line starts like a variable declaration, {@code false} otherwise.
+     */
+    public static boolean isDeclarationPrefix(CharSequence line) {
+        Match match = declarationPrefix(line, 2);
+        return match != null && firstLineTerminator(line, match.end(0), line.length()) == line.length();
+    }
+
+    /**
+     * Equivalent to {@code (NAME)(\s*(=)(\s*[^,;]+)?)?} with {@code matches()}.
+     * @param text A single declared variable, with its optional initialization.
+     * @return The match, with the name in group 1, the assignment in group 2, the '=' sign in group 3
+     *         and the value in group 4, or {@code null} if the text does not match.
+     */
+    public static Match declarator(CharSequence text) {
+        int length = text.length();
+        int nameEnd = nameEnd(text, 0);
+        if (nameEnd == NOT_FOUND) {
+            return null;
+        }
+        Match match = new Match(text, 4).set(0, 0, length).set(1, 0, nameEnd);
+        if (nameEnd == length) {
+            return match;
+        }
+        int equals = skipWhitespace(text, nameEnd, length);
+        if (equals == length || text.charAt(equals) != EQUALS) {
+            return null;
+        }
+        int valueStart = equals + 1;
+        if (indexOfCommaOrSemicolon(text, valueStart, length) != NOT_FOUND) {
+            return null;
+        }
+        match.set(2, nameEnd, length).set(3, equals, valueStart);
+        return valueStart == length ? match : match.set(4, valueStart, length);
+    }
+
+    /**
+     * Equivalent to {@code ^(NAME)\s*=\s*([^,;]+)} with {@code lookingAt()}.
+     * @param text A single assignment.
+     * @return The match, with the name in group 1 and the value in group 2,
+     *         or {@code null} if the text does not match.
+     */
+    public static Match assignment(CharSequence text) {
+        int length = text.length();
+        int nameEnd = nameEnd(text, 0);
+        if (nameEnd == NOT_FOUND) {
+            return null;
+        }
+        int equals = skipWhitespace(text, nameEnd, length);
+        if (equals == length || text.charAt(equals) != EQUALS) {
+            return null;
+        }
+        int valueStart = skipWhitespace(text, equals + 1, length);
+        int valueEnd = indexOfCommaOrSemicolon(text, valueStart, length);
+        valueEnd = valueEnd == NOT_FOUND ? length : valueEnd;
+        if (valueEnd == valueStart) { // '\s*' gives back its last whitespace to '[^,;]+'
+            if (valueStart == equals + 1) {
+                return null;
+            }
+            valueStart--;
+        }
+        return new Match(text, 2).set(0, 0, valueEnd).set(1, 0, nameEnd).set(2, valueStart, valueEnd);
+    }
+
+    /**
+     * Returns the text before the first occurrence of the given character and the whitespaces before it.
+     * <p>
+     *     This is the first element of splitting the text around {@code \s*c\s*} or {@code \s*c}, as in
+     *     {@code text.split("\\s*=\\s*")[0]}, except that an empty string is returned where the split would
+     *     have no elements at all.
+     * </p>
+     * @param text The text to split.
+     * @param c The character to split the text around.
+     * @return The text before the first occurrence of the character and the whitespaces before it,
+     *         or the entire text if the character does not occur in it.
+     */
+    public static String beforeFirst(String text, char c) {
+        int index = text.indexOf(c);
+        if (index == NOT_FOUND) {
+            return text;
+        }
+        int end = index;
+        while (end > 0 && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * Checks if a character is matched by {@code \s}.
+     * @param c The character to check.
+     * @return {@code true} if the character is a whitespace, {@code false} otherwise.
+     */
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == LINE_FEED || c == '\u000B' || c == '\f' || c == CARRIAGE_RETURN;
+    }
+
+    /**
+     * Returns the index of the first character that is not matched by {@code \s}.
+     * @param text The text to scan.
+     * @param from The index to start at.
+     * @param to The index to stop at.
+     * @return The index of the first non-whitespace character, or {@code to} if there is none.
+     */
+    public static int skipWhitespace(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks if the given index is an end of the input, as matched by {@code $} without the multiline flag:
+     * the end of the text, or right before a line terminator that ends the text.
+     * @param text The text.
+     * @param index The index to check.
+     * @return {@code true} if {@code $} matches at the given index, {@code false} otherwise.
+     */
+    private static boolean isEndOfInput(CharSequence text, int index) {
+        int length = text.length();
+        if (index == length) {
+            return true;
+        }
+        if (index == length - 2) {
+            return text.charAt(index) == CARRIAGE_RETURN && text.charAt(index + 1) == LINE_FEED;
+        }
+        if (index == length - 1) {
+            char c = text.charAt(index);
+            if (c == LINE_FEED) { // '$' does not match between '\r' and '\n'
+                return index == 0 || text.charAt(index - 1) != CARRIAGE_RETURN;
+            }
+            return isLineTerminator(c);
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a character is a line terminator, which is not matched by {@code .}.
+     * @param c The character to check.
+     * @return {@code true} if the character is a line terminator, {@code false} otherwise.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == LINE_FEED || c == CARRIAGE_RETURN || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == UNDERSCORE;
+    }
+
+    private static boolean isNamePart(char c) {
+        return isNameStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipSign(CharSequence text, int from, int to) {
+        return from < to && (text.charAt(from) == PLUS || text.charAt(from) == MINUS) ? from + 1 : from;
+    }
+
+    private static int skipDigits(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && isDigit(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int firstLineTerminator(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && !isLineTerminator(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int lastIndexOf(CharSequence text, char c, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private static int indexOfCommaOrSemicolon(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == COMMA || c == SEMICOLON) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean startsWith(CharSequence text, int from, String prefix) {
+        if (from + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(CharSequence text, int from, int to, String expected) {
+        return to - from == expected.length() && startsWith(text, from, expected);
+    }
+
+    /**
+     * Returns the index of the ')' that closes the given text, where only whitespaces may come between
+     * the ')' and the end index, as matched by {@code \)\s*} right before the end index.
+     * @param text The text.
+     * @param open The index of the opening '(', which the ')' must come after.
+     * @param end The index that the whitespaces after the ')' reach.
+     * @return The index of the ')', or -1 if there is none.
+     */
+    private static int closingParenBefore(CharSequence text, int open, int end) {
+        int i = end - 1;
+        while (i > open && isWhitespace(text.charAt(i))) {
+            i--;
+        }
+        return i > open && text.charAt(i) == CLOSE_PAREN ? i : NOT_FOUND;
+    }
+
+    /**
+     * Matches {@code ^(while|if)\s*\(\s*(.*)\)\s*} over the text up to the given end index.
+     * @param line The line to match.
+     * @param end The index the match must reach.
+     * @return The match, or {@code null} if there is none.
+     */
+    private static Match conditionHeader(CharSequence line, int end) {
+        String keyword = null;
+        for (String conditionKeyword : CONDITION_KEYWORDS) {
+            if (startsWith(line, 0, conditionKeyword)) {
+                keyword = conditionKeyword;
+                break;
+            }
+        }
+        if (keyword == null) {
+            return null;
+        }
+        int open = skipWhitespace(line, keyword.length(), end);
+        if (open == end || line.charAt(open) != OPEN_PAREN) {
+            return null;
+        }
+        int close = closingParenBefore(line, open, end);
+        if (close == NOT_FOUND) {
+            return null;
+        }
+        int conditionsStart = skipWhitespace(line, open + 1, close);
+        if (firstLineTerminator(line, conditionsStart, close) != close) {
+            return null;
+        }
+        return new Match(line, 2).set(0, 0, line.length()).set(1, 0, keyword.length())
+                                  .set(2, conditionsStart, close);
+    }
+
+    /**
+     * Matches {@code ^(final\s+)?(TYPE)\s+} at the start of the text.
+     * @param text The text to match.
+     * @param groupCount The number of groups of the returned match.
+     * @return The match, with the final keyword in group 1 and the type in group 2, where group 0 ends after
+     *         the whitespaces that follow the type, or {@code null} if the text does not match.
+     */
+    private static Match declarationPrefix(CharSequence text, int groupCount) {
+        int length = text.length();
+        Match match = new Match(text, groupCount);
+        int typeStart = 0;
+        if (startsWith(text, 0, FINAL_KEYWORD)) {
+            int afterFinal = skipWhitespace(text, FINAL_KEYWORD.length(), length);
+            if (afterFinal > FINAL_KEYWORD.length()) {
+                match.set(1, 0, afterFinal);
+                typeStart = afterFinal;
+            }
+        }
+        for (String type : TYPES) {
+            if (startsWith(text, typeStart, type)) {
+                int typeEnd = typeStart + type.length();
+                int afterType = skipWhitespace(text, typeEnd, length);
+                if (afterType == typeEnd) {
+                    return null;
+                }
+                return match.set(0, 0, afterType).set(2, typeStart, typeEnd);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the text has a keyword at the given index, as matched by
+     * {@code \b(?:int|double|String|boolean|char|void|if|return|final|while|true|false)\b}.
+     * @param text The text to check.
+     * @param from The index to check at.
+     * @return {@code true} if there is a keyword at the index, {@code false} otherwise.
+     */
+    private static boolean startsWithKeyword(CharSequence text, int from) {
+        for (String keyword : KEYWORDS) {
+            if (startsWith(text, from, keyword) && isWordBoundary(text, from) &&
+                isWordBoundary(text, from + keyword.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if {@code \b} matches at the given index, using the same definition of a word character as
+     * {@link java.util.regex.Pattern}: a letter, a digit, '_', or a non-spacing mark after one of them.
+     * @param text The text.
+     * @param index The index to check.
+     * @return {@code true} if the index is a word boundary, {@code false} otherwise.
+     */
+    private static boolean isWordBoundary(CharSequence text, int index) {
+        boolean left = false, right = false;
+        if (index > 0) {
+            int c = Character.codePointBefore(text, index);
+            left = isWordCharacter(c) || (Character.getType(c) == Character.NON_SPACING_MARK &&
+                                          hasBaseCharacter(text, index - 1));
+        }
+        if (index < text.length()) {
+            int c = Character.codePointAt(text, index);
+            right = isWordCharacter(c) || (Character.getType(c) == Character.NON_SPACING_MARK &&
+                                           hasBaseCharacter(text, index));
+        }
+        return left != right;
+    }
+
+    private static boolean isWordCharacter(int c) {
+        return c == UNDERSCORE || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean hasBaseCharacter(CharSequence text, int index) {
+        for (int i = index; i >= 0; i--) {
+            int c = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(c)) {
+                return true;
+            }
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,10 +1,12 @@
 package ex5.sjava_verifier.verifier;
 
-import java.util.regex.Pattern;
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
 
 /**
- * A utility class for regular expressions.
- * This class contains regular expressions for different types of values, and methods to process them.
+ * A utility class for the constant values of s-java.
+ * This class contains methods that recognize constant values and find their types, using the linear-time
+ * matchers of {@link LinearPatterns}.
  *
  * @author Noam Kimhi
  * @author Or Forshmit
@@ -14,31 +16,6 @@ public class RegexUtils {
     // Errors
     private static final String NON_EXISTENT_VALUE_TYPE_ASSIGNMENT = "The type of %s is unknown.";
 
-    // RegEx formats
-    /** A regular expression for an integer. */
-    public static final String INT_REGEX = "[-+]?\\d+";
-    /** A regular expression for a double. */
-    public static final String DOUBLE_REGEX = "[-+]?(?:\\d+\\.\\d+|\\.\\d+|\\d+\\.)";
-    /** A regular expression for a boolean. */
-    public static final String BOOLEAN_REGEX = "true|false";
-    private static final String STRING_REGEX = "\".*\"";
-    private static final String CHAR_REGEX = "'.'";
-    private static final String MULTIPLE_SEMICOLON_REGEX = ";;+$";
-    private static final String MULTIPLE_OPEN_BRACKETS_REGEX = "\\{\\{+";
-
-    // Pattern instances
-    private static final Pattern INT_PATTERN = Pattern.compile(INT_REGEX);
-    private static final Pattern DOUBLE_PATTERN = Pattern.compile(DOUBLE_REGEX);
-    private static final Pattern BOOLEAN_PATTERN = Pattern.compile(BOOLEAN_REGEX);
-    private static final Pattern STRING_PATTERN = Pattern.compile(STRING_REGEX);
-    private static final Pattern CHAR_PATTERN = Pattern.compile(CHAR_REGEX);
-    /** A regex that finds multiple semicolons at the end of a line. */
-    public static final Pattern MULTIPLE_SEMICOLON_PATTERN = Pattern.compile(MULTIPLE_SEMICOLON_REGEX);
-    /** A regex that finds multiple open brackets. */
-    public static final Pattern MULTIPLE_OPEN_BRACKETS_PATTERN = Pattern.compile(
-            MULTIPLE_OPEN_BRACKETS_REGEX
-    );
-
     /**
      * Returns the type of the constant to assign if it is a constant.
      * <p>
@@ -48,10 +25,30 @@ public class RegexUtils {
      * @return The type of the value assigned if it is a constant, or {@code null} otherwise.
      */
     public static VarType getConstantType(String toAssign) {
-        if(INT_PATTERN.matcher(toAssign).matches() || DOUBLE_PATTERN.matcher(toAssign).matches() ||
-           BOOLEAN_PATTERN.matcher(toAssign).matches() || STRING_PATTERN.matcher(toAssign).matches() ||
-           CHAR_PATTERN.matcher(toAssign).matches()) {
-            return processValue(toAssign);
+        return getConstantType(toAssign, 0, toAssign.length());
+    }
+
+    /**
+     * Returns the type of a region of the text if it is a constant, without copying the region.
+     * <p>
+     *     Will not throw an exception.
+     * </p>
+     * @param text The text.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return The type of the constant in the region if it is a constant, or {@code null} otherwise.
+     */
+    public static VarType getConstantType(CharSequence text, int from, int to) {
+        if (matches(PatternId.INT, text, from, to)) {
+            return VarType.INT;
+        } else if (matches(PatternId.DOUBLE, text, from, to)) {
+            return VarType.DOUBLE;
+        } else if (matches(PatternId.BOOLEAN, text, from, to)) {
+            return VarType.BOOLEAN;
+        } else if (matches(PatternId.STRING, text, from, to)) {
+            return VarType.STRING;
+        } else if (matches(PatternId.CHAR, text, from, to)) {
+            return VarType.CHAR;
         }
         return null;
     }
@@ -63,19 +60,51 @@ public class RegexUtils {
      * @throws IllegalTypeException If the value is of an illegal type.
      */
     public static VarType processValue(String toAssign) throws IllegalTypeException {
-        if (INT_PATTERN.matcher(toAssign).matches()) {
+        if (matches(PatternId.INT, toAssign)) {
             return VarType.INT;
-        } else if (DOUBLE_PATTERN.matcher(toAssign).matches()) {
+        } else if (matches(PatternId.DOUBLE, toAssign)) {
             return VarType.DOUBLE;
-        } else if (BOOLEAN_PATTERN.matcher(toAssign).matches()) {
+        } else if (matches(PatternId.BOOLEAN, toAssign)) {
             return VarType.BOOLEAN;
-        } else if (STRING_PATTERN.matcher(toAssign).matches()) {
+        } else if (matches(PatternId.STRING, toAssign)) {
             return VarType.STRING;
-        } else if (CHAR_PATTERN.matcher(toAssign).matches()) {
+        } else if (matches(PatternId.CHAR, toAssign)) {
             return VarType.CHAR;
         } else {
             throw new IllegalTypeException(String.format(NON_EXISTENT_VALUE_TYPE_ASSIGNMENT, toAssign));
         }
     }
 
+    /**
+     * Matches the entire value against the given constant pattern, and counts the attempt in
+     * {@link VerifierStats}.
+     * @param id The identifier of the pattern, one of the constant patterns.
+     * @param value The value to match.
+     * @return {@code true} if the entire value matches the pattern, {@code false} otherwise.
+     */
+    private static boolean matches(PatternId id, String value) {
+        return matches(id, value, 0, value.length());
+    }
+
+    /**
+     * Matches a region of the text against the given constant pattern, and counts the attempt in
+     * {@link VerifierStats}.
+     * @param id The identifier of the pattern, one of the constant patterns.
+     * @param text The text to match.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return {@code true} if the entire region matches the pattern, {@code false} otherwise.
+     */
+    private static boolean matches(PatternId id, CharSequence text, int from, int to) {
+        VerifierStats.countPattern(id);
+        return switch (id) {
+            case INT -> LinearPatterns.isInt(text, from, to);
+            case DOUBLE -> LinearPatterns.isDouble(text, from, to);
+            case BOOLEAN -> LinearPatterns.isBoolean(text, from, to);
+            case STRING -> LinearPatterns.isString(text, from, to);
+            case CHAR -> LinearPatterns.isChar(text, from, to);
+            default -> throw new IllegalArgumentException(id.name());
+        };
+    }
+
 }
@@ -0,0 +1,156 @@
+package ex5.sjava_verifier.verifier;
+
+import ex5.sjava_verifier.rules.Diagnostic;
+import ex5.sjava_verifier.rules.Rule;
+import ex5.sjava_verifier.rules.RuleContext;
+import ex5.sjava_verifier.rules.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes the events of the traversal of {@link CodeVerifier} to the registered {@link Rule rules}, and
+ * collects their diagnostics.
+ * <p>
+ *     Without rules, every event is a loop over an empty array, so the verification does not pay for the
+ *     pipeline. The pipeline is not thread-safe, like the rules it holds.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class RulePipeline {
+
+    // Private fields
+    private final Rule[] rules;
+    private final RuleContext[] contexts;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    /**
+     * Constructs a pipeline.
+     * @param rules The rules to pass the events to, in the order they receive them.
+     */
+    RulePipeline(List<? extends Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        this.contexts = new RuleContext[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++) {
+            String ruleId = this.rules[i].getId();
+            contexts[i] = (line, message) -> diagnostics.add(new Diagnostic(ruleId, line, message));
+        }
+    }
+
+    /**
+     * @return The diagnostics reported since the current file started, in the order they were reported.
+     */
+    List<Diagnostic> getDiagnostics() {
+        return List.copyOf(diagnostics);
+    }
+
+    /**
+     * Starts a new file, dropping the diagnostics of the last one.
+     */
+    void startFile() {
+        diagnostics.clear();
+        for (int i = 0; i < rules.length; i++) {
+            rules[i].startFile(contexts[i]);
+        }
+    }
+
+    /**
+     * Drops the diagnostics of the last file.
+     */
+    void reset() {
+        diagnostics.clear();
+    }
+
+    /**
+     * @see Rule#methodStart(long, String)
+     */
+    void methodStart(long line, String name) {
+        for (Rule rule : rules) {
+            rule.methodStart(line, name);
+        }
+    }
+
+    /**
+     * @see Rule#methodEnd(long, String)
+     */
+    void methodEnd(long line, String name) {
+        for (Rule rule : rules) {
+            rule.methodEnd(line, name);
+        }
+    }
+
+    /**
+     * @see Rule#scopePush(long, int)
+     */
+    void scopePush(long line, int depth) {
+        for (Rule rule : rules) {
+            rule.scopePush(line, depth);
+        }
+    }
+
+    /**
+     * @see Rule#scopePop(long, int)
+     */
+    void scopePop(long line, int depth) {
+        for (Rule rule : rules) {
+            rule.scopePop(line, depth);
+        }
+    }
+
+    /**
+     * @see Rule#declaration(long, Symbol, boolean)
+     */
+    void declaration(long line, Symbol variable, boolean isParameter) {
+        for (Rule rule : rules) {
+            rule.declaration(line, variable, isParameter);
+        }
+    }
+
+    /**
+     * @see Rule#assignment(long, Symbol)
+     */
+    void assignment(long line, Symbol variable) {
+        for (Rule rule : rules) {
+            rule.assignment(line, variable);
+        }
+    }
+
+    /**
+     * @see Rule#read(long, Symbol)
+     */
+    void read(long line, Symbol variable) {
+        for (Rule rule : rules) {
+            rule.read(line, variable);
+        }
+    }
+
+    /**
+     * @see Rule#condition(long, boolean)
+     */
+    void condition(long line, boolean isLoop) {
+        for (Rule rule : rules) {
+            rule.condition(line, isLoop);
+        }
+    }
+
+    /**
+     * @see Rule#call(long, String)
+     */
+    void call(long line, String method) {
+        for (Rule rule : rules) {
+            rule.call(line, method);
+        }
+    }
+
+    /**
+     * @see Rule#endFile()
+     */
+    void endFile() {
+        for (Rule rule : rules) {
+            rule.endFile();
+        }
+    }
+
+}
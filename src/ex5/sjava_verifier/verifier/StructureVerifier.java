@@ -0,0 +1,267 @@
+package ex5.sjava_verifier.verifier;
+
+import ex5.sjava_verifier.preprocessor.CleanLineSource;
+import ex5.sjava_verifier.verifier.method_management.MethodException;
+import ex5.sjava_verifier.verifier.method_management.MethodVerifier;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verifies only the structure of s-java code, in a single scan of its lines, as a cheap tier before the full
+ * verification of {@link CodeVerifier}.
+ * <p>
+ *     The structure is the form of every line, the balance of the curly brackets, one statement per line,
+ *     legal method declarations and a return statement before the closing bracket of every method. It is
+ *     checked by following the same steps as {@link CodeVerifier}, keeping only whether the line is in a
+ *     method and how deeply it is nested, without the scopes, the method table or the types and values of
+ *     the variables. The checks of those are assumed to pass.
+ * </p>
+ * <p>
+ *     Every file that this class rejects is also rejected by {@link CodeVerifier}, and when the error of
+ *     {@link CodeVerifier} is one of the structure, this class reports exactly the same error. An illegal
+ *     method declaration is reported before every other error, like {@link CodeVerifier} does. When a file
+ *     also has an error that only the full verification finds, before its first structural error, the full
+ *     verification reports that error instead.
+ * </p>
+ * <p>
+ *     The verifier can be reused for another file. It is not thread-safe.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class StructureVerifier {
+
+    // Constants
+    private static final String START_OF_METHOD_DEC = "void";
+    private static final int GLOBAL_DEPTH = 1;
+    private static final int METHOD_DEPTH = 2;
+
+    // Private fields
+    private final LineShapeCache lineShapes;
+    private final Set<String> methodNames = new HashSet<>();
+    private long currentLine;
+    private int depth; // The number of open scopes, like in the scopes of CodeVerifier
+    private boolean isInMethod;
+    private String prevLine;
+    private String methodName;
+    private SyntaxException error; // The first structural error, reported unless a declaration is illegal
+
+    /**
+     * Constructs a verifier.
+     * @param lineShapes The cache of the shapes of the lines, which may be shared with the
+     *                   {@link CodeVerifier} that verifies the same files afterwards.
+     */
+    StructureVerifier(LineShapeCache lineShapes) {
+        this.lineShapes = lineShapes;
+    }
+
+    /**
+     * Verifies the structure of the given clean lines.
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @throws SyntaxException If the structure of a line is illegal.
+     * @throws MethodException If a method declaration is illegal.
+     * @throws LimitExceededException If the limits of the {@link Watchdog} of the thread were exceeded.
+     */
+    void verify(Map<Long, String> cleanLines) throws SyntaxException, MethodException {
+        start();
+        for (Map.Entry<Long, String> line : cleanLines.entrySet()) {
+            handleLine(line.getKey(), line.getValue());
+        }
+        finish();
+    }
+
+    /**
+     * Verifies the structure of the lines of the given source, while they are read.
+     * <p>
+     *     Only the state described above and the names of the methods are kept, so the memory used does not
+     *     depend on the size of the file. After the first structural error, the rest of the file is still
+     *     read, since an illegal method declaration after it takes precedence.
+     * </p>
+     * @param source The source of the clean lines. It is not closed by this method.
+     * @throws IOException If an error occurs while reading the lines.
+     * @throws SyntaxException If the structure of a line is illegal.
+     * @throws MethodException If a method declaration is illegal.
+     * @throws LimitExceededException If the limits of the {@link Watchdog} of the thread were exceeded.
+     */
+    void verify(CleanLineSource source) throws IOException, SyntaxException, MethodException {
+        start();
+        while (source.next()) {
+            handleLine(source.getLineNumber(), source.getLine());
+        }
+        finish();
+    }
+
+    /**
+     * Brings the verifier to the start of a file.
+     */
+    private void start() {
+        methodNames.clear();
+        currentLine = 0;
+        depth = GLOBAL_DEPTH;
+        isInMethod = false;
+        prevLine = "";
+        methodName = null;
+        error = null;
+    }
+
+    /**
+     * Reports the first structural error of the file, or the brackets that were never closed.
+     * @throws SyntaxException If the structure of the file is illegal.
+     */
+    private void finish() throws SyntaxException {
+        methodNames.clear();
+        SyntaxException firstError = error;
+        error = null;
+        if (firstError != null) {
+            throw firstError;
+        }
+        if (isInMethod || depth != GLOBAL_DEPTH) { // A method\conditional without a closing bracket
+            throw new SyntaxException(CodeVerifier.MISSING_CLOSING_BRACKET);
+        }
+    }
+
+    /**
+     * Handles the next line of the file.
+     * @param lineNumber The number of the line.
+     * @param line The cleaned line of code.
+     * @throws MethodException If the line is an illegal method declaration.
+     */
+    private void handleLine(long lineNumber, String line) throws MethodException {
+        Watchdog.check(lineNumber);
+        currentLine = lineNumber;
+        if (line.startsWith(START_OF_METHOD_DEC)) { // Verified first, like the method table of CodeVerifier
+            try {
+                MethodVerifier.verifyDeclaration(line, methodNames);
+            } catch (MethodException e) {
+                throw new MethodException(e.getMessage(), currentLine);
+            }
+        }
+        if (error != null) { // Only the declarations are verified after the first error
+            return;
+        }
+        try {
+            handleStructure(lineShapes.get(line));
+            prevLine = line;
+        } catch (SyntaxException e) {
+            error = new SyntaxException(e.getMessage(), currentLine);
+        }
+    }
+
+    /**
+     * Handles the structure of a line, in the order of the checks of {@link CodeVerifier}.
+     * @param shape The shape of the line.
+     * @throws SyntaxException If the structure of the line is illegal.
+     */
+    private void handleStructure(LineShape shape) throws SyntaxException {
+        if (shape.hasMultipleStatements()) { // a; b;
+            throw new SyntaxException(CodeVerifier.MULTIPLE_STATEMENTS);
+        }
+        if (shape.isMethodDeclaration()) {
+            if (isInMethod) {
+                throw new SyntaxException(CodeVerifier.NESTED_METHOD_DEC);
+            }
+            depth++;
+            methodName = shape.getMethodName();
+            isInMethod = true;
+            return;
+        }
+        if (handleBlock(shape) || handleVariable(shape) || handleInMethod(shape)) {
+            return;
+        }
+        if (shape.isReturn()) {
+            if (isInMethod) {
+                return;
+            }
+            throw new SyntaxException(CodeVerifier.INVALID_RETURN_STATEMENT);
+        }
+        if (shape.getCall() != null) {
+            throw new SyntaxException(CodeVerifier.ILLEGAL_METHOD_CALL);
+        }
+        if (shape.hasMultipleOpenBrackets()) {
+            throw new SyntaxException(CodeVerifier.MULTIPLE_OPEN_BRACKETS);
+        }
+        throw new SyntaxException(CodeVerifier.ILLEGAL_LINE + shape.getLine());
+    }
+
+    /**
+     * Handles a line that may open or close a block of a condition.
+     * @param shape The shape of the line.
+     * @return {@code true} if the line opens or closes a block, {@code false} otherwise.
+     * @throws SyntaxException If the condition is outside of a method, or misses its opening bracket.
+     */
+    private boolean handleBlock(LineShape shape) throws SyntaxException {
+        if (shape.getCondition() != null) { // The condition itself is only verified by CodeVerifier
+            if (!isInMethod) {
+                throw new SyntaxException(CodeVerifier.CONDITION_OUT_OF_METHOD);
+            }
+            depth++;
+            return true;
+        }
+        if (depth > METHOD_DEPTH && shape.isClosingBracket()) {
+            depth--;
+            return true;
+        }
+        String type = shape.getMissingBracketType();
+        if (type != null) {
+            throw new SyntaxException(String.format(CodeVerifier.MISSING_OPENING_BRACKET, type));
+        }
+        return false;
+    }
+
+    /**
+     * Handles a line that may declare or assign variables.
+     * @param shape The shape of the line.
+     * @return {@code true} if the line declares or assigns variables, {@code false} otherwise.
+     * @throws SyntaxException If the line misses its semicolon, or ends with several.
+     */
+    private boolean handleVariable(LineShape shape) throws SyntaxException {
+        if (shape.getDeclaration() != null) { // The variables are only declared by CodeVerifier
+            return true;
+        }
+        if (shape.endsWithMultipleSemicolons()) {
+            throw new SyntaxException(CodeVerifier.MULTIPLE_SEMICOLON);
+        }
+        if (shape.isDeclarationPrefix()) {
+            throw new SyntaxException(CodeVerifier.MISSING_SEMICOLON);
+        }
+        if (shape.getAssignment() != null) {
+            if (!shape.endsWithSemicolon()) {
+                throw new SyntaxException(CodeVerifier.MISSING_SEMICOLON);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Handles a line that may be a method call or the closing bracket of a method.
+     * @param shape The shape of the line.
+     * @return {@code true} if the line is a method call or closes a method, {@code false} otherwise.
+     * @throws SyntaxException If the call misses its semicolon, or the method misses its return statement.
+     */
+    private boolean handleInMethod(LineShape shape) throws SyntaxException {
+        if (!isInMethod) {
+            return false;
+        }
+        if (shape.getCall() != null) { // The call is only checked against the methods by CodeVerifier
+            if (!shape.endsWithSemicolon()) {
+                throw new SyntaxException(CodeVerifier.MISSING_SEMICOLON);
+            }
+            return true;
+        }
+        if (shape.isClosingBracket()) {
+            if (!LinearPatterns.isReturn(prevLine)) {
+                throw new SyntaxException(String.format(CodeVerifier.MISSING_RETURN_STATEMENT, methodName));
+            }
+            isInMethod = false;
+            depth--;
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -10,12 +10,15 @@ public class SyntaxException extends RuntimeException {
 
     private static final String ERROR_PREFIX_WITH_LINE = "SyntaxException in line %d -> %s";
 
+    private final long lineNumber; // 0 if the line is not known
+
     /**
      * Constructs a new syntax exception with the given message.
      * @param message The message of the exception.
      */
     SyntaxException(String message) {
         super(message);
+        this.lineNumber = 0;
     }
 
     /**
@@ -25,5 +28,13 @@ public class SyntaxException extends RuntimeException {
      */
     SyntaxException(String message, long line) {
         super(String.format(ERROR_PREFIX_WITH_LINE, line, message));
+        this.lineNumber = line;
+    }
+
+    /**
+     * @return The line number where the exception occurred, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
     }
 }
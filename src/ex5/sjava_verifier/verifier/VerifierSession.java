@@ -0,0 +1,403 @@
+package ex5.sjava_verifier.verifier;
+
+import ex5.sjava_verifier.api.VerificationMode;
+import ex5.sjava_verifier.preprocessor.CleanLineReader;
+import ex5.sjava_verifier.preprocessor.CleanLineSource;
+import ex5.sjava_verifier.preprocessor.FileCleaner;
+import ex5.sjava_verifier.preprocessor.PipelinedLineReader;
+import ex5.sjava_verifier.preprocessor.ReusableLineReader;
+import ex5.sjava_verifier.rules.Diagnostic;
+import ex5.sjava_verifier.rules.Rule;
+import ex5.sjava_verifier.statistics.Phase;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.condition_management.ConditionException;
+import ex5.sjava_verifier.verifier.method_management.MethodException;
+import ex5.sjava_verifier.verifier.variable_management.VarException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reusable verification session for verifying many files one after the other.
+ * <p>
+ *     The session owns a single {@link CodeVerifier}, together with its scopes, method table, line cache and
+ *     variable, method and condition verifiers, a buffer for the cleaned lines of a file and the buffers
+ *     used for reading files.
+ *     Instead of building all of them again for every file, the session {@link #reset() resets} them
+ *     between files, keeping the cleared tables and the pooled scope maps for reuse.
+ * </p>
+ * <p>
+ *     Verifying a file with a session gives exactly the same result as verifying it with a new
+ *     {@link CodeVerifier}. A session is not thread-safe, and should be confined to a single thread.
+ * </p>
+ * <p>
+ *     The session also owns a {@link StructureVerifier}, which shares the line cache of the
+ *     {@link CodeVerifier}, for the tiered and the structure-only verification. There is a single entry
+ *     point for every kind of input, which verifies it in the given {@link VerificationMode}.
+ * </p>
+ * <p>
+ *     The {@link Rule rules} of a session receive the events of every file that its {@link CodeVerifier}
+ *     verifies, and their diagnostics are kept until the next file.
+ * </p>
+ * <p>
+ *     The time spent in every {@link Phase} is added to the {@link VerifierStats} of the current thread.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public class VerifierSession {
+
+    // Private fields
+    private final CodeVerifier verifier;
+    private final StructureVerifier structure;
+    private final RulePipeline rules;
+    private final Map<Long, String> lineBuffer = new LinkedHashMap<>(); // Keeps the order of the lines
+    private final ReusableLineReader reader = new ReusableLineReader();
+    private final CleanLineReader cleanLineReader = new CleanLineReader(reader);
+    private final PipelinedLineReader pipelinedReader = new PipelinedLineReader(cleanLineReader);
+    private boolean isDirty = false;
+
+    /**
+     * Constructs a session with a line cache of the default size.
+     */
+    public VerifierSession() {
+        this(CodeVerifier.DEFAULT_LINE_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a session with a line cache of the given size.
+     * @param lineCacheSize The maximal number of lines in the line cache, or 0 to disable it.
+     * @see CodeVerifier#CodeVerifier(Map, String, int)
+     */
+    public VerifierSession(int lineCacheSize) {
+        this(lineCacheSize, List.of());
+    }
+
+    /**
+     * Constructs a session with a line cache of the given size, whose verification passes its events to the
+     * given rules.
+     * @param lineCacheSize The maximal number of lines in the line cache, or 0 to disable it.
+     * @param rules The rules of the session. They are used only by this session, so they are not shared
+     *              with another thread.
+     */
+    public VerifierSession(int lineCacheSize, List<? extends Rule> rules) {
+        LineShapeCache lineShapes = new LineShapeCache(lineCacheSize);
+        this.rules = new RulePipeline(rules);
+        verifier = new CodeVerifier(lineShapes, this.rules);
+        structure = new StructureVerifier(lineShapes);
+    }
+
+    /**
+     * Returns the diagnostics that the rules reported for the last file that was traversed.
+     * <p>
+     *     A file whose structure was rejected in the tiered mode, or that was verified only by its structure,
+     *     is not traversed. The diagnostics are dropped when the session is {@link #reset() reset}.
+     * </p>
+     * @return The diagnostics, in the order they were reported, or an empty list without rules.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return rules.getDiagnostics();
+    }
+
+    /**
+     * Verifies the given clean lines in the given mode.
+     * <p>
+     *     The lines are already held in memory, so they are verified in two passes in the
+     *     {@link VerificationMode#STREAMING streaming} and the {@link VerificationMode#PIPELINED pipelined}
+     *     modes too. In the {@link VerificationMode#TIERED tiered} mode, the structural check of
+     *     {@link StructureVerifier}, a single cheap scan without the scopes and the method table, runs first,
+     *     so a file with an illegal structure is rejected without the full verification; when the file also
+     *     has an error that only the full verification finds before its first structural error, the
+     *     structural error is reported instead. In the {@link VerificationMode#STRUCTURE structure} mode,
+     *     only the structural check runs, so a file whose only errors are in the types, the scopes or the
+     *     methods of its variables and calls is accepted.
+     * </p>
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @param sourceName The name of the source of the lines, used when reporting events.
+     * @param mode The way to verify the lines.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     */
+    public void verify(Map<Long, String> cleanLines, String sourceName, VerificationMode mode)
+            throws VarException, IllegalTypeException, SyntaxException, MethodException, ConditionException {
+        if (mode == VerificationMode.TIERED || mode == VerificationMode.STRUCTURE) {
+            verifyStructure(cleanLines);
+        }
+        if (mode != VerificationMode.STRUCTURE) {
+            verifyLines(cleanLines, sourceName);
+        }
+    }
+
+    /**
+     * Verifies the given file in the given mode.
+     * <p>
+     *     In the {@link VerificationMode#TWO_PASS two-pass} and the {@link VerificationMode#TIERED tiered}
+     *     modes, the file is cleaned into the buffer of the session and verified like
+     *     {@link #verify(Map, String, VerificationMode)}. In the other modes, it is verified in a single pass
+     *     while it is read, by a separate reader thread in the {@link VerificationMode#PIPELINED pipelined}
+     *     mode, so the lines of the file are not kept, and reading stops as soon as the first error is known.
+     * </p>
+     * @param filePath The path to the file to verify.
+     * @param mode The way to verify the file.
+     * @throws IOException If an error occurs while reading the file.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     * @see FileCleaner#cleanFile(String, Map, ReusableLineReader)
+     * @see CodeVerifier#verifyStream(ex5.sjava_verifier.preprocessor.CleanLineSource, String)
+     * @see PipelinedLineReader
+     */
+    public void verifyFile(String filePath, VerificationMode mode)
+            throws IOException, VarException, IllegalTypeException, SyntaxException, MethodException,
+                   ConditionException {
+        if (!isSinglePass(mode)) {
+            cleanFile(filePath);
+            verify(lineBuffer, filePath, mode);
+            return;
+        }
+        prepareStream();
+        long start = System.nanoTime();
+        try {
+            if (mode == VerificationMode.PIPELINED) {
+                try (pipelinedReader) {
+                    pipelinedReader.open(filePath);
+                    verifyStream(pipelinedReader, filePath, mode);
+                }
+            } else {
+                try (cleanLineReader) {
+                    cleanLineReader.open(filePath);
+                    verifyStream(cleanLineReader, filePath, mode);
+                }
+            }
+        } finally {
+            VerifierStats.countPhase(singlePassPhase(mode), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verifies the content of the given stream in the given mode, like the content of a file given to
+     * {@link #verifyFile(String, VerificationMode)}.
+     * @param input The stream to verify. It is closed when this method returns.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @param mode The way to verify the stream.
+     * @throws IOException If an error occurs while reading the stream.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     * @see FileCleaner#cleanStream(InputStream, String, Map, ReusableLineReader)
+     */
+    public void verifyInput(InputStream input, String sourceName, VerificationMode mode)
+            throws IOException, VarException, IllegalTypeException, SyntaxException, MethodException,
+                   ConditionException {
+        if (!isSinglePass(mode)) {
+            lineBuffer.clear();
+            cleanInput(input, sourceName, lineBuffer);
+            verify(lineBuffer, sourceName, mode);
+            return;
+        }
+        prepareStream();
+        long start = System.nanoTime();
+        try {
+            if (mode == VerificationMode.PIPELINED) {
+                try (pipelinedReader) {
+                    pipelinedReader.open(input, sourceName);
+                    verifyStream(pipelinedReader, sourceName, mode);
+                }
+            } else {
+                try (cleanLineReader) {
+                    cleanLineReader.open(input, sourceName);
+                    verifyStream(cleanLineReader, sourceName, mode);
+                }
+            }
+        } finally {
+            VerifierStats.countPhase(singlePassPhase(mode), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Cleans the given text into the buffer of the session, and verifies it in the given mode like
+     * {@link #verify(Map, String, VerificationMode)}, since it is already held in memory.
+     * @param text The text to verify.
+     * @param sourceName The name of the source of the text, used when reporting events.
+     * @param mode The way to verify the text.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     * @see FileCleaner#cleanText(CharSequence, String, Map)
+     */
+    public void verifyText(CharSequence text, String sourceName, VerificationMode mode)
+            throws VarException, IllegalTypeException, SyntaxException, MethodException, ConditionException {
+        cleanText(text, sourceName);
+        verify(lineBuffer, sourceName, mode);
+    }
+
+    /**
+     * Cleans the content of the given stream into the given map with the reader of the session, without
+     * verifying it.
+     * @param input The stream to clean. It is closed when this method returns.
+     * @param sourceName The name of the source of the stream, used when reporting events.
+     * @param cleanLines An empty map that keeps insertion order, to add the cleaned lines to.
+     * @throws IOException If an error occurs while reading the stream.
+     * @see FileCleaner#cleanStream(InputStream, String, Map, ReusableLineReader)
+     */
+    public void cleanInput(InputStream input, String sourceName, Map<Long, String> cleanLines)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            FileCleaner.cleanStream(input, sourceName, cleanLines, reader);
+        } finally {
+            VerifierStats.countPhase(Phase.PREPROCESSING, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Clears the state left by the last verified file, keeping the allocated structures for reuse.
+     * <p>
+     *     Verifying a file resets the session when needed, so calling this method is only required in order
+     *     to release the lines of the last file early.
+     * </p>
+     */
+    public void reset() {
+        verifier.reset();
+        lineBuffer.clear();
+        isDirty = false;
+    }
+
+    /**
+     * Verifies the given clean lines fully, collecting their methods first.
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @param sourceName The name of the source of the lines, used when reporting events.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     */
+    private void verifyLines(Map<Long, String> cleanLines, String sourceName)
+            throws VarException, IllegalTypeException, SyntaxException, MethodException, ConditionException {
+        if (isDirty) {
+            verifier.reset();
+        }
+        isDirty = true;
+        long start = System.nanoTime();
+        try { // The method table pre-pass runs while loading the lines
+            verifier.load(cleanLines, sourceName);
+        } finally {
+            VerifierStats.countPhase(Phase.METHOD_TABLE, System.nanoTime() - start);
+        }
+        long methodsCollected = System.nanoTime();
+        try {
+            verifier.verifyCode();
+        } finally {
+            VerifierStats.countPhase(Phase.MAIN_PASS, System.nanoTime() - methodsCollected);
+        }
+    }
+
+    /**
+     * Verifies only the structure of the given clean lines.
+     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * @throws SyntaxException If the structure of a line is illegal.
+     * @throws MethodException If a method declaration is illegal.
+     * @see StructureVerifier
+     */
+    private void verifyStructure(Map<Long, String> cleanLines) throws SyntaxException, MethodException {
+        long start = System.nanoTime();
+        try {
+            structure.verify(cleanLines);
+        } finally {
+            VerifierStats.countPhase(Phase.STRUCTURE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verifies the lines of an open source in a single pass, fully or only their structure.
+     * @param source The source of the cleaned lines.
+     * @param sourceName The name of the source, used when reporting events.
+     * @param mode A mode that verifies in a single pass.
+     * @throws IOException If an error occurs while reading the source.
+     * @throws VarException If a variable is declared with an illegal name or is not initialized.
+     * @throws IllegalTypeException If a variable is declared with an illegal type.
+     * @throws SyntaxException If a line is illegal.
+     * @throws MethodException If a method declaration or a method call is illegal.
+     * @throws ConditionException If a condition is illegal.
+     */
+    private void verifyStream(CleanLineSource source, String sourceName, VerificationMode mode)
+            throws IOException, VarException, IllegalTypeException, SyntaxException, MethodException,
+                   ConditionException {
+        if (mode == VerificationMode.STRUCTURE) {
+            structure.verify(source);
+        } else {
+            verifier.verifyStream(source, sourceName);
+        }
+    }
+
+    /**
+     * @param mode A way to verify a file.
+     * @return {@code true} if the mode verifies a file in a single pass while it is read, {@code false} if it
+     *         cleans the whole file first.
+     */
+    private static boolean isSinglePass(VerificationMode mode) {
+        return mode == VerificationMode.STREAMING || mode == VerificationMode.PIPELINED ||
+               mode == VerificationMode.STRUCTURE;
+    }
+
+    /**
+     * @param mode A mode that verifies in a single pass.
+     * @return The phase that the single pass of the mode is counted in.
+     */
+    private static Phase singlePassPhase(VerificationMode mode) {
+        return mode == VerificationMode.STRUCTURE ? Phase.STRUCTURE : Phase.SINGLE_PASS;
+    }
+
+    /**
+     * Cleans the given file into the buffer of the session.
+     * @param filePath The path to the file to clean.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    private void cleanFile(String filePath) throws IOException {
+        lineBuffer.clear();
+        long start = System.nanoTime();
+        try {
+            FileCleaner.cleanFile(filePath, lineBuffer, reader);
+        } finally {
+            VerifierStats.countPhase(Phase.PREPROCESSING, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Cleans the given text into the buffer of the session.
+     * @param text The text to clean.
+     * @param sourceName The name of the source of the text, used when reporting events.
+     */
+    private void cleanText(CharSequence text, String sourceName) {
+        lineBuffer.clear();
+        long start = System.nanoTime();
+        FileCleaner.cleanText(text, sourceName, lineBuffer);
+        VerifierStats.countPhase(Phase.PREPROCESSING, System.nanoTime() - start);
+    }
+
+    /**
+     * Prepares the session for verifying a file in a single pass.
+     */
+    private void prepareStream() {
+        lineBuffer.clear();
+        if (isDirty) {
+            verifier.reset();
+        }
+        isDirty = true;
+    }
+
+}
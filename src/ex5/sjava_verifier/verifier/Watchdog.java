@@ -0,0 +1,191 @@
+package ex5.sjava_verifier.verifier;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces limits on the time and the memory of the verification of a single file.
+ * <p>
+ *     A watchdog is thread-confined, like {@link ex5.sjava_verifier.statistics.VerifierStats VerifierStats}:
+ *     it is started on the thread that runs the verification, and the cleaner and the verifier check it
+ *     through {@link #check(long)} while they go over the lines, which throws a
+ *     {@link LimitExceededException} once a limit was exceeded. When no watchdog was started on the current
+ *     thread, checking does nothing. The limits are measured on every check, that is on every line of
+ *     every pass over the file.
+ * </p>
+ * <p>
+ *     The memory of a verification is the number of bytes its threads allocated on the heap since the
+ *     watchdog was started, which the JVM may not be able to measure. A verification that uses another
+ *     thread, like the reading thread of a pipelined verification, shares its watchdog with that thread
+ *     through {@link #current()} and {@link #join(Watchdog)}, so the time and the allocations of both
+ *     threads are checked against the same limits.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+public final class Watchdog {
+
+    // Constants
+    private static final long NO_LIMIT = 0;
+
+    // Errors
+    private static final String TIME_EXCEEDED = "The verification exceeded its time limit of %d ms at" +
+                                                " line %d.";
+    private static final String MEMORY_EXCEEDED = "The verification exceeded its memory limit of %d bytes" +
+                                                  " at line %d.";
+
+    // Thread-confined current watchdog
+    private static final ThreadLocal<Watchdog> CURRENT = new ThreadLocal<>();
+
+    // Private fields
+    private final long timeLimitMillis;
+    private final long memoryLimitBytes;
+    private final long deadline;
+    private final AtomicLong allocated;
+    private final long allocatedAtStart;
+    private long published = 0;
+
+    /**
+     * Constructs a watchdog of the current thread.
+     * @param timeLimitMillis The maximal wall time in milliseconds, or 0 for no limit.
+     * @param memoryLimitBytes The maximal number of allocated bytes, or 0 for no limit.
+     * @param deadline The time, in the units of {@link System#nanoTime()}, at which the time limit passes.
+     * @param allocated The number of bytes that all the threads of the verification allocated.
+     */
+    private Watchdog(long timeLimitMillis, long memoryLimitBytes, long deadline, AtomicLong allocated) {
+        this.timeLimitMillis = timeLimitMillis;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.deadline = deadline;
+        this.allocated = allocated;
+        this.allocatedAtStart = memoryLimitBytes == NO_LIMIT ? 0 : Allocations.current();
+    }
+
+    /**
+     * Starts a watchdog on the current thread, replacing the one that was started before, if any.
+     * @param timeLimitMillis The maximal wall time in milliseconds, or 0 for no limit.
+     * @param memoryLimitBytes The maximal number of allocated bytes, or 0 for no limit. It is ignored if the
+     *                         JVM cannot measure the allocations of a thread.
+     */
+    public static void start(long timeLimitMillis, long memoryLimitBytes) {
+        if (memoryLimitBytes != NO_LIMIT && !Allocations.isSupported()) {
+            memoryLimitBytes = NO_LIMIT;
+        }
+        if (timeLimitMillis == NO_LIMIT && memoryLimitBytes == NO_LIMIT) {
+            CURRENT.remove();
+        } else {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+            CURRENT.set(new Watchdog(timeLimitMillis, memoryLimitBytes, deadline, new AtomicLong()));
+        }
+    }
+
+    /**
+     * @return The watchdog of the current thread, to share with another thread through
+     *         {@link #join(Watchdog)}, or {@code null} if there is none.
+     */
+    public static Watchdog current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the current thread check the limits of the watchdog of another thread: the deadline is the
+     * same, and the allocations of the current thread from now on are added to those of the other thread.
+     * @param shared The watchdog of the other thread, or {@code null} to stop checking on this thread.
+     */
+    public static void join(Watchdog shared) {
+        if (shared == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(new Watchdog(shared.timeLimitMillis, shared.memoryLimitBytes, shared.deadline,
+                                     shared.allocated));
+        }
+    }
+
+    /**
+     * Stops the watchdog of the current thread, if any.
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Checks the limits of the watchdog of the current thread, if any.
+     * @param lineNumber The number of the line that is verified.
+     * @throws LimitExceededException If a limit was exceeded.
+     */
+    public static void check(long lineNumber) {
+        Watchdog watchdog = CURRENT.get();
+        if (watchdog != null) {
+            watchdog.measure(lineNumber);
+        }
+    }
+
+    /**
+     * Measures the time and the memory of the verification.
+     * @param lineNumber The number of the line that is verified.
+     * @throws LimitExceededException If a limit was exceeded.
+     */
+    private void measure(long lineNumber) {
+        if (timeLimitMillis != NO_LIMIT && System.nanoTime() - deadline > 0) {
+            throw new LimitExceededException(String.format(TIME_EXCEEDED, timeLimitMillis, lineNumber),
+                                             lineNumber);
+        }
+        if (memoryLimitBytes != NO_LIMIT && allocatedInTotal() > memoryLimitBytes) {
+            throw new LimitExceededException(String.format(MEMORY_EXCEEDED, memoryLimitBytes, lineNumber),
+                                             lineNumber);
+        }
+    }
+
+    /**
+     * Adds the bytes the current thread allocated since the last measure to those of the verification.
+     * @return The number of bytes that all the threads of the verification allocated.
+     */
+    private long allocatedInTotal() {
+        long own = Allocations.current() - allocatedAtStart;
+        long total = allocated.addAndGet(own - published);
+        published = own;
+        return total;
+    }
+
+    /**
+     * Measures the allocations of the current thread, loading the management classes of the JVM only when a
+     * memory limit is used.
+     */
+    private static final class Allocations {
+
+        // Constants
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        /**
+         * @return {@code true} if the allocations of a thread can be measured, {@code false} otherwise.
+         */
+        private static boolean isSupported() {
+            return THREADS != null;
+        }
+
+        /**
+         * @return The number of bytes the current thread allocated since it started.
+         */
+        private static long current() {
+            return THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        /**
+         * @return The bean that measures the allocations of threads, or {@code null} if the JVM has none.
+         */
+        private static com.sun.management.ThreadMXBean threads() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (!allocations.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            allocations.setThreadAllocatedMemoryEnabled(true);
+            return allocations;
+        }
+    }
+
+}
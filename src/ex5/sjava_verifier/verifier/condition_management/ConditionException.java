@@ -11,12 +11,15 @@ public class ConditionException extends RuntimeException {
 
     private static final String INVALID_CONDITION = "ConditionException in line %d -> %s";
 
+    private final long lineNumber; // 0 if the line is not known
+
     /**
      * Constructs a new condition exception with the given message.
      * @param message The message of the exception.
      */
     public ConditionException(String message) {
         super(message);
+        this.lineNumber = 0;
     }
 
     /**
@@ -26,5 +29,13 @@ public class ConditionException extends RuntimeException {
      */
     public ConditionException(String message, long line) {
         super(String.format(INVALID_CONDITION, line, message));
+        this.lineNumber = line;
+    }
+
+    /**
+     * @return The line number where the exception occurred, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
     }
 }
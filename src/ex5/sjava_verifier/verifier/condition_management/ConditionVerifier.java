@@ -1,12 +1,14 @@
 package ex5.sjava_verifier.verifier.condition_management;
 
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.LinearPatterns;
 import ex5.sjava_verifier.verifier.RegexUtils;
 import ex5.sjava_verifier.verifier.VarType;
 import ex5.sjava_verifier.verifier.variable_management.Variable;
 
+import java.util.Arrays;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A class that verifies the structure of conditions in the code.
@@ -48,22 +50,54 @@ public class ConditionVerifier {
 
     // Constants
     private static final int CONDITIONS_GROUP = 2;
-    private static final String OR_SIGN = "||";
-    private static final String AND_SIGN = "&&";
+    private static final char OR_CHAR = '|';
+    private static final char AND_CHAR = '&';
+    private static final int OPERATOR_LENGTH = 2;
+    private static final int INITIAL_OPERANDS = 4;
 
-    // RegEx formats
-    private static final String OPEN_CURLY_BRACKET_REGEX = "\\{";
-    private static final String CONDITION_WITHOUT_CLOSING_BRACKET_REGEX = "^(while|if)\\s*\\(\\s*(.*)\\)\\s*";
-    private static final String CONDITION_STATEMENT_REGEX =
-            CONDITION_WITHOUT_CLOSING_BRACKET_REGEX + OPEN_CURLY_BRACKET_REGEX;
-    private static final String SPLIT_CONDITIONS_REGEX = "\\|\\||&&";
+    /**
+     * A conditional line that was parsed, but whose conditions were not checked against the scopes yet.
+     * <p>
+     *     A parsed condition depends only on the text of its line, so it can be reused for every line with
+     *     the same text. The operands are kept as the types of the constants and the names of the variables,
+     *     since only the variables are looked up by their names.
+     * </p>
+     */
+    public static final class Condition {
+        private final String error; // An error found while parsing, thrown when the condition is verified
+        private VarType[] constantTypes; // The type of every constant operand, null for a variable
+        private String[] names; // The name of every variable operand, null for a constant
+        private int operands;
 
-    // Pattern instances
-    /** A pattern that matches a conditional statement without a curly bracket */
-    public static final Pattern CONDITION_WITHOUT_CLOSING_BRACKET_PATTERN = Pattern.compile(
-            CONDITION_WITHOUT_CLOSING_BRACKET_REGEX
-    );
-    private static final Pattern STATEMENT_PATTERN = Pattern.compile(CONDITION_STATEMENT_REGEX);
+        private Condition(String error) {
+            this.error = error;
+        }
+
+        /**
+         * Adds the next operand of the condition.
+         * @param line The conditional line.
+         * @param from The start of the operand in the line, inclusive.
+         * @param to The end of the operand in the line, exclusive.
+         */
+        private void addOperand(String line, int from, int to) {
+            from = skipWhitespace(line, from, to);
+            to = skipWhitespaceBackwards(line, from, to);
+            if (constantTypes == null) {
+                constantTypes = new VarType[INITIAL_OPERANDS];
+            } else if (operands == constantTypes.length) {
+                constantTypes = Arrays.copyOf(constantTypes, 2 * operands);
+            }
+            VarType type = RegexUtils.getConstantType(line, from, to);
+            if (type == null) {
+                if (names == null || names.length < constantTypes.length) {
+                    names = names == null ? new String[constantTypes.length] :
+                            Arrays.copyOf(names, constantTypes.length);
+                }
+                names[operands] = line.substring(from, to);
+            }
+            constantTypes[operands++] = type;
+        }
+    }
 
     // Private fields
     private final Function<String, Variable> getVariableCallback;
@@ -77,20 +111,46 @@ public class ConditionVerifier {
     }
 
     /**
-     * Verifies that the entire conditional line is of a valid structure:
+     * Parses a conditional line of the structure:
      * <p>
      *      'if/while (conditions) {'
      * </p>
-     * @param line The line to check if holds as a valid condition
-     * @return {@code true} if the line is a valid conditional line, {@code false} otherwise.
+     * Only the structure of the line is checked, the conditions are checked by
+     * {@link #verifyCondition(Condition)}.
+     * @param line The line to parse.
+     * @return The parsed condition, or {@code null} if the line is not a conditional line.
      */
-    public boolean verifyConditionStatement(String line) throws ConditionException {
-        Matcher matcher = STATEMENT_PATTERN.matcher(line);
-        if (matcher.matches()) {
-            String conditions = matcher.group(CONDITIONS_GROUP).strip();
-            return verifyCondition(conditions);
+    public static Condition parseConditionStatement(String line) {
+        VerifierStats.countPattern(PatternId.CONDITION_STATEMENT);
+        LinearPatterns.Match match = LinearPatterns.conditionStatement(line);
+        if (match == null) {
+            return null;
+        }
+        int start = skipWhitespace(line, match.start(CONDITIONS_GROUP), match.end(CONDITIONS_GROUP));
+        int end = skipWhitespaceBackwards(line, start, match.end(CONDITIONS_GROUP));
+        if (start == end) { // Empty condition
+            return new Condition(EMPTY_CONDITIONS);
+        }
+        if (end - start >= OPERATOR_LENGTH) {
+            if (isOperator(line, start)) { // Starts with '||' or '&&'
+                return new Condition(STARTS_IN_OR_AND);
+            }
+            if (isOperator(line, end - OPERATOR_LENGTH)) { // Ends with '||' or '&&'
+                return new Condition(ENDS_IN_OR_AND);
+            }
+        }
+        // A single scan over the operands and the operators between them, like splitting by '||' and '&&'
+        Condition condition = new Condition(null);
+        int operandStart = start;
+        for (int i = start; i <= end - OPERATOR_LENGTH; i++) {
+            if (isOperator(line, i)) {
+                condition.addOperand(line, operandStart, i);
+                i += OPERATOR_LENGTH - 1;
+                operandStart = i + 1;
+            }
         }
-        return false;
+        condition.addOperand(line, operandStart, end);
+        return condition;
     }
 
     /**
@@ -98,39 +158,67 @@ public class ConditionVerifier {
      * <p>
      *      Valid condition statements are structured as (boolean ||\&& boolean ...)
      * </p>
-     * @param conditions The line to check if holds as a valid condition.
-     * @return {@code true} iff the line is a valid condition.
+     * @param condition The parsed condition to verify.
+     * @throws ConditionException If the condition is illegal.
      */
-    private boolean verifyCondition(String conditions) throws ConditionException {
-        if (conditions.isBlank()) { // Empty condition
-            throw new ConditionException(EMPTY_CONDITIONS);
+    public void verifyCondition(Condition condition) throws ConditionException {
+        if (condition.error != null) {
+            throw new ConditionException(condition.error);
         }
-        if (conditions.startsWith(OR_SIGN) || conditions.startsWith(AND_SIGN)) { // Starts with '||' or '&&'
-            throw new ConditionException(STARTS_IN_OR_AND);
-        }
-        if (conditions.endsWith(OR_SIGN) || conditions.endsWith(AND_SIGN)) { // Ends with '||' or '&&'
-            throw new ConditionException(ENDS_IN_OR_AND);
-        }
-        String[] conditionParts = conditions.split(SPLIT_CONDITIONS_REGEX);
-        int i = 1;
-        for (String part : conditionParts) {
-            part = part.strip();
-            VarType type = RegexUtils.getConstantType(part);
+        for (int i = 0; i < condition.operands; i++) {
+            VarType type = condition.constantTypes[i];
             if (type != null) { // If a constant
                 if (!VarType.areTypesCompatible(VarType.BOOLEAN, type)) {
-                    throw new ConditionException(String.format(NOT_BOOLEAN_TYPE, i, type));
+                    throw new ConditionException(String.format(NOT_BOOLEAN_TYPE, i + 1, type));
                 }
             } else { // If not a constant
-                Variable var = getVariableCallback.apply(part);
+                Variable var = getVariableCallback.apply(condition.names[i]);
                 if (!VarType.areTypesCompatible(VarType.BOOLEAN, var.getType())) {
-                    throw new ConditionException(String.format(NOT_BOOLEAN_TYPE, i, var.getType()));
+                    throw new ConditionException(String.format(NOT_BOOLEAN_TYPE, i + 1, var.getType()));
                 }
                 if (var.isNotInitialized()) {
                     throw new ConditionException(String.format(UNINITIALIZED_VARIABLE, var.getName()));
                 }
             }
-            i++;
         }
-        return true;
+    }
+
+    /**
+     * Checks if a '||' or '&amp;&amp;' operator starts at the given index.
+     * @param line The line to check.
+     * @param index The index, which is followed by at least one more character.
+     * @return {@code true} if an operator starts at the index, {@code false} otherwise.
+     */
+    private static boolean isOperator(String line, int index) {
+        char c = line.charAt(index);
+        return (c == OR_CHAR || c == AND_CHAR) && line.charAt(index + 1) == c;
+    }
+
+    /**
+     * Skips the whitespaces at the start of a region, the same ones as {@link String#strip()}.
+     * @param line The line.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return The index of the first character that is not a whitespace, or {@code to} if there is none.
+     */
+    private static int skipWhitespace(String line, int from, int to) {
+        while (from < to && Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Skips the whitespaces at the end of a region, the same ones as {@link String#strip()}.
+     * @param line The line.
+     * @param from The start of the region, inclusive.
+     * @param to The end of the region, exclusive.
+     * @return The index after the last character that is not a whitespace, or {@code from} if there is none.
+     */
+    private static int skipWhitespaceBackwards(String line, int from, int to) {
+        while (to > from && Character.isWhitespace(line.charAt(to - 1))) {
+            to--;
+        }
+        return to;
     }
 }
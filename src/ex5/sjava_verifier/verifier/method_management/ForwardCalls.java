@@ -0,0 +1,148 @@
+package ex5.sjava_verifier.verifier.method_management;
+
+import ex5.sjava_verifier.verifier.variable_management.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the calls to methods that were not declared yet while a file is verified in a single pass.
+ * <p>
+ *     A call to a method that is declared later in the file cannot be checked when it is reached.
+ *     Its arguments are resolved in the scope of the call, and the call is kept until its method is declared,
+ *     when it is checked against the declaration. The calls that are left when the file ends are checked
+ *     against the complete method table, which reports that their methods do not exist.
+ * </p>
+ * <p>
+ *     The earliest failed call is kept, together with its line, so it can be reported like the reference
+ *     verifier reports it when it reaches the line of the call.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+class ForwardCalls {
+
+    /**
+     * Checks a call against the method table.
+     */
+    @FunctionalInterface
+    interface CallChecker {
+        /**
+         * @param name The name of the called method.
+         * @param args The arguments of the call, or {@code null} if the call has no arguments.
+         * @throws MethodException If the call does not match the method table.
+         */
+        void check(String name, List<Variable> args) throws MethodException;
+    }
+
+    /**
+     * A call that was not checked yet.
+     */
+    private static class PendingCall {
+        private final String name;
+        private final long lineNumber;
+        private final List<Variable> args;
+        private boolean isResolved = false;
+
+        private PendingCall(String name, long lineNumber, List<Variable> args) {
+            this.name = name;
+            this.lineNumber = lineNumber;
+            this.args = args;
+        }
+    }
+
+    // Private fields
+    private final Deque<PendingCall> callsInOrder = new ArrayDeque<>(); // Ordered by line number
+    private final Map<String, List<PendingCall>> unresolvedCalls = new HashMap<>();
+    private long failedCallLine = Long.MAX_VALUE;
+    private String failedCallMessage;
+
+    /**
+     * Keeps a call to a method that was not declared yet.
+     * @param name The name of the called method.
+     * @param lineNumber The line of the call. Calls must be added in the order of their lines.
+     * @param args The arguments of the call, or {@code null} if the call has no arguments.
+     */
+    void add(String name, long lineNumber, List<Variable> args) {
+        PendingCall call = new PendingCall(name, lineNumber, args);
+        callsInOrder.addLast(call);
+        unresolvedCalls.computeIfAbsent(name, key -> new ArrayList<>()).add(call);
+    }
+
+    /**
+     * Checks the kept calls to the given method, which was just declared.
+     * @param name The name of the declared method.
+     * @param checker The checker to check the calls with.
+     */
+    void resolve(String name, CallChecker checker) {
+        List<PendingCall> calls = unresolvedCalls.remove(name);
+        if (calls != null) {
+            for (PendingCall call : calls) {
+                check(call, checker);
+            }
+            dropResolvedCalls();
+        }
+    }
+
+    /**
+     * Checks all the calls that are still kept, when there are no more declarations.
+     * @param checker The checker to check the calls with.
+     */
+    void resolveAll(CallChecker checker) {
+        for (PendingCall call : callsInOrder) {
+            if (!call.isResolved) {
+                check(call, checker);
+            }
+        }
+        unresolvedCalls.clear();
+        callsInOrder.clear();
+    }
+
+    /**
+     * @param lineNumber A line number.
+     * @return {@code true} if a call before or at the given line was not checked yet,
+     *         {@code false} otherwise.
+     */
+    boolean hasUnresolvedCallsUpTo(long lineNumber) {
+        PendingCall first = callsInOrder.peekFirst();
+        return first != null && first.lineNumber <= lineNumber;
+    }
+
+    /**
+     * @return The line of the earliest failed call, or {@link Long#MAX_VALUE} if no call failed.
+     */
+    long getFailedCallLine() {
+        return failedCallLine;
+    }
+
+    /**
+     * @return The error of the earliest failed call, or {@code null} if no call failed.
+     */
+    String getFailedCallMessage() {
+        return failedCallMessage;
+    }
+
+    private void check(PendingCall call, CallChecker checker) {
+        call.isResolved = true;
+        try {
+            checker.check(call.name, call.args);
+        } catch (MethodException e) {
+            if (call.lineNumber < failedCallLine) {
+                failedCallLine = call.lineNumber;
+                failedCallMessage = e.getMessage();
+            }
+        }
+    }
+
+    private void dropResolvedCalls() {
+        while (!callsInOrder.isEmpty() && callsInOrder.peekFirst().isResolved) {
+            callsInOrder.removeFirst();
+        }
+    }
+
+}
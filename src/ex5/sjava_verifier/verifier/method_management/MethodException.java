@@ -10,12 +10,15 @@ public class MethodException extends RuntimeException {
 
     private static final String ERROR_PREFIX = "MethodException in line %d -> %s";
 
+    private final long lineNumber; // 0 if the line is not known
+
     /**
      * Constructs a new MethodException with the specified detail message.
      * @param message The detail message.
      */
     MethodException(String message) {
         super(message);
+        this.lineNumber = 0;
     }
 
     /**
@@ -25,5 +28,13 @@ public class MethodException extends RuntimeException {
      */
     public MethodException(String message, long lineNumber) {
         super(String.format(ERROR_PREFIX, lineNumber, message));
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return The line number where the exception occurred, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
     }
 }
@@ -21,7 +21,7 @@ import java.util.Map;
 class MethodTable {
 
     // Errors
-    private final static String EXISTING_METHOD_NAME = "Method named '%s' already exists.";
+    final static String EXISTING_METHOD_NAME = "Method named '%s' already exists.";
     private final static String METHOD_DOES_NOT_EXIST = "Method named '%s' does not exist.";
     private final static String WRONG_PARAM_TYPE = "Wrong parameter type. Parameter number %d is supposed " +
                                                    "to be %s, but got %s instead.";
@@ -112,4 +112,11 @@ class MethodTable {
         return methods.get(name);
     }
 
+    /**
+     * Removes all the methods from the table, so it can be reused for another file.
+     */
+    void clear() {
+        methods.clear();
+    }
+
 }
@@ -1,18 +1,19 @@
 package ex5.sjava_verifier.verifier.method_management;
 
-import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.LinearPatterns;
 import ex5.sjava_verifier.verifier.RegexUtils;
 import ex5.sjava_verifier.verifier.VarType;
+import ex5.sjava_verifier.verifier.Watchdog;
 import ex5.sjava_verifier.verifier.variable_management.Variable;
-import ex5.sjava_verifier.verifier.variable_management.VariableVerifier;
 
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A class that verifies method declarations and calls.
@@ -49,24 +50,40 @@ public class MethodVerifier {
     private static final int PARAM_NAME_GROUP = 3;
     private static final String VOID_KEYWORD = "void";
     private static final String EMPTY_STRING = "";
-    private static final String TYPE_REGEX = CodeVerifier.TYPE_REGEX;
+    private static final char OPEN_PAREN = '(';
     private static final String OPEN_CURLY_BRACKET = "{";
     private static final String COMMA = ",";
     private static final String UNDERSCORE = "_";
+    private static final String[] NO_ARGUMENTS = {EMPTY_STRING}; // What an empty argument list splits into
+    private static final VarType[] NO_ARGUMENT_TYPES = {null}; // The empty argument is not a constant
 
-    // RegEx formats
-    private static final String NAME_REGEX = VariableVerifier.NAME_REGEX;
-    private static final String OPEN_PAREN = "\\s*\\(";
-    private static final String PARAM_REGEX = "^(final\\s+)?(" + TYPE_REGEX + ")\\s+(" + NAME_REGEX + ")";
-    private static final String DEC_REGEX = "^(" + NAME_REGEX + ")" + OPEN_PAREN + "(.*)\\)\\s*\\{";
-    private static final String CALL_REGEX = "^(" + NAME_REGEX + ")" + OPEN_PAREN + "(.*)\\)\\s*";
+    /**
+     * A method call line that was parsed, but was not checked against the method table and the scopes yet.
+     * <p>
+     *     A parsed call depends only on the text of its line, so it can be reused for every line with
+     *     the same text.
+     * </p>
+     */
+    public static final class Call {
+        private final String name;
+        private final boolean hasNoArguments;
+        private final String[] args;
+        private final VarType[] constantTypes; // The type of every constant argument, null for a variable
 
-    // Pattern instances
-    /** A pattern that matches function calling sequences */
-    public static final Pattern CALL_PATTERN = Pattern.compile(CALL_REGEX);
-    private static final Pattern NAME_PATTERN = Pattern.compile("(" + NAME_REGEX + ")");
-    private static final Pattern PARAM_PATTERN = Pattern.compile(PARAM_REGEX);
-    private static final Pattern DEC_PATTERN = Pattern.compile(DEC_REGEX);
+        private Call(String name, boolean hasNoArguments, String[] args, VarType[] constantTypes) {
+            this.name = name;
+            this.hasNoArguments = hasNoArguments;
+            this.args = args;
+            this.constantTypes = constantTypes;
+        }
+
+        /**
+         * @return The name of the called method.
+         */
+        public String getName() {
+            return name;
+        }
+    }
 
     // Private fields
     private final MethodTable methodTable;
@@ -74,60 +91,166 @@ public class MethodVerifier {
     private final Function<String, Variable> getVariableCallback;
     private final BiFunction<String, Variable, Void> addVarToScopeCallback;
     private long lineCounter;
+    private ForwardCalls forwardCalls; // Only while verifying in a single pass
 
     /**
-     * Constructs a MethodVerifier with the given map of clean lines.
-     * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
+     * Constructs a MethodVerifier with an empty method table.
+     * <p>
+     *     The method declarations of a file are added with {@link #initializeMethodTable(Map)}.
+     * </p>
      * @param isVarInScope A callback function that checks if a variable is in scope.
      * @param addVarToScope A callback function that adds a variable to the scope.
      * @param getVariableCallback A callback function that returns a variable by its name.
-     * @throws MethodException if a method declaration is invalid.
      */
-    public MethodVerifier(Map<Long, String> cleanLines,
-                          Function<String, Boolean> isVarInScope,
+    public MethodVerifier(Function<String, Boolean> isVarInScope,
                           BiFunction<String, Variable, Void> addVarToScope,
-                          Function<String, Variable> getVariableCallback) throws MethodException {
+                          Function<String, Variable> getVariableCallback) {
         this.methodTable = new MethodTable();
         this.isVarInScopeCallback = isVarInScope;
         this.addVarToScopeCallback = addVarToScope;
         this.getVariableCallback = getVariableCallback;
-        initializeMethodTable(cleanLines);
     }
 
     /**
-     * Handles a method call line.
-     * @param line The line to handle.
+     * Removes all the collected method declarations, so the verifier can be reused for another file.
+     */
+    public void reset() {
+        methodTable.clear();
+        lineCounter = 0;
+        forwardCalls = null;
+    }
+
+    /**
+     * Prepares the verifier for verifying a file in a single pass, where methods are declared with
+     * {@link #declareMethod(String)} as their declarations are reached.
+     * <p>
+     *     A call to a method that was not declared yet is accepted when it is reached, and checked once its
+     *     method is declared, or by {@link #resolveRemainingCalls()} at the end of the file.
+     * </p>
+     */
+    public void startSinglePass() {
+        forwardCalls = new ForwardCalls();
+    }
+
+    /**
+     * Sets the number of the line that is handled, for the calls that are checked later.
+     * @param lineNumber The number of the handled line.
+     */
+    public void setLineNumber(long lineNumber) {
+        lineCounter = lineNumber;
+    }
+
+    /**
+     * Verifies a method declaration and adds it to the method table,
+     * then checks the earlier calls to the declared method.
+     * @param line The method declaration line, starting with the 'void' keyword.
+     * @throws MethodException if the method declaration is invalid.
+     */
+    public void declareMethod(String line) throws MethodException {
+        String name = handleMethodDec(withoutVoidKeyword(line));
+        if (forwardCalls != null) {
+            forwardCalls.resolve(name, this::checkCall);
+        }
+    }
+
+    /**
+     * Checks the calls to methods that were never declared, at the end of a file verified in a single pass.
+     */
+    public void resolveRemainingCalls() {
+        forwardCalls.resolveAll(this::checkCall);
+    }
+
+    /**
+     * @param lineNumber A line number.
+     * @return {@code true} if a call before or at the given line was not checked yet,
+     *         {@code false} otherwise.
+     */
+    public boolean hasUnresolvedCallsUpTo(long lineNumber) {
+        return forwardCalls.hasUnresolvedCallsUpTo(lineNumber);
+    }
+
+    /**
+     * @return The line of the earliest call that failed when it was checked after its line,
+     *         or {@link Long#MAX_VALUE} if there is none.
+     */
+    public long getFailedCallLine() {
+        return forwardCalls.getFailedCallLine();
+    }
+
+    /**
+     * @return The error of the earliest call that failed when it was checked after its line.
+     */
+    public MethodException getFailedCallError() {
+        return new MethodException(forwardCalls.getFailedCallMessage(), forwardCalls.getFailedCallLine());
+    }
+
+    /**
+     * Tries to parse a method call line.
+     * <p>
+     *     Only the structure of the call and its constant arguments are checked, the call is checked
+     *     against the method table and the scopes by {@link #handleMethodCall(Call)}.
+     * </p>
+     * @param line The line to parse.
+     * @return The parsed call, or {@code null} if the line is not a method call.
+     */
+    public static Call parseMethodCall(String line) {
+        VerifierStats.countPattern(PatternId.METHOD_CALL);
+        LinearPatterns.Match match = LinearPatterns.methodCall(line);
+        if (match == null) {
+            return null;
+        }
+        String parameters = match.group(PARAM_GROUP);
+        String[] args = parameters.split(COMMA);
+        VarType[] constantTypes = new VarType[args.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = args[i].strip(); // remove leading/trailing whitespace
+            constantTypes[i] = RegexUtils.getConstantType(args[i]); // check if the parameter is a constant
+        }
+        return new Call(match.group(NAME_GROUP), parameters.equals(EMPTY_STRING), args, constantTypes);
+    }
+
+    /**
+     * Handles a parsed method call line.
+     * @param call The parsed call.
      * @return {@code true} if the method call is valid, {@code false} otherwise.
      * @throws MethodException if the method call is invalid.
      */
-    public boolean handleMethodCall(String line) throws MethodException {
-        Matcher matcher = CALL_PATTERN.matcher(line);
-        if (matcher.lookingAt()) {
-            String name = matcher.group(NAME_GROUP);
-            String parameters = matcher.group(PARAM_GROUP);
-            if (parameters.equals(EMPTY_STRING) && methodTable.isParamLessMethod(name)) {
-                // If the method has no parameters and the call has no parameters
-                return true;
-            }
-            List<Variable> params = verifyParamListInCall(parameters.split(COMMA), name);
-            return methodTable.paramListMatches(name, params);
+    public boolean handleMethodCall(Call call) throws MethodException {
+        VerifierStats.countMethodCall();
+        String name = call.name;
+        // A method that was not declared yet may be declared later in a single pass
+        if (forwardCalls != null && methodTable.getMethodParams(name) == null) {
+            List<Variable> params = call.hasNoArguments ? null :
+                                    verifyParamListInCall(call.args, call.constantTypes, name);
+            forwardCalls.add(name, lineCounter, params);
+            return true;
         }
-        return false;
+        if (call.hasNoArguments && methodTable.isParamLessMethod(name)) {
+            // If the method has no parameters and the call has no parameters
+            return true;
+        }
+        List<Variable> params = verifyParamListInCall(call.args, call.constantTypes, name);
+        return methodTable.paramListMatches(name, params);
     }
 
     /**
      * Starts a subroutine by adding the subroutine's parameters to the scope.
-     * @param line The line to handle.
-     * @return The name of the subroutine.
+     * @param name The name of the subroutine.
      */
-    public String startSubroutine(String line) {
-        line = line.replaceFirst(VOID_KEYWORD, EMPTY_STRING).strip();
-        String name = line.split(OPEN_PAREN)[0];
+    public void startSubroutine(String name) {
         List<Variable> params = methodTable.getMethodParams(name);
         for (Variable var: params) {
             addVarToScopeCallback.apply(var.getName(), var);
         }
-        return name;
+    }
+
+    /**
+     * Finds the name of the subroutine declared in a method declaration line.
+     * @param line The method declaration line, starting with the 'void' keyword.
+     * @return The name of the subroutine.
+     */
+    public static String getSubroutineName(String line) {
+        return LinearPatterns.beforeFirst(withoutVoidKeyword(line), OPEN_PAREN);
     }
 
     /**
@@ -136,15 +259,17 @@ public class MethodVerifier {
      *     Assumes the method has at least one parameter.
      * </p>
      * @param params The parameters to verify.
+     * @param constantTypes The type of every parameter that is a constant, {@code null} for the others.
      * @param name The name of the method.
      * @return A list of the verified parameters as {@link Variable} objects.
      * @throws MethodException if a parameter is not in scope or is uninitialized.
      */
-    private List<Variable> verifyParamListInCall(String[] params, String name) throws MethodException {
+    private List<Variable> verifyParamListInCall(String[] params, VarType[] constantTypes, String name)
+            throws MethodException {
         List<Variable> varList = new ArrayList<>();
-        for (String param: params) {
-            param = param.strip(); // remove leading/trailing whitespace
-            VarType type = RegexUtils.getConstantType(param); // check if the parameter is a constant
+        for (int i = 0; i < params.length; i++) {
+            String param = params[i];
+            VarType type = constantTypes[i];
             if (type != null) { // if it is a constant
                 varList.add(new Variable(EMPTY_STRING, type, true, type));
             } else { // if it isn't a constant
@@ -167,13 +292,14 @@ public class MethodVerifier {
      * @param cleanLines A map where the key is the line number and the value is the cleaned line of code.
      * @throws MethodException if a method declaration is invalid.
      */
-    private void initializeMethodTable(Map<Long, String> cleanLines) throws MethodException {
+    public void initializeMethodTable(Map<Long, String> cleanLines) throws MethodException {
         try {
             for (long lineNum : cleanLines.keySet()) {
                 lineCounter = lineNum;
+                Watchdog.check(lineNum);
                 String line = cleanLines.get(lineNum);
                 if (line.startsWith(VOID_KEYWORD)) {
-                    handleMethodDec(line.replaceFirst(VOID_KEYWORD, EMPTY_STRING).strip());
+                    handleMethodDec(withoutVoidKeyword(line));
                 }
             }
         } catch (MethodException e) {
@@ -181,30 +307,77 @@ public class MethodVerifier {
         }
     }
 
+    /**
+     * Checks a call against the method table, exactly like {@link #handleMethodCall(Call)} does.
+     * @param name The name of the called method.
+     * @param params The verified parameters of the call, or {@code null} if the call has no parameters.
+     * @throws MethodException if the method call is invalid.
+     */
+    private void checkCall(String name, List<Variable> params) throws MethodException {
+        if (params == null) {
+            if (methodTable.isParamLessMethod(name)) {
+                return;
+            }
+            params = verifyParamListInCall(NO_ARGUMENTS, NO_ARGUMENT_TYPES, name);
+        }
+        methodTable.paramListMatches(name, params);
+    }
+
     /**
      * Handles a method declaration line.
      * @param line The line to handle.
+     * @return The name of the declared method.
+     * @throws MethodException if the method declaration is invalid.
+     */
+    private String handleMethodDec(String line) throws MethodException {
+        LinearPatterns.Match match = matchMethodDec(line);
+        String name = match.group(NAME_GROUP);
+        List<Variable> paramsList = verifyParamListInDec(match.group(PARAM_GROUP).split(COMMA));
+        methodTable.addMethod(name, paramsList);
+        return name;
+    }
+
+    /**
+     * Verifies a method declaration line without a method table, exactly like
+     * {@link #initializeMethodTable(Map)} verifies every declaration of a file.
+     * @param line The method declaration line, starting with the 'void' keyword.
+     * @param declaredNames The names of the methods that were declared before it. The name of the declared
+     *                      method is added to them.
+     * @throws MethodException if the method declaration is invalid, or if its name was already declared.
+     */
+    public static void verifyDeclaration(String line, Set<String> declaredNames) throws MethodException {
+        LinearPatterns.Match match = matchMethodDec(withoutVoidKeyword(line));
+        String name = match.group(NAME_GROUP);
+        verifyParamListInDec(match.group(PARAM_GROUP).split(COMMA));
+        if (!declaredNames.add(name)) { // Like the method table, which keeps the first declaration
+            throw new MethodException(String.format(MethodTable.EXISTING_METHOD_NAME, name));
+        }
+    }
+
+    /**
+     * Matches a method declaration line, and verifies its name and the form of its parameter list.
+     * @param line The line to match, without the 'void' keyword.
+     * @return The match of the declaration.
      * @throws MethodException if the method declaration is invalid.
      */
-    private void handleMethodDec(String line) throws MethodException {
-        Matcher matcher = DEC_PATTERN.matcher(line);
-        if (matcher.matches()) {
-            String name = matcher.group(NAME_GROUP);
+    private static LinearPatterns.Match matchMethodDec(String line) throws MethodException {
+        VerifierStats.countPattern(PatternId.METHOD_DECLARATION);
+        LinearPatterns.Match match = LinearPatterns.methodDeclaration(line);
+        if (match != null) {
+            String name = match.group(NAME_GROUP);
             if (name.startsWith(UNDERSCORE)) {
                 throw new MethodException(String.format(INVALID_METHOD_NAME_WITH_NAME, name));
             }
             verifyMethodNameInDec(name);
-            String params = matcher.group(PARAM_GROUP);
-            if (params.endsWith(COMMA)) {
+            if (match.group(PARAM_GROUP).endsWith(COMMA)) {
                 throw new MethodException(INVALID_PARAMETER_LIST);
             }
-            List<Variable> paramsList = verifyParamListInDec(params.split(COMMA));
-            methodTable.addMethod(name, paramsList);
+            return match;
         } else if (!line.endsWith(OPEN_CURLY_BRACKET)) {
             throw new MethodException(MISSING_CURLY_BRACKET);
-        } else if (!NAME_PATTERN.matcher(line).lookingAt()) {
+        } else if (!lookingAtName(line)) {
             throw new MethodException(INVALID_METHOD_NAME);
-        } else if (RegexUtils.MULTIPLE_OPEN_BRACKETS_PATTERN.matcher(line).find()) {
+        } else if (hasMultipleOpenBrackets(line)) {
             throw new MethodException(MULTIPLE_BRACKETS);
         } else {
             throw new MethodException(INVALID_METHOD_DEC);
@@ -217,31 +390,61 @@ public class MethodVerifier {
      * @param name the name of the method
      * @throws MethodException if the method name is invalid
      */
-    private void verifyMethodNameInDec(String name) throws MethodException {
-        if (!NAME_PATTERN.matcher(name).lookingAt()) {
+    private static void verifyMethodNameInDec(String name) throws MethodException {
+        if (!lookingAtName(name)) {
             throw new MethodException(INVALID_METHOD_NAME);
         }
     }
 
+    /**
+     * Checks if the given text starts with a valid name.
+     * @param text The text to check.
+     * @return {@code true} if the text starts with a valid name, {@code false} otherwise.
+     */
+    private static boolean lookingAtName(String text) {
+        VerifierStats.countPattern(PatternId.NAME);
+        return LinearPatterns.startsWithName(text);
+    }
+
+    /**
+     * Checks if the given text contains multiple opening brackets.
+     * @param text The text to check.
+     * @return {@code true} if the text contains multiple opening brackets, {@code false} otherwise.
+     */
+    private static boolean hasMultipleOpenBrackets(String text) {
+        VerifierStats.countPattern(PatternId.MULTIPLE_OPEN_BRACKETS);
+        return LinearPatterns.hasMultipleOpenBrackets(text);
+    }
+
+    /**
+     * Removes the 'void' keyword from the start of a method declaration.
+     * @param line The method declaration, starting with the 'void' keyword.
+     * @return The rest of the declaration, without leading and trailing whitespaces.
+     */
+    private static String withoutVoidKeyword(String line) {
+        return line.substring(VOID_KEYWORD.length()).strip();
+    }
+
     /**
      * Verifies the parameter list in a method declaration.
      * @param params The parameters to verify.
      * @return A list of the verified parameters.
      * @throws MethodException if the parameter list is invalid.
      */
-    private List<Variable> verifyParamListInDec(String[] params) throws MethodException {
+    private static List<Variable> verifyParamListInDec(String[] params) throws MethodException {
         List<Variable> varList = new ArrayList<>();
         if (params.length == 1 && params[0].isBlank()) { // empty parameter list
             return List.of();
         }
         for (String p : params) {
-            Matcher matcher = PARAM_PATTERN.matcher(p.strip());
-            if (matcher.matches()) {
-                String type = matcher.group(PARAM_TYPE_GROUP);
-                String name = matcher.group(PARAM_NAME_GROUP);
+            VerifierStats.countPattern(PatternId.METHOD_PARAMETER);
+            LinearPatterns.Match match = LinearPatterns.parameter(p.strip());
+            if (match != null) {
+                String type = match.group(PARAM_TYPE_GROUP);
+                String name = match.group(PARAM_NAME_GROUP);
                 VarType paramType = VarType.fromString(type);
                 varList.add(new Variable(
-                        name, paramType, matcher.group(PARAM_FINAL_GROUP) != null, paramType
+                        name, paramType, match.group(PARAM_FINAL_GROUP) != null, paramType
                 ));
             } else {
                 throw new MethodException(String.format(INVALID_PARAMETER_LIST));
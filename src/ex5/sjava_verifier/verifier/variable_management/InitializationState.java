@@ -0,0 +1,91 @@
+package ex5.sjava_verifier.verifier.variable_management;
+
+import java.util.Arrays;
+
+/**
+ * The definite-assignment state of the variables in the scopes, as a vector of bits with one bit for every
+ * variable that is in scope.
+ * <p>
+ *     Every variable gets a slot when it is added to a scope, and the slots are allocated in the order of the
+ *     declarations, so the variables of a scope hold the slots from the size of the state when the scope was
+ *     added and on. The bit of a slot is set once its variable is initialized.
+ * </p>
+ * <p>
+ *     The blocks of s-java have no {@code else}, and an assignment in a block initializes the variable for
+ *     the rest of its scope, so the state after a block is its state at the end of the block, without the
+ *     slots of the block itself. Joining the block is therefore a word-wise clear of its slots, which are the
+ *     last ones, and costs the number of variables declared in the block, however many blocks the method
+ *     has.
+ * </p>
+ *
+ * @author Noam Kimhi
+ * @author Or Forshmit
+ */
+final class InitializationState {
+
+    // Constants
+    private static final int WORD_SHIFT = 6; // A word holds 64 slots
+    private static final int INITIAL_WORDS = 4;
+    private static final long EMPTY_WORD = 0L;
+
+    // Private fields
+    private long[] words = new long[INITIAL_WORDS]; // The bits of the slots past the size are always clear
+    private int size; // The number of slots in use
+
+    /**
+     * Allocates the slot of a variable that is added to the current scope.
+     * @param isInitialized Whether the variable is initialized when it is declared.
+     * @return The slot of the variable.
+     */
+    int allocate(boolean isInitialized) {
+        int slot = size++;
+        int word = slot >>> WORD_SHIFT;
+        if (word == words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        if (isInitialized) {
+            words[word] |= 1L << slot;
+        }
+        return slot;
+    }
+
+    /**
+     * Marks the variable of the given slot as initialized.
+     * @param slot The slot of the variable.
+     */
+    void set(int slot) {
+        words[slot >>> WORD_SHIFT] |= 1L << slot;
+    }
+
+    /**
+     * @param slot The slot of a variable.
+     * @return {@code true} if the variable of the slot is initialized, {@code false} otherwise.
+     */
+    boolean isSet(int slot) {
+        return (words[slot >>> WORD_SHIFT] & (1L << slot)) != EMPTY_WORD;
+    }
+
+    /**
+     * @return The number of slots in use, which is the first slot of a scope that is added now.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Releases the slots from the given one and on, when their scope is removed. Their variables must have
+     * been unbound first, since the slots are allocated again to the next declarations.
+     * @param firstSlot The first slot of the removed scope.
+     */
+    void truncate(int firstSlot) {
+        if (firstSlot >= size) {
+            return;
+        }
+        int firstWord = firstSlot >>> WORD_SHIFT;
+        int lastWord = (size - 1) >>> WORD_SHIFT;
+        words[firstWord] &= (1L << firstSlot) - 1; // Keeps the slots before the scope in its first word
+        Arrays.fill(words, firstWord + 1, lastWord + 1, EMPTY_WORD);
+        size = firstSlot;
+    }
+
+}
@@ -1,8 +1,9 @@
 package ex5.sjava_verifier.verifier.variable_management;
 
-import ex5.sjava_verifier.verifier.VarType;
+import ex5.sjava_verifier.statistics.VerifierStats;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages the scopes of the .sjava file.
@@ -15,6 +16,16 @@ import java.util.LinkedList;
  *     and checking if a variable exists in the scopes.
  *     The class also allows changing the value of a variable in the scopes.
  * </p>
+ * <p>
+ *     Whether every variable in the scopes was initialized is kept in a single {@link InitializationState},
+ *     where the variables of a scope come after those of the scopes around it. Removing a scope, which joins
+ *     its block back into the code around it, only releases the slots of its own variables, so the
+ *     assignments it made to the variables of outer scopes remain.
+ * </p>
+ * <p>
+ *     The tables of removed scopes are cleared and kept for reuse, so a {@link Scopes} object that is
+ *     {@link #reset()} between files does not allocate new tables once it has reached its maximal depth.
+ * </p>
  *
  * @author Noam Kimhi
  * @author Or Forshmit
@@ -25,47 +36,71 @@ public class Scopes {
     private static final String NON_EXISTENT_VAR = "Variable %s was not declared";
 
     // Private fields
-    private final LinkedList<VariableTable> scopes;
+    private final List<VariableTable> scopes; // The outermost scope first, including pooled empty tables
+    private final InitializationState initialization = new InitializationState();
+    private int depth; // The number of scopes in use
 
     /**
      * Constructor for a Scopes object.
      * Constructs a Scopes object with an empty list of scopes.
      */
     public Scopes() {
-        this.scopes = new LinkedList<>();
+        this.scopes = new ArrayList<>();
+        this.depth = 0;
     }
 
     /**
      * Adds a new scope to the list of scopes.
-     * The new scope is added to the beginning of the list.
+     * The new scope becomes the current scope.
      * The new scope is an empty scope.
      */
     public void addScope() {
-        scopes.addFirst(new VariableTable());
+        if (depth == scopes.size()) { // No pooled table to reuse
+            scopes.add(new VariableTable());
+        }
+        scopes.get(depth).open(initialization.size());
+        depth++;
+        VerifierStats.countScopePush(depth);
     }
 
     /**
      * Removes the current scope from the list of scopes.
      */
     public void removeScope() {
-        scopes.removeFirst();
+        depth--;
+        VariableTable scope = scopes.get(depth);
+        scope.clear(); // Keep the table for the next scope
+        initialization.truncate(scope.getFirstSlot()); // The assignments to the outer variables remain
+        VerifierStats.countScopePop();
+    }
+
+    /**
+     * Removes all the scopes, keeping their tables for reuse.
+     */
+    public void reset() {
+        for (int i = 0; i < depth; i++) {
+            scopes.get(i).clear();
+        }
+        initialization.truncate(0);
+        depth = 0;
     }
 
     /**
      * @return The number of scopes in the list of scopes.
      */
     public int size() {
-        return scopes.size();
+        return depth;
     }
 
     /**
-     * Adds a variable to the current scope.
+     * Adds a variable to the current scope, and allocates its slot in the initialization state.
      * @param name The name of the variable.
      * @param variable The variable to add.
      * @throws VarException If a variable with the same name already exists in the current scope.
      */
     public Void addVariableToCurrentScope(String name, Variable variable) throws VarException {
-        scopes.getFirst().addVariableToTable(name, variable);
+        scopes.get(depth - 1).addVariableToTable(name, variable);
+        variable.bind(initialization);
         return null; // Return value is ignored, but needed for the lambda expression.
     }
 
@@ -75,32 +110,19 @@ public class Scopes {
      * @return {@code true} if the variable exists in the scopes, {@code false} otherwise.
      */
     public boolean isVariableInScopes(String name) {
-        for (VariableTable scope : scopes) {
+        int walked = 0;
+        for (int i = depth - 1; i >= 0; i--) { // From the current scope outwards
+            VariableTable scope = scopes.get(i);
+            walked++;
             if (scope.isVariableInTable(name)) {
+                VerifierStats.countLookup(walked);
                 return true;
             }
         }
+        VerifierStats.countLookup(walked);
         return false;
     }
 
-    /**
-     * Changes the value of a variable in the scopes (current or outer scopes).
-     * @param name The name of the variable to change.
-     * @param type The new type of the variable.
-     * @throws VarException If the new type is incompatible with the variable type,
-     *                      or if the variable does not exist in the scopes.
-     */
-    public Void changeVariableValue(String name, VarType type) throws VarException {
-        for (VariableTable scope : scopes) {
-            if (scope.isVariableInTable(name)) {
-                scope.changeVariableValue(name, type); // will throw VarException for incompatible type
-                return null; // Return value is ignored, but needed for the lambda expression.
-            }
-        }
-        // Variable doesn't exist in the scopes.
-        throw new VarException(String.format(NON_EXISTENT_VAR, name));
-    }
-
     /**
      * Returns the variable with the given name.
      * @param name The name of the variable to return.
@@ -108,11 +130,16 @@ public class Scopes {
      * @throws VarException If the variable does not exist in the scopes.
      */
     public Variable getVariable(String name) throws VarException {
-        for (VariableTable scope : scopes) {
+        int walked = 0;
+        for (int i = depth - 1; i >= 0; i--) { // From the current scope outwards
+            VariableTable scope = scopes.get(i);
+            walked++;
             if (scope.isVariableInTable(name)) {
+                VerifierStats.countLookup(walked);
                 return scope.getVariable(name);
             }
         }
+        VerifierStats.countLookup(walked);
         throw new VarException(String.format(NON_EXISTENT_VAR, name));
     }
 
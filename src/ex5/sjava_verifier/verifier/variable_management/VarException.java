@@ -11,12 +11,15 @@ public class VarException extends RuntimeException {
 
     private static final String ERROR_PREFIX = "VariableException in line %d -> %s";
 
+    private final long lineNumber; // 0 if the line is not known
+
     /**
      * Constructs a new VarException with the specified detail message.
      * @param message The detail message.
      */
     VarException(String message) {
         super(message);
+        this.lineNumber = 0;
     }
 
     /**
@@ -26,6 +29,14 @@ public class VarException extends RuntimeException {
      */
     public VarException(String message, long lineNumber) {
         super(String.format(ERROR_PREFIX, lineNumber, message));
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return The line number where the exception occurred, or 0 if it is not known.
+     */
+    public long getLineNumber() {
+        return lineNumber;
     }
 
 }
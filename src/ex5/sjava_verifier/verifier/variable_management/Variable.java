@@ -1,12 +1,16 @@
 package ex5.sjava_verifier.verifier.variable_management;
 
+import ex5.sjava_verifier.rules.Symbol;
 import ex5.sjava_verifier.verifier.VarType;
 
 /**
  * Represents a variable in a .sjava file.
  * <p>
  *     A variable has a name, a type, a flag indicating whether it is final or not,
- *     and a flag indicating whether it has been initialized or not.
+ *     and a flag indicating whether it was initialized when it was declared.
+ *     Once the variable is added to a scope, whether it has been initialized since is kept in the
+ *     {@link InitializationState} of the scopes, in the slot of the variable. Once the scope is removed, the
+ *     slot is released for the next declarations, and the variable keeps the state it had at that point.
  * </p>
  * <p>
  *     A variable can be initialized with a value compatible with the type of the variable,
@@ -16,17 +20,23 @@ import ex5.sjava_verifier.verifier.VarType;
  * @author Noam Kimhi
  * @author Or Forshmit
  */
-public class Variable {
+public class Variable implements Symbol {
 
     // Error messages
     private static final String WRONG_TYPE_ASSIGNMENT = "%s is an illegal type for variable %s of type %s.";
     private static final String FINAL_VAR_ASSIGNMENT = "Trying to modify a final variable %s.";
 
+    // Constants
+    private static final int UNBOUND = -1;
+
     // Private fields
     private final String name;
     private final VarType type;
     private final boolean isFinal;
-    private boolean isInitialized;
+    private final boolean isInitializedAtDeclaration;
+    private InitializationState initialization; // The state of the scopes, while the variable is in scope
+    private int slot = UNBOUND;
+    private boolean isInitializedOutOfScope; // Whether the variable is initialized, while it is not in scope
 
     /**
      * Constructor for a variable object.
@@ -39,7 +49,7 @@ public class Variable {
         this.name = name;
         this.type = type;
         this.isFinal = isFinal;
-        this.isInitialized = false;
+        this.isInitializedAtDeclaration = false;
     }
 
     /**
@@ -56,7 +66,9 @@ public class Variable {
         this.name = name;
         this.type = type;
         this.isFinal = isFinal;
-        setValue(valueType); // Will throw VarException in case of an incompatible type
+        checkValueType(valueType); // Will throw VarException in case of an incompatible type
+        this.isInitializedAtDeclaration = true;
+        this.isInitializedOutOfScope = true;
     }
 
     /**
@@ -64,15 +76,15 @@ public class Variable {
      * The value must be of a compatible type with the variable's type,
      * as defined in {@link VarType#areTypesCompatible(VarType, VarType)}.
      * @param valueType The type of the value to assign to the variable.
+     * A variable that is not in scope is not marked as initialized, since no line can refer to it.
      * @throws VarException If the variable is final and cannot be modified,
      *                      or if the value type is not compatible with the variable type.
      */
     public void changeValue(VarType valueType) throws VarException {
         if (!this.isFinal) {
-            if (VarType.areTypesCompatible(type, valueType)) {
-                this.isInitialized = true;
-            } else { // Type assignment is invalid
-                throw new VarException(String.format(WRONG_TYPE_ASSIGNMENT, valueType, name, type));
+            checkValueType(valueType); // Will throw VarException in case of an incompatible type
+            if (initialization != null) {
+                initialization.set(slot);
             }
         } else { // Trying to modify a final variable
             throw new VarException(String.format(FINAL_VAR_ASSIGNMENT, name));
@@ -83,7 +95,7 @@ public class Variable {
      * @return {@code true} if the variable has not been initialized, {@code false} otherwise.
      */
     public boolean isNotInitialized() {
-        return !this.isInitialized;
+        return initialization != null ? !initialization.isSet(slot) : !isInitializedOutOfScope;
     }
 
     /**
@@ -91,6 +103,7 @@ public class Variable {
      * The type is one of the types defined in {@link VarType}.
      * @return The type of the variable.
      */
+    @Override
     public VarType getType() {
         return this.type;
     }
@@ -98,10 +111,19 @@ public class Variable {
     /**
      * @return The name of the variable.
      */
+    @Override
     public String getName() {
         return name;
     }
 
+    /**
+     * @return {@code true} if the variable is final, {@code false} otherwise.
+     */
+    @Override
+    public boolean isFinal() {
+        return isFinal;
+    }
+
     /**
      * Returns whether another variable is of a compatible type with this variable's type,
      * as defined in {@link VarType#areTypesCompatible(VarType, VarType)}.
@@ -113,14 +135,33 @@ public class Variable {
     }
 
     /**
-     * Sets the value of the variable.
+     * Allocates the slot of the variable in the given state, when the variable is added to a scope.
+     * @param initialization The initialization state of the scopes.
+     */
+    void bind(InitializationState initialization) {
+        this.initialization = initialization;
+        this.slot = initialization.allocate(isInitializedAtDeclaration);
+    }
+
+    /**
+     * Releases the slot of the variable when its scope is removed, before the slot is reused, keeping
+     * whether the variable was initialized.
+     */
+    void unbind() {
+        if (initialization != null) {
+            isInitializedOutOfScope = initialization.isSet(slot);
+            initialization = null;
+            slot = UNBOUND;
+        }
+    }
+
+    /**
+     * Checks that a value can be assigned to the variable.
      * @param valueType The type of the value to assign to the variable.
      * @throws VarException If the value type is not compatible with the variable type.
      */
-    private void setValue(VarType valueType) throws VarException {
-        if (VarType.areTypesCompatible(type, valueType)) {
-            this.isInitialized = true;
-        } else { // Type assignment is invalid
+    private void checkValueType(VarType valueType) throws VarException {
+        if (!VarType.areTypesCompatible(type, valueType)) { // Type assignment is invalid
             throw new VarException(String.format(WRONG_TYPE_ASSIGNMENT, valueType, name, type));
         }
     }
@@ -1,7 +1,5 @@
 package ex5.sjava_verifier.verifier.variable_management;
 
-import ex5.sjava_verifier.verifier.VarType;
-
 import java.util.Map;
 import java.util.HashMap;
 
@@ -21,6 +19,7 @@ class VariableTable {
 
     // Private fields
     private final Map<String, Variable> variables; // Maps name to a Variable
+    private int firstSlot; // The first slot of the variables of the scope in the InitializationState
 
     /**
      * Constructs a new empty variable table.
@@ -29,6 +28,22 @@ class VariableTable {
         variables = new HashMap<>();
     }
 
+    /**
+     * Opens the table for a new scope.
+     * @param firstSlot The slot that the first variable of the scope will get in the
+     *                  {@link InitializationState}.
+     */
+    void open(int firstSlot) {
+        this.firstSlot = firstSlot;
+    }
+
+    /**
+     * @return The first slot of the variables of the scope in the {@link InitializationState}.
+     */
+    int getFirstSlot() {
+        return firstSlot;
+    }
+
     /**
      * Adds a variable to the table.
      * @param name The name of the variable.
@@ -42,18 +57,6 @@ class VariableTable {
         variables.put(name, variable); // The name is not taken
     }
 
-    /**
-     * Changes the value of a variable in the table.
-     * @param name The name of the variable to change.
-     * @param type The new value of the variable.
-     * @throws VarException If the variable does not exist in the table,
-     *                      or if the variable cannot change to the new value (final or incompatible type).
-     * @see Variable#changeValue(VarType)
-     */
-    void changeVariableValue(String name, VarType type) throws VarException {
-        variables.get(name).changeValue(type); // informs the variable to try to change to a new value
-    }
-
     /**
      * Checks if a variable with the given name exists in the table.
      * @param name The name of the variable to check.
@@ -75,4 +78,15 @@ class VariableTable {
         return variables.get(name);
     }
 
+    /**
+     * Removes all the variables from the table, so it can be reused for a new scope, and releases their
+     * slots. It must be called before the slots are released from the {@link InitializationState}.
+     */
+    void clear() {
+        for (Variable variable : variables.values()) {
+            variable.unbind();
+        }
+        variables.clear();
+    }
+
 }
@@ -1,19 +1,22 @@
 package ex5.sjava_verifier.verifier.variable_management;
 
-import ex5.sjava_verifier.verifier.CodeVerifier;
+import ex5.sjava_verifier.statistics.PatternId;
+import ex5.sjava_verifier.statistics.VerifierStats;
+import ex5.sjava_verifier.verifier.IllegalTypeException;
+import ex5.sjava_verifier.verifier.LinearPatterns;
 import ex5.sjava_verifier.verifier.VarType;
 import ex5.sjava_verifier.verifier.RegexUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A class that verifies variable declarations and assignments.
  * <p>
  *     This class is responsible for verifying variable declarations and assignments.
- *     It uses regular expressions to verify the syntax of the lines.
+ *     It uses the linear-time matchers of {@link LinearPatterns} to verify the syntax of the lines.
  *     It also uses a set of callbacks to change the value of a variable,
  *     add a new variable to the list of variables, and get a variable by its name.
  * </p>
@@ -29,34 +32,6 @@ public class VariableVerifier {
     private static final String ILLEGAL_VAR_NAME = "'%s' is an illegal variable name.";
     private static final String ILLEGAL_COMMA = "Expected a variable name after ','.";
 
-    // RegEx Formats
-    private static final String NOT_KEYWORD_REGEX =
-            "(?!\\b(?:" + CodeVerifier.TYPE_REGEX + "|void|if|return|final|while|true|false)\\b)";
-    /** RegEx for a valid variable name in s-java. */
-    public static final String NAME_REGEX =
-            NOT_KEYWORD_REGEX + "(?!^_$)(?!__)[a-zA-Z_][a-zA-Z_\\d]*";
-    private static final String COMMA_SEPARATOR = ",\\s*";
-    private static final String FINAL_VAR_DEC_PREFIX_REGEX = "^(final\\s+)?";
-    private static final String VAR_TYPE_REGEX = "(int|double|String|boolean|char)";
-    private static final String VAR_DEC_REGEX = "(" + NAME_REGEX + ")(\\s*(=)(\\s*[^,;]+)?)?";
-    private static final String ASSIGNMENT_PREFIX = "^(" + NAME_REGEX + ")";
-    private static final String SPLIT_TO_GET_VAR_NAME_REGEX = "\\s*=\\s*";
-
-    // Pattern instances
-    /** A pattern that matches if a declaration statement does not end with a semicolon */
-    public static final Pattern MISSING_SEMICOLON_DEC = Pattern.compile(
-            FINAL_VAR_DEC_PREFIX_REGEX + VAR_TYPE_REGEX + "\\s+(.*)"
-    );
-    private static final Pattern FINAL_AND_VAR_DEC_PATTERN = Pattern.compile(
-            FINAL_VAR_DEC_PREFIX_REGEX + VAR_TYPE_REGEX + "\\s+(.*);$"
-    );
-    private static final Pattern NAME_PATTERN = Pattern.compile(NAME_REGEX);
-    private static final Pattern NOT_NAME_PATTERN = Pattern.compile("(?!" + NAME_REGEX + ")");
-    private static final Pattern VAR_DEC_PATTERN = Pattern.compile(VAR_DEC_REGEX);
-    private static final Pattern ASSIGNMENT_PATTERN = Pattern.compile(
-            ASSIGNMENT_PREFIX + "\\s*=\\s*([^,;]+)"
-    );
-
     // Constants
     private static final int VAR_NAME_GROUP = 1;
     private static final int FINAL_KEYWORD_GROUP = 1;
@@ -65,9 +40,146 @@ public class VariableVerifier {
     private static final int VARS_GROUP = 3;
     private static final int INITIALIZATION_SYMBOL_GROUP = 3;
     private static final int DECLARATION_VALUE_GROUP = 4;
-    private static final String SPACE = " ";
+    private static final int NOT_FOUND = -1; // The start of a group that did not participate in a match
     private static final String COMMA = ",";
     private static final String SEMICOLON = ";";
+    private static final char COMMA_CHAR = ',';
+    private static final char SPACE = ' ';
+    private static final char EQUALS = '=';
+
+    /**
+     * A variable of a parsed declaration or assignment, together with the value assigned to it.
+     */
+    private static final class Operand {
+        private final String name;
+        private final String valueName; // The assigned variable, if the value starts with a name
+        private final VarType valueType; // The type of the assigned constant, if the value is a constant
+        private final String error; // A VarException found while parsing
+        private final IllegalTypeException typeError; // Thrown while parsing the value, rethrown as it is
+
+        private Operand(String name, String valueName, VarType valueType, String error,
+                        IllegalTypeException typeError) {
+            this.name = name;
+            this.valueName = valueName;
+            this.valueType = valueType;
+            this.error = error;
+            this.typeError = typeError;
+        }
+
+        private static Operand invalid(String error) {
+            return new Operand(null, null, null, error, null);
+        }
+
+        /**
+         * Throws the error found while parsing the operand, if there is one.
+         * @throws VarException If the variable or its value is illegal.
+         * @throws IllegalTypeException If the value is of an illegal type.
+         */
+        private void throwIfInvalid() throws VarException, IllegalTypeException {
+            if (error != null) {
+                throw new VarException(error);
+            }
+            if (typeError != null) {
+                throw typeError;
+            }
+        }
+    }
+
+    /**
+     * A variable declaration line that was parsed, but whose variables were not declared yet.
+     * <p>
+     *     A parsed declaration depends only on the text of its line, so it can be reused for every line with
+     *     the same text.
+     * </p>
+     */
+    public static final class Declaration {
+        private final boolean isFinal;
+        private final VarType type;
+        private final String error; // An error found before the variables, thrown when they are declared
+        private final List<Operand> variables; // Up to and including the first illegal variable
+
+        private Declaration(boolean isFinal, VarType type, String error, List<Operand> variables) {
+            this.isFinal = isFinal;
+            this.type = type;
+            this.error = error;
+            this.variables = variables;
+        }
+    }
+
+    /**
+     * A variable assignment line that was parsed, but whose values were not assigned yet.
+     * <p>
+     *     A parsed assignment depends only on the text of its line, so it can be reused for every line with
+     *     the same text.
+     * </p>
+     */
+    public static final class Assignment {
+        private final String error; // An error found before the assignments, thrown when they are assigned
+        private final List<Operand> assignments; // Up to the first illegal assignment
+        private final String lastError; // The error of the first illegal assignment, if there is one
+
+        private Assignment(String error, List<Operand> assignments, String lastError) {
+            this.error = error;
+            this.assignments = assignments;
+            this.lastError = lastError;
+        }
+    }
+
+    /**
+     * A cursor over the comma separated parts of a region of a line, which finds the same parts as splitting
+     * the region around {@code ,\s*} with {@link String#split(String)}, without copying them.
+     * <p>
+     *     Like the split, the cursor skips the whitespaces after every comma, and does not visit empty parts
+     *     that only have empty parts after them, unless the region has no comma at all.
+     * </p>
+     */
+    private static final class PartCursor {
+        private final String line;
+        private final int end;
+        private int partStart;
+        private int partEnd = NOT_FOUND; // Before the first part
+
+        private PartCursor(String line, int start, int end) {
+            this.line = line;
+            this.partStart = start;
+            this.end = end;
+        }
+
+        /**
+         * Moves the cursor to the next part.
+         * @return {@code true} if the cursor moved to a part, {@code false} if there are no more parts.
+         */
+        private boolean next() {
+            if (partEnd == end) {
+                return false;
+            }
+            boolean isFirst = partEnd == NOT_FOUND;
+            if (!isFirst) {
+                partStart = LinearPatterns.skipWhitespace(line, partEnd + 1, end);
+            }
+            partEnd = partStart;
+            while (partEnd < end && line.charAt(partEnd) != COMMA_CHAR) {
+                partEnd++;
+            }
+            if (partStart == partEnd && !(isFirst && partEnd == end) && hasOnlyEmptyParts()) {
+                partEnd = end; // The split removes the trailing empty parts
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the current part and every part after it are empty.
+         */
+        private boolean hasOnlyEmptyParts() {
+            for (int i = partStart; i < end; i = LinearPatterns.skipWhitespace(line, i + 1, end)) {
+                if (line.charAt(i) != COMMA_CHAR) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 
     // Private Fields
     private final BiFunction<String, VarType, Void> changeValueCallback;
@@ -89,148 +201,224 @@ public class VariableVerifier {
     }
 
     /**
-     * Tries to verify a variable declaration line.
+     * Tries to parse a variable declaration line.
      * <p>
-     *     This method tries to verify a variable declaration line.
-     *     If the line is a variable declaration line, it verifies it and returns true.
-     *     Otherwise, it returns false.
+     *     Only the structure of the line and of the assigned constants is checked, the variables are
+     *     declared by {@link #declare(Declaration)}.
      * </p>
-     * @param line The line to verify.
-     * @return {@code true} if the line is a valid variable declaration and line, {@code false} otherwise.
-     * @throws VarException If the line is not a valid variable declaration line.
+     * @param line The line to parse.
+     * @return The parsed declaration, or {@code null} if the line is not a variable declaration.
      */
-    public boolean varDec(String line) throws VarException {
-        Matcher matcher = FINAL_AND_VAR_DEC_PATTERN.matcher(line);
-        if (matcher.lookingAt()) {
-            if (isMultipleSemicolon(line)) {
-                return false;
+    public static Declaration parseDeclaration(String line) {
+        VerifierStats.countPattern(PatternId.VARIABLE_DECLARATION);
+        LinearPatterns.Match match = LinearPatterns.variableDeclaration(line);
+        if (match == null || isMultipleSemicolon(line)) {
+            return null; // did not match, this line is not a variable declaration\assignment
+        }
+        boolean isFinal = match.start(FINAL_KEYWORD_GROUP) != NOT_FOUND; // Extract if final or not
+        VarType type = VarType.fromString(match.group(TYPE_KEYWORD_GROUP)); // Extract variable type
+        int variablesStart = match.start(VARS_GROUP), variablesEnd = match.end(VARS_GROUP);
+        if (variablesEnd > variablesStart && line.charAt(variablesEnd - 1) == COMMA_CHAR) {
+            return new Declaration(isFinal, type, ILLEGAL_COMMA, List.of());
+        }
+        List<Operand> operands = new ArrayList<>();
+        PartCursor parts = new PartCursor(line, variablesStart, variablesEnd);
+        LinearPatterns.Region var = new LinearPatterns.Region(line);
+        while (parts.next()) { // try to create each value
+            Operand operand = parseDeclarator(var.set(parts.partStart, parts.partEnd).strip(), isFinal);
+            operands.add(operand);
+            if (operand.error != null || operand.typeError != null) {
+                break; // The variables after an illegal variable are never reached
             }
-            parseDeclaration(matcher);
-            return true;
         }
-        return false; // did not match, this line is not a variable declaration\assignment
+        return new Declaration(isFinal, type, null, operands);
     }
 
     /**
-     * Tries to verify a variable assignment line.
+     * Tries to parse a variable assignment line.
      * <p>
-     *     This method tries to verify a variable assignment line.
-     *     If the line is a variable assignment line, it verifies it and returns {@code true}.
-     *     Otherwise, it returns {@code false}.
+     *     Only the structure of the line and of the assigned constants is checked, the values are
+     *     assigned by {@link #assign(Assignment)}.
      * </p>
-     * @param line The line to verify.
-     * @return {@code true} if the line is a valid variable assignment line, {@code false} otherwise.
-     * @throws VarException If the line is not a valid variable assignment line.
+     * @param line The line to parse.
+     * @return The parsed assignment, or {@code null} if the line is not a variable assignment.
      */
-    public boolean varAssignment(String line) throws VarException {
+    public static Assignment parseAssignment(String line) {
         if (line.endsWith(COMMA + SEMICOLON) || line.endsWith(COMMA)) {
-            throw new VarException(ILLEGAL_COMMA);
-        }
-        String[] assignments = line.split(COMMA_SEPARATOR);
-        boolean isFirstVariable = true;
-        for (String assignment : assignments) {
-            Matcher matcher = ASSIGNMENT_PATTERN.matcher(assignment);
-            if (!matcher.lookingAt()) {
-                if (isFirstVariable) {
-                    return false; // did not match, this line is not a variable assignment
+            return new Assignment(ILLEGAL_COMMA, List.of(), null);
+        }
+        List<Operand> operands = new ArrayList<>();
+        PartCursor parts = new PartCursor(line, 0, line.length());
+        LinearPatterns.Region assignment = new LinearPatterns.Region(line);
+        while (parts.next()) {
+            assignment.set(parts.partStart, parts.partEnd);
+            VerifierStats.countPattern(PatternId.ASSIGNMENT);
+            LinearPatterns.Match match = LinearPatterns.assignment(assignment);
+            if (match == null) {
+                if (operands.isEmpty()) {
+                    return null; // did not match, this line is not a variable assignment
                 } else { // if the first variable was already assigned, this is an illegal assignment
-                    throw new VarException(String.format(ILLEGAL_VAR_NAME, assignment));
+                    return new Assignment(null, operands,
+                                          String.format(ILLEGAL_VAR_NAME, assignment.toString()));
                 }
             }
-            String name = matcher.group(VAR_NAME_GROUP);
-            VarType newType = handleAssignment(matcher.group(ASSIGNMENT_VALUE_GROUP), name);
-            changeValueCallback.apply(name, newType);
-            isFirstVariable = false;
+            String name = match.group(VAR_NAME_GROUP);
+            operands.add(parseValue(name, narrow(assignment, match, ASSIGNMENT_VALUE_GROUP)));
         }
-        return true;
+        return new Assignment(null, operands, null);
     }
 
-    private static boolean isMultipleSemicolon(String line) {
-        return RegexUtils.MULTIPLE_SEMICOLON_PATTERN.matcher(line).find();
+    /**
+     * Declares the variables of a parsed variable declaration line in the current scope.
+     * @param declaration The parsed declaration.
+     * @throws VarException If the line is not a valid variable declaration line.
+     * @throws IllegalTypeException If a variable is assigned a value of an illegal type.
+     */
+    public void declare(Declaration declaration) throws VarException, IllegalTypeException {
+        if (declaration.error != null) {
+            throw new VarException(declaration.error);
+        }
+        for (Operand operand : declaration.variables) {
+            operand.throwIfInvalid();
+            VarType valueType = operand.valueName != null || operand.valueType != null ?
+                                valueTypeOf(operand) : null;
+            Variable variable = valueType != null ?
+                                new Variable(operand.name, declaration.type, declaration.isFinal, valueType) :
+                                new Variable(operand.name, declaration.type, declaration.isFinal);
+            addVariableCallback.apply(operand.name, variable);
+        }
     }
 
     /**
-     * Parse a line in which the user is trying to declare a new variable.
-     * @param matcher The matcher for the line.
-     * @throws VarException If the line is not a valid variable declaration line.
+     * Assigns the values of a parsed variable assignment line.
+     * @param assignment The parsed assignment.
+     * @throws VarException If the line is not a valid variable assignment line.
+     * @throws IllegalTypeException If a variable is assigned a value of an illegal type.
      */
-    private void parseDeclaration(Matcher matcher) throws VarException {
-        boolean isFinal = matcher.group(FINAL_KEYWORD_GROUP) != null; // Extract if final or not
-        VarType type = VarType.fromString(matcher.group(TYPE_KEYWORD_GROUP)); // Extract variable type
-        String variables = matcher.group(VARS_GROUP); // Extract variable names
-        if (variables.endsWith(COMMA)) {
-            throw new VarException(ILLEGAL_COMMA);
-        }
-        String[] vars = variables.split(COMMA_SEPARATOR);
-        for (String var : vars) { // try to create each value
-            var = var.strip();
-            Matcher varMatcher = VAR_DEC_PATTERN.matcher(var);
-            if (!varMatcher.matches()) {
-                Matcher nameMatcher = NOT_NAME_PATTERN.matcher(var);
-                if (nameMatcher.lookingAt()) { // if the name of the variable is illegal
-                    var = var.split(SPLIT_TO_GET_VAR_NAME_REGEX)[0].split(SPACE)[0];
-                }
-                throw new VarException(
-                        String.format(ILLEGAL_VAR_NAME, var.split(SPLIT_TO_GET_VAR_NAME_REGEX)[0].strip())
-                );
-            }
-            String name = varMatcher.group(VAR_NAME_GROUP);
-            if (!NAME_PATTERN.matcher(name).matches()) {
-                throw new VarException(String.format(ILLEGAL_VAR_NAME, name));
-            }
-            Variable variable = handleVarDeclaration(type, isFinal, name, varMatcher);
-            addVariableCallback.apply(name, variable);
+    public void assign(Assignment assignment) throws VarException, IllegalTypeException {
+        if (assignment.error != null) {
+            throw new VarException(assignment.error);
+        }
+        for (Operand operand : assignment.assignments) {
+            operand.throwIfInvalid();
+            changeValueCallback.apply(operand.name, valueTypeOf(operand));
         }
+        if (assignment.lastError != null) {
+            throw new VarException(assignment.lastError);
+        }
+    }
+
+    private static boolean isMultipleSemicolon(String line) {
+        VerifierStats.countPattern(PatternId.MULTIPLE_SEMICOLON);
+        return LinearPatterns.endsWithMultipleSemicolons(line);
     }
 
     /**
-     * Handles a variable declaration line.
-     * @param matcher The matcher for the line.
+     * Parses a single variable of a variable declaration line.
+     * @param var The declared variable, with its value if it has one. The view is moved to the value.
      * @param isFinal Whether the variable is final or not.
-     * @return The variable declared.
-     * @throws VarException If a final variable is not initialized, or if a variable is assigned to itself.
+     * @return The parsed variable.
      */
-    private Variable handleVarDeclaration(VarType type, boolean isFinal, String name, Matcher matcher)
-            throws VarException {
-        String equalPart = matcher.group(INITIALIZATION_SYMBOL_GROUP);
-        boolean isInit = equalPart != null;
-        VarType valueType = null;
-        if (isInit) { // If there is an assignment int a=;
-            String groupVal = matcher.group(DECLARATION_VALUE_GROUP);
-            String value = groupVal != null ?
-                           groupVal.strip() : null;
-            if (value == null) {
-                throw new VarException(String.format(ILLEGAL_VAR_ASSIGNMENT, name));
+    private static Operand parseDeclarator(LinearPatterns.Region var, boolean isFinal) {
+        VerifierStats.countPattern(PatternId.DECLARATOR);
+        LinearPatterns.Match varMatch = LinearPatterns.declarator(var);
+        if (varMatch == null) {
+            VerifierStats.countPattern(PatternId.NOT_NAME);
+            return Operand.invalid(String.format(ILLEGAL_VAR_NAME, illegalName(var)));
+        }
+        String name = varMatch.group(VAR_NAME_GROUP);
+        VerifierStats.countPattern(PatternId.NAME);
+        if (!LinearPatterns.isName(name)) {
+            return Operand.invalid(String.format(ILLEGAL_VAR_NAME, name));
+        }
+        if (varMatch.start(INITIALIZATION_SYMBOL_GROUP) != NOT_FOUND) { // If there is an assignment int a=;
+            if (varMatch.start(DECLARATION_VALUE_GROUP) == NOT_FOUND) {
+                return Operand.invalid(String.format(ILLEGAL_VAR_ASSIGNMENT, name));
             }
-            valueType = handleAssignment(value, name);
+            return parseValue(name, narrow(var, varMatch, DECLARATION_VALUE_GROUP).strip());
         } else if (isFinal) { // If a final variable was declared without assignment
-            throw new VarException(String.format(UNINITIALIZED_FINAL_VAR, name));
+            return Operand.invalid(String.format(UNINITIALIZED_FINAL_VAR, name));
         }
-        return valueType != null ? new Variable(name, type, isFinal, valueType) :
-                new Variable(name, type, isFinal);
+        return new Operand(name, null, null, null, null);
     }
 
     /**
-     * Handles an assignment line.
-     * @param toAssign The value to assign.
+     * Finds the name to report for a declared variable that could not be parsed: the text before the first
+     * '=', and only its first word if it does not start with a valid name.
+     * @param var The declared variable, with its value if it has one. The view is moved to the name.
+     * @return The name.
+     */
+    private static String illegalName(LinearPatterns.Region var) {
+        int end = 0;
+        while (end < var.length() && var.charAt(end) != EQUALS) {
+            end++;
+        }
+        if (end < var.length()) { // The whitespaces before the '=' are not a part of the name
+            while (end > 0 && LinearPatterns.isWhitespace(var.charAt(end - 1))) {
+                end--;
+            }
+        }
+        if (!LinearPatterns.startsWithName(var)) { // if the name of the variable is illegal
+            int firstWordEnd = 0;
+            while (firstWordEnd < end && var.charAt(firstWordEnd) != SPACE) {
+                firstWordEnd++;
+            }
+            end = firstWordEnd;
+        }
+        return var.set(var.start(), var.start() + end).strip().toString();
+    }
+
+    /**
+     * Moves a view to a group of a match of it.
+     * @param region The matched view.
+     * @param match The match, which must have been made over the current region of the view.
+     * @param group The index of the group, which participated in the match.
+     * @return The view, over the group.
+     */
+    private static LinearPatterns.Region narrow(LinearPatterns.Region region, LinearPatterns.Match match,
+                                                int group) {
+        return region.set(region.start() + match.start(group), region.start() + match.end(group));
+    }
+
+    /**
+     * Parses a value that is assigned to a variable.
      * @param name The name of the variable to assign to.
+     * @param toAssign The value to assign.
+     * @return The parsed variable together with its value.
+     */
+    private static Operand parseValue(String name, LinearPatterns.Region toAssign) {
+        VerifierStats.countPattern(PatternId.NAME);
+        if (LinearPatterns.startsWithName(toAssign)) { // for lines such as "int x = y;"
+            return new Operand(name, toAssign.toString(), null, null, null);
+        }
+        try { // for lines such as "int x = 5;"
+            VarType type = RegexUtils.getConstantType(toAssign, 0, toAssign.length());
+            return new Operand(name, null, type != null ? type : RegexUtils.processValue(toAssign.toString()),
+                               null, null); // Processing a value that is not a constant throws its error
+        } catch (IllegalTypeException e) {
+            return new Operand(name, null, null, null, e);
+        }
+    }
+
+    /**
+     * Finds the type of the value assigned to a parsed variable.
+     * @param operand The parsed variable, which is assigned a value.
      * @return The type of the value assigned.
      * @throws VarException If a variable is assigned a non-existent variable, or an uninitialized variable,
      *                      or if a variable is assigned to itself.
      */
-    private VarType handleAssignment(String toAssign, String name) throws VarException {
-        if (NAME_PATTERN.matcher(toAssign).lookingAt()) { // for lines such as "int x = y;"
-            Variable assignmentVar;
-            assignmentVar = getVariableCallback.apply(toAssign);
-            if (name.equals(assignmentVar.getName())) { // Do not allow int a = a; or a = a;
-                throw new VarException(String.format(ILLEGAL_VAR_ASSIGNMENT, name));
-            }
-            if (assignmentVar.isNotInitialized()) { // if variable y is not initialized
-                throw new VarException(String.format(UNINITIALIZED_VAR_USAGE, toAssign));
-            }
-            return assignmentVar.getType();
+    private VarType valueTypeOf(Operand operand) throws VarException {
+        if (operand.valueName == null) {
+            return operand.valueType;
+        }
+        Variable assignmentVar = getVariableCallback.apply(operand.valueName);
+        if (operand.name.equals(assignmentVar.getName())) { // Do not allow int a = a; or a = a;
+            throw new VarException(String.format(ILLEGAL_VAR_ASSIGNMENT, operand.name));
+        }
+        if (assignmentVar.isNotInitialized()) { // if variable y is not initialized
+            throw new VarException(String.format(UNINITIALIZED_VAR_USAGE, operand.valueName));
         }
-        return RegexUtils.processValue(toAssign);  // for lines such as "int x = 5;"
+        return assignmentVar.getType();
     }
 
 }